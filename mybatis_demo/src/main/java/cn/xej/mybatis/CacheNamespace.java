@@ -0,0 +1,27 @@
+package cn.xej.mybatis;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 开启该 @Table 实体的二级缓存（所有 Mapper 共享，按表失效）
+ *
+ * 通过任意 Mapper 对该表的 insert/update/delete 会清空这张表的缓存
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface CacheNamespace {
+
+    int maxEntries() default 1024;
+
+    //按估算大小限制，0 表示不限
+    long maxBytes() default 0;
+
+    //存活时间，0 表示不过期
+    long ttlSeconds() default 0;
+
+    //false 时放入和取出都复制实体，调用方修改结果不会污染缓存
+    boolean readOnly() default false;
+}
@@ -0,0 +1,22 @@
+package cn.xej.mybatis;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * select 只查这些列
+ *
+ * 返回实体时其余字段保持默认值；返回 int[]、List<Integer>、String 等单列结果时必须且只能有一列。
+ * 返回 DTO 类或投影接口时不必标注，按 DTO 的字段 / 接口的 getter 取列。
+ * <pre>
+ * &#64;Columns("id")
+ * int[] selectIdsByAge(@Param(name = "age") int age);
+ * </pre>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Columns {
+    String[] value();
+}
@@ -0,0 +1,27 @@
+package cn.xej.mybatis;
+
+import java.io.Closeable;
+import java.util.stream.Stream;
+
+/**
+ * 游标：Mapper 方法返回 Cursor 时按需逐行映射，不把整个结果集读进内存
+ *
+ * 只能迭代一次；用完（或中途放弃）必须 close，归还连接和 Statement。
+ * 迭代到最后一行时会自动关闭。
+ */
+public interface Cursor<T> extends Closeable, Iterable<T> {
+
+    boolean isOpen();
+
+    //是否已经读完全部行
+    boolean isConsumed();
+
+    //已经取出的行数
+    int getCurrentIndex();
+
+    //Stream 关闭时同时关闭游标
+    Stream<T> stream();
+
+    @Override
+    void close();
+}
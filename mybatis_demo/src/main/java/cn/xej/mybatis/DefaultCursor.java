@@ -0,0 +1,138 @@
+package cn.xej.mybatis;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 游标默认实现
+ *
+ * 持有连接、Statement 和 ResultSet，调用方取一行才映射一行；
+ * 读完最后一行或 close 时依次关闭 ResultSet、Statement，并把连接归还连接池。
+ */
+public class DefaultCursor<T> implements Cursor<T> {
+
+    private final Connection connection;
+    private final Statement statement;
+    private final ResultSet resultSet;
+    private final RowMapper<T> rowMapper;
+
+    private boolean iteratorRetrieved;
+    private boolean open = true;
+    private boolean consumed;
+    private int currentIndex;
+    //fetchNext 读到、还没被 next() 取走的行
+    private T fetched;
+
+    public DefaultCursor(Connection connection, Statement statement, ResultSet resultSet, RowMapper<T> rowMapper) {
+        this.connection = connection;
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.rowMapper = rowMapper;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isConsumed() {
+        return consumed;
+    }
+
+    @Override
+    public int getCurrentIndex() {
+        return currentIndex;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        if (iteratorRetrieved) {
+            throw new IllegalStateException("Cannot open more than one iterator on a Cursor");
+        }
+        if (!open) {
+            throw new IllegalStateException("A Cursor is already closed.");
+        }
+        iteratorRetrieved = true;
+        return new CursorIterator();
+    }
+
+    @Override
+    public Stream<T> stream() {
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED);
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        try {
+            resultSet.close();
+        } catch (SQLException ignored) {
+        }
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+        }
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    //读下一行放进 fetched，没有下一行时返回 false
+    private boolean fetchNext() {
+        if (!open) {
+            return false;
+        }
+        try {
+            if (resultSet.next()) {
+                currentIndex++;
+                fetched = rowMapper.mapRow(resultSet);
+                return true;
+            }
+        } catch (SQLException e) {
+            close();
+            throw new MapperException("Error fetching cursor row " + (currentIndex + 1), e);
+        }
+        consumed = true;
+        close();
+        return false;
+    }
+
+    private final class CursorIterator implements Iterator<T> {
+
+        //fetched 里是否有还没取走的行；标量游标的行可以是 null，不能用 null 判断
+        private boolean ready;
+
+        @Override
+        public boolean hasNext() {
+            if (!ready) {
+                ready = fetchNext();
+            }
+            return ready;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T result = fetched;
+            fetched = null;
+            ready = false;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package cn.xej.mybatis;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 脏检查：记下 select 返回的实体在加载时的各列值，update(entity) 只写变化了的列，什么都没变就不发 SQL
+ *
+ * 快照按对象身份放在弱引用表里，实体被回收后快照随之清理，实体类不需要任何改动：
+ *  - 只跟踪一次读完的结果（单个、List、Page），Cursor / Stream 的大扫描不留快照
+ *  - 同一个对象再次从一级缓存等处返回时保留原快照，不把还没 update 的修改当成库里的值
+ *  - update 成功后快照换成当前值；事务会话和 BATCH 会话里改为丢弃快照（回滚或批失败后快照就不准了），下次 update 写全部列
+ *  - 没有快照的实体（new 出来的、超过 64 列的）照旧写全部列
+ *
+ * 比较用 equals，byte[] 按内容比较并在快照里复制一份
+ */
+final class DirtyTracker {
+
+    //掩码用 long，最多 64 列
+    static final int MAX_COLUMNS = 64;
+    //未跟踪
+    static final long UNTRACKED = -1;
+
+    private final Map<IdentityKey, Object[]> snapshots = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+    //select 的结果：单个实体、List 或 Page 里的实体，已有快照的保留
+    void track(EntityMetadata entity, Object result) {
+        if (entity.getColumns().size() > MAX_COLUMNS || result == null) {
+            return;
+        }
+        expungeStaleEntries();
+        if (result instanceof Page) {
+            result = ((Page<?>) result).getItems();
+        }
+        if (result instanceof List) {
+            for (Object element : (List<?>) result) {
+                if (element != null) {
+                    snapshots.putIfAbsent(new IdentityKey(element, queue), snapshot(entity, element));
+                }
+            }
+        } else {
+            snapshots.putIfAbsent(new IdentityKey(result, queue), snapshot(entity, result));
+        }
+    }
+
+    /**
+     * 与快照相比变化了的列：第 i 位对应 entity.getColumns() 的第 i 列，主键列不算
+     *
+     * 没有快照时返回 UNTRACKED
+     */
+    long changedColumns(EntityMetadata entity, Object value) {
+        Object[] snapshot = snapshots.get(new IdentityKey(value, null));
+        if (snapshot == null) {
+            return UNTRACKED;
+        }
+        List<EntityColumn> columns = entity.getColumns();
+        EntityColumn idColumn = entity.getIdColumn();
+        long mask = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            EntityColumn column = columns.get(i);
+            if (column != idColumn && !isSame(snapshot[i], column.get(value))) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    //update 成功且已提交：库里的值就是当前值
+    void refresh(EntityMetadata entity, Object value) {
+        snapshots.replace(new IdentityKey(value, null), snapshot(entity, value));
+    }
+
+    void forget(Object value) {
+        snapshots.remove(new IdentityKey(value, null));
+    }
+
+    //当前持有快照的实体个数
+    int size() {
+        expungeStaleEntries();
+        return snapshots.size();
+    }
+
+    private static Object[] snapshot(EntityMetadata entity, Object value) {
+        List<EntityColumn> columns = entity.getColumns();
+        Object[] snapshot = new Object[columns.size()];
+        for (int i = 0; i < snapshot.length; i++) {
+            Object columnValue = columns.get(i).get(value);
+            snapshot[i] = columnValue instanceof byte[] ? ((byte[]) columnValue).clone() : columnValue;
+        }
+        return snapshot;
+    }
+
+    private static boolean isSame(Object loaded, Object current) {
+        if (loaded instanceof byte[] && current instanceof byte[]) {
+            return Arrays.equals((byte[]) loaded, (byte[]) current);
+        }
+        return Objects.equals(loaded, current);
+    }
+
+    private void expungeStaleEntries() {
+        Reference<?> stale;
+        while ((stale = queue.poll()) != null) {
+            snapshots.remove(stale);
+        }
+    }
+
+    //按对象身份比较的弱引用：实体可能重写了 equals / hashCode，而且不能被快照表留住
+    private static final class IdentityKey extends WeakReference<Object> {
+
+        private final int hash;
+
+        IdentityKey(Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof IdentityKey)) {
+                return false;
+            }
+            Object referent = get();
+            return referent != null && referent == ((IdentityKey) obj).get();
+        }
+    }
+}
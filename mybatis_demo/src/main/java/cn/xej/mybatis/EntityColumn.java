@@ -0,0 +1,151 @@
+package cn.xej.mybatis;
+
+import cn.xej.mybatis.type.BooleanTypeHandler;
+import cn.xej.mybatis.type.DoubleTypeHandler;
+import cn.xej.mybatis.type.IntTypeHandler;
+import cn.xej.mybatis.type.LongTypeHandler;
+import cn.xej.mybatis.type.TypeHandler;
+import cn.xej.mybatis.type.TypeHandlerRegistry;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * 实体的一列：列名（即字段名）、字段类型、读写字段值的 MethodHandle 和参数绑定器
+ *
+ * 优先走 public getter/setter，没有时直接读写字段；
+ * insert/update 绑定实体参数时 int/long/double/boolean 字段按原始类型取值并 setInt/setLong...，不装箱
+ */
+public final class EntityColumn {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final String name;
+    private final Class<?> type;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private final ParameterBinder binder;
+    private final EntityBinder entityBinder;
+
+    EntityColumn(Class<?> entityType, Field field) {
+        this.name = field.getName();
+        this.type = field.getType();
+        MethodHandle rawGetter = resolveGetter(entityType, field);
+        this.getter = rawGetter.asType(GETTER_TYPE);
+        this.setter = resolveSetter(entityType, field).asType(SETTER_TYPE);
+        this.binder = MapperAnnotationBuilder.getBinder(type);
+        this.entityBinder = compileEntityBinder(rawGetter, TypeHandlerRegistry.getInstance().getTypeHandler(type));
+    }
+
+    //取实体字段值并绑定到第 index 个占位符
+    public void bind(PreparedStatement ps, int index, Object entity) throws SQLException {
+        try {
+            entityBinder.bind(ps, index, entity);
+        } catch (SQLException | RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new MapperException("cannot read column " + name, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private EntityBinder compileEntityBinder(MethodHandle rawGetter, TypeHandler<?> handler) {
+        if (type == int.class && handler == IntTypeHandler.INSTANCE) {
+            MethodHandle intGetter = rawGetter.asType(MethodType.methodType(int.class, Object.class));
+            return (ps, index, entity) -> IntTypeHandler.INSTANCE.setInt(ps, index, (int) intGetter.invokeExact(entity));
+        } else if (type == long.class && handler == LongTypeHandler.INSTANCE) {
+            MethodHandle longGetter = rawGetter.asType(MethodType.methodType(long.class, Object.class));
+            return (ps, index, entity) -> LongTypeHandler.INSTANCE.setLong(ps, index, (long) longGetter.invokeExact(entity));
+        } else if (type == double.class && handler == DoubleTypeHandler.INSTANCE) {
+            MethodHandle doubleGetter = rawGetter.asType(MethodType.methodType(double.class, Object.class));
+            return (ps, index, entity) -> DoubleTypeHandler.INSTANCE.setDouble(ps, index, (double) doubleGetter.invokeExact(entity));
+        } else if (type == boolean.class && handler == BooleanTypeHandler.INSTANCE) {
+            MethodHandle booleanGetter = rawGetter.asType(MethodType.methodType(boolean.class, Object.class));
+            return (ps, index, entity) -> BooleanTypeHandler.INSTANCE.setBoolean(ps, index, (boolean) booleanGetter.invokeExact(entity));
+        }
+        TypeHandler<Object> objectHandler = (TypeHandler<Object>) handler;
+        return (ps, index, entity) -> objectHandler.setParameter(ps, index, (Object) getter.invokeExact(entity));
+    }
+
+    @FunctionalInterface
+    private interface EntityBinder {
+        void bind(PreparedStatement ps, int index, Object entity) throws Throwable;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public ParameterBinder getBinder() {
+        return binder;
+    }
+
+    public Object get(Object entity) {
+        try {
+            return (Object) getter.invokeExact(entity);
+        } catch (Throwable e) {
+            throw new MapperException("cannot read column " + name, e);
+        }
+    }
+
+    public void set(Object entity, Object value) {
+        try {
+            setter.invokeExact(entity, value);
+        } catch (Throwable e) {
+            throw new MapperException("cannot write column " + name, e);
+        }
+    }
+
+    private static MethodHandle resolveGetter(Class<?> entityType, Field field) {
+        String suffix = capitalize(field.getName());
+        String[] names = field.getType() == boolean.class
+                ? new String[]{"is" + suffix, "get" + suffix} : new String[]{"get" + suffix};
+        for (String getterName : names) {
+            try {
+                Method method = entityType.getMethod(getterName);
+                if (method.getReturnType() == field.getType() && Modifier.isPublic(entityType.getModifiers())) {
+                    return LOOKUP.unreflect(method);
+                }
+            } catch (NoSuchMethodException | IllegalAccessException ignored) {
+            }
+        }
+        try {
+            field.setAccessible(true);
+            return LOOKUP.unreflectGetter(field);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("cannot access field " + field, e);
+        }
+    }
+
+    private static MethodHandle resolveSetter(Class<?> entityType, Field field) {
+        try {
+            Method method = entityType.getMethod("set" + capitalize(field.getName()), field.getType());
+            if (Modifier.isPublic(entityType.getModifiers())) {
+                return LOOKUP.unreflect(method);
+            }
+        } catch (NoSuchMethodException | IllegalAccessException ignored) {
+        }
+        try {
+            field.setAccessible(true);
+            return LOOKUP.unreflectSetter(field);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("cannot access field " + field, e);
+        }
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+}
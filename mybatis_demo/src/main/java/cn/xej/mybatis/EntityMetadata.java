@@ -0,0 +1,159 @@
+package cn.xej.mybatis;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 实体元数据：@Table 表名、主键列、所有列的读写器
+ *
+ * 每个实体类只解析一次并缓存，select 拼列名、insert/update 取字段值都从这里拿
+ */
+public final class EntityMetadata {
+
+    private static final Map<Class<?>, EntityMetadata> CACHE = new ConcurrentHashMap<>();
+
+    private final Class<?> type;
+    private final String tableName;
+    private final List<EntityColumn> columns;
+    //主键列，实体没有该字段时为 null
+    private final EntityColumn idColumn;
+    //分片键列，@Table 未声明 shardKey 时为 null
+    private final EntityColumn shardKeyColumn;
+    private final Constructor<?> constructor;
+
+    private EntityMetadata(Class<?> type) {
+        Table table = type.getAnnotation(Table.class);
+        if (table == null) {
+            throw new RuntimeException("table not found");
+        }
+        this.type = type;
+        this.tableName = table.name();
+        List<EntityColumn> columns = new ArrayList<>();
+        EntityColumn idColumn = null;
+        EntityColumn shardKeyColumn = null;
+        for (Field field : type.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            EntityColumn column = new EntityColumn(type, field);
+            columns.add(column);
+            if (column.getName().equals(table.id())) {
+                idColumn = column;
+            }
+            if (column.getName().equals(table.shardKey())) {
+                shardKeyColumn = column;
+            }
+        }
+        if (!table.shardKey().isEmpty() && shardKeyColumn == null) {
+            throw new MapperException("Entity " + type.getName() + " has no shard key column '" + table.shardKey() + "'");
+        }
+        this.columns = Collections.unmodifiableList(columns);
+        this.idColumn = idColumn;
+        this.shardKeyColumn = shardKeyColumn;
+        this.constructor = noArgConstructor(type);
+    }
+
+    private static Constructor<?> noArgConstructor(Class<?> type) {
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    public static EntityMetadata of(Class<?> type) {
+        if (type == null) {
+            throw new RuntimeException("table not found");
+        }
+        return CACHE.computeIfAbsent(type, EntityMetadata::new);
+    }
+
+    public static boolean isEntity(Class<?> type) {
+        return type != null && type.isAnnotationPresent(Table.class);
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public List<EntityColumn> getColumns() {
+        return columns;
+    }
+
+    public boolean hasIdColumn() {
+        return idColumn != null;
+    }
+
+    public EntityColumn getIdColumn() {
+        if (idColumn == null) {
+            throw new MapperException("Entity " + type.getName() + " has no id column '"
+                    + type.getAnnotation(Table.class).id() + "'");
+        }
+        return idColumn;
+    }
+
+    public boolean isSharded() {
+        return shardKeyColumn != null;
+    }
+
+    public EntityColumn getShardKeyColumn() {
+        return shardKeyColumn;
+    }
+
+    //复制实体（二级缓存非只读时，放入和取出都复制一份）
+    public Object copy(Object entity) {
+        if (constructor == null) {
+            throw new MapperException(type.getName() + " must declare a no-arg constructor");
+        }
+        Object copy;
+        try {
+            copy = constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new MapperException("cannot instantiate " + type.getName(), e);
+        }
+        for (EntityColumn column : columns) {
+            column.set(copy, column.get(entity));
+        }
+        return copy;
+    }
+
+    //估算实体占用的堆内存字节数，用于二级缓存按大小淘汰
+    public long estimateSize(Object entity) {
+        long size = 16;
+        for (EntityColumn column : columns) {
+            Class<?> columnType = column.getType();
+            if (columnType.isPrimitive()) {
+                size += 8;
+            } else {
+                Object value = column.get(entity);
+                if (value instanceof String) {
+                    size += 48 + 2L * ((String) value).length();
+                } else if (value instanceof byte[]) {
+                    size += 16 + ((byte[]) value).length;
+                } else {
+                    size += 16;
+                }
+            }
+        }
+        return size;
+    }
+
+    //除主键外的列
+    public List<EntityColumn> getNonIdColumns() {
+        List<EntityColumn> result = new ArrayList<>(columns);
+        result.remove(idColumn);
+        return result;
+    }
+}
@@ -0,0 +1,9 @@
+package cn.xej.mybatis;
+
+//SqlSession 执行写语句的方式
+public enum ExecutorType {
+    //每次调用立即执行，同一会话内按 SQL 复用 PreparedStatement
+    REUSE,
+    //连续的同一条写 SQL 攒成 JDBC 批，切换 SQL、查询、flushStatements 或 commit 时才发出
+    BATCH
+}
@@ -0,0 +1,18 @@
+package cn.xej.mybatis;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 每次从数据库取回的行数，对应 Statement.setFetchSize
+ *
+ * MySQL 驱动默认一次读完整个结果集：流式读取需 value = Integer.MIN_VALUE，
+ * 或者在 URL 上加 useCursorFetch=true 后使用正数
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface FetchSize {
+    int value();
+}
@@ -0,0 +1,85 @@
+package cn.xej.mybatis;
+
+import cn.xej.mybatis.metrics.MetricsRegistry;
+import cn.xej.mybatis.type.TypeHandlerRegistry;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * 编译期生成的 Mapper 实现类的父类
+ *
+ * 生成代码里的 SQL 和行映射是按编译时的实体写死的，构造时逐个方法和运行时解析出的 MappedStatement 比对：
+ * SQL 不一致（实体改了没重新编译）、或者开启了生成代码不处理的功能（缓存、主键合并、@UsePrimary、分片、脏检查、
+ * 查询超时、自定义类型处理器、拦截器），该方法就交回动态代理执行；调用线程设了 QueryDeadline 时也交回动态代理
+ */
+public abstract class GeneratedMapperSupport {
+
+    protected final DataSource dataSource;
+    private final MySqlSessionFactory factory;
+    private final Map<Method, MappedStatement> statements;
+
+    protected GeneratedMapperSupport(MySqlSessionFactory factory, Class<?> mapperInterface) {
+        this.factory = factory;
+        this.dataSource = factory.getReadDataSource();
+        this.statements = factory.getMappedStatements(mapperInterface);
+    }
+
+    //可以走生成代码时返回对应的 MappedStatement（用于记录统计），否则返回 null
+    protected final MappedStatement fastPath(String methodName, String sql) {
+        if (factory.isLocalCacheEnabled() || factory.isDirtyTrackingEnabled()) {
+            return null;
+        }
+        for (Map.Entry<Method, MappedStatement> entry : statements.entrySet()) {
+            MappedStatement ms = entry.getValue();
+            if (entry.getKey().getName().equals(methodName) && sql.equals(ms.getSql())) {
+                return isPlainSelect(entry.getKey(), ms) ? ms : null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isPlainSelect(Method method, MappedStatement ms) {
+        if (ms.getCommandType() != SqlCommandType.SELECT || ms.isAsync() || ms.getCache() != null || ms.hasInterceptors()
+                || ms.getCoalescer() != null || ms.isUsePrimary() || ms.isSharded() || ms.getTimeoutMillis() > 0
+                || (ms.getResultKind() != ResultKind.ONE && ms.getResultKind() != ResultKind.LIST)
+                || !EntityMetadata.isEntity(ms.getResultType())) {
+            return false;
+        }
+        TypeHandlerRegistry registry = TypeHandlerRegistry.getInstance();
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            if (!registry.isBuiltIn(parameterType)) {
+                return false;
+            }
+        }
+        for (EntityColumn column : EntityMetadata.of(ms.getResultType()).getColumns()) {
+            if (!registry.isBuiltIn(column.getType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //调用线程设了截止时间，生成代码不处理，交给动态代理
+    protected static boolean hasDeadline() {
+        return QueryDeadline.current() != null;
+    }
+
+    //记录一次调用，返回是否超过慢查询阈值（超过时生成代码再调用 recordSlowQuery 带上参数）
+    protected final boolean recordCall(MappedStatement ms, long elapsedNanos, long rows) {
+        ms.getMetrics().record(elapsedNanos, rows);
+        return factory.getMetrics().isSlow(elapsedNanos);
+    }
+
+    protected final void recordSlowQuery(MappedStatement ms, long elapsedNanos, long rows, Object[] args) {
+        MetricsRegistry metrics = factory.getMetrics();
+        metrics.recordSlowQuery(ms.getMetrics(), args, elapsedNanos, rows);
+    }
+
+    protected final MapperException queryFailed(MappedStatement ms, long startNanos, SQLException e) {
+        ms.getMetrics().recordError(System.nanoTime() - startNanos);
+        return new MapperException("Error querying " + ms.getId(), e);
+    }
+}
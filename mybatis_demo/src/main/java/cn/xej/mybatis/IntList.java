@@ -0,0 +1,83 @@
+package cn.xej.mybatis;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.RandomAccess;
+
+/**
+ * 单列 int 结果的紧凑存储：值存在 int[] 里，每行 4 字节
+ *
+ * 返回 IntList 或 List&lt;Integer&gt; 的单列 select 都得到它。List&lt;Integer&gt; 每行要一个 Integer 对象加一个引用，
+ * 百万行的主键扫描相差几倍的堆内存。getInt / toIntArray 不装箱；按 List 接口 get 时才装箱。
+ * SQL NULL 单独记在 BitSet 里（没有 NULL 时不分配），getInt 读到 0。
+ *
+ * 只读：add / set / remove 抛 UnsupportedOperationException
+ */
+public final class IntList extends AbstractList<Integer> implements RandomAccess {
+
+    private int[] values;
+    private int size;
+    private BitSet nulls;
+
+    IntList(int capacity) {
+        this.values = new int[Math.max(capacity, 16)];
+    }
+
+    void addInt(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size + (size >> 1));
+        }
+        values[size++] = value;
+    }
+
+    void addNull() {
+        if (nulls == null) {
+            nulls = new BitSet();
+        }
+        nulls.set(size);
+        addInt(0);
+    }
+
+    //依次拼接（分片查询合并用）
+    void append(IntList other) {
+        for (int i = 0; i < other.size; i++) {
+            if (other.isNull(i)) {
+                addNull();
+            } else {
+                addInt(other.values[i]);
+            }
+        }
+    }
+
+    public int getInt(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    public boolean isNull(int index) {
+        checkIndex(index);
+        return nulls != null && nulls.get(index);
+    }
+
+    //SQL NULL 为 0
+    public int[] toIntArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    @Override
+    public Integer get(int index) {
+        return isNull(index) ? null : values[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package cn.xej.mybatis;
+
+import java.sql.SQLException;
+
+/**
+ * Mapper 执行的拦截器（指标、链路追踪、SQL 改写、租户过滤等），通过 MySqlSessionFactory.addInterceptor 注册
+ *
+ * 各阶段都有默认实现，只需覆盖关心的阶段：
+ *  - rewriteSql：解析语句时调用一次，可以改写该语句的 SQL
+ *  - execute：包住整个 Mapper 方法调用（含缓存命中），在调用线程上执行；返回 CompletableFuture 的方法 proceed 返回的就是 future
+ *  - bind：包住一次参数绑定，proceed 之后还可以绑定改写时追加的占位符
+ *  - mapResult：包住一次结果映射（一次读完的 select，分片表每个分片各一次）；游标和导出 JSON 是逐行读的，不经过这一阶段
+ *
+ * 解析语句时各阶段只串起覆盖了该阶段的拦截器，按注册顺序由外到内，之后不再变化；
+ * 没有拦截器的阶段调用时只多一次 null 判断，不遍历、不分配
+ */
+public interface Interceptor {
+
+    /**
+     * 返回改写后的 SQL，不改写时原样返回
+     *
+     * 分页语句的 sql 和 seekSql 各调用一次。改写过 SQL 的语句不再使用只写变化列的 update、
+     * 多行 VALUES 和主键合并查询，这些 SQL 是运行时另外拼出来的，不会经过这里
+     */
+    default String rewriteSql(String statementId, SqlCommandType commandType, String sql) {
+        return sql;
+    }
+
+    default Object execute(Invocation invocation) throws SQLException {
+        return invocation.proceed();
+    }
+
+    default void bind(Invocation invocation) throws SQLException {
+        invocation.proceed();
+    }
+
+    default Object mapResult(Invocation invocation) throws SQLException {
+        return invocation.proceed();
+    }
+}
@@ -0,0 +1,148 @@
+package cn.xej.mybatis;
+
+import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 拦截器链上的一次调用：proceed 交给下一个拦截器，最后一个之后执行被拦截的操作
+ *
+ * 每一层一个对象，拦截器可以多次 proceed（如重试）。
+ * getPreparedStatement / getSql 只在 bind 阶段有值，getResultSet 只在 mapResult 阶段有值
+ */
+public final class Invocation {
+
+    //被拦截的操作
+    interface Target {
+        Object proceed() throws SQLException;
+    }
+
+    enum Phase {
+        EXECUTE("execute") {
+            @Override
+            Object call(Interceptor interceptor, Invocation invocation) throws SQLException {
+                return interceptor.execute(invocation);
+            }
+        },
+        BIND("bind") {
+            @Override
+            Object call(Interceptor interceptor, Invocation invocation) throws SQLException {
+                interceptor.bind(invocation);
+                return null;
+            }
+        },
+        RESULT("mapResult") {
+            @Override
+            Object call(Interceptor interceptor, Invocation invocation) throws SQLException {
+                return interceptor.mapResult(invocation);
+            }
+        };
+
+        private final String methodName;
+
+        Phase(String methodName) {
+            this.methodName = methodName;
+        }
+
+        abstract Object call(Interceptor interceptor, Invocation invocation) throws SQLException;
+
+        /**
+         * 解析语句时调用：覆盖了这一阶段的拦截器按注册顺序组成的链，没有时返回 null
+         */
+        Interceptor[] chain(List<Interceptor> interceptors) {
+            List<Interceptor> chain = new ArrayList<>();
+            for (Interceptor interceptor : interceptors) {
+                if (overrides(interceptor)) {
+                    chain.add(interceptor);
+                }
+            }
+            return chain.isEmpty() ? null : chain.toArray(new Interceptor[0]);
+        }
+
+        private boolean overrides(Interceptor interceptor) {
+            try {
+                Method method = interceptor.getClass().getMethod(methodName, Invocation.class);
+                return method.getDeclaringClass() != Interceptor.class;
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private final Phase phase;
+    private final Interceptor[] interceptors;
+    private final int index;
+    private final MappedStatement statement;
+    private final Object[] args;
+    private final String sql;
+    private final PreparedStatement preparedStatement;
+    private final ResultSet resultSet;
+    private final Target target;
+
+    private Invocation(Phase phase, Interceptor[] interceptors, int index, MappedStatement statement, Object[] args,
+                       String sql, PreparedStatement preparedStatement, ResultSet resultSet, Target target) {
+        this.phase = phase;
+        this.interceptors = interceptors;
+        this.index = index;
+        this.statement = statement;
+        this.args = args;
+        this.sql = sql;
+        this.preparedStatement = preparedStatement;
+        this.resultSet = resultSet;
+        this.target = target;
+    }
+
+    static Object execute(MappedStatement statement, Object[] args, Target target) throws SQLException {
+        return start(Phase.EXECUTE, statement.getExecuteInterceptors(), statement, args, null, null, null, target);
+    }
+
+    static void bind(MappedStatement statement, Object[] args, String sql, PreparedStatement preparedStatement,
+                     Target target) throws SQLException {
+        start(Phase.BIND, statement.getBindInterceptors(), statement, args, sql, preparedStatement, null, target);
+    }
+
+    static Object mapResult(MappedStatement statement, Object[] args, ResultSet resultSet, Target target)
+            throws SQLException {
+        return start(Phase.RESULT, statement.getResultInterceptors(), statement, args, null, null, resultSet, target);
+    }
+
+    private static Object start(Phase phase, Interceptor[] interceptors, MappedStatement statement, Object[] args,
+                                String sql, PreparedStatement preparedStatement, ResultSet resultSet, Target target)
+            throws SQLException {
+        Invocation invocation = new Invocation(phase, interceptors, 0, statement, args, sql, preparedStatement, resultSet, target);
+        return phase.call(interceptors[0], invocation);
+    }
+
+    public Object proceed() throws SQLException {
+        int next = index + 1;
+        if (next == interceptors.length) {
+            return target.proceed();
+        }
+        Invocation invocation = new Invocation(phase, interceptors, next, statement, args, sql, preparedStatement, resultSet, target);
+        return phase.call(interceptors[next], invocation);
+    }
+
+    public MappedStatement getStatement() {
+        return statement;
+    }
+
+    //Mapper 方法的参数；bind 阶段绑定实体时为只含该实体的数组（实体集合每个实体绑定一次）
+    public Object[] getArgs() {
+        return args;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public PreparedStatement getPreparedStatement() {
+        return preparedStatement;
+    }
+
+    public ResultSet getResultSet() {
+        return resultSet;
+    }
+}
@@ -0,0 +1,133 @@
+package cn.xej.mybatis;
+
+import cn.xej.mybatis.type.TypeHandler;
+import cn.xej.mybatis.type.TypeHandlerRegistry;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 结果集直接写成 JSON 数组，不创建实体对象
+ *
+ * 解析 Mapper 时按 @Table 实体的列编译一次：每列的 "name": 前缀预先编码成字节，按列的 Java 类型选好取值方式
+ *  - 整数、布尔、浮点数用 getLong / getBoolean / getDouble 直接写，不装箱
+ *  - String 转义后写，byte[] 写 Base64 字符串，BigDecimal 原样写数字
+ *  - 其余类型（日期、枚举、注册了类型处理器的类型）先经类型处理器取值：java.util.Date 写毫秒数，枚举写名字，其余写 toString
+ *
+ * SQL 是按同样的列顺序生成的，按列下标取值
+ */
+final class JsonRowWriter {
+
+    private final byte[][] prefixes;
+    private final ValueWriter[] writers;
+
+    private JsonRowWriter(byte[][] prefixes, ValueWriter[] writers) {
+        this.prefixes = prefixes;
+        this.writers = writers;
+    }
+
+    static JsonRowWriter compile(List<EntityColumn> columns) {
+        byte[][] prefixes = new byte[columns.size()][];
+        ValueWriter[] writers = new ValueWriter[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            EntityColumn column = columns.get(i);
+            prefixes[i] = ((i == 0 ? "{\"" : ",\"") + column.getName() + "\":").getBytes(StandardCharsets.UTF_8);
+            writers[i] = valueWriter(column.getType());
+        }
+        return new JsonRowWriter(prefixes, writers);
+    }
+
+    //写出结果集剩余的所有行，rowsBefore 为之前已写的行数（分片依次写入同一个数组时用来加逗号），返回本次写的行数
+    long writeRows(ResultSet resultSet, JsonOutput out, long rowsBefore) throws SQLException {
+        long rows = 0;
+        while (resultSet.next()) {
+            if (rowsBefore + rows > 0) {
+                out.writeByte(',');
+            }
+            for (int i = 0; i < writers.length; i++) {
+                out.writeRaw(prefixes[i]);
+                writers[i].write(resultSet, i + 1, out);
+            }
+            out.writeByte('}');
+            rows++;
+        }
+        return rows;
+    }
+
+    private static ValueWriter valueWriter(Class<?> type) {
+        TypeHandlerRegistry registry = TypeHandlerRegistry.getInstance();
+        if (registry.isBuiltIn(type)) {
+            if (type == int.class || type == Integer.class || type == long.class || type == Long.class
+                    || type == short.class || type == Short.class || type == byte.class || type == Byte.class) {
+                return (rs, index, out) -> {
+                    long value = rs.getLong(index);
+                    if (value == 0 && rs.wasNull()) {
+                        out.writeNull();
+                    } else {
+                        out.writeLong(value);
+                    }
+                };
+            } else if (type == boolean.class || type == Boolean.class) {
+                return (rs, index, out) -> {
+                    boolean value = rs.getBoolean(index);
+                    if (!value && rs.wasNull()) {
+                        out.writeNull();
+                    } else {
+                        out.writeBoolean(value);
+                    }
+                };
+            } else if (type == double.class || type == Double.class || type == float.class || type == Float.class) {
+                return (rs, index, out) -> {
+                    double value = rs.getDouble(index);
+                    if (value == 0 && rs.wasNull()) {
+                        out.writeNull();
+                    } else {
+                        out.writeDouble(value);
+                    }
+                };
+            } else if (type == String.class) {
+                return (rs, index, out) -> {
+                    String value = rs.getString(index);
+                    if (value == null) {
+                        out.writeNull();
+                    } else {
+                        out.writeString(value);
+                    }
+                };
+            }
+        }
+        TypeHandler<?> handler = registry.getTypeHandler(type);
+        return (rs, index, out) -> writeValue(handler.getResult(rs, index), out);
+    }
+
+    private static void writeValue(Object value, JsonOutput out) {
+        if (value == null) {
+            out.writeNull();
+        } else if (value instanceof BigDecimal) {
+            out.writeAscii(value.toString());
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            out.writeAscii(value.toString());
+        } else if (value instanceof Boolean) {
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Date) {
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof byte[]) {
+            out.writeString(Base64.getEncoder().encodeToString((byte[]) value));
+        } else if (value instanceof Enum) {
+            out.writeString(((Enum<?>) value).name());
+        } else {
+            out.writeString(value.toString());
+        }
+    }
+
+    private interface ValueWriter {
+        void write(ResultSet resultSet, int index, JsonOutput out) throws SQLException;
+    }
+}
@@ -0,0 +1,77 @@
+package cn.xej.mybatis;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.RandomAccess;
+
+/**
+ * 单列 long 结果的紧凑存储，与 IntList 相同，每行 8 字节
+ */
+public final class LongList extends AbstractList<Long> implements RandomAccess {
+
+    private long[] values;
+    private int size;
+    private BitSet nulls;
+
+    LongList(int capacity) {
+        this.values = new long[Math.max(capacity, 16)];
+    }
+
+    void addLong(long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size + (size >> 1));
+        }
+        values[size++] = value;
+    }
+
+    void addNull() {
+        if (nulls == null) {
+            nulls = new BitSet();
+        }
+        nulls.set(size);
+        addLong(0);
+    }
+
+    //依次拼接（分片查询合并用）
+    void append(LongList other) {
+        for (int i = 0; i < other.size; i++) {
+            if (other.isNull(i)) {
+                addNull();
+            } else {
+                addLong(other.values[i]);
+            }
+        }
+    }
+
+    public long getLong(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    public boolean isNull(int index) {
+        checkIndex(index);
+        return nulls != null && nulls.get(index);
+    }
+
+    //SQL NULL 为 0
+    public long[] toLongArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    @Override
+    public Long get(int index) {
+        return isNull(index) ? null : values[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
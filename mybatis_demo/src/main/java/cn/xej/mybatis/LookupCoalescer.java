@@ -0,0 +1,212 @@
+package cn.xej.mybatis;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 按主键查单条的合并器（dataloader 方式）
+ *
+ * 同一时间窗口内多个线程调用 selectById(id)：
+ *  - 第一个到达的线程开启一批，等待 window 后发出查询
+ *  - 期间到达的线程把 id 加入这一批，等待结果
+ *  - 一批攒满 maxBatchSize 时由攒满的线程立即发出
+ *  - 一批用 WHERE id IN (?, ?, ...) 查询，超过 maxInListSize 自动拆成多条
+ *  - 按行的主键值分发给各自的调用方，没有查到的返回 null
+ */
+public class LookupCoalescer {
+
+    private final RowMapperCompiler.CompiledRowMapper<?> rowMapper;
+    private final DataSource dataSource;
+    private final EntityMetadata entity;
+    private final EntityColumn keyColumn;
+    private final ParameterBinder keyBinder;
+    //SELECT id,name,age FROM user WHERE id IN (
+    private final String sqlPrefix;
+    private final int maxBatchSize;
+    private final long windowNanos;
+    private final int maxInListSize;
+    //满块的 IN 查询 SQL 预先拼好
+    private final String fullChunkSql;
+
+    private Batch current;
+
+    public LookupCoalescer(RowMapperCompiler.CompiledRowMapper<?> rowMapper, DataSource dataSource, EntityMetadata entity,
+                           String sqlPrefix, int maxBatchSize, long windowMicros, int maxInListSize) {
+        this.rowMapper = rowMapper;
+        this.dataSource = dataSource;
+        this.entity = entity;
+        this.keyColumn = entity.getIdColumn();
+        this.keyBinder = keyColumn.getBinder();
+        this.sqlPrefix = sqlPrefix;
+        this.maxBatchSize = maxBatchSize;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxInListSize = maxInListSize;
+        this.fullChunkSql = inSql(maxInListSize);
+    }
+
+    //deadline 不为 null 时最多等到截止时间，合并的查询本身不取消（同一批还有别的调用方）
+    public Object load(Object key, QueryDeadline deadline, String statementId) throws SQLException {
+        Batch batch;
+        boolean leader = false;
+        boolean full = false;
+        boolean duplicate;
+        CompletableFuture<Object> future;
+        synchronized (this) {
+            if (current == null) {
+                current = new Batch();
+                leader = true;
+            }
+            batch = current;
+            duplicate = batch.contains(key);
+            future = batch.add(key);
+            if (batch.size() >= maxBatchSize) {
+                current = null;
+                full = true;
+            }
+        }
+        if (full) {
+            batch.dispatch();
+        } else if (leader) {
+            LockSupport.parkNanos(windowNanos);
+            synchronized (this) {
+                if (current == batch) {
+                    current = null;
+                }
+            }
+            batch.dispatch();
+        }
+        try {
+            Object result = deadline == null ? future.join() : await(future, deadline, statementId);
+            //同一批里重复的 id 共用一行结果，后来者拿副本，互不影响
+            return duplicate && result != null ? entity.copy(result) : result;
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> future, QueryDeadline deadline, String statementId) {
+        try {
+            return future.get(Math.max(deadline.remainingNanos(), 0), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw StatementCanceller.timedOut(statementId, null);
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MapperException(statementId + ": interrupted while waiting for coalesced lookup", e);
+        }
+    }
+
+    private String inSql(int size) {
+        StringBuilder sb = new StringBuilder(sqlPrefix.length() + size * 2 + 1);
+        sb.append(sqlPrefix);
+        for (int i = 0; i < size; i++) {
+            sb.append(i == 0 ? "?" : ",?");
+        }
+        return sb.append(')').toString();
+    }
+
+    //int 和 long 主键统一按 long 比较
+    private static Object normalize(Object key) {
+        if (key instanceof Integer || key instanceof Long || key instanceof Short || key instanceof Byte) {
+            return ((Number) key).longValue();
+        }
+        return key;
+    }
+
+    private final class Batch {
+
+        private final Map<Object, CompletableFuture<Object>> futures = new LinkedHashMap<>();
+        private final List<Object> keys = new ArrayList<>();
+        private final AtomicBoolean dispatched = new AtomicBoolean();
+
+        //调用方持有 LookupCoalescer 的锁
+        CompletableFuture<Object> add(Object key) {
+            Object normalized = normalize(key);
+            CompletableFuture<Object> future = futures.get(normalized);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                futures.put(normalized, future);
+                keys.add(key);
+            }
+            return future;
+        }
+
+        boolean contains(Object key) {
+            return futures.containsKey(normalize(key));
+        }
+
+        int size() {
+            return keys.size();
+        }
+
+        void dispatch() {
+            if (!dispatched.compareAndSet(false, true)) {
+                return;
+            }
+            List<Object> pending;
+            synchronized (LookupCoalescer.this) {
+                pending = Collections.unmodifiableList(new ArrayList<>(keys));
+            }
+            try (Connection connection = dataSource.getConnection()) {
+                for (int from = 0; from < pending.size(); from += maxInListSize) {
+                    List<Object> chunk = pending.subList(from, Math.min(from + maxInListSize, pending.size()));
+                    queryChunk(connection, chunk);
+                }
+                //没有查到的 id 返回 null
+                for (CompletableFuture<Object> future : futures.values()) {
+                    future.complete(null);
+                }
+            } catch (Throwable e) {
+                //行映射或驱动抛出 Error 也要结束整批 future，否则其它调用方会一直等下去
+                for (CompletableFuture<Object> future : futures.values()) {
+                    future.completeExceptionally(e);
+                }
+            }
+        }
+
+        private void queryChunk(Connection connection, List<Object> chunk) throws SQLException {
+            String sql = chunk.size() == maxInListSize ? fullChunkSql : inSql(chunk.size());
+            try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    keyBinder.bind(preparedStatement, i + 1, chunk.get(i));
+                }
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    RowMapper<?> boundMapper = rowMapper.bind(resultSet.getMetaData());
+                    while (resultSet.next()) {
+                        Object row = boundMapper.mapRow(resultSet);
+                        CompletableFuture<Object> future = futures.get(normalize(keyColumn.get(row)));
+                        if (future != null) {
+                            future.complete(row);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
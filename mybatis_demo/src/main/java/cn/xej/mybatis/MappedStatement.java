@@ -0,0 +1,512 @@
+package cn.xej.mybatis;
+
+import cn.xej.mybatis.cache.LruCache;
+import cn.xej.mybatis.metrics.StatementMetrics;
+import cn.xej.mybatis.shard.ShardMap;
+
+import java.io.OutputStream;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//映射语句：一个 Mapper 方法解析后的不可变结果（SQL、参数绑定器、返回类型）
+public final class MappedStatement {
+
+    //写方法的参数形式
+    public enum ArgumentKind {
+        //@Param 参数
+        PARAMS,
+        //单个实体
+        ENTITY,
+        //实体集合（Collection / Iterable / Iterator），按批执行
+        COLLECTION
+    }
+
+    private String id;
+    private SqlCommandType commandType;
+    private String sql;
+    //参数绑定器，与 argIndexes 一一对应
+    private ParameterBinder[] binders;
+    //每个绑定器对应的方法参数下标
+    private int[] argIndexes;
+    private Class<?> resultType;
+    //结果类型编译好的行映射器
+    private RowMapperCompiler.CompiledRowMapper<?> rowMapper;
+    private ResultKind resultKind;
+    //0 表示使用驱动默认值
+    private int fetchSize;
+    //键集分页：PageRequest 参数的下标（-1 表示不分页）、排序/定位用的主键列、第一页以外的 SQL
+    private int pageArgIndex = -1;
+    private EntityColumn keyColumn;
+    private String seekSql;
+    //方法返回 CompletableFuture，resultType/resultKind 按其泛型参数解析
+    private boolean async;
+    //@UsePrimary：配置了从库时也读主库
+    private boolean usePrimary;
+    //@Timeout 或工厂的默认查询超时（毫秒），0 表示不设
+    private long timeoutMillis;
+    //ResultKind.JSON：OutputStream 参数的下标和编译好的行写入器
+    private int outputArgIndex = -1;
+    private JsonRowWriter jsonWriter;
+
+    //以下为写方法
+    private ArgumentKind argumentKind = ArgumentKind.PARAMS;
+    private EntityMetadata entity;
+    //实体参数按顺序绑定的列
+    private EntityColumn[] entityColumns;
+    private Class<?> returnType;
+    private boolean useGeneratedKeys;
+    private int batchSize;
+    private boolean multiRowValues;
+    //多行 VALUES 改写用：INSERT INTO user (id,name,age) VALUES 和 (?,?,?)
+    private String insertPrefix;
+    private String valuesRow;
+    private String multiRowSql;
+    //update(entity)：按变化列掩码缓存的只写这些列的 SQL（见 DirtyTracker），其余语句为 null
+    private Map<Long, PartialUpdate> partialUpdates;
+
+    //该表的二级缓存，未开启时为 null；select 读写它，写方法执行后清空它
+    private LruCache cache;
+    private boolean cacheReadOnly;
+
+    //该方法的耗时、行数统计
+    private StatementMetrics metrics;
+
+    //按主键查单条且开启了合并时不为 null
+    private LookupCoalescer coalescer;
+
+    //各阶段的拦截器链，解析时按阶段组好，没有时为 null（见 Interceptor）
+    private Interceptor[] executeInterceptors;
+    private Interceptor[] bindInterceptors;
+    private Interceptor[] resultInterceptors;
+
+    //实体声明了分片键且工厂配置了 ShardMap 时不为 null
+    private ShardMap shardMap;
+    //等于分片键的 @Param 参数下标，-1 表示条件里没有分片键（查询发往所有分片）
+    private int shardKeyArgIndex = -1;
+
+    private MappedStatement() {
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public SqlCommandType getCommandType() {
+        return commandType;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    //分页方法第一页用 sql，之后的页用带 key > ? 的 seekSql
+    public String getSql(Object[] args) {
+        if (pageArgIndex < 0 || getPageRequest(args).isFirst()) {
+            return sql;
+        }
+        return seekSql;
+    }
+
+    public PageRequest getPageRequest(Object[] args) {
+        PageRequest pageRequest = (PageRequest) args[pageArgIndex];
+        if (pageRequest == null) {
+            throw new MapperException(id + ": PageRequest must not be null");
+        }
+        return pageRequest;
+    }
+
+    public EntityColumn getKeyColumn() {
+        return keyColumn;
+    }
+
+    public Class<?> getResultType() {
+        return resultType;
+    }
+
+    public RowMapperCompiler.CompiledRowMapper<?> getRowMapper() {
+        return rowMapper;
+    }
+
+    public ResultKind getResultKind() {
+        return resultKind;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public boolean isUsePrimary() {
+        return usePrimary;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    JsonRowWriter getJsonWriter() {
+        return jsonWriter;
+    }
+
+    public OutputStream getOutputStream(Object[] args) {
+        OutputStream out = (OutputStream) args[outputArgIndex];
+        if (out == null) {
+            throw new MapperException(id + ": OutputStream must not be null");
+        }
+        return out;
+    }
+
+    public ArgumentKind getArgumentKind() {
+        return argumentKind;
+    }
+
+    public EntityMetadata getEntity() {
+        return entity;
+    }
+
+    public Class<?> getReturnType() {
+        return returnType;
+    }
+
+    public boolean isUseGeneratedKeys() {
+        return useGeneratedKeys;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public boolean isMultiRowValues() {
+        return multiRowValues;
+    }
+
+    public LruCache getCache() {
+        return cache;
+    }
+
+    public boolean isCacheReadOnly() {
+        return cacheReadOnly;
+    }
+
+    public StatementMetrics getMetrics() {
+        return metrics;
+    }
+
+    public LookupCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    Interceptor[] getExecuteInterceptors() {
+        return executeInterceptors;
+    }
+
+    Interceptor[] getBindInterceptors() {
+        return bindInterceptors;
+    }
+
+    Interceptor[] getResultInterceptors() {
+        return resultInterceptors;
+    }
+
+    public boolean hasInterceptors() {
+        return executeInterceptors != null || bindInterceptors != null || resultInterceptors != null;
+    }
+
+    public ShardMap getShardMap() {
+        return shardMap;
+    }
+
+    public boolean isSharded() {
+        return shardMap != null;
+    }
+
+    //按参数里的分片键定位分片，条件里没有分片键时返回 -1
+    public int shardOf(Object[] args) {
+        if (shardKeyArgIndex < 0) {
+            return -1;
+        }
+        return shardMap.shardFor(args[shardKeyArgIndex]);
+    }
+
+    //实体参数所在的分片
+    public int shardOfEntity(Object entity) {
+        return shardMap.shardFor(this.entity.getShardKeyColumn().get(entity));
+    }
+
+    //rows 行的 INSERT ... VALUES (...),(...)，满批的 SQL 预先拼好
+    public String getMultiRowSql(int rows) {
+        if (rows == batchSize && multiRowSql != null) {
+            return multiRowSql;
+        }
+        return buildMultiRowSql(rows);
+    }
+
+    //按实体参数更新、可以只写变化列的 update
+    public boolean isEntityUpdate() {
+        return partialUpdates != null;
+    }
+
+    //只 SET 掩码里的列，第 i 位对应 entity.getColumns() 的第 i 列；同一掩码只拼一次 SQL
+    public PartialUpdate getPartialUpdate(long mask) {
+        PartialUpdate update = partialUpdates.get(mask);
+        if (update == null) {
+            update = partialUpdates.computeIfAbsent(mask, this::buildPartialUpdate);
+        }
+        return update;
+    }
+
+    private PartialUpdate buildPartialUpdate(long mask) {
+        List<EntityColumn> columns = entity.getColumns();
+        List<EntityColumn> bound = new ArrayList<>(Long.bitCount(mask) + 1);
+        StringBuilder sb = new StringBuilder("UPDATE ").append(entity.getTableName()).append(" SET ");
+        for (int i = 0; i < columns.size(); i++) {
+            if ((mask & (1L << i)) != 0) {
+                sb.append(bound.isEmpty() ? "" : ", ").append(columns.get(i).getName()).append(" = ?");
+                bound.add(columns.get(i));
+            }
+        }
+        sb.append(" WHERE ").append(entity.getIdColumn().getName()).append(" = ?");
+        bound.add(entity.getIdColumn());
+        return new PartialUpdate(sb.toString(), bound.toArray(new EntityColumn[0]));
+    }
+
+    private String buildMultiRowSql(int rows) {
+        StringBuilder sb = new StringBuilder(insertPrefix.length() + rows * (valuesRow.length() + 1));
+        sb.append(insertPrefix);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(valuesRow);
+        }
+        return sb.toString();
+    }
+
+    //按预先解析好的绑定器填充 SQL 值；分页方法最后再填上一页的主键和 limit + 1（多取一行判断有没有下一页）
+    public void bindParameters(PreparedStatement preparedStatement, Object[] args) throws SQLException {
+        if (bindInterceptors != null) {
+            Invocation.bind(this, args, getSql(args), preparedStatement, () -> {
+                doBindParameters(preparedStatement, args);
+                return null;
+            });
+            return;
+        }
+        doBindParameters(preparedStatement, args);
+    }
+
+    private void doBindParameters(PreparedStatement preparedStatement, Object[] args) throws SQLException {
+        for (int i = 0; i < binders.length; i++) {
+            binders[i].bind(preparedStatement, i + 1, args[argIndexes[i]]);
+        }
+        if (pageArgIndex >= 0) {
+            PageRequest pageRequest = getPageRequest(args);
+            int index = binders.length + 1;
+            if (!pageRequest.isFirst()) {
+                keyColumn.getBinder().bind(preparedStatement, index++, pageRequest.getLastKey());
+            }
+            preparedStatement.setInt(index, pageRequest.getLimit() + 1);
+        }
+    }
+
+    /**
+     * 按实体列顺序填充 SQL 值，offset 为已占用的占位符个数（多行 VALUES 时使用）
+     *
+     * 有 bind 拦截器时不会用多行 VALUES，offset 总是 0
+     */
+    public void bindEntity(PreparedStatement preparedStatement, Object entity, int offset) throws SQLException {
+        if (bindInterceptors != null) {
+            Invocation.bind(this, new Object[]{entity}, sql, preparedStatement, () -> {
+                doBindEntity(preparedStatement, entity, offset);
+                return null;
+            });
+            return;
+        }
+        doBindEntity(preparedStatement, entity, offset);
+    }
+
+    private void doBindEntity(PreparedStatement preparedStatement, Object entity, int offset) throws SQLException {
+        for (int i = 0; i < entityColumns.length; i++) {
+            entityColumns[i].bind(preparedStatement, offset + i + 1, entity);
+        }
+    }
+
+    public int getEntityColumnCount() {
+        return entityColumns.length;
+    }
+
+    //只写部分列的 update：SQL 和按顺序绑定的列（最后一个是主键）
+    public static final class PartialUpdate {
+
+        private final String sql;
+        private final EntityColumn[] columns;
+
+        private PartialUpdate(String sql, EntityColumn[] columns) {
+            this.sql = sql;
+            this.columns = columns;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public void bind(PreparedStatement preparedStatement, Object entity) throws SQLException {
+            for (int i = 0; i < columns.length; i++) {
+                columns[i].bind(preparedStatement, i + 1, entity);
+            }
+        }
+    }
+
+    public static class Builder {
+
+        private final MappedStatement ms = new MappedStatement();
+        private boolean sqlRewritten;
+
+        public Builder(String id, SqlCommandType commandType, String sql) {
+            ms.id = id;
+            ms.commandType = commandType;
+            ms.sql = sql;
+            ms.binders = new ParameterBinder[0];
+            ms.argIndexes = new int[0];
+            ms.entityColumns = new EntityColumn[0];
+        }
+
+        public Builder parameters(ParameterBinder[] binders, int[] argIndexes) {
+            ms.binders = binders;
+            ms.argIndexes = argIndexes;
+            return this;
+        }
+
+        public Builder result(Class<?> resultType, ResultKind resultKind) {
+            ms.resultType = resultType;
+            ms.rowMapper = RowMapperCompiler.compile(resultType);
+            ms.resultKind = resultKind;
+            return this;
+        }
+
+        public Builder page(int pageArgIndex, EntityColumn keyColumn, String seekSql) {
+            ms.pageArgIndex = pageArgIndex;
+            ms.keyColumn = keyColumn;
+            ms.seekSql = seekSql;
+            return this;
+        }
+
+        public Builder async(boolean async) {
+            ms.async = async;
+            return this;
+        }
+
+        public Builder usePrimary(boolean usePrimary) {
+            ms.usePrimary = usePrimary;
+            return this;
+        }
+
+        Builder json(int outputArgIndex, JsonRowWriter jsonWriter) {
+            ms.outputArgIndex = outputArgIndex;
+            ms.jsonWriter = jsonWriter;
+            return this;
+        }
+
+        public Builder timeout(long timeoutMillis) {
+            ms.timeoutMillis = timeoutMillis;
+            return this;
+        }
+
+        public Builder fetchSize(int fetchSize) {
+            ms.fetchSize = fetchSize;
+            return this;
+        }
+
+        public Builder entity(ArgumentKind argumentKind, EntityMetadata entity, EntityColumn[] entityColumns) {
+            ms.argumentKind = argumentKind;
+            ms.entity = entity;
+            ms.entityColumns = entityColumns;
+            return this;
+        }
+
+        public Builder returnType(Class<?> returnType) {
+            ms.returnType = returnType;
+            return this;
+        }
+
+        public Builder useGeneratedKeys(boolean useGeneratedKeys) {
+            ms.useGeneratedKeys = useGeneratedKeys;
+            return this;
+        }
+
+        public Builder batchSize(int batchSize) {
+            ms.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder multiRowValues(String insertPrefix, String valuesRow) {
+            ms.multiRowValues = true;
+            ms.insertPrefix = insertPrefix;
+            ms.valuesRow = valuesRow;
+            return this;
+        }
+
+        public Builder cache(LruCache cache, boolean readOnly) {
+            ms.cache = cache;
+            ms.cacheReadOnly = readOnly;
+            return this;
+        }
+
+        public Builder metrics(StatementMetrics metrics) {
+            ms.metrics = metrics;
+            return this;
+        }
+
+        public Builder coalescer(LookupCoalescer coalescer) {
+            ms.coalescer = coalescer;
+            return this;
+        }
+
+        public Builder shards(ShardMap shardMap, int shardKeyArgIndex) {
+            ms.shardMap = shardMap;
+            ms.shardKeyArgIndex = shardKeyArgIndex;
+            return this;
+        }
+
+        /**
+         * 拦截器按阶段组成链；sqlRewritten 表示 sql / seekSql 已被 Interceptor.rewriteSql 改写过
+         *
+         * 只写变化列的 update、多行 VALUES、主键合并查询用的是另外拼出来的 SQL 或自己的绑定和映射，
+         * SQL 改写过或相应阶段有拦截器时都不再使用，保证每次执行都经过拦截器
+         */
+        public Builder interceptors(List<Interceptor> interceptors, boolean sqlRewritten) {
+            ms.executeInterceptors = Invocation.Phase.EXECUTE.chain(interceptors);
+            ms.bindInterceptors = Invocation.Phase.BIND.chain(interceptors);
+            ms.resultInterceptors = Invocation.Phase.RESULT.chain(interceptors);
+            this.sqlRewritten = sqlRewritten;
+            return this;
+        }
+
+        public MappedStatement build() {
+            if (ms.shardMap != null && ms.metrics != null) {
+                ms.metrics.enableShards(ms.shardMap.size());
+            }
+            boolean customBinding = sqlRewritten || ms.bindInterceptors != null;
+            if (customBinding) {
+                ms.multiRowValues = false;
+            }
+            if (customBinding || ms.resultInterceptors != null) {
+                ms.coalescer = null;
+            }
+            if (ms.commandType == SqlCommandType.UPDATE && ms.argumentKind == ArgumentKind.ENTITY
+                    && ms.entity.getColumns().size() <= DirtyTracker.MAX_COLUMNS && !customBinding) {
+                ms.partialUpdates = new ConcurrentHashMap<>();
+            }
+            if (ms.multiRowValues && ms.batchSize > 0) {
+                ms.multiRowSql = ms.buildMultiRowSql(ms.batchSize);
+            }
+            return ms;
+        }
+    }
+}
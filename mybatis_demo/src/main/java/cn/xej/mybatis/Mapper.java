@@ -0,0 +1,17 @@
+package cn.xej.mybatis;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记 Mapper 接口，编译期由 mybatis_demo_processor 生成同包的 XxxMapperImpl
+ *
+ * 生成类对简单的 select（返回实体或 List，条件全为 @Param）直接写 JDBC 代码，其余方法交给动态代理；
+ * getMapper 找到生成类时优先使用它，找不到时照常返回动态代理
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Mapper {
+}
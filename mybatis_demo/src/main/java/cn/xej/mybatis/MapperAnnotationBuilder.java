@@ -0,0 +1,527 @@
+package cn.xej.mybatis;
+
+import cn.xej.mybatis.shard.ShardMap;
+import cn.xej.mybatis.type.TypeHandler;
+import cn.xej.mybatis.type.TypeHandlerRegistry;
+
+import javax.sql.DataSource;
+import java.io.OutputStream;
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Mapper 接口解析器
+ *
+ * getMapper 时对接口只解析一次，为每个方法生成 MappedStatement：
+ *  - select：拼好 SQL （select id,name,age from user where id = ?），解析返回类型（List 取泛型）
+ *  - 返回 DTO、投影接口、int[] 等单列结果或标了 @Columns 时只查用到的列
+ *  - 有 OutputStream 参数的 select 把结果直接写成 JSON（见 JsonRowWriter）
+ *  - insert/update/delete：参数是实体或实体集合时按 @Table 元数据生成 SQL；delete 也支持 @Param 条件
+ *  - 按参数类型从 TypeHandlerRegistry 选好绑定器
+ */
+public class MapperAnnotationBuilder {
+
+    private final MySqlSessionFactory factory;
+    private final Class<?> mapperInterface;
+
+    public MapperAnnotationBuilder(MySqlSessionFactory factory, Class<?> mapperInterface) {
+        this.factory = factory;
+        this.mapperInterface = mapperInterface;
+    }
+
+    public Map<Method, MappedStatement> parse() {
+        Map<Method, MappedStatement> statements = new HashMap<>();
+        for (Method method : mapperInterface.getMethods()) {
+            SqlCommandType commandType = SqlCommandType.of(method.getName());
+            if (commandType == SqlCommandType.SELECT) {
+                statements.put(method, parseSelect(method));
+            } else if (commandType != null) {
+                statements.put(method, parseWrite(method, commandType));
+            }
+        }
+        return Collections.unmodifiableMap(statements);
+    }
+
+    private MappedStatement parseSelect(Method method) {
+        int outputArgIndex = getOutputArgIndex(method);
+        //导出 JSON 的方法不返回实体，按该 Mapper 的实体取列
+        Class<?> resultType = outputArgIndex >= 0 ? getMapperEntityType(method) : getListGenericType(method);
+        EntityMetadata entity = getTableEntity(method, resultType);
+        List<String> selectCols = getSelectCols(method, resultType, entity);
+        StringBuilder sb = new StringBuilder();
+        sb.append("SELECT ");
+        sb.append(String.join(",", selectCols));
+        sb.append(" FROM ");
+        //数据库表名
+        String tableName = entity.getTableName();
+        sb.append(tableName);
+        //请求参数名
+        String condition = getCondition(method);
+        if (!condition.isEmpty()) {
+            sb.append(" WHERE ");
+            sb.append(condition);
+        }
+
+        FetchSize fetchSize = method.getAnnotation(FetchSize.class);
+        boolean async = method.getReturnType() == CompletableFuture.class;
+        if (async && getResultKind(method).isLazy()) {
+            throw new MapperException("Cannot map " + statementId(method)
+                    + ": CompletableFuture of Cursor/Stream/Iterator is not supported");
+        }
+        String seekSql = null;
+        if (getResultKind(method) == ResultKind.PAGE) {
+            //键集分页：按主键排序，之后的页从上一页最后一个主键往后找
+            String idCol = entity.getIdColumn().getName();
+            if (resultType != entity.getType() || !selectCols.contains(idCol)) {
+                throw new MapperException("Cannot map " + statementId(method) + ": Page result must be an entity with its id column");
+            }
+            seekSql = sb.toString() + (condition.isEmpty() ? " WHERE " : " AND ") + idCol + " > ? ORDER BY " + idCol + " LIMIT ?";
+            sb.append(" ORDER BY ").append(idCol).append(" LIMIT ?");
+        }
+        MappedStatement.Builder builder = newBuilder(method, SqlCommandType.SELECT, sb.toString());
+        if (seekSql != null) {
+            builder.page(getPageArgIndex(method), entity.getIdColumn(), rewriteSql(method, SqlCommandType.SELECT, seekSql));
+        }
+        if (outputArgIndex >= 0) {
+            builder.json(outputArgIndex, JsonRowWriter.compile(getColumns(entity, selectCols)))
+                    .returnType(method.getReturnType());
+        }
+        return builder
+                .parameters(getBinders(method), getArgIndexes(method))
+                .result(resultType, getResultKind(method))
+                .async(async)
+                .usePrimary(usePrimary(method))
+                .timeout(timeoutMillis(method))
+                .fetchSize(fetchSize == null ? 0 : fetchSize.value())
+                .cache(factory.getCache(entity), isCacheReadOnly(entity))
+                .coalescer(resultType == entity.getType() ? buildCoalescer(method, entity, selectCols, tableName) : null)
+                .shards(shardMap(entity), getShardKeyArgIndex(method, entity))
+                .build();
+    }
+
+    //开启合并且方法形如 User selectById(@Param(name = "id") int id) 时，为它建一个按主键合并查询的合并器
+    private LookupCoalescer buildCoalescer(Method method, EntityMetadata entity, List<String> selectCols, String tableName) {
+        if (factory.getCoalescingBatchSize() <= 0 || getResultKind(method) != ResultKind.ONE || !entity.hasIdColumn()
+                || shardMap(entity) != null) {
+            return null;
+        }
+        Parameter[] parameters = method.getParameters();
+        Param param = parameters.length == 1 ? parameters[0].getAnnotation(Param.class) : null;
+        if (param == null || !param.name().equalsIgnoreCase(entity.getIdColumn().getName())) {
+            return null;
+        }
+        String sqlPrefix = "SELECT " + String.join(",", selectCols) + " FROM " + tableName
+                + " WHERE " + entity.getIdColumn().getName() + " IN (";
+        DataSource dataSource = usePrimary(method) ? factory.getDataSource() : factory.getReadDataSource();
+        return new LookupCoalescer(RowMapperCompiler.compile(entity.getType()), dataSource, entity, sqlPrefix,
+                factory.getCoalescingBatchSize(), factory.getCoalescingWindowMicros(), factory.getMaxInListSize());
+    }
+
+    private boolean usePrimary(Method method) {
+        return method.isAnnotationPresent(UsePrimary.class) || mapperInterface.isAnnotationPresent(UsePrimary.class);
+    }
+
+    //方法上的 @Timeout 优先，其次接口上的，都没有时用工厂的默认值
+    private long timeoutMillis(Method method) {
+        Timeout timeout = method.getAnnotation(Timeout.class);
+        if (timeout == null) {
+            timeout = mapperInterface.getAnnotation(Timeout.class);
+        }
+        long millis = timeout == null ? factory.getDefaultQueryTimeoutMillis() : timeout.value();
+        if (millis < 0) {
+            throw new MapperException("Cannot map " + statementId(method) + ": timeout must not be negative");
+        }
+        return millis;
+    }
+
+    /**
+     * 写方法
+     *
+     * 1、参数是实体：insert 写所有列，update 按主键更新其余列，delete 按主键删除
+     * 2、参数是实体集合：同上，按批 addBatch/executeBatch（或改写成多行 VALUES）
+     * 3、参数是 @Param：只支持 delete，条件与 select 相同
+     */
+    private MappedStatement parseWrite(Method method, SqlCommandType commandType) {
+        Options options = method.getAnnotation(Options.class);
+        boolean useGeneratedKeys = options != null && options.useGeneratedKeys() && commandType == SqlCommandType.INSERT;
+        int batchSize = options != null && options.batchSize() > 0 ? options.batchSize() : factory.getBatchSize();
+
+        Parameter[] parameters = method.getParameters();
+        if (parameters.length == 1 && parameters[0].getAnnotation(Param.class) == null) {
+            MappedStatement.ArgumentKind argumentKind;
+            Class<?> entityType = parameters[0].getType();
+            if (EntityMetadata.isEntity(entityType)) {
+                argumentKind = MappedStatement.ArgumentKind.ENTITY;
+            } else {
+                argumentKind = MappedStatement.ArgumentKind.COLLECTION;
+                entityType = getElementType(parameters[0]);
+            }
+            if (!EntityMetadata.isEntity(entityType)) {
+                throw new MapperException("Cannot map " + statementId(method)
+                        + ": parameter must be a @Table entity or a collection of entities");
+            }
+            EntityMetadata entity = EntityMetadata.of(entityType);
+
+            List<EntityColumn> columns;
+            String sql;
+            MappedStatement.Builder builder;
+            switch (commandType) {
+                case INSERT:
+                    columns = useGeneratedKeys ? entity.getNonIdColumns() : entity.getColumns();
+                    String prefix = "INSERT INTO " + entity.getTableName() + " ("
+                            + columns.stream().map(EntityColumn::getName).collect(Collectors.joining(",")) + ") VALUES ";
+                    String valuesRow = "(" + String.join(",", Collections.nCopies(columns.size(), "?")) + ")";
+                    sql = prefix + valuesRow;
+                    builder = newBuilder(method, commandType, sql);
+                    if (options != null && options.multiRowValues()) {
+                        builder.multiRowValues(prefix, valuesRow);
+                    }
+                    break;
+                case UPDATE:
+                    columns = new ArrayList<>(entity.getNonIdColumns());
+                    sql = "UPDATE " + entity.getTableName() + " SET "
+                            + columns.stream().map(c -> c.getName() + " = ?").collect(Collectors.joining(", "))
+                            + " WHERE " + entity.getIdColumn().getName() + " = ?";
+                    columns.add(entity.getIdColumn());
+                    builder = newBuilder(method, commandType, sql);
+                    break;
+                default:
+                    columns = Collections.singletonList(entity.getIdColumn());
+                    sql = "DELETE FROM " + entity.getTableName() + " WHERE " + entity.getIdColumn().getName() + " = ?";
+                    builder = newBuilder(method, commandType, sql);
+                    break;
+            }
+            return builder.entity(argumentKind, entity, columns.toArray(new EntityColumn[0]))
+                    .cache(factory.getCache(entity), isCacheReadOnly(entity))
+                    .shards(shardMap(entity), -1)
+                    .returnType(method.getReturnType())
+                    .useGeneratedKeys(useGeneratedKeys)
+                    .batchSize(batchSize)
+                    .build();
+        }
+
+        if (commandType != SqlCommandType.DELETE) {
+            throw new MapperException("Cannot map " + statementId(method)
+                    + ": insert/update methods take an entity or a collection of entities");
+        }
+        String condition = getCondition(method);
+        if (condition.isEmpty()) {
+            throw new MapperException("Cannot map " + statementId(method) + ": delete without @Param condition");
+        }
+        EntityMetadata entity = EntityMetadata.of(getMapperEntityType(method));
+        String sql = "DELETE FROM " + entity.getTableName() + " WHERE " + condition;
+        return newBuilder(method, commandType, sql)
+                .parameters(getBinders(method), getArgIndexes(method))
+                .cache(factory.getCache(entity), isCacheReadOnly(entity))
+                .shards(shardMap(entity), getShardKeyArgIndex(method, entity))
+                .returnType(method.getReturnType())
+                .build();
+    }
+
+    //实体声明了分片键且工厂配置了分片时返回 ShardMap，否则该表只在默认数据源（第 0 个分片）上
+    private ShardMap shardMap(EntityMetadata entity) {
+        return entity.isSharded() ? factory.getShardMap() : null;
+    }
+
+    //条件里等于分片键的 @Param 参数下标，没有时返回 -1
+    private int getShardKeyArgIndex(Method method, EntityMetadata entity) {
+        if (!entity.isSharded()) {
+            return -1;
+        }
+        Parameter[] parameters = method.getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            Param param = parameters[i].getAnnotation(Param.class);
+            if (param != null && param.name().equalsIgnoreCase(entity.getShardKeyColumn().getName())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    //每个语句都挂上自己的统计对象和拦截器链，统计里记的是改写后实际执行的 SQL
+    private MappedStatement.Builder newBuilder(Method method, SqlCommandType commandType, String sql) {
+        String rewritten = rewriteSql(method, commandType, sql);
+        return new MappedStatement.Builder(statementId(method), commandType, rewritten)
+                .metrics(factory.getMetrics().statement(statementId(method), rewritten))
+                .interceptors(factory.getInterceptors(), !rewritten.equals(sql));
+    }
+
+    private String rewriteSql(Method method, SqlCommandType commandType, String sql) {
+        String rewritten = sql;
+        for (Interceptor interceptor : factory.getInterceptors()) {
+            rewritten = interceptor.rewriteSql(statementId(method), commandType, rewritten);
+            if (rewritten == null) {
+                throw new MapperException("Cannot map " + statementId(method) + ": "
+                        + interceptor.getClass().getName() + " rewrote SQL to null");
+            }
+        }
+        return rewritten;
+    }
+
+    private boolean isCacheReadOnly(EntityMetadata entity) {
+        CacheNamespace namespace = entity.getType().getAnnotation(CacheNamespace.class);
+        return namespace != null && namespace.readOnly();
+    }
+
+    private String statementId(Method method) {
+        return mapperInterface.getName() + "." + method.getName();
+    }
+
+    private ParameterBinder[] getBinders(Method method) {
+        List<ParameterBinder> binders = new ArrayList<>();
+        for (Parameter parameter : method.getParameters()) {
+            if (parameter.getAnnotation(Param.class) != null) {
+                binders.add(getBinder(parameter.getType()));
+            }
+        }
+        return binders.toArray(new ParameterBinder[0]);
+    }
+
+    private int[] getArgIndexes(Method method) {
+        List<Integer> argIndexes = new ArrayList<>();
+        Parameter[] parameters = method.getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i].getAnnotation(Param.class) != null) {
+                argIndexes.add(i);
+            }
+        }
+        return argIndexes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    //参数类型对应的类型处理器在解析时取一次
+    @SuppressWarnings("unchecked")
+    static ParameterBinder getBinder(Class<?> type) {
+        TypeHandler<Object> handler = (TypeHandler<Object>) TypeHandlerRegistry.getInstance().getTypeHandler(type);
+        return handler::setParameter;
+    }
+
+    private ResultKind getResultKind(Method method) {
+        if (getOutputArgIndex(method) >= 0) {
+            return ResultKind.JSON;
+        }
+        Class<?> returnType = getRawType(getResultGenericType(method));
+        if (compactElementType(returnType) != null) {
+            return ResultKind.ARRAY;
+        } else if (returnType == Page.class) {
+            return ResultKind.PAGE;
+        } else if (returnType == Cursor.class) {
+            return ResultKind.CURSOR;
+        } else if (returnType == Stream.class) {
+            return ResultKind.STREAM;
+        } else if (returnType == Iterator.class) {
+            return ResultKind.ITERATOR;
+        } else if (returnType.isAssignableFrom(List.class)) {
+            //List<Integer> / List<Long> 也读进 IntList / LongList；Integer、Long 的处理器被替换过时仍逐行走处理器
+            Class<?> elementType = getListGenericType(method);
+            if ((elementType == Integer.class || elementType == Long.class)
+                    && TypeHandlerRegistry.getInstance().isBuiltIn(elementType)) {
+                return ResultKind.ARRAY;
+            }
+            return ResultKind.LIST;
+        }
+        return ResultKind.ONE;
+    }
+
+    //int[]、long[]、IntList、LongList 的元素类型，其余返回 null
+    private static Class<?> compactElementType(Class<?> returnType) {
+        if (returnType == int[].class) {
+            return int.class;
+        } else if (returnType == long[].class) {
+            return long.class;
+        } else if (returnType == IntList.class) {
+            return Integer.class;
+        } else if (returnType == LongList.class) {
+            return Long.class;
+        }
+        return null;
+    }
+
+    private boolean isCollectionLike(Class<?> returnType) {
+        return returnType == Page.class || returnType == Cursor.class || returnType == Stream.class || returnType == Iterator.class
+                || returnType.isAssignableFrom(List.class);
+    }
+
+    //返回 Page 的方法必须有一个 PageRequest 参数
+    private int getPageArgIndex(Method method) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (parameterTypes[i] == PageRequest.class) {
+                return i;
+            }
+        }
+        throw new MapperException("Cannot map " + statementId(method) + ": Page result needs a PageRequest parameter");
+    }
+
+    /**
+     * OutputStream 参数的下标，没有时返回 -1
+     *
+     * 有 OutputStream 参数的 select 只能有一个这样的参数，返回 void / int / long（写出的行数）
+     */
+    private int getOutputArgIndex(Method method) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        int index = -1;
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (OutputStream.class.isAssignableFrom(parameterTypes[i])) {
+                if (index >= 0) {
+                    throw new MapperException("Cannot map " + statementId(method) + ": more than one OutputStream parameter");
+                }
+                index = i;
+            }
+        }
+        Class<?> returnType = method.getReturnType();
+        if (index >= 0 && returnType != void.class && returnType != int.class && returnType != long.class
+                && returnType != Integer.class && returnType != Long.class) {
+            throw new MapperException("Cannot map " + statementId(method) + ": JSON export must return void, int or long");
+        }
+        return index;
+    }
+
+    private static List<EntityColumn> getColumns(EntityMetadata entity, List<String> names) {
+        List<EntityColumn> columns = new ArrayList<>(names.size());
+        for (String name : names) {
+            for (EntityColumn column : entity.getColumns()) {
+                if (column.getName().equals(name)) {
+                    columns.add(column);
+                }
+            }
+        }
+        return columns;
+    }
+
+    //集合参数的元素类型：Collection<User>、Iterable<User>、Iterator<User>
+    private Class<?> getElementType(Parameter parameter) {
+        Class<?> type = parameter.getType();
+        if (!Iterable.class.isAssignableFrom(type) && !Iterator.class.isAssignableFrom(type)) {
+            return null;
+        }
+        Type genericType = parameter.getParameterizedType();
+        if (genericType instanceof ParameterizedType) {
+            Type[] typeArguments = ((ParameterizedType) genericType).getActualTypeArguments();
+            if (typeArguments.length == 1 && typeArguments[0] instanceof Class) {
+                return (Class<?>) typeArguments[0];
+            }
+        }
+        return null;
+    }
+
+    //@Param 形式的 delete 没有实体参数、投影 select 不返回实体，用该 Mapper 的 select 方法返回的实体确定表名
+    private Class<?> getMapperEntityType(Method method) {
+        Set<Class<?>> entityTypes = new HashSet<>();
+        for (Method candidate : mapperInterface.getMethods()) {
+            if (SqlCommandType.of(candidate.getName()) == SqlCommandType.SELECT) {
+                Class<?> type = getListGenericType(candidate);
+                if (EntityMetadata.isEntity(type)) {
+                    entityTypes.add(type);
+                }
+            }
+        }
+        if (entityTypes.size() != 1) {
+            throw new MapperException("Cannot map " + statementId(method)
+                    + ": cannot determine the table, mapper select methods return " + entityTypes);
+        }
+        return entityTypes.iterator().next();
+    }
+
+    private String getCondition(Method method) {
+        List<String> cols = new ArrayList<>();
+        Parameter[] parameters = method.getParameters();
+        for (Parameter parameter : parameters) {
+            Param param = parameter.getAnnotation(Param.class);
+            if (param != null) {
+                cols.add(param.name() + " = ? ");
+            }
+        }
+        return String.join(" AND ", cols);
+    }
+
+    //这段代码的作用是 通过反射获取方法返回的 List（或 Cursor、Stream、Iterator）中元素的泛型类型（Class 对象）
+    private Class<?> getListGenericType(Method method) {
+        Type returnType = getResultGenericType(method);
+        Class<?> compactElementType = compactElementType(getRawType(returnType));
+        if (compactElementType != null) {
+            return compactElementType;
+        }
+        if (!isCollectionLike(getRawType(returnType))) {
+            return getRawType(returnType);
+        }
+
+        if (returnType instanceof ParameterizedType) {
+            ParameterizedType type = (ParameterizedType) returnType;
+            Type[] typeArguments = type.getActualTypeArguments();
+            if (typeArguments.length > 0) {
+                Type typeArgument = typeArguments[0];
+                if (typeArgument instanceof Class) {
+                    return (Class<?>) typeArgument;
+                }
+            }
+        }
+        return null;
+    }
+
+    //CompletableFuture<User>、CompletableFuture<List<User>> 按泛型参数解析，其余就是方法返回类型
+    private Type getResultGenericType(Method method) {
+        Type returnType = method.getGenericReturnType();
+        if (method.getReturnType() == CompletableFuture.class) {
+            if (!(returnType instanceof ParameterizedType)) {
+                throw new MapperException("Cannot map " + statementId(method) + ": CompletableFuture needs a type argument");
+            }
+            return ((ParameterizedType) returnType).getActualTypeArguments()[0];
+        }
+        return returnType;
+    }
+
+    private static Class<?> getRawType(Type type) {
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        return type instanceof Class ? (Class<?>) type : Object.class;
+    }
+
+    //返回实体时查实体的表；返回 DTO、投影接口、单列结果时查该 Mapper 的实体的表
+    private EntityMetadata getTableEntity(Method method, Class<?> resultType) {
+        if (resultType == null) {
+            throw new MapperException("Cannot map " + statementId(method) + ": cannot determine the result type");
+        }
+        return EntityMetadata.of(EntityMetadata.isEntity(resultType) ? resultType : getMapperEntityType(method));
+    }
+
+    /**
+     * 要查的列
+     *  - 标了 @Columns：只查这些列
+     *  - 返回实体：实体的所有列
+     *  - 返回 DTO / 投影接口：DTO 的字段、接口的 getter 对应的列
+     *  - 返回单列结果（int[]、List<Integer>、String...）：必须用 @Columns 指定一列
+     * 列名都必须是表的列，按实体里的写法输出
+     */
+    private List<String> getSelectCols(Method method, Class<?> resultType, EntityMetadata entity) {
+        Columns columns = method.getAnnotation(Columns.class);
+        boolean scalar = RowMapperCompiler.isScalar(resultType);
+        List<String> names;
+        if (columns != null) {
+            names = Arrays.asList(columns.value());
+        } else if (resultType == entity.getType()) {
+            return entity.getColumns().stream().map(EntityColumn::getName).collect(Collectors.toList());
+        } else if (scalar) {
+            throw new MapperException("Cannot map " + statementId(method) + ": single-column result needs @Columns");
+        } else {
+            names = RowMapperCompiler.compile(resultType).getColumns();
+        }
+        if (names.isEmpty() || (scalar && names.size() != 1)) {
+            throw new MapperException("Cannot map " + statementId(method)
+                    + (scalar ? ": single-column result needs exactly one column" : ": no columns to select"));
+        }
+        List<String> selectCols = new ArrayList<>(names.size());
+        for (String name : names) {
+            EntityColumn column = entity.getColumns().stream()
+                    .filter(c -> c.getName().equalsIgnoreCase(name))
+                    .findFirst()
+                    .orElseThrow(() -> new MapperException("Cannot map " + statementId(method)
+                            + ": no column '" + name + "' in table " + entity.getTableName()));
+            selectCols.add(column.getName());
+        }
+        return selectCols;
+    }
+}
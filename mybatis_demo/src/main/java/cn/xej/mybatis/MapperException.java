@@ -0,0 +1,13 @@
+package cn.xej.mybatis;
+
+//Mapper 执行异常
+public class MapperException extends RuntimeException {
+
+    public MapperException(String message) {
+        super(message);
+    }
+
+    public MapperException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,160 +1,846 @@
 package cn.xej.mybatis;
 
+import cn.xej.mybatis.cache.CacheKey;
+import cn.xej.mybatis.cache.LruCache;
+import cn.xej.mybatis.cache.PerpetualCache;
+import cn.xej.mybatis.metrics.MetricsRegistry;
+import cn.xej.mybatis.metrics.StatementMetrics;
+import cn.xej.mybatis.shard.ScatterGather;
+import cn.xej.mybatis.shard.ShardMap;
+
+import javax.sql.DataSource;
+import java.io.UncheckedIOException;
 import java.lang.reflect.*;
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 public class MapperInvocationHandler implements InvocationHandler {
 
-    private static final String URL = "jdbc:mysql://10.89.0.11:30602/test?useSSL=false&serverTimezone=UTC";
-    private static final String USER = "root";
-    private static final String PASSWORD = "uEXsn7NZrusBIGKe";
+    //getMapper 时解析好的映射语句，调用时只做一次 map 查找
+    private final Map<Method, MappedStatement> statements;
+    //写和 @UsePrimary 的读用主库，其余读用 readDataSource（未配置从库时两者相同）
+    private final DataSource dataSource;
+    private final DataSource readDataSource;
+    //一级缓存，未开启时为 null
+    private final PerpetualCache localCache;
+    //返回 CompletableFuture 的方法在这里执行
+    private final Executor asyncExecutor;
+    private final MetricsRegistry metrics;
+    //开启脏检查时不为 null：select 返回的实体留快照，update(entity) 只写变化的列
+    private final DirtyTracker dirtyTracker;
+    //通过 SqlSession.getMapper 创建时不为 null：连接、事务、一级缓存都归会话
+    private final SqlSession session;
+
+    //缓存中代表“查无结果”，避免同一个不存在的 id 反复查库
+    private static final Object NULL_RESULT = new Object();
+
+    public MapperInvocationHandler(Map<Method, MappedStatement> statements, DataSource dataSource, DataSource readDataSource,
+                                   PerpetualCache localCache, Executor asyncExecutor, MetricsRegistry metrics,
+                                   DirtyTracker dirtyTracker, SqlSession session) {
+        this.statements = statements;
+        this.dataSource = dataSource;
+        this.readDataSource = readDataSource;
+        this.localCache = localCache;
+        this.asyncExecutor = asyncExecutor;
+        this.metrics = metrics;
+        this.dirtyTracker = dirtyTracker;
+        this.session = session;
+    }
 
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        if (method.getName().startsWith("select")) {
-            return invokeSelect(proxy, method, args);
+        MappedStatement ms = statements.get(method);
+        if (ms == null) {
+            return null;
+        }
+        if (ms.getExecuteInterceptors() != null) {
+            try {
+                return Invocation.execute(ms, args, () -> dispatch(ms, args));
+            } catch (SQLException e) {
+                throw new MapperException("Error executing " + ms.getId(), e);
+            }
+        }
+        return dispatch(ms, args);
+    }
+
+    private Object dispatch(MappedStatement ms, Object[] args) {
+        if (ms.getCommandType() == SqlCommandType.SELECT) {
+            if (session != null) {
+                //先发出攒着的批，查询才能看到这些写
+                session.flushStatements();
+            }
+            if (ms.getResultKind() == ResultKind.JSON) {
+                return invokeExport(ms, args);
+            }
+            if (session != null) {
+                //会话的连接不能交给别的线程，异步方法在调用线程上执行
+                return ms.isAsync() ? invokeInSession(ms, args) : invokeSelect(ms, args);
+            }
+            return ms.isAsync() ? invokeAsync(ms, args) : invokeSelect(ms, args);
+        }
+        return invokeWrite(ms, args);
+    }
+
+    //insert/update/delete：借一个连接交给 WriteExecutor，按方法返回类型转换受影响行数
+    private Object invokeWrite(MappedStatement ms, Object[] args) {
+        StatementMetrics statementMetrics = ms.getMetrics();
+        long start = System.nanoTime();
+        long updated;
+        try {
+            updated = ms.isSharded() ? writeSharded(ms, args) : write(ms, args, -1);
+        } catch (SQLException | RuntimeException e) {
+            statementMetrics.recordError(System.nanoTime() - start);
+            if (e instanceof SQLException) {
+                throw new MapperException("Error executing " + ms.getId(), e);
+            }
+            throw (RuntimeException) e;
+        } finally {
+            //写过的表缓存整体失效
+            if (ms.getCache() != null) {
+                ms.getCache().clear();
+            }
+            if (localCache != null) {
+                localCache.clear();
+            }
+            if (session != null) {
+                session.markDirty(ms.getCache());
+            }
+        }
+        recordCall(ms, args, System.nanoTime() - start, updated);
+        return toReturnType(ms.getReturnType(), updated);
+    }
+
+    //受影响行数、导出行数按方法返回类型转换
+    private static Object toReturnType(Class<?> returnType, long count) {
+        if (returnType == int.class || returnType == Integer.class) {
+            return (int) count;
+        } else if (returnType == long.class || returnType == Long.class) {
+            return count;
+        } else if (returnType == boolean.class || returnType == Boolean.class) {
+            return count > 0;
         }
         return null;
     }
 
+    /**
+     * shard 为 -1 时写默认数据源；会话内用会话的连接，BATCH 会话的单条写只加入批
+     *
+     * 开启脏检查时 update(entity) 只写与快照相比变化了的列，没有变化就不发 SQL、返回 0；
+     * BATCH 会话仍写全部列，连续的 update 才是同一条 SQL、能攒成一批
+     */
+    private long write(MappedStatement ms, Object[] args, int shard) throws SQLException {
+        long changed = DirtyTracker.UNTRACKED;
+        if (dirtyTracker != null && ms.isEntityUpdate() && args[0] != null) {
+            changed = dirtyTracker.changedColumns(ms.getEntity(), args[0]);
+            if (changed == 0) {
+                return 0;
+            }
+        }
+        if (session != null) {
+            if (session.isBatch() && ms.getArgumentKind() != MappedStatement.ArgumentKind.COLLECTION
+                    && !ms.isUseGeneratedKeys()) {
+                session.addBatch(ms, args, shard);
+                if (changed != DirtyTracker.UNTRACKED) {
+                    dirtyTracker.forget(args[0]);
+                }
+                return 0;
+            }
+            session.flushStatements();
+        }
+        StatementMetrics statementMetrics = ms.getMetrics();
+        long start = System.nanoTime();
+        try (Connection connection = writeConnection(ms, shard)) {
+            long borrowed = System.nanoTime();
+            statementMetrics.addPoolWaitNanos(borrowed - start);
+            long updated = changed == DirtyTracker.UNTRACKED
+                    ? WriteExecutor.execute(connection, ms, args)
+                    : WriteExecutor.executePartialUpdate(connection, ms.getPartialUpdate(changed), args[0]);
+            long end = System.nanoTime();
+            statementMetrics.addExecuteNanos(end - borrowed);
+            if (shard >= 0) {
+                statementMetrics.recordShard(shard, end - start, updated);
+            }
+            if (changed != DirtyTracker.UNTRACKED) {
+                //事务里的写可能被回滚，快照作废，下次写全部列
+                if (session == null || session.isAutoCommit()) {
+                    dirtyTracker.refresh(ms.getEntity(), args[0]);
+                } else {
+                    dirtyTracker.forget(args[0]);
+                }
+            }
+            return updated;
+        }
+    }
+
+    /**
+     * 分片表的写
+     *  - 单个实体：按实体的分片键写一个分片
+     *  - 实体集合：按分片键分组，各分片并行写；每个分片各自提交，不是跨分片事务
+     *  - @Param 条件：有分片键时只写一个分片，否则所有分片都执行，受影响行数相加
+     */
+    private long writeSharded(MappedStatement ms, Object[] args) throws SQLException {
+        ShardMap shardMap = ms.getShardMap();
+        switch (ms.getArgumentKind()) {
+            case ENTITY:
+                if (args[0] == null) {
+                    throw new MapperException(ms.getId() + ": entity must not be null");
+                }
+                return write(ms, args, ms.shardOfEntity(args[0]));
+            case COLLECTION:
+                List<List<Object>> groups = new ArrayList<>(shardMap.size());
+                for (int i = 0; i < shardMap.size(); i++) {
+                    groups.add(new ArrayList<>());
+                }
+                Iterator<?> entities = WriteExecutor.iterator(args[0]);
+                while (entities.hasNext()) {
+                    Object entity = entities.next();
+                    groups.get(ms.shardOfEntity(entity)).add(entity);
+                }
+                return sum(ScatterGather.execute(asyncExecutor, shardMap.size(),
+                        shard -> groups.get(shard).isEmpty() ? 0L : write(ms, new Object[]{groups.get(shard)}, shard)));
+            default:
+                int shard = ms.shardOf(args);
+                if (shard >= 0) {
+                    return write(ms, args, shard);
+                }
+                return sum(ScatterGather.execute(asyncExecutor, shardMap.size(), i -> write(ms, args, i)));
+        }
+    }
+
+    private Connection writeConnection(MappedStatement ms, int shard) throws SQLException {
+        if (session != null) {
+            return session.getConnection(shard);
+        }
+        return shard < 0 ? dataSource.getConnection() : ms.getShardMap().getShard(shard).getConnection();
+    }
+
+    private static long sum(List<Long> counts) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
     /**
      * mybatis动态代理
      *
      * 代理对象代理接口实现类逻辑
      *
-     * 1、创建SQL （select id,name,age from user where id = ?）
-     *  - 获取返回参数集合
-     *  - 获取表名
-     *  - 获取请求参数集合
+     * 1、取出 getMapper 时预先生成的 MappedStatement （select id,name,age from user where id = ?）
+     *  - 先查一级缓存（本代理对象）、再查二级缓存（@CacheNamespace 实体），命中直接返回
+     *  - 从连接池借连接，用完 close 即归还；配置了从库时按负载选一个从库（@UsePrimary 的方法读主库）
      *
      * 2、填充SQL值
-     *  - 遍历args 判断int、String类型填充值
+     *  - 按解析时选好的绑定器填充值
      *
      * 3、生成对象
-     *  - 通过构造方法生成
-     *  - 属性填充值
-     *  - 若method返回List，需要获取泛型的具体类型
+     *  - 用结果类型编译好的 RowMapper（见 RowMapperCompiler）逐行生成对象
+     *  - 若method返回List，逐行生成对象放入集合
+     *
+     * 每次调用记录耗时和行数（见 MetricsRegistry），SQL 出错抛 MapperException；
+     * 超过方法超时或 QueryDeadline 的截止时间时取消语句，抛 QueryTimeoutException
+     */
+
+    private Object invokeSelect(MappedStatement ms, Object[] args) {
+        if (ms.getResultKind().isLazy()) {
+            return openCursor(ms, args);
+        }
+        Object result;
+        try {
+            result = timedSelect(ms, args, null, QueryDeadline.forCall(ms.getTimeoutMillis()));
+        } catch (SQLException e) {
+            throw new MapperException("Error querying " + ms.getId(), e);
+        }
+        //int selectAgeById(...) 查不到或值为 NULL 时没有可返回的值
+        if (result == null && ms.getResultType().isPrimitive()) {
+            throw new MapperException(ms.getId() + ": no value for primitive return type " + ms.getResultType());
+        }
+        return result;
+    }
+
+    /**
+     * 返回 CompletableFuture 的方法：在 asyncExecutor 上执行，调用线程立即返回
+     *
+     * 取消 future 会取消正在执行的 JDBC 语句；还没开始执行的直接跳过。
+     * 截止时间在调用线程上取定，在线程池里排队的时间也算在内
      */
+    private Object invokeAsync(MappedStatement ms, Object[] args) {
+        QueryFuture future = new QueryFuture();
+        QueryDeadline deadline = QueryDeadline.forCall(ms.getTimeoutMillis());
+        try {
+            asyncExecutor.execute(() -> {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(timedSelect(ms, args, future, deadline));
+                } catch (SQLException e) {
+                    future.completeExceptionally(new MapperException("Error querying " + ms.getId(), e));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
 
-    private Object invokeSelect(Object proxy, Method method, Object[] args) {
-        List<String> selectCols = getSelectCols(method);
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT ");
-        sb.append(String.join(",", selectCols));
-        sb.append(" FROM ");
-        //数据库表名
-        String tableName = getTableName(method);
-        sb.append(tableName);
-        sb.append(" WHERE ");
-        //请求参数名
-        String condition = getCondition(method);
-        sb.append(condition);
-        String sql = sb.toString();
-//        String sql = "SELECT * FROM user WHERE id = ?";
-        try (Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
-             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
-            for (int i = 0; i < args.length; i++) {
-                Object arg = args[i];
-                if (arg instanceof Integer) {
-                    preparedStatement.setInt(i + 1, (Integer) arg);
-                }else if (arg instanceof String) {
-                    preparedStatement.setString(i + 1, arg.toString());
-                }
-            }
-
-            ResultSet resultSet = preparedStatement.executeQuery();
-
-            //判断方法返回值类型是不是List
-            if (method.getReturnType().isAssignableFrom(List.class)) {
-                List<Object> resultList = new ArrayList<>();
-                while (resultSet.next()) {
-                    Object result = parseResult(resultSet, getListGenericType(method));
-                    resultList.add(result);
-                }
-                return resultList;
-            }else {
-                if (resultSet.next()) {
-                    return parseResult(resultSet, getListGenericType(method));
+    /**
+     * 导出 JSON：各行由 JsonRowWriter 直接写进 OutputStream 参数，不经过实体对象和缓存，内存占用与行数无关
+     *
+     * 输出为一个 JSON 数组，分片表没有分片键时依次写各分片；写完 flush，不关闭流。
+     * 要让驱动也流式读取，配合 @FetchSize 使用；超时限制整个导出，大导出可以用 @Timeout(0) 关掉
+     */
+    private Object invokeExport(MappedStatement ms, Object[] args) {
+        QueryDeadline deadline = QueryDeadline.forCall(ms.getTimeoutMillis());
+        JsonOutput out = new JsonOutput(ms.getOutputStream(args));
+        long start = System.nanoTime();
+        long rows = 0;
+        try {
+            out.writeByte('[');
+            int shard = ms.isSharded() ? ms.shardOf(args) : -1;
+            if (ms.isSharded() && shard < 0) {
+                for (int i = 0; i < ms.getShardMap().size(); i++) {
+                    rows += (Long) queryShard(ms, args, null, deadline, i, out, rows);
                 }
-                return null;
+            } else {
+                rows = (Long) queryShard(ms, args, null, deadline, shard, out, 0);
+            }
+            out.writeByte(']');
+            out.flush();
+        } catch (SQLException | RuntimeException e) {
+            ms.getMetrics().recordError(System.nanoTime() - start);
+            if (e instanceof UncheckedIOException) {
+                throw new MapperException("Error writing JSON for " + ms.getId(), e.getCause());
+            } else if (e instanceof SQLException) {
+                throw new MapperException("Error querying " + ms.getId(), e);
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+            throw (RuntimeException) e;
         }
-        return null;
+        recordCall(ms, args, System.nanoTime() - start, rows);
+        return toReturnType(ms.getReturnType(), rows);
     }
 
-    private Object parseResult(ResultSet resultSet, Class<?> classType) throws Exception {
-        Constructor<?> constructor = classType.getDeclaredConstructor();
-        Object result = constructor.newInstance();
-        Field[] fields = classType.getDeclaredFields();
-        for (Field field : fields) {
-            Object column = null;
-            //字段名
-            String name = field.getName();
-            Class<?> fieldType = field.getType();
-            if (fieldType == String.class) {
-                column = resultSet.getString(name);
+    private Object invokeInSession(MappedStatement ms, Object[] args) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        try {
+            future.complete(timedSelect(ms, args, null, QueryDeadline.forCall(ms.getTimeoutMillis())));
+        } catch (SQLException e) {
+            future.completeExceptionally(new MapperException("Error querying " + ms.getId(), e));
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private Object timedSelect(MappedStatement ms, Object[] args, QueryFuture future, QueryDeadline deadline)
+            throws SQLException {
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = select(ms, args, future, deadline);
+        } catch (SQLException | RuntimeException e) {
+            ms.getMetrics().recordError(System.nanoTime() - start);
+            throw e;
+        }
+        if (dirtyTracker != null && EntityMetadata.isEntity(ms.getResultType())) {
+            dirtyTracker.track(EntityMetadata.of(ms.getResultType()), result);
+        }
+        recordCall(ms, args, System.nanoTime() - start, rowCount(result));
+        return result;
+    }
+
+    private void recordCall(MappedStatement ms, Object[] args, long elapsedNanos, long rows) {
+        ms.getMetrics().record(elapsedNanos, rows);
+        if (metrics.isSlow(elapsedNanos)) {
+            metrics.recordSlowQuery(ms.getMetrics(), args, elapsedNanos, rows);
+        }
+    }
 
-            }else if (fieldType == int.class) {
-                column = resultSet.getInt(name);
+    private static long rowCount(Object result) {
+        if (result == null) {
+            return 0;
+        } else if (result instanceof List) {
+            return ((List<?>) result).size();
+        } else if (result instanceof Page) {
+            return ((Page<?>) result).getItems().size();
+        } else if (result instanceof int[]) {
+            return ((int[]) result).length;
+        } else if (result instanceof long[]) {
+            return ((long[]) result).length;
+        }
+        return 1;
+    }
+
+    private Object select(MappedStatement ms, Object[] args, QueryFuture future, QueryDeadline deadline)
+            throws SQLException {
+        //会话有未提交的写时既不能读到旧的缓存，也不能把未提交的数据放进缓存
+        LruCache cache = session != null && session.isDirty() ? null : ms.getCache();
+        if (localCache == null && cache == null) {
+            return load(ms, args, future, deadline);
+        }
+
+        CacheKey key = new CacheKey(ms.getId(), args);
+        if (localCache != null) {
+            Object cached = localCache.get(key);
+            if (cached != null) {
+                return cached == NULL_RESULT ? null : cached;
+            }
+        }
+        //先记下代数再查库，期间有写操作时不把旧结果放进二级缓存
+        long generation = 0;
+        if (cache != null) {
+            generation = cache.generation();
+            Object cached = cache.get(key);
+            if (cached != null) {
+                Object result = ms.isCacheReadOnly() ? cached : copyResult(ms, cached);
+                if (localCache != null) {
+                    localCache.put(key, result);
+                }
+                return result == NULL_RESULT ? null : result;
             }
-            //设置可访问性（针对私有属性）
-            field.setAccessible(true);
-            //设置属性值
-            field.set(result, column);
+        }
+
+        Object result = load(ms, args, future, deadline);
+        Object cacheValue = result == null ? NULL_RESULT : result;
+        if (cache != null) {
+            cache.put(key, ms.isCacheReadOnly() ? cacheValue : copyResult(ms, cacheValue), generation);
+        }
+        if (localCache != null) {
+            localCache.put(key, cacheValue);
         }
         return result;
     }
 
-    private String getCondition(Method method) {
-        List<String> cols = new ArrayList<>();
-        Parameter[] parameters = method.getParameters();
-        for (Parameter parameter : parameters) {
-            Param param = parameter.getAnnotation(Param.class);
-            if (param != null) {
-                cols.add(param.name() + " = ? ");
+    //开启合并的按主键查询交给合并器（截止时间只限制等待，不取消同批其他调用方共用的查询），其余直接查库
+    private Object load(MappedStatement ms, Object[] args, QueryFuture future, QueryDeadline deadline) throws SQLException {
+        LookupCoalescer coalescer = ms.getCoalescer();
+        if (coalescer != null && session == null && args[0] != null) {
+            return coalescer.load(args[0], deadline, ms.getId());
+        }
+        return query(ms, args, future, deadline);
+    }
+
+    //分片表条件里有分片键时只查一个分片，否则所有分片并行查询后合并
+    private Object query(MappedStatement ms, Object[] args, QueryFuture future, QueryDeadline deadline)
+            throws SQLException {
+        if (!ms.isSharded()) {
+            return queryShard(ms, args, future, deadline, -1, null, 0);
+        }
+        int shard = ms.shardOf(args);
+        if (shard >= 0) {
+            return queryShard(ms, args, future, deadline, shard, null, 0);
+        }
+        List<Object> results = ScatterGather.execute(asyncExecutor, ms.getShardMap().size(),
+                i -> queryShard(ms, args, future, deadline, i, null, 0));
+        return mergeShards(ms, args, results);
+    }
+
+    /**
+     * 分三段计时：等连接池、executeQuery、逐行映射（含驱动按 fetchSize 继续拉取数据的时间）；shard 为 -1 表示未分片
+     *
+     * 有截止时间时 executeQuery 和读结果都在限时内，到时取消语句（见 StatementCanceller）。
+     * json 不为 null 时各行写进 json（接在已写的 jsonRows 行之后），返回写出的行数
+     */
+    private Object queryShard(MappedStatement ms, Object[] args, QueryFuture future, QueryDeadline deadline, int shard,
+                              JsonOutput json, long jsonRows) throws SQLException {
+        StatementMetrics statementMetrics = ms.getMetrics();
+        long start = System.nanoTime();
+        PreparedStatement running = null;
+        try (Connection connection = connection(ms, shard)) {
+            long borrowed = System.nanoTime();
+            statementMetrics.addPoolWaitNanos(borrowed - start);
+            try (PreparedStatement preparedStatement = connection.prepareStatement(ms.getSql(args))) {
+                if (future != null) {
+                    running = preparedStatement;
+                    future.addStatement(preparedStatement);
+                }
+                if (ms.getFetchSize() != 0) {
+                    preparedStatement.setFetchSize(ms.getFetchSize());
+                }
+                ms.bindParameters(preparedStatement, args);
+
+                StatementCanceller canceller = deadline == null ? null
+                        : StatementCanceller.arm(preparedStatement, deadline, ms.getId());
+                try {
+                    ResultSet resultSet = preparedStatement.executeQuery();
+                    long executed = System.nanoTime();
+                    statementMetrics.addExecuteNanos(executed - borrowed);
+                    Object result;
+                    if (json != null) {
+                        result = ms.getJsonWriter().writeRows(resultSet, json, jsonRows);
+                    } else if (ms.getResultInterceptors() != null) {
+                        result = Invocation.mapResult(ms, args, resultSet, () -> mapResult(ms, args, resultSet));
+                    } else {
+                        result = mapResult(ms, args, resultSet);
+                    }
+                    long end = System.nanoTime();
+                    statementMetrics.addMapNanos(end - executed);
+                    if (shard >= 0) {
+                        statementMetrics.recordShard(shard, end - start, json == null ? rowCount(result) : (Long) result);
+                    }
+                    return result;
+                } catch (SQLException e) {
+                    if (canceller != null) {
+                        canceller.checkTimedOut(e, ms.getId());
+                    }
+                    throw e;
+                } finally {
+                    if (canceller != null && canceller.disarm()) {
+                        StatementCanceller.discardIfBroken(connection);
+                    }
+                }
+            }
+        } finally {
+            if (running != null) {
+                future.removeStatement(running);
             }
         }
-        return String.join(" AND ", cols);
     }
 
-    //这段代码的作用是 通过反射获取方法返回的 List 集合中元素的泛型类型（Class 对象）
-    private Class<?> getListGenericType(Method method) {
-        if (!method.getReturnType().isAssignableFrom(List.class)) {
-            return method.getReturnType();
+    private Connection connection(MappedStatement ms, int shard) throws SQLException {
+        if (session != null) {
+            return session.getConnection(shard);
+        }
+        if (shard < 0) {
+            return ms.isUsePrimary() ? dataSource.getConnection() : readDataSource.getConnection();
         }
+        ShardMap shardMap = ms.getShardMap();
+        return ms.isUsePrimary() ? shardMap.getShard(shard).getConnection() : shardMap.getReadShard(shard).getConnection();
+    }
 
-        Type returnType = method.getGenericReturnType();
-        if (returnType instanceof ParameterizedType) {
-            ParameterizedType type = (ParameterizedType) returnType;
-            Type[] typeArguments = type.getActualTypeArguments();
-            if (typeArguments.length > 0) {
-                Type typeArgument = typeArguments[0];
-                if (typeArgument instanceof Class) {
-                    return (Class<?>) typeArgument;
+    //按分片顺序合并：单条取第一个查到的，List 和单列结果依次拼接，分页按主键归并
+    private static Object mergeShards(MappedStatement ms, Object[] args, List<Object> results) {
+        switch (ms.getResultKind()) {
+            case PAGE:
+                return mergePages(ms, ms.getPageRequest(args).getLimit(), results);
+            case ARRAY:
+                return mergeColumns(ms.getResultType(), results);
+            case LIST:
+                List<Object> merged = new ArrayList<>();
+                for (Object result : results) {
+                    merged.addAll((List<?>) result);
                 }
+                return merged;
+            default:
+                for (Object result : results) {
+                    if (result != null) {
+                        return result;
+                    }
+                }
+                return null;
+        }
+    }
+
+    private static Object mergeColumns(Class<?> type, List<Object> results) {
+        int rows = (int) results.stream().mapToLong(MapperInvocationHandler::rowCount).sum();
+        if (type == int.class) {
+            int[] merged = new int[rows];
+            int offset = 0;
+            for (Object result : results) {
+                int[] values = (int[]) result;
+                System.arraycopy(values, 0, merged, offset, values.length);
+                offset += values.length;
+            }
+            return merged;
+        } else if (type == long.class) {
+            long[] merged = new long[rows];
+            int offset = 0;
+            for (Object result : results) {
+                long[] values = (long[]) result;
+                System.arraycopy(values, 0, merged, offset, values.length);
+                offset += values.length;
             }
+            return merged;
+        } else if (type == Integer.class) {
+            IntList merged = new IntList(rows);
+            for (Object result : results) {
+                merged.append((IntList) result);
+            }
+            return merged;
         }
-        return null;
+        LongList merged = new LongList(rows);
+        for (Object result : results) {
+            merged.append((LongList) result);
+        }
+        return merged;
     }
 
-    private String getTableName(Method method) {
-        Class<?> aClass = getListGenericType(method);
-        Table table = aClass.getAnnotation(Table.class);
-        if (table == null) {
-            throw new RuntimeException("table not found");
+    /**
+     * 各分片的页都已按主键升序且最多 limit 条，k 路归并后取前 limit 条
+     *
+     * 归并后超过 limit 条，或者某个分片自己还有下一页，就还有下一页；
+     * 下一页从合并结果最后一行的主键往后，各分片用同一个 seekSql 继续
+     */
+    @SuppressWarnings("unchecked")
+    private static Page<Object> mergePages(MappedStatement ms, int limit, List<Object> pages) {
+        int shardCount = pages.size();
+        List<?>[] items = new List<?>[shardCount];
+        int[] positions = new int[shardCount];
+        boolean hasNext = false;
+        for (int i = 0; i < shardCount; i++) {
+            Page<?> page = (Page<?>) pages.get(i);
+            items[i] = page.getItems();
+            hasNext |= page.hasNext();
+        }
+        EntityColumn keyColumn = ms.getKeyColumn();
+        List<Object> merged = new ArrayList<>(Math.min(limit, 1024));
+        while (true) {
+            int best = -1;
+            Comparable<Object> bestKey = null;
+            for (int i = 0; i < shardCount; i++) {
+                if (positions[i] < items[i].size()) {
+                    Comparable<Object> key = (Comparable<Object>) keyColumn.get(items[i].get(positions[i]));
+                    if (best < 0 || key.compareTo(bestKey) < 0) {
+                        best = i;
+                        bestKey = key;
+                    }
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            if (merged.size() == limit) {
+                hasNext = true;
+                break;
+            }
+            merged.add(items[best].get(positions[best]++));
+        }
+        Object nextCursor = hasNext && !merged.isEmpty() ? keyColumn.get(merged.get(merged.size() - 1)) : null;
+        return new Page<>(merged, nextCursor, limit);
+    }
+
+    private static Object mapResult(MappedStatement ms, Object[] args, ResultSet resultSet) throws SQLException {
+        //列名只在这里解析一次，逐行按列下标取值
+        RowMapper<?> rowMapper = ms.getRowMapper().bind(resultSet.getMetaData());
+
+        if (ms.getResultKind() == ResultKind.PAGE) {
+            return readPage(ms, ms.getPageRequest(args).getLimit(), resultSet, rowMapper);
         }
-        return table.name();
+        if (ms.getResultKind() == ResultKind.ARRAY) {
+            return readColumn(ms.getResultType(), resultSet);
+        }
+        //判断方法返回值类型是不是List
+        if (ms.getResultKind() == ResultKind.LIST) {
+            List<Object> resultList = new ArrayList<>();
+            while (resultSet.next()) {
+                Object result = rowMapper.mapRow(resultSet);
+                resultList.add(result);
+            }
+            return resultList;
+        }else {
+            if (resultSet.next()) {
+                return rowMapper.mapRow(resultSet);
+            }
+            return null;
+        }
+    }
+
+    //单列整数按原始类型读，只有读到 0 时才问一次 wasNull
+    private static Object readColumn(Class<?> type, ResultSet resultSet) throws SQLException {
+        if (type == int.class || type == Integer.class) {
+            IntList values = new IntList(0);
+            while (resultSet.next()) {
+                int value = resultSet.getInt(1);
+                if (value == 0 && resultSet.wasNull()) {
+                    values.addNull();
+                } else {
+                    values.addInt(value);
+                }
+            }
+            return type == int.class ? values.toIntArray() : values;
+        }
+        LongList values = new LongList(0);
+        while (resultSet.next()) {
+            long value = resultSet.getLong(1);
+            if (value == 0 && resultSet.wasNull()) {
+                values.addNull();
+            } else {
+                values.addLong(value);
+            }
+        }
+        return type == long.class ? values.toLongArray() : values;
     }
 
-    private List<String> getSelectCols(Method method) {
-        Class<?> aClass = getListGenericType(method);
-        Field[] fields = aClass.getDeclaredFields();
-        return Arrays.stream(fields).map(Field::getName).collect(Collectors.toList());
+    //SQL 多取了一行：取到第 limit + 1 行说明还有下一页，下一页从本页最后一行的主键往后
+    private static Page<Object> readPage(MappedStatement ms, int limit, ResultSet resultSet, RowMapper<?> rowMapper)
+            throws SQLException {
+        List<Object> items = new ArrayList<>(Math.min(limit, 1024));
+        boolean hasNext = false;
+        while (resultSet.next()) {
+            if (items.size() == limit) {
+                hasNext = true;
+                break;
+            }
+            items.add(rowMapper.mapRow(resultSet));
+        }
+        Object nextCursor = hasNext ? ms.getKeyColumn().get(items.get(items.size() - 1)) : null;
+        return new Page<>(items, nextCursor, limit);
+    }
+
+    //二级缓存非只读：放入和取出都复制实体和数组（IntList / LongList、投影接口不可修改，不复制）
+    private static Object copyResult(MappedStatement ms, Object value) {
+        if (value instanceof int[]) {
+            return ((int[]) value).clone();
+        } else if (value instanceof long[]) {
+            return ((long[]) value).clone();
+        }
+        if (value == NULL_RESULT || !EntityMetadata.isEntity(ms.getResultType())) {
+            return value;
+        }
+        EntityMetadata entity = EntityMetadata.of(ms.getResultType());
+        if (value instanceof Page) {
+            Page<?> page = (Page<?>) value;
+            return new Page<>(copyList(entity, page.getItems()), page.getNextCursor(), page.getLimit());
+        }
+        if (value instanceof List) {
+            return copyList(entity, (List<?>) value);
+        }
+        return entity.copy(value);
+    }
+
+    private static List<Object> copyList(EntityMetadata entity, List<?> list) {
+        List<Object> copy = new ArrayList<>(list.size());
+        for (Object element : list) {
+            copy.add(entity.copy(element));
+        }
+        return copy;
+    }
+
+    /**
+     * 返回 Cursor / Stream / Iterator 的方法
+     *
+     * 连接和 Statement 交给游标持有，调用方每取一行才映射一行，
+     * 游标读完或 close 时才归还连接，内存占用与结果集大小无关。
+     * 分片表条件里没有分片键时依次读各分片（见 ShardedCursor）。
+     * 超时只限制各分片的 executeQuery，逐行读取由调用方控制，不计时
+     */
+    private Object openCursor(MappedStatement ms, Object[] args) {
+        long start = System.nanoTime();
+        QueryDeadline deadline = QueryDeadline.forCall(ms.getTimeoutMillis());
+        int shard = ms.isSharded() ? ms.shardOf(args) : -1;
+        Cursor<Object> cursor;
+        if (ms.isSharded() && shard < 0) {
+            cursor = new ShardedCursor<>(ms.getShardMap().size(), i -> openShardCursor(ms, args, deadline, i));
+        } else {
+            cursor = openShardCursor(ms, args, deadline, shard);
+        }
+        //游标只统计打开的耗时，行数在迭代时才知道，不计入
+        recordCall(ms, args, System.nanoTime() - start, 0);
+        switch (ms.getResultKind()) {
+            case STREAM:
+                return cursor.stream();
+            case ITERATOR:
+                return cursor.iterator();
+            default:
+                return cursor;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private DefaultCursor<Object> openShardCursor(MappedStatement ms, Object[] args, QueryDeadline deadline, int shard) {
+        StatementMetrics statementMetrics = ms.getMetrics();
+        long start = System.nanoTime();
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        try {
+            connection = connection(ms, shard);
+            long borrowed = System.nanoTime();
+            statementMetrics.addPoolWaitNanos(borrowed - start);
+            preparedStatement = connection.prepareStatement(ms.getSql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            if (ms.getFetchSize() != 0) {
+                preparedStatement.setFetchSize(ms.getFetchSize());
+            }
+            ms.bindParameters(preparedStatement, args);
+            ResultSet resultSet = executeQuery(ms, connection, preparedStatement, deadline);
+            long executed = System.nanoTime();
+            statementMetrics.addExecuteNanos(executed - borrowed);
+            if (shard >= 0) {
+                statementMetrics.recordShard(shard, executed - start, 0);
+            }
+            RowMapper<Object> rowMapper = (RowMapper<Object>) ms.getRowMapper().bind(resultSet.getMetaData());
+            return new DefaultCursor<>(connection, preparedStatement, resultSet, rowMapper);
+        } catch (SQLException | RuntimeException e) {
+            statementMetrics.recordError(System.nanoTime() - start);
+            closeQuietly(preparedStatement);
+            closeQuietly(connection);
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new MapperException("Error opening cursor for " + ms.getId(), e);
+        }
+    }
+
+    //游标只限时 executeQuery
+    private static ResultSet executeQuery(MappedStatement ms, Connection connection, PreparedStatement preparedStatement,
+                                          QueryDeadline deadline) throws SQLException {
+        if (deadline == null) {
+            return preparedStatement.executeQuery();
+        }
+        StatementCanceller canceller = StatementCanceller.arm(preparedStatement, deadline, ms.getId());
+        try {
+            return preparedStatement.executeQuery();
+        } catch (SQLException e) {
+            canceller.checkTimedOut(e, ms.getId());
+            throw e;
+        } finally {
+            if (canceller.disarm()) {
+                StatementCanceller.discardIfBroken(connection);
+            }
+        }
+    }
+
+    //取消时一并取消正在执行的 JDBC 语句（分片并行查询时可能有多个）
+    private static final class QueryFuture extends CompletableFuture<Object> {
+
+        private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+
+        void addStatement(Statement statement) {
+            statements.add(statement);
+            if (isCancelled()) {
+                cancelStatements();
+            }
+        }
+
+        void removeStatement(Statement statement) {
+            statements.remove(statement);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                cancelStatements();
+            }
+            return cancelled;
+        }
+
+        private void cancelStatements() {
+            for (Statement running : statements) {
+                try {
+                    running.cancel();
+                } catch (SQLException ignored) {
+                }
+            }
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (Exception ignored) {
+            }
+        }
     }
 }
@@ -1,19 +1,443 @@
 package cn.xej.mybatis;
 
+import cn.xej.mybatis.cache.CacheStats;
+import cn.xej.mybatis.cache.LruCache;
+import cn.xej.mybatis.cache.PerpetualCache;
+import cn.xej.mybatis.datasource.PoolStats;
+import cn.xej.mybatis.datasource.PooledDataSource;
+import cn.xej.mybatis.datasource.ReadWriteDataSource;
+import cn.xej.mybatis.datasource.ReplicaStats;
+import cn.xej.mybatis.metrics.MetricsRegistry;
+import cn.xej.mybatis.shard.ShardMap;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MySqlSessionFactory {
 
+    private static final String URL = "jdbc:mysql://10.89.0.11:30602/test?useSSL=false&serverTimezone=UTC";
+    private static final String USER = "root";
+    private static final String PASSWORD = "uEXsn7NZrusBIGKe";
+
+    //每个 Mapper 接口只解析一次，key 为接口，value 为该接口所有方法的映射语句
+    private final Map<Class<?>, Map<Method, MappedStatement>> mappedStatements = new ConcurrentHashMap<>();
+    //所有 Mapper 共用一个连接池，不再每次调用都新建连接
+    private final DataSource dataSource;
+    //select 使用的数据源：配置了从库时按负载路由到从库，否则就是 dataSource
+    private final DataSource readDataSource;
+    //分片配置，未分片时为 null
+    private final ShardMap shardMap;
+    //集合参数写入时每批条数，可被 @Options(batchSize) 覆盖
+    private int batchSize = 1000;
+    //二级缓存，按 @Table 实体划分，只有带 @CacheNamespace 的实体才有
+    private final Map<Class<?>, LruCache> caches = new ConcurrentHashMap<>();
+    //一级缓存：SqlSession 内所有 Mapper 共用一个；直接 getMapper 时每个代理对象各一个
+    private boolean localCacheEnabled;
+    //脏检查，未开启时为 null
+    private DirtyTracker dirtyTracker;
+    //按主键查单条的合并：0 表示关闭
+    private int coalescingBatchSize;
+    private long coalescingWindowMicros;
+    //IN 列表最多多少个值，超出拆成多条查询
+    private int maxInListSize = 1000;
+    //没有 @Timeout 的 select 的超时（毫秒），0 表示不设
+    private long defaultQueryTimeoutMillis;
+    //接口 -> 编译期生成的实现类构造方法，没有生成类时为 empty
+    private final Map<Class<?>, Optional<Constructor<?>>> generatedMappers = new ConcurrentHashMap<>();
+    private boolean generatedMappersEnabled = true;
+    //各 Mapper 方法的耗时直方图、行数、慢查询
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    //按注册顺序由外到内，解析语句时组成各语句的拦截器链
+    private final List<Interceptor> interceptors = new ArrayList<>();
+    //返回 CompletableFuture 的 Mapper 方法在这里执行，未设置时第一次 getMapper 创建默认线程池
+    private Executor asyncExecutor;
+    //由工厂创建的线程池，close 时关闭；外部传入的不关
+    private ExecutorService ownedExecutor;
+
+    public MySqlSessionFactory() {
+        this(new PooledDataSource(URL, USER, PASSWORD));
+    }
+
+    public MySqlSessionFactory(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.readDataSource = dataSource instanceof ReadWriteDataSource
+                ? ((ReadWriteDataSource) dataSource).getReadDataSource() : dataSource;
+        this.shardMap = null;
+    }
+
+    /**
+     * 读写分离：写、@UsePrimary 的方法和 ReadWriteDataSource.usePrimary() 范围内的读走主库，
+     * 其余 select 在从库间负载均衡（默认 power of two choices，不健康的从库暂时摘除）
+     */
+    public MySqlSessionFactory(DataSource primary, List<? extends DataSource> replicas) {
+        this(new ReadWriteDataSource(primary, replicas));
+    }
+
+    /**
+     * 水平分片：@Table(shardKey = "...") 的表按分片键分布在各分片上
+     *  - 条件里有分片键的查询和写只访问一个分片
+     *  - 没有分片键的查询并行发往所有分片再合并（分页按主键归并排序后截取 limit 条）
+     * 未声明分片键的表都在第 0 个分片上
+     */
+    public MySqlSessionFactory(ShardMap shardMap) {
+        this.dataSource = shardMap.getShard(0);
+        this.readDataSource = shardMap.getReadShard(0);
+        this.shardMap = shardMap;
+    }
 
     public <T> T getMapper(Class<T> mapperClass) {
         //jdk 动态代理
         //参数1：类加载器，表示用什么类加载该类
         //参数2：代理对象需要实现的接口
         //参数3：代理对象需要实现的接口的实现类
-        return (T) Proxy.newProxyInstance(mapperClass.getClassLoader(), new Class[]{mapperClass}, new MapperInvocationHandler());
+        Map<Method, MappedStatement> statements = getMappedStatements(mapperClass);
+        T proxy = (T) Proxy.newProxyInstance(mapperClass.getClassLoader(), new Class[]{mapperClass}, new MapperInvocationHandler(statements, dataSource, readDataSource,
+                localCacheEnabled ? new PerpetualCache() : null, getAsyncExecutor(), metrics, dirtyTracker, null));
+        if (!generatedMappersEnabled) {
+            return proxy;
+        }
+        //编译期生成了 XxxMapperImpl 时优先用它，它不处理的方法再交给 proxy
+        Constructor<?> generated = generatedMappers.computeIfAbsent(mapperClass, MySqlSessionFactory::findGeneratedMapper)
+                .orElse(null);
+        if (generated == null) {
+            return proxy;
+        }
+        try {
+            return mapperClass.cast(generated.newInstance(this, proxy));
+        } catch (ReflectiveOperationException e) {
+            throw new MapperException("Cannot instantiate " + generated.getDeclaringClass().getName(), e);
+        }
+    }
+
+    /**
+     * 打开一个会话：会话内 getMapper 得到的所有 Mapper 共用一个连接、一个事务和一个 PreparedStatement 缓存
+     *
+     * 默认关闭自动提交，需要显式 commit；用完必须 close
+     */
+    public SqlSession openSession() {
+        return new SqlSession(this, ExecutorType.REUSE, false);
+    }
+
+    public SqlSession openSession(boolean autoCommit) {
+        return new SqlSession(this, ExecutorType.REUSE, autoCommit);
+    }
+
+    public SqlSession openSession(ExecutorType executorType) {
+        return new SqlSession(this, executorType, false);
+    }
+
+    private static Optional<Constructor<?>> findGeneratedMapper(Class<?> mapperClass) {
+        if (!mapperClass.isAnnotationPresent(Mapper.class)) {
+            return Optional.empty();
+        }
+        try {
+            Class<?> impl = Class.forName(mapperClass.getName() + "Impl", true, mapperClass.getClassLoader());
+            if (!mapperClass.isAssignableFrom(impl) || !GeneratedMapperSupport.class.isAssignableFrom(impl)) {
+                return Optional.empty();
+            }
+            return Optional.of(impl.getConstructor(MySqlSessionFactory.class, mapperClass));
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            return Optional.empty();
+        }
+    }
+
+    public boolean isGeneratedMappersEnabled() {
+        return generatedMappersEnabled;
+    }
+
+    //关闭后 getMapper 总是返回动态代理（对比测试用）
+    public void setGeneratedMappersEnabled(boolean generatedMappersEnabled) {
+        this.generatedMappersEnabled = generatedMappersEnabled;
+    }
+
+    //GeneratedMapperSupport 用来和生成代码比对
+    Map<Method, MappedStatement> getMappedStatements(Class<?> mapperClass) {
+        return mappedStatements.computeIfAbsent(mapperClass, type -> new MapperAnnotationBuilder(this, type).parse());
+    }
+
+    /**
+     * 注册拦截器（需在 getMapper 之前添加，已解析过的 Mapper 不受影响）
+     *
+     * 有拦截器的语句不走编译期生成的 Mapper 实现类
+     */
+    public void addInterceptor(Interceptor interceptor) {
+        interceptors.add(Objects.requireNonNull(interceptor, "interceptor"));
+    }
+
+    public List<Interceptor> getInterceptors() {
+        return Collections.unmodifiableList(interceptors);
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    //需在 getMapper 之前设置
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public boolean isLocalCacheEnabled() {
+        return localCacheEnabled;
+    }
+
+    //需在 getMapper 之前设置
+    public void setLocalCacheEnabled(boolean localCacheEnabled) {
+        this.localCacheEnabled = localCacheEnabled;
+    }
+
+    /**
+     * 开启脏检查（需在 getMapper 之前设置）
+     *
+     * select 一次读完返回的实体会留一份各列值的快照，之后 update(entity) 只 SET 变化了的列，
+     * 没有任何变化时不发 SQL、返回 0。每个实体多一份快照的内存，默认关闭
+     */
+    public void setDirtyTrackingEnabled(boolean dirtyTrackingEnabled) {
+        this.dirtyTracker = dirtyTrackingEnabled ? new DirtyTracker() : null;
+    }
+
+    public boolean isDirtyTrackingEnabled() {
+        return dirtyTracker != null;
+    }
+
+    DirtyTracker getDirtyTracker() {
+        return dirtyTracker;
+    }
+
+    /**
+     * 开启按主键查单条的合并（需在 getMapper 之前设置）
+     *
+     * 形如 selectById(@Param(name = "id") int id) 的方法，windowMicros 内或攒满 maxBatchSize 个 id 后
+     * 合并成一条 WHERE id IN (...) 查询，再把每行分发给各自的调用方
+     */
+    public void setLookupCoalescing(int maxBatchSize, long windowMicros) {
+        this.coalescingBatchSize = maxBatchSize;
+        this.coalescingWindowMicros = windowMicros;
     }
 
+    public int getCoalescingBatchSize() {
+        return coalescingBatchSize;
+    }
+
+    public long getCoalescingWindowMicros() {
+        return coalescingWindowMicros;
+    }
+
+    public int getMaxInListSize() {
+        return maxInListSize;
+    }
+
+    public void setMaxInListSize(int maxInListSize) {
+        this.maxInListSize = maxInListSize;
+    }
+
+    public long getDefaultQueryTimeoutMillis() {
+        return defaultQueryTimeoutMillis;
+    }
+
+    /**
+     * select 的默认超时（需在 getMapper 之前设置），方法或接口上的 @Timeout 优先
+     *
+     * 超时后语句被取消，调用方得到 QueryTimeoutException；连接检查可用后归还连接池，不可用则丢弃
+     */
+    public void setDefaultQueryTimeoutMillis(long defaultQueryTimeoutMillis) {
+        if (defaultQueryTimeoutMillis < 0) {
+            throw new IllegalArgumentException("defaultQueryTimeoutMillis must not be negative");
+        }
+        this.defaultQueryTimeoutMillis = defaultQueryTimeoutMillis;
+    }
+
+    /**
+     * 异步 Mapper 方法（返回 CompletableFuture）的执行器
+     *
+     * 默认线程数与连接池 maxActive 相同：多出来的线程拿不到连接只会排队等池；
+     * 队列有界，排满时由调用线程自己执行，起到限流作用
+     */
+    public synchronized Executor getAsyncExecutor() {
+        if (asyncExecutor == null) {
+            int threads = maxActive();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(threads * 64), new AsyncThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            ownedExecutor = executor;
+            asyncExecutor = executor;
+        }
+        return asyncExecutor;
+    }
+
+    //异步方法基本都是读，配置了从库时按所有从库连接数之和算，分片时再按分片累加
+    private int maxActive() {
+        if (shardMap == null) {
+            return maxActive(dataSource);
+        }
+        int total = 0;
+        for (DataSource shard : shardMap.getShards()) {
+            total += maxActive(shard);
+        }
+        return total;
+    }
+
+    private static int maxActive(DataSource dataSource) {
+        if (dataSource instanceof PooledDataSource) {
+            return ((PooledDataSource) dataSource).getMaxActive();
+        }
+        if (dataSource instanceof ReadWriteDataSource) {
+            ReadWriteDataSource readWrite = (ReadWriteDataSource) dataSource;
+            int total = 0;
+            for (DataSource replica : readWrite.getReplicas()) {
+                total += maxActive(replica);
+            }
+            return total > 0 ? total : maxActive(readWrite.getPrimary());
+        }
+        return 10;
+    }
+
+    //需在 getMapper 之前设置
+    public synchronized void setAsyncExecutor(Executor asyncExecutor) {
+        shutdownOwnedExecutor();
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * 异步方法改用虚拟线程执行（JDK 21+，需在 getMapper 之前设置）
+     *
+     * 每个调用一个虚拟线程，并发数实际由连接池 maxActive 限制；
+     * 编译目标是 Java 8，所以通过反射调用 Executors.newVirtualThreadPerTaskExecutor
+     */
+    public synchronized void useVirtualThreads() {
+        ExecutorService executor;
+        try {
+            executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new MapperException("Virtual threads require JDK 21 or later, running on " + System.getProperty("java.version"));
+        } catch (ReflectiveOperationException e) {
+            throw new MapperException("Cannot create virtual thread executor", e);
+        }
+        shutdownOwnedExecutor();
+        ownedExecutor = executor;
+        asyncExecutor = executor;
+    }
+
+    private void shutdownOwnedExecutor() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+            ownedExecutor = null;
+        }
+    }
+
+    private static final class AsyncThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger sequence = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "mybatis-async-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    //实体对应表的二级缓存，实体未标注 @CacheNamespace 时返回 null
+    public LruCache getCache(EntityMetadata entity) {
+        CacheNamespace namespace = entity.getType().getAnnotation(CacheNamespace.class);
+        if (namespace == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(entity.getType(), type -> new LruCache(entity.getTableName(),
+                namespace.maxEntries(), namespace.maxBytes(), namespace.ttlSeconds(), value -> weigh(entity, value)));
+    }
+
+    private static long weigh(EntityMetadata entity, Object value) {
+        if (value instanceof Page) {
+            return 32 + weigh(entity, ((Page<?>) value).getItems());
+        }
+        if (value instanceof IntList) {
+            return 32 + 4L * ((IntList) value).size();
+        } else if (value instanceof LongList) {
+            return 32 + 8L * ((LongList) value).size();
+        } else if (value instanceof int[]) {
+            return 16 + 4L * ((int[]) value).length;
+        } else if (value instanceof long[]) {
+            return 16 + 8L * ((long[]) value).length;
+        }
+        if (value instanceof List) {
+            long size = 16;
+            for (Object element : (List<?>) value) {
+                size += 8 + weigh(entity, element);
+            }
+            return size;
+        }
+        return entity.getType().isInstance(value) ? entity.estimateSize(value) : 16;
+    }
+
+    //各表二级缓存的命中、未命中、淘汰统计，key 为表名
+    public Map<String, CacheStats> getCacheStats() {
+        Map<String, CacheStats> stats = new TreeMap<>();
+        for (LruCache cache : caches.values()) {
+            stats.put(cache.getName(), cache.getStats());
+        }
+        return stats;
+    }
 
+    /**
+     * 各 Mapper 方法的统计：调用次数、错误数、行数、延迟分位数，以及执行/映射/等连接池的累计耗时
+     *
+     * 慢查询阈值默认 1 秒，通过 getMetrics().setSlowQueryThresholdMillis 调整
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
 
+    public DataSource getReadDataSource() {
+        return readDataSource;
+    }
+
+    public ShardMap getShardMap() {
+        return shardMap;
+    }
 
+    //连接池统计（活跃、空闲、等待者、等待时间），读写分离时为主库的，非池化数据源返回 null
+    public PoolStats getPoolStats() {
+        DataSource pool = dataSource instanceof ReadWriteDataSource ? ((ReadWriteDataSource) dataSource).getPrimary() : dataSource;
+        if (pool instanceof PooledDataSource) {
+            return ((PooledDataSource) pool).getPoolStats();
+        }
+        return null;
+    }
+
+    //各从库的借出数、错误数、是否被摘除，未配置从库时为空
+    public List<ReplicaStats> getReplicaStats() {
+        if (dataSource instanceof ReadWriteDataSource) {
+            return ((ReadWriteDataSource) dataSource).getReplicaStats();
+        }
+        return Collections.emptyList();
+    }
+
+    public void close() {
+        synchronized (this) {
+            shutdownOwnedExecutor();
+        }
+        if (shardMap != null) {
+            shardMap.close();
+        } else if (dataSource instanceof PooledDataSource) {
+            ((PooledDataSource) dataSource).close();
+        } else if (dataSource instanceof ReadWriteDataSource) {
+            ((ReadWriteDataSource) dataSource).close();
+        }
+    }
 }
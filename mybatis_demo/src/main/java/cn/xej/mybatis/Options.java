@@ -0,0 +1,21 @@
+package cn.xej.mybatis;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//写方法的执行选项
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Options {
+
+    //insert 不写主键列，执行后把数据库生成的主键回填到实体
+    boolean useGeneratedKeys() default false;
+
+    //集合参数每批条数，0 表示使用 MySqlSessionFactory 的默认值
+    int batchSize() default 0;
+
+    //insert 集合时把一批改写成一条 INSERT ... VALUES (...),(...)，而不是 addBatch
+    boolean multiRowValues() default false;
+}
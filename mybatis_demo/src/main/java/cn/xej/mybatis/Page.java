@@ -0,0 +1,48 @@
+package cn.xej.mybatis;
+
+import java.util.List;
+
+/**
+ * 键集分页的一页结果
+ *
+ * nextCursor 为本页最后一行的主键，没有下一页时为 null；
+ * 查询时多取一行判断是否还有下一页，不需要再发一次空查询
+ */
+public final class Page<T> {
+
+    private final List<T> items;
+    private final Object nextCursor;
+    private final int limit;
+
+    public Page(List<T> items, Object nextCursor, int limit) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.limit = limit;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public Object getNextCursor() {
+        return nextCursor;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    //下一页的请求，每页条数与本页相同；没有下一页时返回 null
+    public PageRequest next() {
+        return nextCursor == null ? null : PageRequest.after(nextCursor, limit);
+    }
+
+    @Override
+    public String toString() {
+        return "Page{items=" + items + ", nextCursor=" + nextCursor + "}";
+    }
+}
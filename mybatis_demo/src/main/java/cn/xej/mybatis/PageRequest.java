@@ -0,0 +1,69 @@
+package cn.xej.mybatis;
+
+import java.util.Objects;
+
+/**
+ * 键集分页（seek）请求：上一页最后一行的主键 + 每页条数
+ *
+ * Mapper 方法带一个 PageRequest 参数、返回 Page 时生成
+ * WHERE ... AND id > ? ORDER BY id LIMIT ?，
+ * 按主键索引定位，第 1000 页与第 1 页代价相同（不像 OFFSET 要先扫过前面所有行）
+ */
+public final class PageRequest {
+
+    //null 表示第一页
+    private final Object lastKey;
+    private final int limit;
+
+    private PageRequest(Object lastKey, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive: " + limit);
+        }
+        this.lastKey = lastKey;
+        this.limit = limit;
+    }
+
+    public static PageRequest first(int limit) {
+        return new PageRequest(null, limit);
+    }
+
+    //lastKey 一般取上一页的 Page.getNextCursor()
+    public static PageRequest after(Object lastKey, int limit) {
+        return new PageRequest(lastKey, limit);
+    }
+
+    public Object getLastKey() {
+        return lastKey;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean isFirst() {
+        return lastKey == null;
+    }
+
+    //作为缓存 key 的一部分
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PageRequest)) {
+            return false;
+        }
+        PageRequest that = (PageRequest) o;
+        return limit == that.limit && Objects.equals(lastKey, that.lastKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Objects.hashCode(lastKey) + limit;
+    }
+
+    @Override
+    public String toString() {
+        return "PageRequest{lastKey=" + lastKey + ", limit=" + limit + "}";
+    }
+}
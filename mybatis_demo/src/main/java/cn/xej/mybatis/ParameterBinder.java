@@ -0,0 +1,10 @@
+package cn.xej.mybatis;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+//参数绑定器：解析 Mapper 时按参数类型选定一次，调用时直接绑定
+public interface ParameterBinder {
+
+    void bind(PreparedStatement preparedStatement, int index, Object arg) throws SQLException;
+}
@@ -0,0 +1,194 @@
+package cn.xej.mybatis;
+
+import cn.xej.mybatis.type.TypeHandler;
+import cn.xej.mybatis.type.TypeHandlerRegistry;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * 投影接口的行映射：只声明 getter 的接口，例如
+ * <pre>
+ * interface UserName { int getId(); String getName(); }
+ * List&lt;UserName&gt; selectNamesByAge(@Param(name = "age") int age);
+ * </pre>
+ *
+ * 接口只解析一次：每个 getter（getName / isActive / name）对应一列和值数组里的一个下标，类型处理器、
+ * 代理类的构造方法都预先取好；每行只分配一个值数组和一个代理对象，不像实体那样为没查的列留字段。
+ * 基本类型的 getter 遇到 SQL NULL 返回 0 / false。
+ */
+final class ProjectionMapper<T> extends RowMapperCompiler.CompiledRowMapper<T> {
+
+    private final Class<T> type;
+    private final String[] columns;
+    private final TypeHandler<?>[] handlers;
+    //基本类型 getter 的默认值，其余为 null
+    private final Object[] defaults;
+    private final Map<Method, Integer> slots;
+    private final Constructor<?> constructor;
+
+    private ProjectionMapper(Class<T> type, List<Method> getters) {
+        this.type = type;
+        int size = getters.size();
+        this.columns = new String[size];
+        this.handlers = new TypeHandler<?>[size];
+        this.defaults = new Object[size];
+        this.slots = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            Method getter = getters.get(i);
+            Class<?> returnType = getter.getReturnType();
+            columns[i] = propertyName(getter);
+            handlers[i] = TypeHandlerRegistry.getInstance().getTypeHandler(returnType);
+            defaults[i] = returnType.isPrimitive() ? defaultValue(returnType) : null;
+            slots.put(getter, i);
+        }
+        this.constructor = proxyConstructor(type);
+    }
+
+    static <T> ProjectionMapper<T> compile(Class<T> type) {
+        List<Method> getters = new ArrayList<>();
+        for (Method method : type.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            if (method.isDefault() || method.getParameterCount() != 0 || method.getReturnType() == void.class) {
+                throw new MapperException("Projection " + type.getName() + " may only declare getters: " + method.getName());
+            }
+            getters.add(method);
+        }
+        //getMethods 的顺序不固定，按名字排好让 SQL 的列顺序稳定
+        getters.sort(Comparator.comparing(Method::getName));
+        return new ProjectionMapper<>(type, getters);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Constructor<?> proxyConstructor(Class<?> type) {
+        try {
+            Constructor<?> constructor = Proxy.getProxyClass(type.getClassLoader(), type).getConstructor(InvocationHandler.class);
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (ReflectiveOperationException | IllegalArgumentException e) {
+            throw new MapperException("cannot create projection " + type.getName(), e);
+        }
+    }
+
+    private static String propertyName(Method getter) {
+        String name = getter.getName();
+        if (name.startsWith("get") && name.length() > 3) {
+            return Character.toLowerCase(name.charAt(3)) + name.substring(4);
+        }
+        Class<?> returnType = getter.getReturnType();
+        if (name.startsWith("is") && name.length() > 2 && (returnType == boolean.class || returnType == Boolean.class)) {
+            return Character.toLowerCase(name.charAt(2)) + name.substring(3);
+        }
+        return name;
+    }
+
+    private static Object defaultValue(Class<?> primitive) {
+        if (primitive == boolean.class) {
+            return false;
+        } else if (primitive == char.class) {
+            return '\0';
+        } else if (primitive == long.class) {
+            return 0L;
+        } else if (primitive == double.class) {
+            return 0d;
+        } else if (primitive == float.class) {
+            return 0f;
+        } else if (primitive == short.class) {
+            return (short) 0;
+        } else if (primitive == byte.class) {
+            return (byte) 0;
+        }
+        return 0;
+    }
+
+    @Override
+    public RowMapper<T> bind(ResultSetMetaData metaData) throws SQLException {
+        Map<String, Integer> labels = columnIndexes(metaData);
+        //0 表示结果集里没有该列，取值时返回默认值
+        int[] indexes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            Integer index = labels.get(columns[i].toLowerCase(Locale.ROOT));
+            indexes[i] = index == null ? 0 : index;
+        }
+        return resultSet -> newInstance(read(resultSet, indexes));
+    }
+
+    @Override
+    public List<String> getColumns() {
+        return Arrays.asList(columns);
+    }
+
+    private Object[] read(ResultSet resultSet, int[] indexes) throws SQLException {
+        Object[] values = new Object[columns.length];
+        for (int i = 0; i < values.length; i++) {
+            Object value = indexes[i] == 0 ? null : handlers[i].getResult(resultSet, indexes[i]);
+            values[i] = value == null ? defaults[i] : value;
+        }
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T newInstance(Object[] values) {
+        try {
+            return (T) constructor.newInstance(new Row(this, values));
+        } catch (ReflectiveOperationException e) {
+            throw new MapperException("cannot create projection " + type.getName(), e);
+        }
+    }
+
+    //代理对象背后的一行：getter 直接按下标取值
+    private static final class Row implements InvocationHandler {
+
+        private final ProjectionMapper<?> mapper;
+        private final Object[] values;
+
+        private Row(ProjectionMapper<?> mapper, Object[] values) {
+            this.mapper = mapper;
+            this.values = values;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            Integer slot = mapper.slots.get(method);
+            if (slot != null) {
+                return values[slot];
+            }
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0] || isSameRow(args[0]);
+                case "hashCode":
+                    return Arrays.hashCode(values);
+                case "toString":
+                    return toString();
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        }
+
+        private boolean isSameRow(Object other) {
+            if (other == null || !Proxy.isProxyClass(other.getClass())) {
+                return false;
+            }
+            InvocationHandler handler = Proxy.getInvocationHandler(other);
+            return handler instanceof Row && ((Row) handler).mapper == mapper && Arrays.equals(((Row) handler).values, values);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(mapper.type.getSimpleName()).append('{');
+            for (int i = 0; i < values.length; i++) {
+                sb.append(i == 0 ? "" : ", ").append(mapper.columns[i]).append('=').append(values[i]);
+            }
+            return sb.append('}').toString();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package cn.xej.mybatis;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 查询的截止时间（System.nanoTime 时刻）
+ *
+ * 调用方用 within 给当前线程设一个截止时间，范围内的 select 都不会超过它：
+ * <pre>
+ * try (QueryDeadline.Scope ignored = QueryDeadline.within(200, TimeUnit.MILLISECONDS)) {
+ *     User user = userMapper.selectById(1);
+ *     List&lt;User&gt; users = userMapper.selectByName(user.getName());
+ * }
+ * </pre>
+ * 截止时间在调用 Mapper 方法时取定，随查询带到异步执行和分片并行查询的线程上。
+ * 嵌套时内层只能提前、不能延后外层的截止时间
+ */
+public final class QueryDeadline {
+
+    private static final ThreadLocal<QueryDeadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+
+    private QueryDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static Scope within(long timeout, TimeUnit unit) {
+        QueryDeadline previous = CURRENT.get();
+        QueryDeadline deadline = earlier(previous, unit.toNanos(timeout));
+        CURRENT.set(deadline);
+        return new Scope(previous);
+    }
+
+    //当前线程的截止时间，没有时为 null
+    public static QueryDeadline current() {
+        return CURRENT.get();
+    }
+
+    //一次调用的截止时间：方法超时（0 表示没有）和当前线程截止时间中先到的那个，都没有时为 null
+    static QueryDeadline forCall(long timeoutMillis) {
+        QueryDeadline current = CURRENT.get();
+        if (timeoutMillis <= 0) {
+            return current;
+        }
+        return earlier(current, TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    private static QueryDeadline earlier(QueryDeadline deadline, long timeoutNanos) {
+        long candidate = System.nanoTime() + timeoutNanos;
+        if (deadline != null && deadline.deadlineNanos - candidate <= 0) {
+            return deadline;
+        }
+        return new QueryDeadline(candidate);
+    }
+
+    //剩余时间，已过期时为 0 或负数
+    public long remainingNanos() {
+        return deadlineNanos - System.nanoTime();
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+
+    //Statement.setQueryTimeout 的秒数：向上取整，不足一秒按一秒（0 在 JDBC 里表示不限）
+    int remainingSeconds() {
+        long remaining = remainingNanos();
+        long seconds = (remaining + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+        return (int) Math.min(Math.max(seconds, 1), Integer.MAX_VALUE);
+    }
+
+    //within 的作用范围，close 时恢复外层的截止时间
+    public static final class Scope implements AutoCloseable {
+
+        private final QueryDeadline previous;
+        private boolean closed;
+
+        private Scope(QueryDeadline previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        }
+    }
+}
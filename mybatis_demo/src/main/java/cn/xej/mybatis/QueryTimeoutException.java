@@ -0,0 +1,13 @@
+package cn.xej.mybatis;
+
+//查询超过了方法的超时时间或调用方的截止时间，语句已被取消
+public class QueryTimeoutException extends MapperException {
+
+    public QueryTimeoutException(String message) {
+        super(message);
+    }
+
+    public QueryTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
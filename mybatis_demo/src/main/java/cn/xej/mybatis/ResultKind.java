@@ -0,0 +1,24 @@
+package cn.xej.mybatis;
+
+//Mapper 方法的返回形式
+public enum ResultKind {
+    //单个对象
+    ONE,
+    //List，一次读完
+    LIST,
+    //单列整数按 getInt / getLong 读进紧凑存储：resultType 为 int / long 时返回 int[] / long[]，
+    //为 Integer / Long 时返回 IntList / LongList（方法声明为 List<Integer> / List<Long> 时也是）
+    ARRAY,
+    //Page，键集分页的一页
+    PAGE,
+    //不返回对象：各行直接写成 JSON 数组输出到 OutputStream 参数，方法返回写出的行数
+    JSON,
+    //以下三种都是按需逐行映射
+    CURSOR,
+    STREAM,
+    ITERATOR;
+
+    public boolean isLazy() {
+        return this == CURSOR || this == STREAM || this == ITERATOR;
+    }
+}
@@ -0,0 +1,10 @@
+package cn.xej.mybatis;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+//行映射器：把 ResultSet 当前行转成对象，列下标已提前解析好
+public interface RowMapper<T> {
+
+    T mapRow(ResultSet resultSet) throws SQLException;
+}
@@ -0,0 +1,372 @@
+package cn.xej.mybatis;
+
+import cn.xej.mybatis.type.*;
+
+import java.lang.invoke.*;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * 行映射器编译器
+ *
+ * 每个实体类只编译一次并缓存：
+ *  - 无参构造方法通过 LambdaMetafactory 生成 Supplier，不再每行 getDeclaredConstructor().newInstance()
+ *  - 每个字段按 TypeHandlerRegistry 生成一个专用写入器，int/long/double/boolean 字段走 ObjIntConsumer 等原始类型接口，不装箱
+ *  - 优先绑定 public setter，没有 setter 的私有字段退化为 MethodHandle 直接写字段
+ *
+ * 每次查询用 ResultSetMetaData 把列名解析成列下标一次，逐行只按下标取值。
+ *
+ * 实体以外的结果类型：
+ *  - 有类型处理器的单列类型（Integer、String、枚举等）：读第一列
+ *  - 投影接口：按 getter 取列，每行只存一个值数组（见 ProjectionMapper）
+ *  - 其余类（DTO）与实体相同，按字段名取列
+ */
+public final class RowMapperCompiler {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final Map<Class<?>, CompiledRowMapper<?>> CACHE = new ConcurrentHashMap<>();
+
+    private RowMapperCompiler() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> CompiledRowMapper<T> compile(Class<T> type) {
+        return (CompiledRowMapper<T>) CACHE.computeIfAbsent(type, RowMapperCompiler::doCompile);
+    }
+
+    //单列结果：基本类型、内置或注册过处理器的类型、枚举
+    public static boolean isScalar(Class<?> type) {
+        return type.isPrimitive() || TypeHandlerRegistry.getInstance().hasTypeHandler(type);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static CompiledRowMapper<?> doCompile(Class<?> type) {
+        if (isScalar(type)) {
+            return new ScalarRowMapper(TypeHandlerRegistry.getInstance().getTypeHandler(type));
+        }
+        if (type.isInterface()) {
+            return ProjectionMapper.compile(type);
+        }
+        return compileBean(type);
+    }
+
+    private static <T> CompiledRowMapper<T> compileBean(Class<T> type) {
+        Supplier<T> constructor = compileConstructor(type);
+        List<FieldWriter> writers = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            FieldWriter writer = compileField(type, field);
+            if (writer != null) {
+                writers.add(writer);
+            }
+        }
+        return new BeanRowMapper<>(constructor, writers.toArray(new FieldWriter[0]));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Supplier<T> compileConstructor(Class<T> type) {
+        try {
+            MethodHandle handle = LOOKUP.findConstructor(type, MethodType.methodType(void.class));
+            CallSite site = LambdaMetafactory.metafactory(LOOKUP, "get",
+                    MethodType.methodType(Supplier.class), MethodType.methodType(Object.class),
+                    handle, MethodType.methodType(type));
+            return (Supplier<T>) site.getTarget().invoke();
+        } catch (Throwable e) {
+            //非 public 构造方法：退化为 MethodHandle
+            try {
+                Constructor<T> constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                MethodHandle handle = LOOKUP.unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+                return () -> {
+                    try {
+                        return (T) handle.invokeExact();
+                    } catch (Throwable t) {
+                        throw new IllegalStateException("cannot instantiate " + type.getName(), t);
+                    }
+                };
+            } catch (ReflectiveOperationException ex) {
+                throw new IllegalStateException(type.getName() + " must declare a no-arg constructor", ex);
+            }
+        }
+    }
+
+    /**
+     * 字段类型的处理器在这里取一次：
+     * int/long/double/boolean 字段用原始类型的 getInt/getLong... 读出，经专用函数接口写入，整行不装箱；
+     * 其余类型经 TypeHandler.getResult 读出后写入
+     */
+    private static FieldWriter compileField(Class<?> type, Field field) {
+        Class<?> fieldType = field.getType();
+        TypeHandler<?> handler = TypeHandlerRegistry.getInstance().getTypeHandler(fieldType);
+        String column = field.getName();
+        if (fieldType == int.class && handler == IntTypeHandler.INSTANCE) {
+            ObjIntConsumer<Object> setter = compileSetter(type, field, ObjIntConsumer.class, int.class);
+            return new FieldWriter(column) {
+                @Override
+                void write(Object target, ResultSet resultSet, int column) throws SQLException {
+                    setter.accept(target, IntTypeHandler.INSTANCE.getInt(resultSet, column));
+                }
+            };
+        } else if (fieldType == long.class && handler == LongTypeHandler.INSTANCE) {
+            ObjLongConsumer<Object> setter = compileSetter(type, field, ObjLongConsumer.class, long.class);
+            return new FieldWriter(column) {
+                @Override
+                void write(Object target, ResultSet resultSet, int column) throws SQLException {
+                    setter.accept(target, LongTypeHandler.INSTANCE.getLong(resultSet, column));
+                }
+            };
+        } else if (fieldType == double.class && handler == DoubleTypeHandler.INSTANCE) {
+            ObjDoubleConsumer<Object> setter = compileSetter(type, field, ObjDoubleConsumer.class, double.class);
+            return new FieldWriter(column) {
+                @Override
+                void write(Object target, ResultSet resultSet, int column) throws SQLException {
+                    setter.accept(target, DoubleTypeHandler.INSTANCE.getDouble(resultSet, column));
+                }
+            };
+        } else if (fieldType == boolean.class && handler == BooleanTypeHandler.INSTANCE) {
+            ObjBooleanConsumer setter = compileSetter(type, field, ObjBooleanConsumer.class, boolean.class);
+            return new FieldWriter(column) {
+                @Override
+                void write(Object target, ResultSet resultSet, int column) throws SQLException {
+                    setter.accept(target, BooleanTypeHandler.INSTANCE.getBoolean(resultSet, column));
+                }
+            };
+        }
+        BiConsumer<Object, Object> setter = compileSetter(type, field, BiConsumer.class, Object.class);
+        //float/short/byte 等原始类型字段遇到 SQL NULL 保持默认值，不拆箱 null
+        boolean primitive = fieldType.isPrimitive();
+        return new FieldWriter(column) {
+            @Override
+            void write(Object target, ResultSet resultSet, int column) throws SQLException {
+                Object value = handler.getResult(resultSet, column);
+                if (value != null || !primitive) {
+                    setter.accept(target, value);
+                }
+            }
+        };
+    }
+
+    /**
+     * 生成字段写入器：functionalInterface 的方法签名为 accept(Object target, valueType value)
+     *
+     * 有 public setter 时用 LambdaMetafactory 直接绑定 setter；否则退化为 MethodHandle 写字段
+     */
+    @SuppressWarnings("unchecked")
+    private static <F> F compileSetter(Class<?> type, Field field, Class<?> functionalInterface, Class<?> valueType) {
+        MethodType samType = MethodType.methodType(void.class, Object.class, valueType);
+        Method setter = findSetter(type, field);
+        if (setter != null) {
+            try {
+                MethodHandle handle = LOOKUP.unreflect(setter);
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+                        MethodType.methodType(functionalInterface), samType,
+                        handle, MethodType.methodType(void.class, type, field.getType()));
+                return (F) site.getTarget().invoke();
+            } catch (Throwable ignored) {
+                //实体类对当前类加载器不可见等情况，退化为写字段
+            }
+        }
+        MethodHandle handle = fieldSetter(field).asType(samType);
+        if (valueType == int.class) {
+            return (F) (ObjIntConsumer<Object>) (target, value) -> {
+                try {
+                    handle.invokeExact(target, value);
+                } catch (Throwable t) {
+                    throw cannotSet(field, t);
+                }
+            };
+        } else if (valueType == long.class) {
+            return (F) (ObjLongConsumer<Object>) (target, value) -> {
+                try {
+                    handle.invokeExact(target, value);
+                } catch (Throwable t) {
+                    throw cannotSet(field, t);
+                }
+            };
+        } else if (valueType == double.class) {
+            return (F) (ObjDoubleConsumer<Object>) (target, value) -> {
+                try {
+                    handle.invokeExact(target, value);
+                } catch (Throwable t) {
+                    throw cannotSet(field, t);
+                }
+            };
+        } else if (valueType == boolean.class) {
+            return (F) (ObjBooleanConsumer) (target, value) -> {
+                try {
+                    handle.invokeExact(target, value);
+                } catch (Throwable t) {
+                    throw cannotSet(field, t);
+                }
+            };
+        }
+        return (F) (BiConsumer<Object, Object>) (target, value) -> {
+            try {
+                handle.invokeExact(target, value);
+            } catch (Throwable t) {
+                throw cannotSet(field, t);
+            }
+        };
+    }
+
+    private static IllegalStateException cannotSet(Field field, Throwable cause) {
+        return new IllegalStateException("cannot set field " + field, cause);
+    }
+
+    private static Method findSetter(Class<?> type, Field field) {
+        String name = field.getName();
+        String setterName = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        try {
+            Method setter = type.getMethod(setterName, field.getType());
+            return Modifier.isPublic(type.getModifiers()) ? setter : null;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle fieldSetter(Field field) {
+        try {
+            field.setAccessible(true);
+            return LOOKUP.unreflectSetter(field);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("cannot access field " + field, e);
+        }
+    }
+
+    /**
+     * 编译好的结果映射
+     *
+     * bind 时按列名解析出列下标，返回只认下标的 RowMapper
+     */
+    public abstract static class CompiledRowMapper<T> {
+
+        public abstract RowMapper<T> bind(ResultSetMetaData metaData) throws SQLException;
+
+        //按名字取值的列（字段名 / 投影属性名），单列结果为空
+        public abstract List<String> getColumns();
+
+        //列标签（小写）到列下标
+        static Map<String, Integer> columnIndexes(ResultSetMetaData metaData) throws SQLException {
+            Map<String, Integer> columns = new HashMap<>();
+            for (int i = metaData.getColumnCount(); i >= 1; i--) {
+                columns.put(metaData.getColumnLabel(i).toLowerCase(Locale.ROOT), i);
+            }
+            return columns;
+        }
+    }
+
+    //实体和 DTO：构造器 + 字段写入器，结果集里没有的字段不写
+    private static final class BeanRowMapper<T> extends CompiledRowMapper<T> {
+
+        private final Supplier<T> constructor;
+        private final FieldWriter[] writers;
+
+        private BeanRowMapper(Supplier<T> constructor, FieldWriter[] writers) {
+            this.constructor = constructor;
+            this.writers = writers;
+        }
+
+        @Override
+        public RowMapper<T> bind(ResultSetMetaData metaData) throws SQLException {
+            Map<String, Integer> columns = columnIndexes(metaData);
+            List<FieldWriter> bound = new ArrayList<>(writers.length);
+            List<Integer> indexes = new ArrayList<>(writers.length);
+            for (FieldWriter writer : writers) {
+                Integer index = columns.get(writer.column.toLowerCase(Locale.ROOT));
+                if (index != null) {
+                    bound.add(writer);
+                    indexes.add(index);
+                }
+            }
+            return new BoundRowMapper<>(constructor, bound.toArray(new FieldWriter[0]),
+                    indexes.stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        @Override
+        public List<String> getColumns() {
+            List<String> columns = new ArrayList<>(writers.length);
+            for (FieldWriter writer : writers) {
+                columns.add(writer.column);
+            }
+            return columns;
+        }
+    }
+
+    //单列结果读第一列；基本类型遇到 SQL NULL 时返回 null，由调用方决定怎么处理
+    private static final class ScalarRowMapper<T> extends CompiledRowMapper<T> implements RowMapper<T> {
+
+        private final TypeHandler<T> handler;
+
+        private ScalarRowMapper(TypeHandler<T> handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public RowMapper<T> bind(ResultSetMetaData metaData) {
+            return this;
+        }
+
+        @Override
+        public List<String> getColumns() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public T mapRow(ResultSet resultSet) throws SQLException {
+            return handler.getResult(resultSet, 1);
+        }
+    }
+
+    private static final class BoundRowMapper<T> implements RowMapper<T> {
+
+        private final Supplier<T> constructor;
+        private final FieldWriter[] writers;
+        private final int[] columnIndexes;
+
+        private BoundRowMapper(Supplier<T> constructor, FieldWriter[] writers, int[] columnIndexes) {
+            this.constructor = constructor;
+            this.writers = writers;
+            this.columnIndexes = columnIndexes;
+        }
+
+        @Override
+        public T mapRow(ResultSet resultSet) throws SQLException {
+            T result = constructor.get();
+            for (int i = 0; i < writers.length; i++) {
+                writers[i].write(result, resultSet, columnIndexes[i]);
+            }
+            return result;
+        }
+    }
+
+    private abstract static class FieldWriter {
+
+        final String column;
+
+        FieldWriter(String column) {
+            this.column = column;
+        }
+
+        abstract void write(Object target, ResultSet resultSet, int column) throws SQLException;
+    }
+
+    //java.util.function 没有 boolean 版本的 ObjXxxConsumer；LambdaMetafactory 生成的实现类要能访问它，Java 8 下不能是 private
+    @FunctionalInterface
+    interface ObjBooleanConsumer {
+        void accept(Object target, boolean value);
+    }
+}
@@ -0,0 +1,195 @@
+package cn.xej.mybatis;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 会话持有的连接
+ *
+ * 和 PooledConnection 一样用 jdk 动态代理包一层，交给 Mapper 的执行代码使用：
+ *  - close() 什么也不做，连接由 SqlSession 在 close 时归还
+ *  - prepareStatement(sql) / prepareStatement(sql, autoGeneratedKeys) 按 SQL 文本缓存，
+ *    返回的 Statement 同样 close() 不关闭，下次同一条 SQL 直接复用（省掉驱动的解析和服务端预编译）
+ *  - 借出到 close() 之间不会再借给别人（如游标还在读它的 ResultSet），这时同一条 SQL 另开一个不缓存的 Statement
+ *  - 缓存按最近使用淘汰，被淘汰的 Statement 真正关闭（借出中的在归还时关闭）
+ *  - 复用时清掉上次的参数、查询超时和 fetchSize（超时按每次调用的截止时间设置，fetchSize 按方法的 @FetchSize）
+ */
+final class SessionConnection implements InvocationHandler {
+
+    private static final String CLOSE = "close";
+    private static final String PREPARE_STATEMENT = "prepareStatement";
+    private static final String SET_QUERY_TIMEOUT = "setQueryTimeout";
+    private static final String SET_FETCH_SIZE = "setFetchSize";
+
+    private final Connection realConnection;
+    private final Connection proxy;
+    private final Map<String, CachedStatement> statements;
+
+    SessionConnection(Connection realConnection, int maxStatements) {
+        this.realConnection = realConnection;
+        this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{Connection.class}, this);
+        this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() > maxStatements) {
+                    eldest.getValue().evict();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    Connection getProxy() {
+        return proxy;
+    }
+
+    Connection getRealConnection() {
+        return realConnection;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if (CLOSE.equals(name) && method.getParameterCount() == 0) {
+            return null;
+        }
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(this, args);
+        }
+        if (PREPARE_STATEMENT.equals(name)) {
+            if (args.length == 1) {
+                return prepare((String) args[0], false);
+            }
+            if (args.length == 2 && method.getParameterTypes()[1] == int.class) {
+                return prepare((String) args[0], (Integer) args[1] == Statement.RETURN_GENERATED_KEYS);
+            }
+        }
+        try {
+            return method.invoke(realConnection, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    //缓存里同时放真实 Statement 和返回给调用方的代理（close() 不关闭，只是归还）
+    synchronized PreparedStatement prepare(String sql, boolean returnGeneratedKeys) throws SQLException {
+        String key = returnGeneratedKeys ? "K:" + sql : sql;
+        CachedStatement cached = statements.get(key);
+        if (cached != null && cached.inUse) {
+            //还在用，这次另开一个，close() 时真正关闭
+            return newStatement(sql, returnGeneratedKeys);
+        }
+        if (cached == null || cached.statement.isClosed()) {
+            cached = new CachedStatement(newStatement(sql, returnGeneratedKeys));
+            statements.put(key, cached);
+        } else {
+            cached.reset();
+        }
+        cached.inUse = true;
+        return cached.proxy;
+    }
+
+    private PreparedStatement newStatement(String sql, boolean returnGeneratedKeys) throws SQLException {
+        return returnGeneratedKeys
+                ? realConnection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                : realConnection.prepareStatement(sql);
+    }
+
+    int getCachedStatementCount() {
+        return statements.size();
+    }
+
+    //关闭缓存的 Statement 并把连接还给连接池
+    void close() {
+        List<CachedStatement> cached = new ArrayList<>(statements.values());
+        statements.clear();
+        for (CachedStatement statement : cached) {
+            closeQuietly(statement.statement);
+        }
+        closeQuietly(realConnection);
+    }
+
+    private final class CachedStatement {
+
+        private final PreparedStatement statement;
+        private final PreparedStatement proxy;
+        private final int defaultFetchSize;
+        //已借出、还没 close()
+        private boolean inUse;
+        //借出期间被挤出缓存，归还时关闭
+        private boolean evicted;
+        //调用方设过 setQueryTimeout / setFetchSize，复用前要恢复
+        private boolean timeoutSet;
+        private boolean fetchSizeSet;
+
+        CachedStatement(PreparedStatement statement) throws SQLException {
+            this.statement = statement;
+            this.defaultFetchSize = statement.getFetchSize();
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class[]{PreparedStatement.class}, (proxy, method, args) -> {
+                        String name = method.getName();
+                        if (CLOSE.equals(name) && method.getParameterCount() == 0) {
+                            release();
+                            return null;
+                        }
+                        if (SET_QUERY_TIMEOUT.equals(name)) {
+                            timeoutSet = true;
+                        } else if (SET_FETCH_SIZE.equals(name)) {
+                            fetchSizeSet = true;
+                        }
+                        try {
+                            return method.invoke(statement, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+
+        void reset() throws SQLException {
+            statement.clearParameters();
+            if (timeoutSet) {
+                statement.setQueryTimeout(0);
+                timeoutSet = false;
+            }
+            if (fetchSizeSet) {
+                statement.setFetchSize(defaultFetchSize);
+                fetchSizeSet = false;
+            }
+        }
+
+        void release() {
+            synchronized (SessionConnection.this) {
+                inUse = false;
+                if (evicted) {
+                    closeQuietly(statement);
+                }
+            }
+        }
+
+        //调用方在 prepare 的锁内
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                closeQuietly(statement);
+            }
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package cn.xej.mybatis;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 发往所有分片的游标查询：依次读各分片的游标
+ *
+ * 第 0 个分片在创建时打开，读完一个分片（其连接随之归还）才打开下一个，
+ * 同一时刻只占用一个连接，内存占用与结果集大小无关
+ */
+public class ShardedCursor<T> implements Cursor<T> {
+
+    private final int shardCount;
+    private final IntFunction<Cursor<T>> opener;
+
+    private Cursor<T> current;
+    private Iterator<T> currentIterator;
+    private int shard;
+    private boolean iteratorRetrieved;
+    private boolean open = true;
+    private boolean consumed;
+    private int currentIndex;
+    //fetchNext 读到、还没被 next() 取走的行
+    private T fetched;
+
+    public ShardedCursor(int shardCount, IntFunction<Cursor<T>> opener) {
+        this.shardCount = shardCount;
+        this.opener = opener;
+        this.current = opener.apply(0);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isConsumed() {
+        return consumed;
+    }
+
+    @Override
+    public int getCurrentIndex() {
+        return currentIndex;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        if (iteratorRetrieved) {
+            throw new IllegalStateException("Cannot open more than one iterator on a Cursor");
+        }
+        if (!open) {
+            throw new IllegalStateException("A Cursor is already closed.");
+        }
+        iteratorRetrieved = true;
+        return new ShardIterator();
+    }
+
+    @Override
+    public Stream<T> stream() {
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED);
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+    }
+
+    //读下一行放进 fetched，所有分片都读完时返回 false
+    private boolean fetchNext() {
+        while (open) {
+            if (currentIterator == null) {
+                currentIterator = current.iterator();
+            }
+            if (currentIterator.hasNext()) {
+                currentIndex++;
+                fetched = currentIterator.next();
+                return true;
+            }
+            current.close();
+            current = null;
+            currentIterator = null;
+            if (++shard >= shardCount) {
+                consumed = true;
+                close();
+                return false;
+            }
+            try {
+                current = opener.apply(shard);
+            } catch (RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+        return false;
+    }
+
+    private final class ShardIterator implements Iterator<T> {
+
+        //fetched 里是否有还没取走的行；标量游标的行可以是 null，不能用 null 判断
+        private boolean ready;
+
+        @Override
+        public boolean hasNext() {
+            if (!ready) {
+                ready = fetchNext();
+            }
+            return ready;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T result = fetched;
+            fetched = null;
+            ready = false;
+            return result;
+        }
+    }
+}
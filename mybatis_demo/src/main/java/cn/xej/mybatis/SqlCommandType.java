@@ -0,0 +1,22 @@
+package cn.xej.mybatis;
+
+//SQL 类型，由方法名前缀决定：select* / insert* / update* / delete*
+public enum SqlCommandType {
+    SELECT,
+    INSERT,
+    UPDATE,
+    DELETE;
+
+    public static SqlCommandType of(String methodName) {
+        if (methodName.startsWith("select")) {
+            return SELECT;
+        } else if (methodName.startsWith("insert")) {
+            return INSERT;
+        } else if (methodName.startsWith("update")) {
+            return UPDATE;
+        } else if (methodName.startsWith("delete")) {
+            return DELETE;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,289 @@
+package cn.xej.mybatis;
+
+import cn.xej.mybatis.cache.LruCache;
+import cn.xej.mybatis.cache.PerpetualCache;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 会话：一次业务操作内的多个 Mapper 调用共用一个连接和一个事务
+ *
+ * 1、连接
+ *  - 第一次执行 SQL 时从主库借连接（分片表按分片各借一个），close 时归还
+ *  - 同一会话内按 SQL 文本复用 PreparedStatement（见 SessionConnection）
+ *  - 会话内的读也走主库，能读到本会话未提交的写
+ *
+ * 2、事务
+ *  - 默认关闭自动提交，commit / rollback 作用于会话借到的所有连接（分片之间不是两阶段提交）
+ *  - close 时未提交的写回滚
+ *
+ * 3、缓存
+ *  - 开启 localCacheEnabled 时会话内的所有 Mapper 共用一个一级缓存，写、commit、rollback 时清空
+ *  - 会话有未提交的写时不读写二级缓存，commit 后再清空写过的表的二级缓存
+ *
+ * 4、ExecutorType.BATCH 时连续的同一条写 SQL 攒成一个 JDBC 批（见 ExecutorType）
+ *
+ * 会话不是线程安全的，一个线程用完即 close：
+ * <pre>
+ * try (SqlSession session = factory.openSession()) {
+ *     UserMapper mapper = session.getMapper(UserMapper.class);
+ *     mapper.insert(user);
+ *     mapper.update(other);
+ *     session.commit();
+ * }
+ * </pre>
+ */
+public class SqlSession implements Closeable {
+
+    //每个连接最多缓存的 PreparedStatement 个数
+    private static final int MAX_CACHED_STATEMENTS = 256;
+
+    private final MySqlSessionFactory factory;
+    private final ExecutorType executorType;
+    private final boolean autoCommit;
+    private final PerpetualCache localCache;
+    //下标为分片号，未分片时只用第 0 个
+    private final SessionConnection[] connections;
+    //本会话写过、提交后要清空的二级缓存
+    private final Set<LruCache> dirtyCaches = new HashSet<>();
+    private boolean dirty;
+    private boolean closed;
+
+    //BATCH 模式下正在攒的批
+    private PreparedStatement batchStatement;
+    private String batchSql;
+    private int batchShard;
+    private int batchCount;
+
+    SqlSession(MySqlSessionFactory factory, ExecutorType executorType, boolean autoCommit) {
+        this.factory = factory;
+        this.executorType = executorType;
+        this.autoCommit = autoCommit;
+        this.localCache = factory.isLocalCacheEnabled() ? new PerpetualCache() : null;
+        this.connections = new SessionConnection[factory.getShardMap() == null ? 1 : factory.getShardMap().size()];
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T getMapper(Class<T> mapperClass) {
+        ensureOpen();
+        MapperInvocationHandler handler = new MapperInvocationHandler(factory.getMappedStatements(mapperClass),
+                factory.getDataSource(), factory.getDataSource(), localCache, factory.getAsyncExecutor(), factory.getMetrics(),
+                factory.getDirtyTracker(), this);
+        return (T) Proxy.newProxyInstance(mapperClass.getClassLoader(), new Class[]{mapperClass}, handler);
+    }
+
+    public ExecutorType getExecutorType() {
+        return executorType;
+    }
+
+    //shard 为 -1 表示未分片的表
+    synchronized Connection getConnection(int shard) throws SQLException {
+        ensureOpen();
+        int slot = shard < 0 ? 0 : shard;
+        SessionConnection connection = connections[slot];
+        if (connection == null) {
+            DataSource dataSource = shard < 0 ? factory.getDataSource() : factory.getShardMap().getShard(shard);
+            Connection real = dataSource.getConnection();
+            try {
+                if (real.getAutoCommit() != autoCommit) {
+                    real.setAutoCommit(autoCommit);
+                }
+            } catch (SQLException e) {
+                real.close();
+                throw e;
+            }
+            connection = new SessionConnection(real, MAX_CACHED_STATEMENTS);
+            connections[slot] = connection;
+        }
+        return connection.getProxy();
+    }
+
+    boolean isAutoCommit() {
+        return autoCommit;
+    }
+
+    boolean isBatch() {
+        return executorType == ExecutorType.BATCH;
+    }
+
+    /**
+     * 把一次写加入当前批：SQL 或分片和当前批不同时先发出当前批
+     *
+     * 返回 0，真正的受影响行数在 flushStatements 时才知道
+     */
+    synchronized void addBatch(MappedStatement ms, Object[] args, int shard) throws SQLException {
+        String sql = ms.getSql();
+        if (batchStatement != null && (!sql.equals(batchSql) || shard != batchShard)) {
+            flushStatements();
+        }
+        if (batchStatement == null) {
+            batchStatement = getConnection(shard).prepareStatement(sql);
+            batchSql = sql;
+            batchShard = shard;
+        }
+        if (ms.getArgumentKind() == MappedStatement.ArgumentKind.ENTITY) {
+            if (args[0] == null) {
+                throw new MapperException(ms.getId() + ": entity must not be null");
+            }
+            ms.bindEntity(batchStatement, args[0], 0);
+        } else {
+            ms.bindParameters(batchStatement, args);
+        }
+        batchStatement.addBatch();
+        batchCount++;
+    }
+
+    //发出攒着的批，返回这一批的受影响行数（驱动返回 SUCCESS_NO_INFO 时按 1 行计）；切换 SQL 时自动发出的批不计入
+    public synchronized long flushStatements() {
+        if (batchStatement == null) {
+            return 0;
+        }
+        PreparedStatement statement = batchStatement;
+        batchStatement = null;
+        batchSql = null;
+        batchCount = 0;
+        long updated = 0;
+        try {
+            for (int count : statement.executeBatch()) {
+                updated += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+            }
+        } catch (SQLException e) {
+            throw new MapperException("Error flushing batch statements", e);
+        } finally {
+            //归还给 SessionConnection 的缓存
+            closeQuietly(statement);
+        }
+        return updated;
+    }
+
+    //当前批里还没发出的写
+    public synchronized int getPendingBatchCount() {
+        return batchCount;
+    }
+
+    //写操作之后：清空一级缓存，记下要在提交后清空的二级缓存
+    synchronized void markDirty(LruCache cache) {
+        if (!autoCommit) {
+            dirty = true;
+            if (cache != null) {
+                dirtyCaches.add(cache);
+            }
+        }
+        if (localCache != null) {
+            localCache.clear();
+        }
+    }
+
+    //有未提交的写时查询不经过二级缓存
+    synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    public synchronized void commit() {
+        ensureOpen();
+        flushStatements();
+        try {
+            if (!autoCommit) {
+                for (SessionConnection connection : connections) {
+                    if (connection != null) {
+                        connection.getRealConnection().commit();
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new MapperException("Error committing transaction", e);
+        }
+        endTransaction();
+    }
+
+    public synchronized void rollback() {
+        ensureOpen();
+        discardBatch();
+        try {
+            if (!autoCommit) {
+                for (SessionConnection connection : connections) {
+                    if (connection != null) {
+                        connection.getRealConnection().rollback();
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new MapperException("Error rolling back transaction", e);
+        } finally {
+            endTransaction();
+        }
+    }
+
+    private void endTransaction() {
+        //提交或回滚之后其他会话写入的二级缓存可能已过期
+        for (LruCache cache : dirtyCaches) {
+            cache.clear();
+        }
+        dirtyCaches.clear();
+        dirty = false;
+        if (localCache != null) {
+            localCache.clear();
+        }
+    }
+
+    private void discardBatch() {
+        if (batchStatement != null) {
+            try {
+                batchStatement.clearBatch();
+            } catch (SQLException ignored) {
+            }
+            closeQuietly(batchStatement);
+            batchStatement = null;
+            batchSql = null;
+            batchCount = 0;
+        }
+    }
+
+    //未提交的写回滚，连接归还连接池
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        try {
+            if (dirty) {
+                rollback();
+            } else {
+                discardBatch();
+            }
+        } finally {
+            closed = true;
+            for (int i = 0; i < connections.length; i++) {
+                if (connections[i] != null) {
+                    connections[i].close();
+                    connections[i] = null;
+                }
+            }
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new MapperException("SqlSession is already closed");
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package cn.xej.mybatis;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 截止时间到了就取消语句
+ *
+ * setQueryTimeout 只精确到秒，而且依赖驱动的实现，所以两层都设：
+ *  - 语句超时设成剩余时间（向上取整到秒），驱动自己的超时作为兜底
+ *  - 共享的定时线程在截止时刻调用 Statement.cancel()，毫秒级
+ *
+ * 执行线程结束后 disarm：撤销还没触发的取消；取消正在进行时等它结束，之后连接上不会再有迟到的 cancel。
+ * 取消过的连接检查一次是否可用，不可用就 abort，连接池归还时发现已关闭会直接丢弃
+ */
+final class StatementCanceller implements Runnable {
+
+    private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "mybatis-query-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        //执行完的查询撤销定时，不让它们留在队列里
+        TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    private final Statement statement;
+    private ScheduledFuture<?> scheduled;
+    private boolean disarmed;
+    private boolean fired;
+
+    private StatementCanceller(Statement statement) {
+        this.statement = statement;
+    }
+
+    //设好语句超时并安排取消；已经过了截止时间就不执行，直接抛 QueryTimeoutException
+    static StatementCanceller arm(Statement statement, QueryDeadline deadline, String statementId) throws SQLException {
+        if (deadline.isExpired()) {
+            throw timedOut(statementId, null);
+        }
+        statement.setQueryTimeout(deadline.remainingSeconds());
+        StatementCanceller canceller = new StatementCanceller(statement);
+        canceller.scheduled = TIMER.schedule(canceller, Math.max(deadline.remainingNanos(), 0), TimeUnit.NANOSECONDS);
+        return canceller;
+    }
+
+    @Override
+    public synchronized void run() {
+        if (disarmed) {
+            return;
+        }
+        fired = true;
+        try {
+            statement.cancel();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    //撤销取消，返回是否已经取消过，可重复调用
+    synchronized boolean disarm() {
+        if (!disarmed) {
+            disarmed = true;
+            scheduled.cancel(false);
+        }
+        return fired;
+    }
+
+    //语句执行失败：取消过或驱动报超时都算超时
+    void checkTimedOut(SQLException e, String statementId) {
+        if (disarm() || e instanceof SQLTimeoutException) {
+            throw timedOut(statementId, e);
+        }
+    }
+
+    //取消过的连接不可用时直接 abort，不放回连接池
+    static void discardIfBroken(Connection connection) {
+        try {
+            if (!connection.isClosed() && !connection.isValid(1)) {
+                connection.abort(Runnable::run);
+            }
+        } catch (SQLException ignored) {
+        }
+    }
+
+    static QueryTimeoutException timedOut(String statementId, SQLException cause) {
+        return new QueryTimeoutException(statementId + ": query deadline exceeded", cause);
+    }
+}
@@ -9,4 +9,10 @@ import java.lang.annotation.Target;
 @Target(ElementType.TYPE)
 public @interface Table {
     String name() default "";
+
+    //主键列名，update/delete 实体时作为 WHERE 条件，自增主键回填到该字段
+    String id() default "id";
+
+    //分片键列名，为空表示不分片；工厂配置了 ShardMap 时按该列的值选分片，未分片的表都在第 0 个分片
+    String shardKey() default "";
 }
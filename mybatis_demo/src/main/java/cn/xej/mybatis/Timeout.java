@@ -0,0 +1,18 @@
+package cn.xej.mybatis;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * select 方法的超时时间（毫秒），标在接口上则为接口所有 select 方法的默认值，覆盖工厂的 defaultQueryTimeoutMillis
+ *
+ * 从调用开始计时，包括等连接池之后的执行和读结果；value = 0 表示该方法不设超时。
+ * 调用线程处于 QueryDeadline.within 的范围内时取两者中先到的那个
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface Timeout {
+    long value();
+}
@@ -0,0 +1,16 @@
+package cn.xej.mybatis;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 配置了从库时，该 select 方法（标在接口上则为接口的所有方法）总是读主库
+ *
+ * 用于不能容忍主从延迟的查询，例如写完立刻按主键读回
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface UsePrimary {
+}
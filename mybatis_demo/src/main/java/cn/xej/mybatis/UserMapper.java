@@ -1,7 +1,11 @@
 package cn.xej.mybatis;
 
+import java.io.OutputStream;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+//编译时由 mybatis_demo_processor 生成 UserMapperImpl
+@Mapper
 public interface UserMapper {
 
     User selectById(@Param(name = "id") int id);
@@ -9,4 +13,43 @@ public interface UserMapper {
     User selectByNameAndAge(@Param(name = "name") String name, @Param(name = "age") int age);
 
     List<User> selectByName(@Param(name = "name") String name);
+
+    //键集分页：for (PageRequest r = PageRequest.first(100); r != null; r = page.next()) page = selectPageByAge(age, r)
+    Page<User> selectPageByAge(@Param(name = "age") int age, PageRequest page);
+
+    //异步查询：在工厂的 asyncExecutor 上执行，取消 future 会取消正在执行的 SQL
+    CompletableFuture<List<User>> selectAsyncByName(@Param(name = "name") String name);
+
+    //全表扫描：逐行读取，MySQL 需在 URL 上加 useCursorFetch=true 才会按 fetchSize 分批拉取
+    @FetchSize(1000)
+    Cursor<User> selectAll();
+
+    //只查主键：按 getInt 读进 int[]，每行 4 字节
+    @Columns("id")
+    int[] selectIdsByAge(@Param(name = "age") int age);
+
+    //投影：只查 UserName 的 getter 对应的 id、name 两列
+    List<UserName> selectNamesByAge(@Param(name = "age") int age);
+
+    //导出：各行直接写成 JSON 数组 [{"id":1,"name":"a","age":10},...]，不创建 User 对象，返回行数；导出不受默认超时限制
+    @FetchSize(1000)
+    @Timeout(0)
+    long selectJsonByAge(@Param(name = "age") int age, OutputStream out);
+
+    int insert(User user);
+
+    //批量写入：每批一次往返，自增主键回填
+    @Options(useGeneratedKeys = true, multiRowValues = true)
+    int insertBatch(List<User> users);
+
+    int update(User user);
+
+    int deleteById(@Param(name = "id") int id);
+
+    interface UserName {
+
+        int getId();
+
+        String getName();
+    }
 }
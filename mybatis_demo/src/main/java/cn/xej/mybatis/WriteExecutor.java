@@ -0,0 +1,201 @@
+package cn.xej.mybatis;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 写语句执行器
+ *
+ * 1、@Param 参数 / 单个实体：executeUpdate 一次
+ * 2、实体集合：关闭自动提交，每 batchSize 条一次往返
+ *  - 默认 addBatch + executeBatch
+ *  - multiRowValues 时把一批改写成一条 INSERT ... VALUES (...),(...)
+ *  - 全部成功后提交，任何一批失败整体回滚
+ * 3、useGeneratedKeys 时按顺序把生成的主键回填到实体
+ *
+ * 返回受影响行数；驱动返回 SUCCESS_NO_INFO 时按 1 行计
+ */
+public final class WriteExecutor {
+
+    private WriteExecutor() {
+    }
+
+    public static long execute(Connection connection, MappedStatement ms, Object[] args) throws SQLException {
+        switch (ms.getArgumentKind()) {
+            case ENTITY:
+                return executeEntity(connection, ms, args[0]);
+            case COLLECTION:
+                return executeBatch(connection, ms, iterator(args[0]));
+            default:
+                try (PreparedStatement preparedStatement = connection.prepareStatement(ms.getSql())) {
+                    ms.bindParameters(preparedStatement, args);
+                    return preparedStatement.executeUpdate();
+                }
+        }
+    }
+
+    //只写变化列的 update(entity)，见 DirtyTracker
+    public static long executePartialUpdate(Connection connection, MappedStatement.PartialUpdate update, Object entity)
+            throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(update.getSql())) {
+            update.bind(preparedStatement, entity);
+            return preparedStatement.executeUpdate();
+        }
+    }
+
+    private static long executeEntity(Connection connection, MappedStatement ms, Object entity) throws SQLException {
+        if (entity == null) {
+            throw new MapperException(ms.getId() + ": entity must not be null");
+        }
+        try (PreparedStatement preparedStatement = prepare(connection, ms, ms.getSql())) {
+            ms.bindEntity(preparedStatement, entity, 0);
+            int updated = preparedStatement.executeUpdate();
+            if (ms.isUseGeneratedKeys()) {
+                assignKeys(preparedStatement, ms, Collections.singletonList(entity));
+            }
+            return updated;
+        }
+    }
+
+    private static long executeBatch(Connection connection, MappedStatement ms, Iterator<?> entities) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        if (autoCommit) {
+            connection.setAutoCommit(false);
+        }
+        try {
+            long updated = ms.isMultiRowValues()
+                    ? executeMultiRowValues(connection, ms, entities)
+                    : executeJdbcBatch(connection, ms, entities);
+            if (autoCommit) {
+                connection.commit();
+            }
+            return updated;
+        } catch (SQLException | RuntimeException e) {
+            if (autoCommit) {
+                connection.rollback();
+            }
+            throw e;
+        } finally {
+            if (autoCommit) {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static long executeJdbcBatch(Connection connection, MappedStatement ms, Iterator<?> entities) throws SQLException {
+        long updated = 0;
+        List<Object> chunk = new ArrayList<>(Math.min(ms.getBatchSize(), 1024));
+        try (PreparedStatement preparedStatement = prepare(connection, ms, ms.getSql())) {
+            while (entities.hasNext()) {
+                Object entity = entities.next();
+                ms.bindEntity(preparedStatement, entity, 0);
+                preparedStatement.addBatch();
+                chunk.add(entity);
+                if (chunk.size() == ms.getBatchSize()) {
+                    updated += flush(preparedStatement, ms, chunk);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                updated += flush(preparedStatement, ms, chunk);
+            }
+        }
+        return updated;
+    }
+
+    private static long flush(PreparedStatement preparedStatement, MappedStatement ms, List<Object> chunk) throws SQLException {
+        long updated = 0;
+        for (int count : preparedStatement.executeBatch()) {
+            updated += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+        }
+        if (ms.isUseGeneratedKeys()) {
+            assignKeys(preparedStatement, ms, chunk);
+        }
+        chunk.clear();
+        return updated;
+    }
+
+    //满批复用同一个 PreparedStatement，最后不足一批的单独拼一条
+    private static long executeMultiRowValues(Connection connection, MappedStatement ms, Iterator<?> entities) throws SQLException {
+        long updated = 0;
+        int columnCount = ms.getEntityColumnCount();
+        List<Object> chunk = new ArrayList<>(Math.min(ms.getBatchSize(), 1024));
+        PreparedStatement fullBatch = null;
+        try {
+            while (entities.hasNext()) {
+                chunk.add(entities.next());
+                if (chunk.size() == ms.getBatchSize()) {
+                    if (fullBatch == null) {
+                        fullBatch = prepare(connection, ms, ms.getMultiRowSql(chunk.size()));
+                    }
+                    updated += executeRows(fullBatch, ms, chunk, columnCount);
+                }
+            }
+        } finally {
+            if (fullBatch != null) {
+                fullBatch.close();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            try (PreparedStatement tail = prepare(connection, ms, ms.getMultiRowSql(chunk.size()))) {
+                updated += executeRows(tail, ms, chunk, columnCount);
+            }
+        }
+        return updated;
+    }
+
+    private static long executeRows(PreparedStatement preparedStatement, MappedStatement ms, List<Object> chunk,
+                                    int columnCount) throws SQLException {
+        for (int i = 0; i < chunk.size(); i++) {
+            ms.bindEntity(preparedStatement, chunk.get(i), i * columnCount);
+        }
+        int updated = preparedStatement.executeUpdate();
+        if (ms.isUseGeneratedKeys()) {
+            assignKeys(preparedStatement, ms, chunk);
+        }
+        chunk.clear();
+        return updated;
+    }
+
+    private static PreparedStatement prepare(Connection connection, MappedStatement ms, String sql) throws SQLException {
+        return ms.isUseGeneratedKeys()
+                ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                : connection.prepareStatement(sql);
+    }
+
+    private static void assignKeys(PreparedStatement preparedStatement, MappedStatement ms, List<Object> entities) throws SQLException {
+        EntityColumn idColumn = ms.getEntity().getIdColumn();
+        try (ResultSet keys = preparedStatement.getGeneratedKeys()) {
+            for (Object entity : entities) {
+                if (!keys.next()) {
+                    break;
+                }
+                idColumn.set(entity, convertKey(keys.getLong(1), idColumn.getType()));
+            }
+        }
+    }
+
+    private static Object convertKey(long key, Class<?> type) {
+        if (type == int.class || type == Integer.class) {
+            return (int) key;
+        } else if (type == String.class) {
+            return String.valueOf(key);
+        }
+        return key;
+    }
+
+    static Iterator<?> iterator(Object arg) {
+        if (arg instanceof Iterator) {
+            return (Iterator<?>) arg;
+        } else if (arg instanceof Iterable) {
+            return ((Iterable<?>) arg).iterator();
+        }
+        return Collections.emptyIterator();
+    }
+}
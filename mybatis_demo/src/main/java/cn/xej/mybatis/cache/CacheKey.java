@@ -0,0 +1,39 @@
+package cn.xej.mybatis.cache;
+
+import java.util.Arrays;
+
+//缓存键：映射语句 id + 绑定参数
+public final class CacheKey {
+
+    private final String statementId;
+    private final Object[] args;
+    private final int hashCode;
+
+    public CacheKey(String statementId, Object[] args) {
+        this.statementId = statementId;
+        this.args = args == null ? new Object[0] : args.clone();
+        this.hashCode = 31 * statementId.hashCode() + Arrays.deepHashCode(this.args);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CacheKey)) {
+            return false;
+        }
+        CacheKey that = (CacheKey) o;
+        return hashCode == that.hashCode && statementId.equals(that.statementId) && Arrays.deepEquals(args, that.args);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return statementId + Arrays.deepToString(args);
+    }
+}
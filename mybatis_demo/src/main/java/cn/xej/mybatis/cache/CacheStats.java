@@ -0,0 +1,73 @@
+package cn.xej.mybatis.cache;
+
+//缓存统计快照
+public final class CacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long expirations;
+    private final long invalidations;
+    private final int entries;
+    private final long bytes;
+
+    CacheStats(long hits, long misses, long evictions, long expirations, long invalidations, int entries, long bytes) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.invalidations = invalidations;
+        this.entries = entries;
+        this.bytes = bytes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    //因条数或大小超限被淘汰的条目数
+    public long getEvictions() {
+        return evictions;
+    }
+
+    //因 TTL 过期被移除的条目数
+    public long getExpirations() {
+        return expirations;
+    }
+
+    //因写操作被整表清空的次数
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    public int getEntries() {
+        return entries;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "hits=" + hits +
+                ", misses=" + misses +
+                ", hitRate=" + getHitRate() +
+                ", evictions=" + evictions +
+                ", expirations=" + expirations +
+                ", invalidations=" + invalidations +
+                ", entries=" + entries +
+                ", bytes=" + bytes +
+                '}';
+    }
+}
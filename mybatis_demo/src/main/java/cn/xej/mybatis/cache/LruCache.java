@@ -0,0 +1,116 @@
+package cn.xej.mybatis.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * 二级缓存：按条数和估算字节数限制的 LRU，支持 TTL
+ *
+ * 写操作调用 clear 整表失效，同时代数 +1；
+ * 查询前记下代数，查完只有代数没变才放入缓存，避免并发写入后又放进旧数据
+ */
+public class LruCache {
+
+    private final String name;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long ttlNanos;
+    private final ToLongFunction<Object> weigher;
+
+    //accessOrder = true：get 会把条目移到队尾，队头就是最久未访问的
+    private final LinkedHashMap<CacheKey, Entry> map = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public LruCache(String name, int maxEntries, long maxBytes, long ttlSeconds, ToLongFunction<Object> weigher) {
+        this.name = name;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.weigher = weigher;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    //未命中返回 null
+    public synchronized Object get(CacheKey key) {
+        Entry entry = map.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (ttlNanos > 0 && System.nanoTime() - entry.createdAt > ttlNanos) {
+            map.remove(key);
+            bytes -= entry.weight;
+            expirations.increment();
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    public synchronized long generation() {
+        return generation;
+    }
+
+    //只有在查询期间没有发生失效时才放入
+    public synchronized void put(CacheKey key, Object value, long expectedGeneration) {
+        if (expectedGeneration != generation) {
+            return;
+        }
+        long weight = maxBytes > 0 ? weigher.applyAsLong(value) : 0;
+        if (maxBytes > 0 && weight > maxBytes) {
+            return;
+        }
+        Entry old = map.put(key, new Entry(value, weight, System.nanoTime()));
+        if (old != null) {
+            bytes -= old.weight;
+        }
+        bytes += weight;
+        Iterator<Map.Entry<CacheKey, Entry>> it = map.entrySet().iterator();
+        while ((map.size() > maxEntries || (maxBytes > 0 && bytes > maxBytes)) && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            bytes -= eldest.weight;
+            evictions.increment();
+        }
+    }
+
+    public synchronized void clear() {
+        map.clear();
+        bytes = 0;
+        generation++;
+        invalidations.increment();
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), invalidations.sum(),
+                map.size(), bytes);
+    }
+
+    private static final class Entry {
+
+        private final Object value;
+        private final long weight;
+        private final long createdAt;
+
+        private Entry(Object value, long weight, long createdAt) {
+            this.value = value;
+            this.weight = weight;
+            this.createdAt = createdAt;
+        }
+    }
+}
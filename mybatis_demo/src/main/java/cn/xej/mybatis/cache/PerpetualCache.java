@@ -0,0 +1,30 @@
+package cn.xej.mybatis.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 一级缓存：不限大小，随会话存在
+ *
+ * 通过同一会话的任意写操作都会清空
+ */
+public class PerpetualCache {
+
+    private final Map<CacheKey, Object> map = new ConcurrentHashMap<>();
+
+    public Object get(CacheKey key) {
+        return map.get(key);
+    }
+
+    public void put(CacheKey key, Object value) {
+        map.put(key, value);
+    }
+
+    public void clear() {
+        map.clear();
+    }
+
+    public int size() {
+        return map.size();
+    }
+}
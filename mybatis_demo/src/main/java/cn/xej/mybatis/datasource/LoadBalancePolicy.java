@@ -0,0 +1,9 @@
+package cn.xej.mybatis.datasource;
+
+//读请求在从库之间的分配方式
+public enum LoadBalancePolicy {
+    //遍历所有健康从库，选当前借出连接最少的（并列时轮询）
+    LEAST_OUTSTANDING,
+    //随机挑两个健康从库，选借出连接少的那个，从库多时比全量遍历便宜，也不会全部涌向同一个
+    POWER_OF_TWO_CHOICES
+}
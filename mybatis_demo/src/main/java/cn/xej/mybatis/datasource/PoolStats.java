@@ -0,0 +1,93 @@
+package cn.xej.mybatis.datasource;
+
+import java.util.concurrent.TimeUnit;
+
+//连接池统计快照
+public final class PoolStats {
+
+    private final int activeConnections;
+    private final int idleConnections;
+    private final int totalConnections;
+    private final int waiters;
+    private final long borrowCount;
+    private final long waitCount;
+    private final long totalWaitNanos;
+    private final long maxWaitNanos;
+    private final long timeoutCount;
+    private final long leakCount;
+
+    PoolStats(int activeConnections, int idleConnections, int totalConnections, int waiters, long borrowCount,
+              long waitCount, long totalWaitNanos, long maxWaitNanos, long timeoutCount, long leakCount) {
+        this.activeConnections = activeConnections;
+        this.idleConnections = idleConnections;
+        this.totalConnections = totalConnections;
+        this.waiters = waiters;
+        this.borrowCount = borrowCount;
+        this.waitCount = waitCount;
+        this.totalWaitNanos = totalWaitNanos;
+        this.maxWaitNanos = maxWaitNanos;
+        this.timeoutCount = timeoutCount;
+        this.leakCount = leakCount;
+    }
+
+    public int getActiveConnections() {
+        return activeConnections;
+    }
+
+    public int getIdleConnections() {
+        return idleConnections;
+    }
+
+    public int getTotalConnections() {
+        return totalConnections;
+    }
+
+    public int getWaiters() {
+        return waiters;
+    }
+
+    public long getBorrowCount() {
+        return borrowCount;
+    }
+
+    //借连接时发生排队的次数
+    public long getWaitCount() {
+        return waitCount;
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos;
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos;
+    }
+
+    public double getAverageWaitMillis() {
+        return waitCount == 0 ? 0 : (double) totalWaitNanos / waitCount / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    public long getLeakCount() {
+        return leakCount;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolStats{" +
+                "active=" + activeConnections +
+                ", idle=" + idleConnections +
+                ", total=" + totalConnections +
+                ", waiters=" + waiters +
+                ", borrowCount=" + borrowCount +
+                ", waitCount=" + waitCount +
+                ", avgWaitMillis=" + getAverageWaitMillis() +
+                ", maxWaitMillis=" + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) +
+                ", timeoutCount=" + timeoutCount +
+                ", leakCount=" + leakCount +
+                '}';
+    }
+}
@@ -0,0 +1,117 @@
+package cn.xej.mybatis.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 池化连接
+ *
+ * 和 Mapper 一样用 jdk 动态代理包一层真实连接：
+ *  - close() 不关闭真实连接，而是归还给连接池
+ *  - 归还之后再调用其它方法直接报错，避免误用已归还的连接
+ */
+class PooledConnection implements InvocationHandler {
+
+    private static final String CLOSE = "close";
+    private static final String IS_CLOSED = "isClosed";
+
+    private final PooledDataSource dataSource;
+    private final Connection realConnection;
+    private final long createdAt;
+
+    //最近一次归还时间，用于空闲回收和借出校验
+    private volatile long lastReturnedAt;
+    //最近一次借出时间及借出位置（开启泄漏检测时才记录堆栈）
+    private volatile long borrowedAt;
+    private volatile Throwable borrowSite;
+    private volatile boolean leakReported;
+
+    //当前借出的代理连接，归还后置为 null；用 CAS 换掉，同一个代理并发 close 时只有一次真正归还
+    private final AtomicReference<Connection> proxyConnection = new AtomicReference<>();
+
+    PooledConnection(PooledDataSource dataSource, Connection realConnection) {
+        this.dataSource = dataSource;
+        this.realConnection = realConnection;
+        this.createdAt = System.currentTimeMillis();
+        this.lastReturnedAt = createdAt;
+    }
+
+    Connection borrow(boolean captureStack) {
+        borrowedAt = System.currentTimeMillis();
+        borrowSite = captureStack ? new Throwable("Connection borrowed here") : null;
+        leakReported = false;
+        Connection proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class[]{Connection.class}, this);
+        proxyConnection.set(proxy);
+        return proxy;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if (CLOSE.equals(name)) {
+            if (proxyConnection.compareAndSet((Connection) proxy, null)) {
+                dataSource.pushConnection(this);
+            }
+            return null;
+        }
+        if (IS_CLOSED.equals(name)) {
+            return proxyConnection.get() != proxy || realConnection.isClosed();
+        }
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(this, args);
+        }
+        if (proxyConnection.get() != proxy) {
+            throw new SQLException("Connection has already been returned to the pool");
+        }
+        try {
+            return method.invoke(realConnection, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    Connection getRealConnection() {
+        return realConnection;
+    }
+
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    long getLastReturnedAt() {
+        return lastReturnedAt;
+    }
+
+    void setLastReturnedAt(long lastReturnedAt) {
+        this.lastReturnedAt = lastReturnedAt;
+    }
+
+    long getBorrowedAt() {
+        return borrowedAt;
+    }
+
+    Throwable getBorrowSite() {
+        return borrowSite;
+    }
+
+    boolean isLeakReported() {
+        return leakReported;
+    }
+
+    void setLeakReported(boolean leakReported) {
+        this.leakReported = leakReported;
+    }
+
+    void closeQuietly() {
+        try {
+            realConnection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
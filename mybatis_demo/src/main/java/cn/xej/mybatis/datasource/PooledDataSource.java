@@ -0,0 +1,472 @@
+package cn.xej.mybatis.datasource;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * 池化数据源
+ *
+ * 1、借连接
+ *  - 优先取空闲连接（后进先出，热连接优先）
+ *  - 没有空闲且未到最大连接数时新建
+ *  - 到达最大连接数时按先来后到排队等待，超过 maxWait 抛出 SQLException
+ *  - 空闲超过 validationInterval 的连接借出前先 isValid 校验
+ *
+ * 2、还连接
+ *  - 代理连接 close() 时回滚未提交事务、恢复自动提交，放回空闲队列并唤醒一个等待者
+ *
+ * 3、后台维护线程
+ *  - 回收空闲超过 idleTimeout 的连接（保留 minIdle 个）
+ *  - 补足 minIdle
+ *  - 借出超过 leakDetectionThreshold 未归还时打印借出位置的堆栈
+ */
+public class PooledDataSource implements DataSource {
+
+    private final String url;
+    private final String username;
+    private final String password;
+
+    private volatile int minIdle = 0;
+    private volatile int maxActive = 10;
+    private volatile long maxWaitMillis = 30_000;
+    private volatile long idleTimeoutMillis = 600_000;
+    private volatile boolean testOnBorrow = true;
+    //空闲不足该时长的连接借出时不再校验，避免每次借出都多一次网络往返
+    private volatile long validationIntervalMillis = 500;
+    private volatile int validationTimeoutSeconds = 5;
+    //0 表示关闭泄漏检测
+    private volatile long leakDetectionThresholdMillis = 0;
+    private volatile long housekeepingPeriodMillis = 30_000;
+
+    //公平锁 + 条件队列：等待者按到达顺序被唤醒
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition available = lock.newCondition();
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<PooledConnection> active = ConcurrentHashMap.newKeySet();
+    //已创建（含创建中）的连接数，受 lock 保护
+    private int total;
+    private int waiters;
+    private boolean closed;
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong waitCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+
+    private ScheduledExecutorService housekeeper;
+
+    public PooledDataSource(String url, String username, String password) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return popConnection().borrow(leakDetectionThresholdMillis > 0);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("PooledDataSource only supports its configured credentials");
+    }
+
+    private PooledConnection popConnection() throws SQLException {
+        long start = System.nanoTime();
+        long remaining = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        boolean waited = false;
+        try {
+            while (true) {
+                PooledConnection conn = null;
+                boolean create = false;
+                lock.lock();
+                try {
+                    startHousekeeperIfNeeded();
+                    while (idle.isEmpty() && total >= maxActive) {
+                        if (closed) {
+                            throw new SQLException("PooledDataSource has been closed");
+                        }
+                        if (remaining <= 0) {
+                            timeoutCount.incrementAndGet();
+                            throw new SQLException("Timed out after " + maxWaitMillis + "ms waiting for a connection, "
+                                    + "active=" + active.size() + ", max=" + maxActive + ", waiters=" + waiters);
+                        }
+                        waited = true;
+                        waiters++;
+                        try {
+                            remaining = available.awaitNanos(remaining);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new SQLException("Interrupted while waiting for a connection", e);
+                        } finally {
+                            waiters--;
+                        }
+                    }
+                    if (closed) {
+                        throw new SQLException("PooledDataSource has been closed");
+                    }
+                    conn = idle.pollFirst();
+                    if (conn == null) {
+                        total++;
+                        create = true;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+
+                if (create) {
+                    conn = createConnection();
+                } else if (!validate(conn)) {
+                    discard(conn);
+                    remaining = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis) - (System.nanoTime() - start);
+                    continue;
+                }
+                active.add(conn);
+                borrowCount.incrementAndGet();
+                return conn;
+            }
+        } finally {
+            if (waited) {
+                long waitNanos = System.nanoTime() - start;
+                waitCount.incrementAndGet();
+                totalWaitNanos.addAndGet(waitNanos);
+                maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+            }
+        }
+    }
+
+    void pushConnection(PooledConnection conn) throws SQLException {
+        active.remove(conn);
+        Connection real = conn.getRealConnection();
+        try {
+            //归还前恢复干净状态
+            if (!real.isClosed() && !real.getAutoCommit()) {
+                real.rollback();
+                real.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            discard(conn);
+            throw e;
+        }
+        lock.lock();
+        try {
+            if (closed || real.isClosed()) {
+                total--;
+                conn.closeQuietly();
+            } else {
+                conn.setLastReturnedAt(System.currentTimeMillis());
+                idle.addFirst(conn);
+            }
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        try {
+            return new PooledConnection(this, DriverManager.getConnection(url, username, password));
+        } catch (SQLException | RuntimeException e) {
+            lock.lock();
+            try {
+                total--;
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    private boolean validate(PooledConnection conn) {
+        if (!testOnBorrow || System.currentTimeMillis() - conn.getLastReturnedAt() < validationIntervalMillis) {
+            return true;
+        }
+        try {
+            return conn.getRealConnection().isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(PooledConnection conn) {
+        active.remove(conn);
+        conn.closeQuietly();
+        lock.lock();
+        try {
+            total--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void startHousekeeperIfNeeded() {
+        if (housekeeper == null && !closed) {
+            housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "mybatis-pool-housekeeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            housekeeper.scheduleWithFixedDelay(this::housekeep, housekeepingPeriodMillis,
+                    housekeepingPeriodMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void housekeep() {
+        long now = System.currentTimeMillis();
+        List<PooledConnection> evicted = new ArrayList<>();
+        int missing;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            //空闲队列尾部是最久没用的连接
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && idle.size() > minIdle) {
+                PooledConnection conn = it.next();
+                if (now - conn.getLastReturnedAt() < idleTimeoutMillis) {
+                    break;
+                }
+                it.remove();
+                evicted.add(conn);
+            }
+            total -= evicted.size();
+            missing = Math.max(0, Math.min(minIdle - idle.size(), maxActive - total));
+            total += missing;
+        } finally {
+            lock.unlock();
+        }
+        for (PooledConnection conn : evicted) {
+            conn.closeQuietly();
+        }
+        for (int i = 0; i < missing; i++) {
+            try {
+                PooledConnection conn = createConnection();
+                boolean poolClosed;
+                lock.lock();
+                try {
+                    //新建连接期间连接池可能已经关闭
+                    poolClosed = closed;
+                    if (poolClosed) {
+                        total--;
+                    } else {
+                        idle.addLast(conn);
+                        available.signal();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                if (poolClosed) {
+                    conn.closeQuietly();
+                    for (int j = i + 1; j < missing; j++) {
+                        releaseReservation();
+                    }
+                    break;
+                }
+            } catch (SQLException e) {
+                //createConnection 已经归还了名额，剩下的交给下一轮维护
+                for (int j = i + 1; j < missing; j++) {
+                    releaseReservation();
+                }
+                break;
+            }
+        }
+        detectLeaks(now);
+    }
+
+    private void releaseReservation() {
+        lock.lock();
+        try {
+            total--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void detectLeaks(long now) {
+        long threshold = leakDetectionThresholdMillis;
+        if (threshold <= 0) {
+            return;
+        }
+        for (PooledConnection conn : active) {
+            if (!conn.isLeakReported() && now - conn.getBorrowedAt() > threshold) {
+                conn.setLeakReported(true);
+                leakCount.incrementAndGet();
+                System.err.println("Connection leak detection triggered, connection borrowed "
+                        + (now - conn.getBorrowedAt()) + "ms ago has not been returned");
+                Throwable borrowSite = conn.getBorrowSite();
+                if (borrowSite != null) {
+                    borrowSite.printStackTrace();
+                }
+            }
+        }
+    }
+
+    public PoolStats getPoolStats() {
+        lock.lock();
+        try {
+            return new PoolStats(active.size(), idle.size(), total, waiters, borrowCount.get(), waitCount.get(),
+                    totalWaitNanos.get(), maxWaitNanos.get(), timeoutCount.get(), leakCount.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //关闭连接池：关闭空闲连接，借出中的连接归还时再关闭
+    public void close() {
+        List<PooledConnection> toClose;
+        lock.lock();
+        try {
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            total -= toClose.size();
+            available.signalAll();
+            if (housekeeper != null) {
+                housekeeper.shutdownNow();
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (PooledConnection conn : toClose) {
+            conn.closeQuietly();
+        }
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public void setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    public int getMaxActive() {
+        return maxActive;
+    }
+
+    public void setMaxActive(int maxActive) {
+        this.maxActive = maxActive;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public void setMaxWaitMillis(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public boolean isTestOnBorrow() {
+        return testOnBorrow;
+    }
+
+    public void setTestOnBorrow(boolean testOnBorrow) {
+        this.testOnBorrow = testOnBorrow;
+    }
+
+    public long getValidationIntervalMillis() {
+        return validationIntervalMillis;
+    }
+
+    public void setValidationIntervalMillis(long validationIntervalMillis) {
+        this.validationIntervalMillis = validationIntervalMillis;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    public long getLeakDetectionThresholdMillis() {
+        return leakDetectionThresholdMillis;
+    }
+
+    public void setLeakDetectionThresholdMillis(long leakDetectionThresholdMillis) {
+        this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+    }
+
+    public long getHousekeepingPeriodMillis() {
+        return housekeepingPeriodMillis;
+    }
+
+    //需在第一次借连接之前设置
+    public void setHousekeepingPeriodMillis(long housekeepingPeriodMillis) {
+        this.housekeepingPeriodMillis = housekeepingPeriodMillis;
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        DriverManager.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() {
+        return Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException(getClass().getName() + " is not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
@@ -0,0 +1,345 @@
+package cn.xej.mybatis.datasource;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * 读写分离数据源：一个主库、若干从库
+ *
+ * 1、getConnection() 总是返回主库连接（写、事务、不区分读写的调用方）
+ *
+ * 2、getReadDataSource().getConnection() 按 policy 选一个从库
+ *  - 只在健康从库中选；借连接失败时记一次失败，换下一个从库
+ *  - 没有可用从库时退回主库
+ *  - 当前线程处于 usePrimary() 范围内时直接用主库（事务中的读、需要读到自己刚写的数据）
+ *
+ * 3、健康摘除：见 Replica
+ */
+public class ReadWriteDataSource implements DataSource {
+
+    //usePrimary() 嵌套层数
+    private static final ThreadLocal<int[]> PRIMARY_DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+
+    private final DataSource primary;
+    private final Replica[] replicas;
+    private final DataSource readDataSource = new ReadDataSource();
+    //LEAST_OUTSTANDING 并列时的轮询起点
+    private final AtomicInteger nextIndex = new AtomicInteger();
+
+    private volatile LoadBalancePolicy policy = LoadBalancePolicy.POWER_OF_TWO_CHOICES;
+    private volatile int failureThreshold = 3;
+    private volatile long ejectMillis = 10_000;
+    private volatile long maxEjectMillis = 300_000;
+
+    public ReadWriteDataSource(DataSource primary, List<? extends DataSource> replicas) {
+        //借连接时用 long 位图记录已经试过的从库
+        if (replicas.size() > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " replicas are supported, got " + replicas.size());
+        }
+        this.primary = primary;
+        this.replicas = new Replica[replicas.size()];
+        for (int i = 0; i < this.replicas.length; i++) {
+            DataSource replica = replicas.get(i);
+            String name = replica instanceof PooledDataSource ? ((PooledDataSource) replica).getUrl() : "replica-" + i;
+            this.replicas[i] = new Replica(name, replica);
+        }
+    }
+
+    /**
+     * 当前线程在返回值 close 之前的读都走主库，可嵌套
+     *
+     * <pre>
+     * try (ReadWriteDataSource.PrimaryScope ignored = ReadWriteDataSource.usePrimary()) {
+     *     mapper.insert(user);
+     *     mapper.selectById(user.getId());
+     * }
+     * </pre>
+     */
+    public static PrimaryScope usePrimary() {
+        int[] depth = PRIMARY_DEPTH.get();
+        depth[0]++;
+        return new PrimaryScope(depth);
+    }
+
+    public static boolean isPrimaryForced() {
+        return PRIMARY_DEPTH.get()[0] > 0;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    //读请求使用的数据源
+    public DataSource getReadDataSource() {
+        return readDataSource;
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public List<DataSource> getReplicas() {
+        List<DataSource> list = new ArrayList<>(replicas.length);
+        for (Replica replica : replicas) {
+            list.add(replica.getDataSource());
+        }
+        return list;
+    }
+
+    private Connection getReadConnection() throws SQLException {
+        if (replicas.length == 0 || isPrimaryForced()) {
+            return primary.getConnection();
+        }
+        //每个从库最多试一次
+        long tried = 0;
+        for (int attempt = 0; attempt < replicas.length; attempt++) {
+            int index = choose(System.nanoTime(), tried);
+            if (index < 0) {
+                break;
+            }
+            tried |= 1L << index;
+            Replica replica = replicas[index];
+            replica.acquired();
+            try {
+                return ReplicaConnection.wrap(this, replica, replica.getDataSource().getConnection());
+            } catch (SQLException | RuntimeException e) {
+                replica.released();
+                failed(replica);
+            }
+        }
+        return primary.getConnection();
+    }
+
+    //返回选中从库的下标，没有可选的返回 -1；tried 为本次已经试过的从库
+    private int choose(long now, long tried) {
+        int healthy = 0;
+        for (int i = 0; i < replicas.length; i++) {
+            if (isCandidate(i, now, tried)) {
+                healthy++;
+            }
+        }
+        if (healthy == 0) {
+            return -1;
+        }
+        if (healthy == 1) {
+            return nth(0, now, tried);
+        }
+        if (policy == LoadBalancePolicy.POWER_OF_TWO_CHOICES) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(healthy);
+            int second = random.nextInt(healthy - 1);
+            if (second >= first) {
+                second++;
+            }
+            int a = nth(first, now, tried);
+            int b = nth(second, now, tried);
+            return replicas[b].getOutstanding() < replicas[a].getOutstanding() ? b : a;
+        }
+        int start = Math.floorMod(nextIndex.getAndIncrement(), replicas.length);
+        int best = -1;
+        for (int k = 0; k < replicas.length; k++) {
+            int i = (start + k) % replicas.length;
+            if (isCandidate(i, now, tried) && (best < 0 || replicas[i].getOutstanding() < replicas[best].getOutstanding())) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private boolean isCandidate(int index, long now, long tried) {
+        return (tried & (1L << index)) == 0 && replicas[index].isAvailable(now);
+    }
+
+    //第 n 个（从 0 开始）候选从库的下标
+    private int nth(int n, long now, long tried) {
+        for (int i = 0; i < replicas.length; i++) {
+            if (isCandidate(i, now, tried) && n-- == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    void failed(Replica replica) {
+        replica.recordFailure(failureThreshold, TimeUnit.MILLISECONDS.toNanos(ejectMillis),
+                TimeUnit.MILLISECONDS.toNanos(maxEjectMillis));
+    }
+
+    public List<ReplicaStats> getReplicaStats() {
+        List<ReplicaStats> stats = new ArrayList<>(replicas.length);
+        for (Replica replica : replicas) {
+            stats.add(replica.getStats());
+        }
+        return stats;
+    }
+
+    //关闭主库和从库中的连接池
+    public void close() {
+        if (primary instanceof PooledDataSource) {
+            ((PooledDataSource) primary).close();
+        }
+        for (Replica replica : replicas) {
+            if (replica.getDataSource() instanceof PooledDataSource) {
+                ((PooledDataSource) replica.getDataSource()).close();
+            }
+        }
+    }
+
+    public LoadBalancePolicy getPolicy() {
+        return policy;
+    }
+
+    public void setPolicy(LoadBalancePolicy policy) {
+        this.policy = policy;
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    //连续多少次连接级错误后摘除
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    public long getEjectMillis() {
+        return ejectMillis;
+    }
+
+    //第一次摘除的时长，之后每次试探失败翻倍
+    public void setEjectMillis(long ejectMillis) {
+        this.ejectMillis = ejectMillis;
+    }
+
+    public long getMaxEjectMillis() {
+        return maxEjectMillis;
+    }
+
+    public void setMaxEjectMillis(long maxEjectMillis) {
+        this.maxEjectMillis = maxEjectMillis;
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return primary.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        primary.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        primary.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return primary.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return primary.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+
+    //usePrimary() 的作用范围
+    public static final class PrimaryScope implements AutoCloseable {
+
+        private final int[] depth;
+        private boolean closed;
+
+        private PrimaryScope(int[] depth) {
+            this.depth = depth;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                depth[0]--;
+            }
+        }
+    }
+
+    //从库视图：只有 getConnection() 走路由，其余委托给 ReadWriteDataSource
+    private final class ReadDataSource implements DataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return getReadConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            throw new SQLFeatureNotSupportedException("Replica routing only supports the configured credentials");
+        }
+
+        @Override
+        public PrintWriter getLogWriter() throws SQLException {
+            return ReadWriteDataSource.this.getLogWriter();
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) throws SQLException {
+            ReadWriteDataSource.this.setLogWriter(out);
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) throws SQLException {
+            ReadWriteDataSource.this.setLoginTimeout(seconds);
+        }
+
+        @Override
+        public int getLoginTimeout() throws SQLException {
+            return ReadWriteDataSource.this.getLoginTimeout();
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            return ReadWriteDataSource.this.getParentLogger();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            if (iface.isInstance(this)) {
+                return iface.cast(this);
+            }
+            return ReadWriteDataSource.this.unwrap(iface);
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) throws SQLException {
+            return iface.isInstance(this) || ReadWriteDataSource.this.isWrapperFor(iface);
+        }
+    }
+}
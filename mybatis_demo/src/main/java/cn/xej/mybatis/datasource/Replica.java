@@ -0,0 +1,99 @@
+package cn.xej.mybatis.datasource;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一个从库：借出计数和健康状态
+ *
+ * 连续 failureThreshold 次连接级错误后摘除 ejectMillis，到期后放回试探；
+ * 试探又失败则摘除时间翻倍（最多 maxEjectMillis），成功一次清零
+ */
+final class Replica {
+
+    private final String name;
+    private final DataSource dataSource;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong ejectCount = new AtomicLong();
+    //摘除到期时间（System.nanoTime），0 表示健康
+    private volatile long ejectedUntil;
+    private volatile long ejectNanos;
+
+    Replica(String name, DataSource dataSource) {
+        this.name = name;
+        this.dataSource = dataSource;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    DataSource getDataSource() {
+        return dataSource;
+    }
+
+    boolean isAvailable(long now) {
+        long until = ejectedUntil;
+        return until == 0 || now - until >= 0;
+    }
+
+    int getOutstanding() {
+        return outstanding.get();
+    }
+
+    void acquired() {
+        outstanding.incrementAndGet();
+        borrowCount.incrementAndGet();
+    }
+
+    void released() {
+        outstanding.decrementAndGet();
+    }
+
+    void recordSuccess() {
+        if (consecutiveFailures.get() != 0 || ejectedUntil != 0) {
+            consecutiveFailures.set(0);
+            ejectedUntil = 0;
+            ejectNanos = 0;
+        }
+    }
+
+    void recordFailure(int failureThreshold, long baseEjectNanos, long maxEjectNanos) {
+        failureCount.incrementAndGet();
+        if (consecutiveFailures.incrementAndGet() < failureThreshold) {
+            return;
+        }
+        synchronized (this) {
+            //试探期间多个请求同时失败只算一次摘除
+            if (ejectedUntil != 0 && !isAvailable(System.nanoTime())) {
+                return;
+            }
+            ejectNanos = ejectNanos == 0 ? baseEjectNanos : Math.min(ejectNanos * 2, maxEjectNanos);
+            long until = System.nanoTime() + ejectNanos;
+            ejectedUntil = until == 0 ? 1 : until;
+            ejectCount.incrementAndGet();
+        }
+    }
+
+    //只有连接级错误（SQLState 08xxx、连接超时/断开）才算从库不健康，SQL 写错之类的不算
+    static boolean isConnectionFailure(SQLException e) {
+        if (e instanceof SQLTransientConnectionException || e instanceof SQLNonTransientConnectionException) {
+            return true;
+        }
+        String state = e.getSQLState();
+        return state != null && state.startsWith("08");
+    }
+
+    ReplicaStats getStats() {
+        return new ReplicaStats(name, outstanding.get(), !isAvailable(System.nanoTime()), borrowCount.get(),
+                failureCount.get(), ejectCount.get());
+    }
+}
@@ -0,0 +1,92 @@
+package cn.xej.mybatis.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 从库连接
+ *
+ * 和 PooledConnection 一样用 jdk 动态代理包一层：
+ *  - close() 时从库的借出计数减一，期间没有连接级错误就算一次成功
+ *  - 连接及其创建的 Statement 抛出连接级错误时记一次失败
+ */
+class ReplicaConnection implements InvocationHandler {
+
+    private static final String CLOSE = "close";
+
+    private final ReadWriteDataSource owner;
+    private final Replica replica;
+    private final Connection connection;
+    private boolean closed;
+    private volatile boolean failed;
+
+    private ReplicaConnection(ReadWriteDataSource owner, Replica replica, Connection connection) {
+        this.owner = owner;
+        this.replica = replica;
+        this.connection = connection;
+    }
+
+    static Connection wrap(ReadWriteDataSource owner, Replica replica, Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{Connection.class},
+                new ReplicaConnection(owner, replica, connection));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (CLOSE.equals(method.getName()) && method.getParameterCount() == 0) {
+            close();
+            return null;
+        }
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(this, args);
+        }
+        Object result = forward(connection, method, args);
+        if (result instanceof Statement) {
+            return wrapStatement((Statement) result, method.getReturnType());
+        }
+        return result;
+    }
+
+    private synchronized void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            connection.close();
+        } finally {
+            replica.released();
+            if (!failed) {
+                replica.recordSuccess();
+            }
+        }
+    }
+
+    private Object forward(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException && Replica.isConnectionFailure((SQLException) cause) && !failed) {
+                failed = true;
+                owner.failed(replica);
+            }
+            throw cause;
+        }
+    }
+
+    //Statement / PreparedStatement / CallableStatement 按 prepareXxx 的返回类型代理
+    private Object wrapStatement(Statement statement, Class<?> type) {
+        return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(statement, args);
+            }
+            return forward(statement, method, args);
+        });
+    }
+}
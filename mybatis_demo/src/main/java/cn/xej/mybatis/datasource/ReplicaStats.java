@@ -0,0 +1,59 @@
+package cn.xej.mybatis.datasource;
+
+//从库统计快照
+public final class ReplicaStats {
+
+    private final String name;
+    private final int outstanding;
+    private final boolean ejected;
+    private final long borrowCount;
+    private final long failureCount;
+    private final long ejectCount;
+
+    ReplicaStats(String name, int outstanding, boolean ejected, long borrowCount, long failureCount, long ejectCount) {
+        this.name = name;
+        this.outstanding = outstanding;
+        this.ejected = ejected;
+        this.borrowCount = borrowCount;
+        this.failureCount = failureCount;
+        this.ejectCount = ejectCount;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    //当前借出未归还的连接数
+    public int getOutstanding() {
+        return outstanding;
+    }
+
+    public boolean isEjected() {
+        return ejected;
+    }
+
+    public long getBorrowCount() {
+        return borrowCount;
+    }
+
+    //连接级错误次数
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    public long getEjectCount() {
+        return ejectCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplicaStats{" +
+                "name=" + name +
+                ", outstanding=" + outstanding +
+                ", ejected=" + ejected +
+                ", borrowCount=" + borrowCount +
+                ", failureCount=" + failureCount +
+                ", ejectCount=" + ejectCount +
+                '}';
+    }
+}
@@ -0,0 +1,103 @@
+package cn.xej.mybatis.metrics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 一个 MySqlSessionFactory 下所有 Mapper 方法的统计
+ *
+ * 慢查询：耗时超过阈值的调用交给 slowQueryListener（默认打印到 System.err），
+ * 同时保留最近 slowQueryCapacity 条供 getSlowQueries 查看
+ */
+public class MetricsRegistry {
+
+    private final Map<String, StatementMetrics> statements = new ConcurrentHashMap<>();
+
+    //0 表示关闭慢查询日志
+    private volatile long slowQueryThresholdNanos = TimeUnit.SECONDS.toNanos(1);
+    private volatile Consumer<SlowQuery> slowQueryListener = slowQuery -> System.err.println(slowQuery);
+    private int slowQueryCapacity = 100;
+    private final Deque<SlowQuery> slowQueries = new ArrayDeque<>();
+
+    public StatementMetrics statement(String id, String sql) {
+        return statements.computeIfAbsent(id, key -> new StatementMetrics(id, sql));
+    }
+
+    //调用方先用 isSlow 判断，只有慢查询才去收集参数类型
+    public boolean isSlow(long elapsedNanos) {
+        long threshold = slowQueryThresholdNanos;
+        return threshold > 0 && elapsedNanos >= threshold;
+    }
+
+    public void recordSlowQuery(StatementMetrics metrics, Object[] args, long elapsedNanos, long rows) {
+        SlowQuery slowQuery = new SlowQuery(System.currentTimeMillis(), metrics.getId(), metrics.getSql(),
+                parameterTypes(args), elapsedNanos / 1e6, rows);
+        synchronized (slowQueries) {
+            if (slowQueries.size() >= slowQueryCapacity) {
+                slowQueries.pollFirst();
+            }
+            slowQueries.addLast(slowQuery);
+        }
+        Consumer<SlowQuery> listener = slowQueryListener;
+        if (listener != null) {
+            listener.accept(slowQuery);
+        }
+    }
+
+    private static List<String> parameterTypes(Object[] args) {
+        if (args == null) {
+            return Collections.emptyList();
+        }
+        List<String> types = new ArrayList<>(args.length);
+        for (Object arg : args) {
+            types.add(arg == null ? "null" : arg.getClass().getSimpleName());
+        }
+        return types;
+    }
+
+    //各 Mapper 方法的统计，key 为 接口全名.方法名
+    public Map<String, StatementStats> snapshot() {
+        Map<String, StatementStats> stats = new TreeMap<>();
+        for (StatementMetrics metrics : statements.values()) {
+            stats.put(metrics.getId(), metrics.snapshot());
+        }
+        return stats;
+    }
+
+    //最近的慢查询，按发生先后排列
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            return new ArrayList<>(slowQueries);
+        }
+    }
+
+    public long getSlowQueryThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowQueryThresholdNanos);
+    }
+
+    public void setSlowQueryThresholdMillis(long slowQueryThresholdMillis) {
+        this.slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryThresholdMillis);
+    }
+
+    //传 null 只保留最近记录，不输出
+    public void setSlowQueryListener(Consumer<SlowQuery> slowQueryListener) {
+        this.slowQueryListener = slowQueryListener;
+    }
+
+    public void setSlowQueryCapacity(int slowQueryCapacity) {
+        synchronized (slowQueries) {
+            this.slowQueryCapacity = slowQueryCapacity;
+            while (slowQueries.size() > slowQueryCapacity) {
+                slowQueries.pollFirst();
+            }
+        }
+    }
+}
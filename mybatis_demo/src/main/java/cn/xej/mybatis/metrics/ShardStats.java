@@ -0,0 +1,53 @@
+package cn.xej.mybatis.metrics;
+
+//单个 Mapper 方法在某个分片上的统计快照，时间单位为毫秒
+public final class ShardStats {
+
+    private final int shard;
+    private final long calls;
+    private final long rows;
+    private final double meanMillis;
+    private final double p99Millis;
+    private final double maxMillis;
+
+    ShardStats(int shard, long calls, long rows, double meanMillis, double p99Millis, double maxMillis) {
+        this.shard = shard;
+        this.calls = calls;
+        this.rows = rows;
+        this.meanMillis = meanMillis;
+        this.p99Millis = p99Millis;
+        this.maxMillis = maxMillis;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + shard + "{calls=" + calls + ", rows=" + rows
+                + ", mean=" + String.format("%.3f", meanMillis)
+                + ", p99=" + String.format("%.3f", p99Millis)
+                + ", max=" + String.format("%.3f", maxMillis) + '}';
+    }
+}
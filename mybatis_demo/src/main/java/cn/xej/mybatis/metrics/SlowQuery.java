@@ -0,0 +1,58 @@
+package cn.xej.mybatis.metrics;
+
+import java.util.List;
+
+/**
+ * 一条慢查询记录
+ *
+ * 只记 SQL 形状（带占位符）和参数类型，不记参数值，避免把业务数据写进日志
+ */
+public final class SlowQuery {
+
+    private final long timestampMillis;
+    private final String statementId;
+    private final String sql;
+    private final List<String> parameterTypes;
+    private final double elapsedMillis;
+    private final long rows;
+
+    SlowQuery(long timestampMillis, String statementId, String sql, List<String> parameterTypes, double elapsedMillis,
+              long rows) {
+        this.timestampMillis = timestampMillis;
+        this.statementId = statementId;
+        this.sql = sql;
+        this.parameterTypes = parameterTypes;
+        this.elapsedMillis = elapsedMillis;
+        this.rows = rows;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public String getStatementId() {
+        return statementId;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public List<String> getParameterTypes() {
+        return parameterTypes;
+    }
+
+    public double getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    @Override
+    public String toString() {
+        return "Slow query " + statementId + " took " + String.format("%.3f", elapsedMillis) + "ms, rows=" + rows
+                + ", sql=[" + sql + "], parameterTypes=" + parameterTypes;
+    }
+}
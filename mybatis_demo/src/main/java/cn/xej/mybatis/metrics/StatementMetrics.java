@@ -0,0 +1,103 @@
+package cn.xej.mybatis.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个 Mapper 方法的计数器，解析时创建并挂在 MappedStatement 上，调用时无需查表
+ *
+ * 总耗时记直方图；执行（executeQuery/executeUpdate）、映射（逐行生成对象）、
+ * 等连接池三段只记累计值，用来看时间花在哪一段
+ */
+public final class StatementMetrics {
+
+    private final String id;
+    private final String sql;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder executeNanos = new LongAdder();
+    private final LongAdder mapNanos = new LongAdder();
+    private final LongAdder poolWaitNanos = new LongAdder();
+    //分片执行时各分片的耗时和行数，用来看分片之间是否倾斜；未分片为 null
+    private volatile LatencyHistogram[] shardLatency;
+    private volatile LongAdder[] shardRows;
+
+    StatementMetrics(String id, String sql) {
+        this.id = id;
+        this.sql = sql;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    //一次调用结束：总耗时、返回/影响的行数
+    public void record(long elapsedNanos, long rowCount) {
+        latency.recordNanos(elapsedNanos);
+        rows.add(rowCount);
+    }
+
+    public void recordError(long elapsedNanos) {
+        latency.recordNanos(elapsedNanos);
+        errors.increment();
+    }
+
+    public void addExecuteNanos(long nanos) {
+        executeNanos.add(nanos);
+    }
+
+    public void addMapNanos(long nanos) {
+        mapNanos.add(nanos);
+    }
+
+    public void addPoolWaitNanos(long nanos) {
+        poolWaitNanos.add(nanos);
+    }
+
+    //解析时按分片数分配，同一方法重复解析（多个工厂共用统计）时保留已有计数
+    public synchronized void enableShards(int shardCount) {
+        if (shardLatency != null && shardLatency.length == shardCount) {
+            return;
+        }
+        LatencyHistogram[] latencies = new LatencyHistogram[shardCount];
+        LongAdder[] rowCounts = new LongAdder[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            latencies[i] = new LatencyHistogram();
+            rowCounts[i] = new LongAdder();
+        }
+        shardRows = rowCounts;
+        shardLatency = latencies;
+    }
+
+    //单个分片上的一次执行
+    public void recordShard(int shard, long elapsedNanos, long rowCount) {
+        LatencyHistogram[] latencies = shardLatency;
+        LongAdder[] rowCounts = shardRows;
+        if (latencies != null && shard < latencies.length && shard < rowCounts.length) {
+            latencies[shard].recordNanos(elapsedNanos);
+            rowCounts[shard].add(rowCount);
+        }
+    }
+
+    public StatementStats snapshot() {
+        List<ShardStats> shards = new ArrayList<>();
+        LatencyHistogram[] latencies = shardLatency;
+        LongAdder[] rowCounts = shardRows;
+        if (latencies != null) {
+            for (int i = 0; i < latencies.length && i < rowCounts.length; i++) {
+                LatencyHistogram histogram = latencies[i];
+                shards.add(new ShardStats(i, histogram.getCount(), rowCounts[i].sum(), histogram.getMeanMillis(),
+                        histogram.getPercentileMillis(99), histogram.getMaxMillis()));
+            }
+        }
+        return new StatementStats(id, latency.getCount(), errors.sum(), rows.sum(), latency.getMeanMillis(),
+                latency.getPercentileMillis(50), latency.getPercentileMillis(95), latency.getPercentileMillis(99),
+                latency.getMaxMillis(), executeNanos.sum() / 1e6, mapNanos.sum() / 1e6, poolWaitNanos.sum() / 1e6, shards);
+    }
+}
@@ -0,0 +1,114 @@
+package cn.xej.mybatis.metrics;
+
+import java.util.Collections;
+import java.util.List;
+
+//单个 Mapper 方法的统计快照，时间单位均为毫秒
+public final class StatementStats {
+
+    private final String id;
+    private final long calls;
+    private final long errors;
+    private final long rows;
+    private final double meanMillis;
+    private final double p50Millis;
+    private final double p95Millis;
+    private final double p99Millis;
+    private final double maxMillis;
+    private final double totalExecuteMillis;
+    private final double totalMapMillis;
+    private final double totalPoolWaitMillis;
+    private final List<ShardStats> shards;
+
+    StatementStats(String id, long calls, long errors, long rows, double meanMillis, double p50Millis, double p95Millis,
+                   double p99Millis, double maxMillis, double totalExecuteMillis, double totalMapMillis,
+                   double totalPoolWaitMillis, List<ShardStats> shards) {
+        this.id = id;
+        this.calls = calls;
+        this.errors = errors;
+        this.rows = rows;
+        this.meanMillis = meanMillis;
+        this.p50Millis = p50Millis;
+        this.p95Millis = p95Millis;
+        this.p99Millis = p99Millis;
+        this.maxMillis = maxMillis;
+        this.totalExecuteMillis = totalExecuteMillis;
+        this.totalMapMillis = totalMapMillis;
+        this.totalPoolWaitMillis = totalPoolWaitMillis;
+        this.shards = Collections.unmodifiableList(shards);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    //调用次数，含失败和缓存命中
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    //select 返回的行数 / 写方法影响的行数
+    public long getRows() {
+        return rows;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP95Millis() {
+        return p95Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    public double getTotalExecuteMillis() {
+        return totalExecuteMillis;
+    }
+
+    public double getTotalMapMillis() {
+        return totalMapMillis;
+    }
+
+    public double getTotalPoolWaitMillis() {
+        return totalPoolWaitMillis;
+    }
+
+    //各分片的统计，未分片时为空
+    public List<ShardStats> getShards() {
+        return shards;
+    }
+
+    @Override
+    public String toString() {
+        return "StatementStats{" +
+                "id=" + id +
+                ", calls=" + calls +
+                ", errors=" + errors +
+                ", rows=" + rows +
+                ", mean=" + String.format("%.3f", meanMillis) +
+                ", p50=" + String.format("%.3f", p50Millis) +
+                ", p95=" + String.format("%.3f", p95Millis) +
+                ", p99=" + String.format("%.3f", p99Millis) +
+                ", max=" + String.format("%.3f", maxMillis) +
+                ", execute=" + String.format("%.3f", totalExecuteMillis) +
+                ", map=" + String.format("%.3f", totalMapMillis) +
+                ", poolWait=" + String.format("%.3f", totalPoolWaitMillis) +
+                (shards.isEmpty() ? "" : ", shards=" + shards) +
+                '}';
+    }
+}
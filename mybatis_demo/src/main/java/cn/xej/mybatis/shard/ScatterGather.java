@@ -0,0 +1,73 @@
+package cn.xej.mybatis.shard;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 在多个分片上并行执行同一个操作，按分片顺序返回结果
+ *
+ * 第 0 个分片由调用线程执行，其余提交给线程池；等待结果时还没被线程池取走的任务由调用线程自己执行。
+ * 所以线程池排满、或者调用方本身就在这个线程池里（异步 Mapper 方法）时都不会互相等死
+ */
+public final class ScatterGather {
+
+    @FunctionalInterface
+    public interface ShardCall<T> {
+        T call(int shard) throws SQLException;
+    }
+
+    private ScatterGather() {
+    }
+
+    public static <T> List<T> execute(Executor executor, int shards, ShardCall<T> call) throws SQLException {
+        List<FutureTask<T>> tasks = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            int shard = i;
+            tasks.add(new FutureTask<>(() -> call.call(shard)));
+        }
+        for (int i = 1; i < shards; i++) {
+            try {
+                executor.execute(tasks.get(i));
+            } catch (RejectedExecutionException ignored) {
+                //下面由调用线程执行
+            }
+        }
+        List<T> results = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            FutureTask<T> task = tasks.get(i);
+            //已经开始或结束的任务 run() 什么也不做
+            task.run();
+            try {
+                results.add(task.get());
+            } catch (ExecutionException e) {
+                for (int j = i + 1; j < shards; j++) {
+                    tasks.get(j).cancel(false);
+                }
+                throw rethrow(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (int j = i; j < shards; j++) {
+                    tasks.get(j).cancel(false);
+                }
+                throw new SQLException("Interrupted while waiting for shard " + i, e);
+            }
+        }
+        return results;
+    }
+
+    private static SQLException rethrow(Throwable cause) {
+        if (cause instanceof SQLException) {
+            return (SQLException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new SQLException(cause);
+    }
+}
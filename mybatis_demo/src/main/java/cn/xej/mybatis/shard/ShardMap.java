@@ -0,0 +1,78 @@
+package cn.xej.mybatis.shard;
+
+import cn.xej.mybatis.MapperException;
+import cn.xej.mybatis.datasource.PooledDataSource;
+import cn.xej.mybatis.datasource.ReadWriteDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 分片表：下标即分片号
+ *
+ * 每个分片可以是普通数据源，也可以是带从库的 ReadWriteDataSource（分片内的读再按从库负载均衡）
+ */
+public final class ShardMap {
+
+    private final List<DataSource> shards;
+    private final DataSource[] readShards;
+    private final ShardingStrategy strategy;
+
+    public ShardMap(List<? extends DataSource> shards) {
+        this(shards, ShardingStrategy.MODULO);
+    }
+
+    public ShardMap(List<? extends DataSource> shards, ShardingStrategy strategy) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("ShardMap requires at least one shard");
+        }
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        this.readShards = new DataSource[shards.size()];
+        for (int i = 0; i < readShards.length; i++) {
+            DataSource shard = shards.get(i);
+            readShards[i] = shard instanceof ReadWriteDataSource ? ((ReadWriteDataSource) shard).getReadDataSource() : shard;
+        }
+        this.strategy = strategy;
+    }
+
+    public int size() {
+        return readShards.length;
+    }
+
+    public List<DataSource> getShards() {
+        return shards;
+    }
+
+    //写和 @UsePrimary 的读
+    public DataSource getShard(int shard) {
+        return shards.get(shard);
+    }
+
+    public DataSource getReadShard(int shard) {
+        return readShards[shard];
+    }
+
+    public int shardFor(Object key) {
+        if (key == null) {
+            throw new MapperException("Shard key must not be null");
+        }
+        int shard = strategy.shardFor(key, readShards.length);
+        if (shard < 0 || shard >= readShards.length) {
+            throw new MapperException("Sharding strategy returned shard " + shard + " for key " + key
+                    + ", expected 0.." + (readShards.length - 1));
+        }
+        return shard;
+    }
+
+    public void close() {
+        for (DataSource shard : shards) {
+            if (shard instanceof PooledDataSource) {
+                ((PooledDataSource) shard).close();
+            } else if (shard instanceof ReadWriteDataSource) {
+                ((ReadWriteDataSource) shard).close();
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package cn.xej.mybatis.shard;
+
+//分片键的值 -> 分片下标（0 ~ shardCount - 1）
+@FunctionalInterface
+public interface ShardingStrategy {
+
+    //整数按值取模，其余按 hashCode 取模（String.hashCode 在各 JVM 上一致）
+    ShardingStrategy MODULO = (key, shardCount) -> {
+        if (key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte) {
+            return (int) Math.floorMod(((Number) key).longValue(), (long) shardCount);
+        }
+        return Math.floorMod(key.hashCode(), shardCount);
+    };
+
+    int shardFor(Object key, int shardCount);
+}
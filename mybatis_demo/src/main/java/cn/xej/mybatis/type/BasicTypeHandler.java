@@ -0,0 +1,48 @@
+package cn.xej.mybatis.type;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 由一对 setter/getter 组成的 TypeHandler，注册表里的大部分对象类型都用它
+ *
+ * null 参数写 setNull(sqlType)；getter 返回后检查 wasNull，因此 getter 可以直接调用 rs.getFloat 这类原始类型方法
+ */
+public final class BasicTypeHandler<T> implements TypeHandler<T> {
+
+    @FunctionalInterface
+    public interface Setter<T> {
+        void set(PreparedStatement ps, int index, T value) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface Getter<T> {
+        T get(ResultSet rs, int column) throws SQLException;
+    }
+
+    private final int sqlType;
+    private final Setter<T> setter;
+    private final Getter<T> getter;
+
+    public BasicTypeHandler(int sqlType, Setter<T> setter, Getter<T> getter) {
+        this.sqlType = sqlType;
+        this.setter = setter;
+        this.getter = getter;
+    }
+
+    @Override
+    public void setParameter(PreparedStatement ps, int index, T value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, sqlType);
+        } else {
+            setter.set(ps, index, value);
+        }
+    }
+
+    @Override
+    public T getResult(ResultSet rs, int column) throws SQLException {
+        T value = getter.get(rs, column);
+        return rs.wasNull() ? null : value;
+    }
+}
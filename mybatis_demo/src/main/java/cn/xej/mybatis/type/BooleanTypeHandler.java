@@ -0,0 +1,43 @@
+package cn.xej.mybatis.type;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * boolean / Boolean
+ *
+ * MySQL 的 TINYINT(1)/BIT(1) 由驱动转换成 boolean；boolean 字段读写不装箱
+ */
+public final class BooleanTypeHandler implements TypeHandler<Boolean> {
+
+    public static final BooleanTypeHandler INSTANCE = new BooleanTypeHandler();
+
+    private BooleanTypeHandler() {
+    }
+
+    public void setBoolean(PreparedStatement ps, int index, boolean value) throws SQLException {
+        ps.setBoolean(index, value);
+    }
+
+    //SQL NULL 返回 JDBC 默认值
+    public boolean getBoolean(ResultSet rs, int column) throws SQLException {
+        return rs.getBoolean(column);
+    }
+
+    @Override
+    public void setParameter(PreparedStatement ps, int index, Boolean value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.BOOLEAN);
+        } else {
+            ps.setBoolean(index, value);
+        }
+    }
+
+    @Override
+    public Boolean getResult(ResultSet rs, int column) throws SQLException {
+        boolean value = rs.getBoolean(column);
+        return rs.wasNull() ? null : value;
+    }
+}
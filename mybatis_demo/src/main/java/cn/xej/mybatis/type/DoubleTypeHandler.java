@@ -0,0 +1,43 @@
+package cn.xej.mybatis.type;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * double / Double
+ *
+ * double 字段按原始类型读写；需要精确小数的列请用 BigDecimal
+ */
+public final class DoubleTypeHandler implements TypeHandler<Double> {
+
+    public static final DoubleTypeHandler INSTANCE = new DoubleTypeHandler();
+
+    private DoubleTypeHandler() {
+    }
+
+    public void setDouble(PreparedStatement ps, int index, double value) throws SQLException {
+        ps.setDouble(index, value);
+    }
+
+    //SQL NULL 返回 JDBC 默认值
+    public double getDouble(ResultSet rs, int column) throws SQLException {
+        return rs.getDouble(column);
+    }
+
+    @Override
+    public void setParameter(PreparedStatement ps, int index, Double value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.DOUBLE);
+        } else {
+            ps.setDouble(index, value);
+        }
+    }
+
+    @Override
+    public Double getResult(ResultSet rs, int column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+}
@@ -0,0 +1,44 @@
+package cn.xej.mybatis.type;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+
+//枚举按 name() 存成字符串，读取时查预先建好的 name -> 常量表，不走 Enum.valueOf 的反射路径
+public final class EnumTypeHandler<E extends Enum<E>> implements TypeHandler<E> {
+
+    private final Class<E> type;
+    private final Map<String, E> constants = new HashMap<>();
+
+    public EnumTypeHandler(Class<E> type) {
+        this.type = type;
+        for (E constant : type.getEnumConstants()) {
+            constants.put(constant.name(), constant);
+        }
+    }
+
+    @Override
+    public void setParameter(PreparedStatement ps, int index, E value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.VARCHAR);
+        } else {
+            ps.setString(index, value.name());
+        }
+    }
+
+    @Override
+    public E getResult(ResultSet rs, int column) throws SQLException {
+        String name = rs.getString(column);
+        if (name == null) {
+            return null;
+        }
+        E constant = constants.get(name);
+        if (constant == null) {
+            throw new SQLException("No enum constant " + type.getName() + "." + name + " for column " + column);
+        }
+        return constant;
+    }
+}
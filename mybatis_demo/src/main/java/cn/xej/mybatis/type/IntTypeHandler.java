@@ -0,0 +1,43 @@
+package cn.xej.mybatis.type;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * int / Integer
+ *
+ * int 字段和实体参数走 setInt/getInt，不装箱；Integer 参数和字段走 TypeHandler 接口，支持 null
+ */
+public final class IntTypeHandler implements TypeHandler<Integer> {
+
+    public static final IntTypeHandler INSTANCE = new IntTypeHandler();
+
+    private IntTypeHandler() {
+    }
+
+    public void setInt(PreparedStatement ps, int index, int value) throws SQLException {
+        ps.setInt(index, value);
+    }
+
+    //SQL NULL 返回 JDBC 默认值
+    public int getInt(ResultSet rs, int column) throws SQLException {
+        return rs.getInt(column);
+    }
+
+    @Override
+    public void setParameter(PreparedStatement ps, int index, Integer value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.INTEGER);
+        } else {
+            ps.setInt(index, value);
+        }
+    }
+
+    @Override
+    public Integer getResult(ResultSet rs, int column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? null : value;
+    }
+}
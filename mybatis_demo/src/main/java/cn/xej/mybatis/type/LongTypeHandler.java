@@ -0,0 +1,43 @@
+package cn.xej.mybatis.type;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * long / Long
+ *
+ * 自增主键、时间戳、金额（分）等 long 列：实体字段读写走 setLong/getLong，不经过 Long 对象
+ */
+public final class LongTypeHandler implements TypeHandler<Long> {
+
+    public static final LongTypeHandler INSTANCE = new LongTypeHandler();
+
+    private LongTypeHandler() {
+    }
+
+    public void setLong(PreparedStatement ps, int index, long value) throws SQLException {
+        ps.setLong(index, value);
+    }
+
+    //SQL NULL 返回 JDBC 默认值
+    public long getLong(ResultSet rs, int column) throws SQLException {
+        return rs.getLong(column);
+    }
+
+    @Override
+    public void setParameter(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.BIGINT);
+        } else {
+            ps.setLong(index, value);
+        }
+    }
+
+    @Override
+    public Long getResult(ResultSet rs, int column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+}
@@ -0,0 +1,25 @@
+package cn.xej.mybatis.type;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+//注册表里没有的类型：交给驱动的 setObject / getObject(column, type) 转换
+public final class ObjectTypeHandler<T> implements TypeHandler<T> {
+
+    private final Class<T> type;
+
+    public ObjectTypeHandler(Class<T> type) {
+        this.type = type;
+    }
+
+    @Override
+    public void setParameter(PreparedStatement ps, int index, T value) throws SQLException {
+        ps.setObject(index, value);
+    }
+
+    @Override
+    public T getResult(ResultSet rs, int column) throws SQLException {
+        return type == Object.class ? type.cast(rs.getObject(column)) : rs.getObject(column, type);
+    }
+}
@@ -0,0 +1,19 @@
+package cn.xej.mybatis.type;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Java 类型与 JDBC 之间的转换
+ *
+ * 解析 Mapper 和实体时按参数/字段类型从 TypeHandlerRegistry 取一次，调用时不再判断类型
+ */
+public interface TypeHandler<T> {
+
+    //value 为 null 时写入 SQL NULL
+    void setParameter(PreparedStatement ps, int index, T value) throws SQLException;
+
+    //SQL NULL 返回 null
+    T getResult(ResultSet rs, int column) throws SQLException;
+}
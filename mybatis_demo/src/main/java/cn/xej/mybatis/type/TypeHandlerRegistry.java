@@ -0,0 +1,120 @@
+package cn.xej.mybatis.type;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 类型处理器注册表
+ *
+ * 内置：int/long/double/boolean 及其包装类型、float/short/byte 及其包装类型、String、BigDecimal、byte[]、
+ * LocalDate/LocalDateTime/LocalTime/Instant（经 java.sql.Date/Timestamp/Time 转换，老驱动也能用）、枚举（按 name）；
+ * 其余类型交给驱动的 setObject/getObject
+ *
+ * 与 EntityMetadata、RowMapperCompiler 的缓存一样是全局的：自定义处理器需在第一次 getMapper 之前 register
+ */
+public final class TypeHandlerRegistry {
+
+    private static final TypeHandlerRegistry INSTANCE = new TypeHandlerRegistry();
+
+    private final Map<Class<?>, TypeHandler<?>> handlers = new ConcurrentHashMap<>();
+    //getTypeHandler 为未注册类型按需建的处理器（枚举按 name、其余交给驱动），不算注册过
+    private final Map<Class<?>, TypeHandler<?>> fallbacks = new ConcurrentHashMap<>();
+    //内置处理器，用于判断某类型是否被 register 覆盖过
+    private final Map<Class<?>, TypeHandler<?>> builtIns;
+
+    private TypeHandlerRegistry() {
+        register(int.class, IntTypeHandler.INSTANCE);
+        register(Integer.class, IntTypeHandler.INSTANCE);
+        register(long.class, LongTypeHandler.INSTANCE);
+        register(Long.class, LongTypeHandler.INSTANCE);
+        register(double.class, DoubleTypeHandler.INSTANCE);
+        register(Double.class, DoubleTypeHandler.INSTANCE);
+        register(boolean.class, BooleanTypeHandler.INSTANCE);
+        register(Boolean.class, BooleanTypeHandler.INSTANCE);
+
+        BasicTypeHandler<Float> floatHandler = new BasicTypeHandler<>(Types.REAL,
+                (ps, i, v) -> ps.setFloat(i, v), (rs, c) -> rs.getFloat(c));
+        register(float.class, floatHandler);
+        register(Float.class, floatHandler);
+        BasicTypeHandler<Short> shortHandler = new BasicTypeHandler<>(Types.SMALLINT,
+                (ps, i, v) -> ps.setShort(i, v), (rs, c) -> rs.getShort(c));
+        register(short.class, shortHandler);
+        register(Short.class, shortHandler);
+        BasicTypeHandler<Byte> byteHandler = new BasicTypeHandler<>(Types.TINYINT,
+                (ps, i, v) -> ps.setByte(i, v), (rs, c) -> rs.getByte(c));
+        register(byte.class, byteHandler);
+        register(Byte.class, byteHandler);
+
+        register(String.class, new BasicTypeHandler<>(Types.VARCHAR, (ps, i, v) -> ps.setString(i, v),
+                (rs, c) -> rs.getString(c)));
+        register(BigDecimal.class, new BasicTypeHandler<>(Types.DECIMAL, (ps, i, v) -> ps.setBigDecimal(i, v),
+                (rs, c) -> rs.getBigDecimal(c)));
+        register(byte[].class, new BasicTypeHandler<>(Types.VARBINARY, (ps, i, v) -> ps.setBytes(i, v),
+                (rs, c) -> rs.getBytes(c)));
+
+        register(LocalDate.class, new BasicTypeHandler<>(Types.DATE, (ps, i, v) -> ps.setDate(i, Date.valueOf(v)),
+                (rs, c) -> {
+                    Date date = rs.getDate(c);
+                    return date == null ? null : date.toLocalDate();
+                }));
+        register(LocalDateTime.class, new BasicTypeHandler<>(Types.TIMESTAMP,
+                (ps, i, v) -> ps.setTimestamp(i, Timestamp.valueOf(v)),
+                (rs, c) -> {
+                    Timestamp timestamp = rs.getTimestamp(c);
+                    return timestamp == null ? null : timestamp.toLocalDateTime();
+                }));
+        register(LocalTime.class, new BasicTypeHandler<>(Types.TIME, (ps, i, v) -> ps.setTime(i, Time.valueOf(v)),
+                (rs, c) -> {
+                    Time time = rs.getTime(c);
+                    return time == null ? null : time.toLocalTime();
+                }));
+        register(Instant.class, new BasicTypeHandler<>(Types.TIMESTAMP,
+                (ps, i, v) -> ps.setTimestamp(i, Timestamp.from(v)),
+                (rs, c) -> {
+                    Timestamp timestamp = rs.getTimestamp(c);
+                    return timestamp == null ? null : timestamp.toInstant();
+                }));
+        builtIns = new HashMap<>(handlers);
+    }
+
+    public static TypeHandlerRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    //覆盖内置处理器时，int/long/double/boolean 字段会改走装箱的 TypeHandler 接口
+    public <T> void register(Class<T> type, TypeHandler<? super T> handler) {
+        handlers.put(type, handler);
+    }
+
+    //找不到时枚举按 name 处理，其余交给驱动；同一类型多次调用返回同一个处理器
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public <T> TypeHandler<T> getTypeHandler(Class<T> type) {
+        TypeHandler<?> handler = handlers.get(type);
+        if (handler == null) {
+            handler = fallbacks.computeIfAbsent(type, key -> key.isEnum()
+                    ? new EnumTypeHandler(key) : new ObjectTypeHandler<>(key));
+        }
+        return (TypeHandler<T>) handler;
+    }
+
+    //该类型仍使用内置处理器（编译期生成的 Mapper 实现按内置规则读写，被覆盖时要退回动态代理）
+    public boolean isBuiltIn(Class<?> type) {
+        TypeHandler<?> builtIn = builtIns.get(type);
+        return builtIn != null && builtIn == handlers.get(type);
+    }
+
+    //只看注册过的处理器和枚举，与之前是否对该类型调用过 getTypeHandler 无关
+    public boolean hasTypeHandler(Class<?> type) {
+        return handlers.containsKey(type) || type.isEnum();
+    }
+}
@@ -0,0 +1,143 @@
+package cn.xej.mybatis;
+
+import cn.xej.mybatis.datasource.PooledDataSource;
+import cn.xej.mybatis.shard.ShardMap;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 单列游标的行可以是 null（SQL NULL），不能当成读完
+ */
+public class CursorTest {
+
+    public interface NameMapper {
+        User selectById(@Param(name = "id") int id);
+
+        @Columns("name")
+        List<String> selectNamesByAge(@Param(name = "age") int age);
+
+        @Columns("name")
+        Cursor<String> selectNameCursorByAge(@Param(name = "age") int age);
+
+        @Columns("name")
+        Stream<String> selectNameStreamByAge(@Param(name = "age") int age);
+
+        @Columns("name")
+        Iterator<String> selectNameIteratorByAge(@Param(name = "age") int age);
+    }
+
+    @Table(name = "user", shardKey = "id")
+    public static class ShardedUser {
+        private int id;
+        private String name;
+        private int age;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+    }
+
+    public interface ShardedNameMapper {
+        ShardedUser selectById(@Param(name = "id") int id);
+
+        @Columns("name")
+        Cursor<String> selectNameCursorByAge(@Param(name = "age") int age);
+    }
+
+    private final List<PooledDataSource> dataSources = new ArrayList<>();
+    private MySqlSessionFactory factory;
+
+    @After
+    public void tearDown() {
+        if (factory != null) {
+            factory.close();
+        }
+        for (PooledDataSource dataSource : dataSources) {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void nullRowsDoNotEndIteration() {
+        factory = new MySqlSessionFactory(database("cursor", "(1, 'a', 1)", "(2, NULL, 1)", "(3, 'c', 1)"));
+        NameMapper mapper = factory.getMapper(NameMapper.class);
+        List<String> expected = Arrays.asList("a", null, "c");
+
+        Assert.assertEquals(expected, mapper.selectNamesByAge(1));
+
+        try (Cursor<String> cursor = mapper.selectNameCursorByAge(1)) {
+            List<String> names = new ArrayList<>();
+            cursor.forEach(names::add);
+            Assert.assertEquals(expected, names);
+            Assert.assertTrue(cursor.isConsumed());
+            Assert.assertEquals(3, cursor.getCurrentIndex());
+        }
+
+        try (Stream<String> stream = mapper.selectNameStreamByAge(1)) {
+            Assert.assertEquals(expected, stream.collect(Collectors.toList()));
+        }
+
+        List<String> names = new ArrayList<>();
+        mapper.selectNameIteratorByAge(1).forEachRemaining(names::add);
+        Assert.assertEquals(expected, names);
+    }
+
+    @Test
+    public void nullRowsDoNotEndShardedIteration() {
+        ShardMap shardMap = new ShardMap(Arrays.asList(
+                database("cursor_shard0", "(1, 'a', 1)", "(2, NULL, 1)"),
+                database("cursor_shard1", "(3, NULL, 1)", "(4, 'd', 1)")));
+        factory = new MySqlSessionFactory(shardMap);
+        ShardedNameMapper mapper = factory.getMapper(ShardedNameMapper.class);
+
+        try (Cursor<String> cursor = mapper.selectNameCursorByAge(1)) {
+            List<String> names = new ArrayList<>();
+            cursor.forEach(names::add);
+            Assert.assertEquals(Arrays.asList("a", null, null, "d"), names);
+            Assert.assertTrue(cursor.isConsumed());
+        }
+    }
+
+    private PooledDataSource database(String name, String... rows) {
+        PooledDataSource dataSource = new PooledDataSource("jdbc:h2:mem:" + name + ";MODE=MySQL;NON_KEYWORDS=USER", "sa", "");
+        dataSources.add(dataSource);
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table user(id int primary key, name varchar(20), age int)");
+            statement.execute("insert into user values " + String.join(", ", rows));
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        return dataSource;
+    }
+}
@@ -0,0 +1,131 @@
+package cn.xej.mybatis;
+
+import cn.xej.mybatis.datasource.PooledDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * 开启脏检查后 update(entity) 只写变化了的列
+ */
+public class DirtyTrackerTest {
+
+    private static final String UPDATE_ALL = "executeUpdate: UPDATE user SET name = ?, age = ? WHERE id = ?";
+    private static final String UPDATE_AGE = "executeUpdate: UPDATE user SET age = ? WHERE id = ?";
+    private static final String UPDATE_NAME = "executeUpdate: UPDATE user SET name = ? WHERE id = ?";
+
+    private PooledDataSource dataSource;
+    private RecordingDataSource recording;
+    private MySqlSessionFactory factory;
+    //会话外的 Mapper，每次调用自动提交
+    private UserMapper outside;
+
+    @Before
+    public void setUp() throws SQLException {
+        dataSource = new PooledDataSource("jdbc:h2:mem:dirty_tracker;MODE=MySQL;NON_KEYWORDS=USER", "sa", "");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table user(id int primary key, name varchar(20), age int)");
+            statement.execute("insert into user values (1, 'a', 1), (2, 'b', 2)");
+        }
+        recording = new RecordingDataSource(dataSource);
+        factory = new MySqlSessionFactory(recording.getDataSource());
+        factory.setDirtyTrackingEnabled(true);
+        outside = factory.getMapper(UserMapper.class);
+    }
+
+    @After
+    public void tearDown() {
+        factory.close();
+        dataSource.close();
+    }
+
+    @Test
+    public void updateWritesOnlyChangedColumns() {
+        User user = outside.selectById(1);
+        user.setAge(10);
+        recording.clear();
+
+        Assert.assertEquals(1, outside.update(user));
+        Assert.assertEquals(Collections.singletonList(UPDATE_AGE), recording.getExecuted());
+        User loaded = outside.selectById(1);
+        Assert.assertEquals("a", loaded.getName());
+        Assert.assertEquals(10, loaded.getAge());
+    }
+
+    @Test
+    public void unchangedEntitySendsNoSql() {
+        User user = outside.selectById(1);
+        recording.clear();
+
+        Assert.assertEquals(0, outside.update(user));
+        Assert.assertTrue(recording.getExecuted().isEmpty());
+
+        //没有快照的实体照旧写全部列
+        User detached = new User();
+        detached.setId(1);
+        detached.setName("a");
+        detached.setAge(1);
+        Assert.assertEquals(1, outside.update(detached));
+        Assert.assertEquals(Collections.singletonList(UPDATE_ALL), recording.getExecuted());
+    }
+
+    @Test
+    public void snapshotIsRefreshedAfterAutoCommitUpdate() {
+        User user = outside.selectById(1);
+        user.setAge(10);
+        outside.update(user);
+        recording.clear();
+
+        //提交后的值成为新快照：再写一次什么都不发，之后只写新改的列
+        Assert.assertEquals(0, outside.update(user));
+        Assert.assertTrue(recording.getExecuted().isEmpty());
+        user.setName("c");
+        Assert.assertEquals(1, outside.update(user));
+        Assert.assertEquals(Collections.singletonList(UPDATE_NAME), recording.getExecuted());
+    }
+
+    @Test
+    public void transactionalSessionDropsSnapshot() {
+        try (SqlSession session = factory.openSession()) {
+            UserMapper mapper = session.getMapper(UserMapper.class);
+            User user = mapper.selectById(1);
+            user.setAge(10);
+            recording.clear();
+
+            Assert.assertEquals(1, mapper.update(user));
+            //可能回滚，快照作废：同一个对象再写就写全部列
+            Assert.assertEquals(1, mapper.update(user));
+            Assert.assertEquals(Arrays.asList(UPDATE_AGE, UPDATE_ALL), recording.getExecuted());
+            session.rollback();
+        }
+        Assert.assertEquals(1, outside.selectById(1).getAge());
+    }
+
+    @Test
+    public void batchSessionDropsSnapshot() {
+        try (SqlSession session = factory.openSession(ExecutorType.BATCH)) {
+            UserMapper mapper = session.getMapper(UserMapper.class);
+            User user = mapper.selectById(2);
+            Assert.assertEquals(0, mapper.update(user));
+            Assert.assertEquals(0, session.getPendingBatchCount());
+
+            //BATCH 会话写全部列，之后不再跟踪，没改也照样进批
+            user.setAge(20);
+            mapper.update(user);
+            mapper.update(user);
+            Assert.assertEquals(2, session.getPendingBatchCount());
+            recording.clear();
+            session.commit();
+            Assert.assertEquals(Collections.singletonList(UPDATE_ALL.replace("executeUpdate", "executeBatch")),
+                    recording.getExecuted());
+        }
+        Assert.assertEquals(20, outside.selectById(2).getAge());
+    }
+}
@@ -0,0 +1,112 @@
+package cn.xej.mybatis;
+
+import cn.xej.mybatis.datasource.PooledDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class LookupCoalescerTest {
+
+    private PooledDataSource dataSource;
+    private MySqlSessionFactory factory;
+    private ExecutorService executor;
+    private RecordingDataSource recording;
+
+    @Before
+    public void setUp() throws SQLException {
+        dataSource = new PooledDataSource("jdbc:h2:mem:coalescer;MODE=MySQL;NON_KEYWORDS=USER", "sa", "");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table user(id int primary key, name varchar(20), age int)");
+            statement.execute("insert into user values (1, 'a', 1), (2, 'b', 2), (3, 'c', 3)");
+        }
+        recording = new RecordingDataSource(dataSource);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        if (factory != null) {
+            factory.close();
+        }
+        dataSource.close();
+    }
+
+    @Test
+    public void concurrentLookupsShareOneInQuery() throws Exception {
+        //同时放行的调用都落在 1 秒的窗口里
+        UserMapper mapper = coalescingMapper(100);
+        List<Future<User>> results = selectConcurrently(mapper, 1, 2, 2, 3, 9);
+
+        List<User> users = new ArrayList<>();
+        for (Future<User> result : results) {
+            users.add(result.get(5, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(1, inQueries());
+        Assert.assertEquals("a", users.get(0).getName());
+        Assert.assertEquals("b", users.get(1).getName());
+        Assert.assertEquals("b", users.get(2).getName());
+        Assert.assertEquals("c", users.get(3).getName());
+        Assert.assertNull(users.get(4));
+
+        //重复的 id 各拿一份，改一份不影响另一份
+        Assert.assertNotSame(users.get(1), users.get(2));
+        users.get(1).setName("changed");
+        Assert.assertEquals("b", users.get(2).getName());
+    }
+
+    @Test
+    public void errorCompletesEveryCaller() throws Exception {
+        Error failure = new Error("driver failure");
+        recording.failPrepare(" IN (", failure);
+        UserMapper mapper = coalescingMapper(2);
+        List<Future<User>> results = selectConcurrently(mapper, 1, 2);
+
+        for (Future<User> result : results) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                Assert.fail("expected the lookup to fail");
+            } catch (ExecutionException e) {
+                Assert.assertSame(failure, e.getCause());
+            }
+        }
+    }
+
+    private UserMapper coalescingMapper(int maxBatchSize) {
+        factory = new MySqlSessionFactory(recording.getDataSource());
+        factory.setLookupCoalescing(maxBatchSize, TimeUnit.SECONDS.toMicros(1));
+        return factory.getMapper(UserMapper.class);
+    }
+
+    private List<Future<User>> selectConcurrently(UserMapper mapper, int... ids) {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<User>> results = new ArrayList<>();
+        for (int id : ids) {
+            Callable<User> call = () -> {
+                start.await();
+                return mapper.selectById(id);
+            };
+            results.add(executor.submit(call));
+        }
+        start.countDown();
+        return results;
+    }
+
+    private long inQueries() {
+        return recording.getPrepared().stream().filter(sql -> sql.contains(" IN (")).count();
+    }
+}
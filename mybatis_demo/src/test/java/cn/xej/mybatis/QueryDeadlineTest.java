@@ -0,0 +1,142 @@
+package cn.xej.mybatis;
+
+import cn.xej.mybatis.datasource.PooledDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 调用方截止时间的嵌套、过期时不执行、超时取消后连接干净地回到连接池
+ */
+public class QueryDeadlineTest {
+
+    //slow_user 是 20 亿行的视图，按不存在的 age 查会一直扫下去
+    @Table(name = "slow_user")
+    public static class SlowUser {
+        private long id;
+        private String name;
+        private int age;
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+    }
+
+    @Timeout(200)
+    public interface SlowMapper {
+        SlowUser selectById(@Param(name = "id") long id);
+
+        List<SlowUser> selectByAge(@Param(name = "age") int age);
+    }
+
+    private PooledDataSource dataSource;
+    private RecordingDataSource recording;
+    private MySqlSessionFactory factory;
+
+    @Before
+    public void setUp() throws SQLException {
+        dataSource = new PooledDataSource("jdbc:h2:mem:query_deadline;MODE=MySQL;NON_KEYWORDS=USER", "sa", "");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table user(id int primary key, name varchar(20), age int)");
+            statement.execute("insert into user values (1, 'a', 1)");
+            statement.execute("create view slow_user as select x as id, 'n' as name, 1 as age from system_range(1, 2000000000)");
+        }
+        recording = new RecordingDataSource(dataSource);
+        factory = new MySqlSessionFactory(recording.getDataSource());
+    }
+
+    @After
+    public void tearDown() {
+        factory.close();
+        dataSource.close();
+    }
+
+    @Test
+    public void innerScopeCanOnlyShortenDeadline() {
+        Assert.assertNull(QueryDeadline.current());
+        try (QueryDeadline.Scope ignored = QueryDeadline.within(10, TimeUnit.SECONDS)) {
+            QueryDeadline outer = QueryDeadline.current();
+            Assert.assertTrue(outer.remainingNanos() > TimeUnit.SECONDS.toNanos(9));
+
+            try (QueryDeadline.Scope inner = QueryDeadline.within(60, TimeUnit.SECONDS)) {
+                Assert.assertSame(outer, QueryDeadline.current());
+            }
+            try (QueryDeadline.Scope inner = QueryDeadline.within(100, TimeUnit.MILLISECONDS)) {
+                Assert.assertTrue(QueryDeadline.current().remainingNanos() <= TimeUnit.MILLISECONDS.toNanos(100));
+                //方法超时同样只能提前
+                Assert.assertSame(QueryDeadline.current(), QueryDeadline.forCall(5000));
+            }
+            Assert.assertSame(outer, QueryDeadline.current());
+            Assert.assertSame(outer, QueryDeadline.forCall(0));
+            Assert.assertTrue(QueryDeadline.forCall(50).remainingNanos() <= TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        Assert.assertNull(QueryDeadline.current());
+        Assert.assertNull(QueryDeadline.forCall(0));
+    }
+
+    @Test
+    public void expiredDeadlineFailsBeforeExecution() {
+        UserMapper mapper = factory.getMapper(UserMapper.class);
+        try (QueryDeadline.Scope ignored = QueryDeadline.within(0, TimeUnit.MILLISECONDS)) {
+            Assert.assertTrue(QueryDeadline.current().isExpired());
+            mapper.selectById(1);
+            Assert.fail("expected an expired deadline to fail the query");
+        } catch (QueryTimeoutException e) {
+            Assert.assertTrue(e.getMessage().endsWith(": query deadline exceeded"));
+        }
+        Assert.assertTrue(recording.getExecuted().isEmpty());
+        Assert.assertEquals(0, dataSource.getPoolStats().getActiveConnections());
+        Assert.assertEquals("a", mapper.selectById(1).getName());
+    }
+
+    @Test
+    public void cancelledStatementLeavesConnectionClean() throws SQLException {
+        SlowMapper mapper = factory.getMapper(SlowMapper.class);
+        long start = System.nanoTime();
+        try {
+            mapper.selectByAge(2);
+            Assert.fail("expected the slow query to time out");
+        } catch (QueryTimeoutException e) {
+            Assert.assertTrue(e.getCause() instanceof SQLException);
+        }
+        //毫秒级取消，不等驱动按秒的超时
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(900));
+
+        //连接还能用，没有被丢弃，也没有迟到的 cancel 打断后面的查询
+        Assert.assertEquals(0, dataSource.getPoolStats().getActiveConnections());
+        Assert.assertEquals(1, dataSource.getPoolStats().getTotalConnections());
+        Assert.assertEquals(7, mapper.selectById(7).getId());
+        try (Connection connection = dataSource.getConnection()) {
+            Assert.assertTrue(connection.getAutoCommit());
+            Assert.assertTrue(connection.isValid(1));
+        }
+        Assert.assertEquals(1, dataSource.getPoolStats().getTotalConnections());
+    }
+}
@@ -0,0 +1,156 @@
+package cn.xej.mybatis;
+
+import cn.xej.mybatis.datasource.PooledDataSource;
+import cn.xej.mybatis.datasource.ReadWriteDataSource;
+import cn.xej.mybatis.datasource.ReplicaStats;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 读写分离：一个主库、两个从库各是一个内存 H2，id = 1 的用户名分别为 primary / r1 / r2，
+ * 读到的名字就是实际访问的库；另有一个连不上的从库
+ */
+public class ReadWriteRoutingTest {
+
+    private static final String DEAD_URL = "jdbc:h2:mem:routing_dead;IFEXISTS=TRUE";
+
+    public interface RoutingMapper {
+        User selectById(@Param(name = "id") int id);
+
+        @UsePrimary
+        User selectByAge(@Param(name = "age") int age);
+
+        int insert(User user);
+    }
+
+    private PooledDataSource primary;
+    private PooledDataSource replica1;
+    private PooledDataSource replica2;
+    private PooledDataSource dead;
+    private MySqlSessionFactory factory;
+
+    @Before
+    public void setUp() throws SQLException {
+        primary = database("primary");
+        replica1 = database("r1");
+        replica2 = database("r2");
+        dead = new PooledDataSource(DEAD_URL, "sa", "");
+        dead.setMaxWaitMillis(100);
+    }
+
+    @After
+    public void tearDown() {
+        if (factory != null) {
+            factory.close();
+        }
+        //没交给工厂的库也要关，关掉最后一个连接时内存库随之删除
+        for (PooledDataSource dataSource : Arrays.asList(primary, replica1, replica2, dead)) {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void readsGoToReplicas() {
+        factory = new MySqlSessionFactory(primary, Arrays.asList(replica1, replica2));
+        RoutingMapper mapper = factory.getMapper(RoutingMapper.class);
+
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            seen.add(mapper.selectById(1).getName());
+        }
+        Assert.assertEquals(new HashSet<>(Arrays.asList("r1", "r2")), seen);
+    }
+
+    @Test
+    public void primaryIsForcedByAnnotationAndScope() {
+        factory = new MySqlSessionFactory(primary, Arrays.asList(replica1, replica2));
+        RoutingMapper mapper = factory.getMapper(RoutingMapper.class);
+
+        Assert.assertEquals("primary", mapper.selectByAge(1).getName());
+
+        //写走主库，从库上读不到
+        User user = new User();
+        user.setId(2);
+        user.setName("written");
+        user.setAge(2);
+        mapper.insert(user);
+        Assert.assertNull(mapper.selectById(2));
+
+        try (ReadWriteDataSource.PrimaryScope ignored = ReadWriteDataSource.usePrimary()) {
+            Assert.assertEquals("primary", mapper.selectById(1).getName());
+            Assert.assertEquals("written", mapper.selectById(2).getName());
+        }
+        Assert.assertFalse("primary".equals(mapper.selectById(1).getName()));
+    }
+
+    @Test
+    public void deadReplicaIsEjected() {
+        factory = new MySqlSessionFactory(primary, Arrays.asList(replica1, replica2, dead));
+        ReadWriteDataSource dataSource = (ReadWriteDataSource) factory.getDataSource();
+        dataSource.setFailureThreshold(1);
+        dataSource.setEjectMillis(60_000);
+        RoutingMapper mapper = factory.getMapper(RoutingMapper.class);
+
+        //借不到连接时换一个从库重试，调用方感知不到
+        for (int i = 0; i < 50; i++) {
+            Assert.assertFalse("primary".equals(mapper.selectById(1).getName()));
+        }
+        ReplicaStats stats = replicaStats(DEAD_URL);
+        Assert.assertTrue(stats.isEjected());
+        Assert.assertEquals(1, stats.getEjectCount());
+
+        //摘除期间不再尝试
+        long failures = stats.getFailureCount();
+        for (int i = 0; i < 50; i++) {
+            mapper.selectById(1);
+        }
+        Assert.assertEquals(failures, replicaStats(DEAD_URL).getFailureCount());
+    }
+
+    @Test
+    public void fallsBackToPrimaryWithoutHealthyReplica() {
+        factory = new MySqlSessionFactory(primary, Arrays.asList(dead));
+        RoutingMapper mapper = factory.getMapper(RoutingMapper.class);
+
+        Assert.assertEquals("primary", mapper.selectById(1).getName());
+    }
+
+    @Test
+    public void sessionReadsGoToPrimary() {
+        factory = new MySqlSessionFactory(primary, Arrays.asList(replica1, replica2));
+
+        try (SqlSession session = factory.openSession()) {
+            RoutingMapper mapper = session.getMapper(RoutingMapper.class);
+            Assert.assertEquals("primary", mapper.selectById(1).getName());
+        }
+    }
+
+    private ReplicaStats replicaStats(String name) {
+        for (ReplicaStats stats : factory.getReplicaStats()) {
+            if (stats.getName().equals(name)) {
+                return stats;
+            }
+        }
+        throw new AssertionError("No replica " + name);
+    }
+
+    //空闲连接留在池里，内存库一直存在到连接池关闭
+    private static PooledDataSource database(String name) throws SQLException {
+        PooledDataSource dataSource = new PooledDataSource("jdbc:h2:mem:routing_" + name + ";MODE=MySQL;NON_KEYWORDS=USER",
+                "sa", "");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table user(id int primary key, name varchar(20), age int)");
+            statement.execute("insert into user values(1, '" + name + "', 1)");
+        }
+        return dataSource;
+    }
+}
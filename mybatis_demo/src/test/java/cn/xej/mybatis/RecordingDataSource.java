@@ -0,0 +1,88 @@
+package cn.xej.mybatis;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 记下经过它的 prepareStatement 和 execute* 调用，测试里用来数往返、看实际执行的 SQL
+ *
+ * 执行记录形如 "executeBatch: INSERT INTO user ..."
+ */
+final class RecordingDataSource {
+
+    private final DataSource dataSource;
+    private final List<String> prepared = new CopyOnWriteArrayList<>();
+    private final List<String> executed = new CopyOnWriteArrayList<>();
+    //SQL 含 failingSql 时 prepareStatement 抛出 failure
+    private volatile String failingSql;
+    private volatile Throwable failure;
+
+    RecordingDataSource(DataSource target) {
+        this.dataSource = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(target, method, args);
+                    return method.getName().equals("getConnection") ? connection((Connection) result) : result;
+                });
+    }
+
+    DataSource getDataSource() {
+        return dataSource;
+    }
+
+    List<String> getPrepared() {
+        return prepared;
+    }
+
+    List<String> getExecuted() {
+        return executed;
+    }
+
+    void clear() {
+        prepared.clear();
+        executed.clear();
+    }
+
+    void failPrepare(String sqlFragment, Throwable failure) {
+        this.failingSql = sqlFragment;
+        this.failure = failure;
+    }
+
+    private Connection connection(Connection target) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("prepareStatement")) {
+                        return invoke(target, method, args);
+                    }
+                    String sql = (String) args[0];
+                    prepared.add(sql);
+                    if (failingSql != null && sql.contains(failingSql)) {
+                        throw failure;
+                    }
+                    return statement((PreparedStatement) invoke(target, method, args), sql);
+                });
+    }
+
+    private PreparedStatement statement(PreparedStatement target, String sql) {
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("execute")) {
+                        executed.add(method.getName() + ": " + sql);
+                    }
+                    return invoke(target, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
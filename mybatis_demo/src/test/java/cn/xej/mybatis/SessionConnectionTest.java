@@ -0,0 +1,121 @@
+package cn.xej.mybatis;
+
+import cn.xej.mybatis.datasource.PooledDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SessionConnectionTest {
+
+    private static final String SQL = "select id from user where age = ? order by id";
+
+    public interface AgeMapper {
+        List<User> selectByAge(@Param(name = "age") int age);
+
+        Cursor<User> selectCursorByAge(@Param(name = "age") int age);
+    }
+
+    private PooledDataSource dataSource;
+    private Connection realConnection;
+    private SessionConnection connection;
+
+    @Before
+    public void setUp() throws SQLException {
+        dataSource = new PooledDataSource("jdbc:h2:mem:session_connection;MODE=MySQL;NON_KEYWORDS=USER", "sa", "");
+        realConnection = dataSource.getConnection();
+        try (Statement statement = realConnection.createStatement()) {
+            statement.execute("create table user(id int primary key, name varchar(20), age int)");
+            statement.execute("insert into user values (1, 'a', 1), (2, 'b', 1), (3, 'c', 1)");
+        }
+        connection = new SessionConnection(realConnection, 2);
+    }
+
+    @After
+    public void tearDown() {
+        connection.close();
+        dataSource.close();
+    }
+
+    @Test
+    public void statementInUseIsNotHandedOutAgain() throws SQLException {
+        PreparedStatement first = connection.prepare(SQL, false);
+        first.setInt(1, 1);
+        ResultSet open = first.executeQuery();
+        Assert.assertTrue(open.next());
+
+        PreparedStatement second = connection.prepare(SQL, false);
+        Assert.assertNotSame(first, second);
+        second.setInt(1, 1);
+        try (ResultSet other = second.executeQuery()) {
+            Assert.assertTrue(other.next());
+        }
+        second.close();
+        Assert.assertTrue(second.isClosed());
+
+        //第一个的 ResultSet 不受影响
+        Assert.assertTrue(open.next());
+        Assert.assertEquals(2, open.getInt(1));
+        open.close();
+
+        first.close();
+        Assert.assertSame(first, connection.prepare(SQL, false));
+        Assert.assertEquals(1, connection.getCachedStatementCount());
+    }
+
+    @Test
+    public void reuseResetsFetchSizeAndTimeout() throws SQLException {
+        PreparedStatement statement = connection.prepare(SQL, false);
+        int defaultFetchSize = statement.getFetchSize();
+        statement.setFetchSize(1000);
+        statement.setQueryTimeout(5);
+        statement.close();
+
+        PreparedStatement reused = connection.prepare(SQL, false);
+        Assert.assertSame(statement, reused);
+        Assert.assertEquals(defaultFetchSize, reused.getFetchSize());
+        Assert.assertEquals(0, reused.getQueryTimeout());
+    }
+
+    @Test
+    public void evictedStatementClosesWhenReleased() throws SQLException {
+        PreparedStatement inUse = connection.prepare(SQL, false);
+        connection.prepare("select 1", false).close();
+        connection.prepare("select 2", false).close();
+
+        //被挤出缓存，但借出期间还能用
+        Assert.assertFalse(inUse.isClosed());
+        inUse.setInt(1, 1);
+        try (ResultSet resultSet = inUse.executeQuery()) {
+            Assert.assertTrue(resultSet.next());
+        }
+        inUse.close();
+        Assert.assertTrue(inUse.isClosed());
+        Assert.assertNotSame(inUse, connection.prepare(SQL, false));
+    }
+
+    @Test
+    public void sessionCursorSurvivesSameQuery() {
+        MySqlSessionFactory factory = new MySqlSessionFactory(dataSource);
+        try (SqlSession session = factory.openSession()) {
+            AgeMapper mapper = session.getMapper(AgeMapper.class);
+            List<Integer> ids = new ArrayList<>();
+            try (Cursor<User> cursor = mapper.selectCursorByAge(1)) {
+                for (User user : cursor) {
+                    ids.add(user.getId());
+                    Assert.assertEquals(3, mapper.selectByAge(1).size());
+                }
+            }
+            Assert.assertEquals(Arrays.asList(1, 2, 3), ids);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package cn.xej.mybatis;
+
+import cn.xej.mybatis.datasource.PooledDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class SqlSessionTest {
+
+    private PooledDataSource dataSource;
+    private MySqlSessionFactory factory;
+    //会话外的 Mapper，每次调用单独借连接、自动提交
+    private UserMapper outside;
+
+    @Before
+    public void setUp() throws SQLException {
+        dataSource = new PooledDataSource("jdbc:h2:mem:session;MODE=MySQL;NON_KEYWORDS=USER", "sa", "");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table user(id int primary key, name varchar(20), age int)");
+        }
+        factory = new MySqlSessionFactory(dataSource);
+        outside = factory.getMapper(UserMapper.class);
+    }
+
+    @After
+    public void tearDown() {
+        factory.close();
+    }
+
+    @Test
+    public void commitPublishesWrites() {
+        try (SqlSession session = factory.openSession()) {
+            UserMapper mapper = session.getMapper(UserMapper.class);
+            mapper.insert(user(1, "a"));
+            //会话内能读到自己未提交的写，会话外读不到
+            Assert.assertEquals("a", mapper.selectById(1).getName());
+            Assert.assertNull(outside.selectById(1));
+
+            session.commit();
+            Assert.assertEquals("a", outside.selectById(1).getName());
+        }
+    }
+
+    @Test
+    public void rollbackDiscardsWrites() {
+        try (SqlSession session = factory.openSession()) {
+            UserMapper mapper = session.getMapper(UserMapper.class);
+            mapper.insert(user(1, "a"));
+            session.rollback();
+            Assert.assertNull(mapper.selectById(1));
+
+            //回滚之后会话还能继续用
+            mapper.insert(user(2, "b"));
+            session.commit();
+        }
+        Assert.assertNull(outside.selectById(1));
+        Assert.assertEquals("b", outside.selectById(2).getName());
+    }
+
+    @Test
+    public void closeRollsBackAndReturnsConnection() {
+        SqlSession session = factory.openSession();
+        UserMapper mapper = session.getMapper(UserMapper.class);
+        mapper.insert(user(1, "a"));
+        mapper.update(user(1, "b"));
+        //会话内的多次调用共用一个连接
+        Assert.assertEquals(1, dataSource.getPoolStats().getActiveConnections());
+
+        session.close();
+        Assert.assertTrue(session.isClosed());
+        Assert.assertEquals(0, dataSource.getPoolStats().getActiveConnections());
+        Assert.assertNull(outside.selectById(1));
+        try {
+            session.getMapper(UserMapper.class);
+            Assert.fail("expected a closed session to be rejected");
+        } catch (MapperException e) {
+            Assert.assertEquals("SqlSession is already closed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void batchIsFlushedOnCommit() {
+        try (SqlSession session = factory.openSession(ExecutorType.BATCH)) {
+            UserMapper mapper = session.getMapper(UserMapper.class);
+            for (int i = 1; i <= 3; i++) {
+                mapper.insert(user(i, "u" + i));
+            }
+            Assert.assertEquals(3, session.getPendingBatchCount());
+            Assert.assertNull(outside.selectById(1));
+
+            session.commit();
+            Assert.assertEquals(0, session.getPendingBatchCount());
+        }
+        Assert.assertEquals("u3", outside.selectById(3).getName());
+    }
+
+    private static User user(int id, String name) {
+        User user = new User();
+        user.setId(id);
+        user.setName(name);
+        user.setAge(1);
+        return user;
+    }
+}
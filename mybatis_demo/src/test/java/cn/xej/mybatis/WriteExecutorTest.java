@@ -0,0 +1,152 @@
+package cn.xej.mybatis;
+
+import cn.xej.mybatis.datasource.PooledDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 实体集合的批量写：按 batchSize 分批、失败整体回滚、多行 VALUES、自增主键回填
+ */
+public class WriteExecutorTest {
+
+    public interface BatchMapper {
+        User selectById(@Param(name = "id") int id);
+
+        @Options(batchSize = 2)
+        int insertAll(List<User> users);
+
+        @Options(batchSize = 2, multiRowValues = true)
+        int insertRows(List<User> users);
+
+        @Options(batchSize = 2, useGeneratedKeys = true)
+        int insertWithKeys(List<User> users);
+    }
+
+    private PooledDataSource dataSource;
+    private RecordingDataSource recording;
+    private MySqlSessionFactory factory;
+    private BatchMapper mapper;
+
+    @Before
+    public void setUp() throws SQLException {
+        dataSource = new PooledDataSource("jdbc:h2:mem:write_executor;MODE=MySQL;NON_KEYWORDS=USER", "sa", "");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table user(id int auto_increment primary key, name varchar(20), age int)");
+        }
+        recording = new RecordingDataSource(dataSource);
+        factory = new MySqlSessionFactory(recording.getDataSource());
+        mapper = factory.getMapper(BatchMapper.class);
+    }
+
+    @After
+    public void tearDown() {
+        factory.close();
+        dataSource.close();
+    }
+
+    @Test
+    public void jdbcBatchIsChunkedAtBatchSize() throws SQLException {
+        Assert.assertEquals(5, mapper.insertAll(users(1, 2, 3, 4, 5)));
+
+        //2 + 2 + 1，共用一个 PreparedStatement
+        Assert.assertEquals(1, recording.getPrepared().size());
+        Assert.assertEquals(3, count("executeBatch: INSERT"));
+        Assert.assertEquals(5, countRows());
+    }
+
+    @Test
+    public void multiRowValuesAreChunkedAtBatchSize() throws SQLException {
+        Assert.assertEquals(5, mapper.insertRows(users(1, 2, 3, 4, 5)));
+
+        //满批的两行 SQL 复用，最后一行单独拼
+        Assert.assertEquals(Arrays.asList(
+                "INSERT INTO user (id,name,age) VALUES (?,?,?),(?,?,?)",
+                "INSERT INTO user (id,name,age) VALUES (?,?,?)"), recording.getPrepared());
+        Assert.assertEquals(3, count("executeUpdate: INSERT"));
+        Assert.assertEquals(5, countRows());
+        Assert.assertEquals("u5", mapper.selectById(5).getName());
+    }
+
+    @Test
+    public void failedBatchRollsBackEarlierBatches() throws SQLException {
+        //第三批和第一批主键冲突，失败时前两批已经写入
+        assertInsertFails(() -> mapper.insertAll(users(1, 2, 3, 4, 1)));
+        Assert.assertEquals(3, count("executeBatch: INSERT"));
+        assertInsertFails(() -> mapper.insertRows(users(1, 2, 3, 4, 1)));
+        Assert.assertEquals(0, countRows());
+
+        //连接还回池里时已恢复自动提交
+        Assert.assertEquals(0, dataSource.getPoolStats().getActiveConnections());
+        Assert.assertEquals(1, mapper.insertAll(users(6)));
+        try (Connection connection = dataSource.getConnection()) {
+            Assert.assertTrue(connection.getAutoCommit());
+        }
+        Assert.assertEquals(1, countRows());
+    }
+
+    @Test
+    public void generatedKeysAreAssignedInOrder() {
+        List<User> batched = users(0, 0, 0);
+        Assert.assertEquals(3, mapper.insertWithKeys(batched));
+        Assert.assertEquals(Arrays.asList(1, 2, 3), ids(batched));
+
+        //多行 VALUES 每批一条 INSERT，按顺序回填这一批的主键
+        factory.setBatchSize(2);
+        UserMapper userMapper = factory.getMapper(UserMapper.class);
+        List<User> rows = users(0, 0, 0);
+        Assert.assertEquals(3, userMapper.insertBatch(rows));
+        Assert.assertEquals(Arrays.asList(4, 5, 6), ids(rows));
+        for (User user : rows) {
+            Assert.assertEquals(user.getName(), mapper.selectById(user.getId()).getName());
+        }
+    }
+
+    private void assertInsertFails(Runnable insert) {
+        try {
+            insert.run();
+            Assert.fail("expected a duplicate key to fail the insert");
+        } catch (MapperException e) {
+            Assert.assertTrue(e.getCause() instanceof SQLException);
+        }
+    }
+
+    private long count(String prefix) {
+        return recording.getExecuted().stream().filter(sql -> sql.startsWith(prefix)).count();
+    }
+
+    private int countRows() throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select count(*) from user")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static List<Integer> ids(List<User> users) {
+        return users.stream().map(User::getId).collect(Collectors.toList());
+    }
+
+    //id 为 0 时由数据库生成；name 按插入顺序编号
+    private static List<User> users(int... ids) {
+        List<User> users = new ArrayList<>();
+        for (int id : ids) {
+            User user = new User();
+            user.setId(id);
+            user.setName("u" + (id == 0 ? users.size() + 1 : id));
+            user.setAge(1);
+            users.add(user);
+        }
+        return users;
+    }
+}
@@ -0,0 +1,151 @@
+package cn.xej.mybatis.benchmark;
+
+import cn.xej.mybatis.MySqlSessionFactory;
+import cn.xej.mybatis.User;
+import cn.xej.mybatis.UserMapper;
+import cn.xej.mybatis.datasource.PooledDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapper 调用链路基准：手写 JDBC（Main.jdbcSelectId 的写法）vs Mapper
+ *
+ * 内存 H2 预置 rows 行 user，name 共 names 种取值，selectByName 每次返回 rows / names 行。
+ * 手写 JDBC 和 Mapper 用同一个连接池，差值就是 Mapper 层（代理分派、参数绑定、行映射、统计）的开销；
+ * mapper = proxy 为动态代理，generated 为编译期生成的 UserMapperImpl。
+ *
+ * Throughput 看吞吐，SampleTime 给出平均值和 p99；main 依次跑 1、4、16 个线程并开启 GC profiler
+ * （gc.alloc.rate.norm 即每次调用分配的字节数）。
+ * 命令行也可以直接跑：java -jar benchmarks.jar MapperBenchmark -t 8 -prof gc -p rows=100000
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapperBenchmark {
+
+    @Param({"10000"})
+    private int rows;
+
+    @Param({"100"})
+    private int names;
+
+    @Param({"proxy", "generated"})
+    private String mapper;
+
+    private PooledDataSource dataSource;
+    private MySqlSessionFactory factory;
+    private UserMapper userMapper;
+
+    @Setup
+    public void setup() throws SQLException {
+        dataSource = new PooledDataSource("jdbc:h2:mem:mapper_benchmark;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1", "sa", "");
+        //连接池不成为并发测试的瓶颈
+        dataSource.setMaxActive(64);
+        try (Connection connection = dataSource.getConnection(); Statement ddl = connection.createStatement()) {
+            ddl.execute("DROP TABLE IF EXISTS user");
+            ddl.execute("CREATE TABLE user (id INT PRIMARY KEY, name VARCHAR(64), age INT)");
+            ddl.execute("CREATE INDEX idx_user_name ON user (name)");
+        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement insert = connection.prepareStatement("INSERT INTO user (id, name, age) VALUES (?, ?, ?)")) {
+            for (int i = 1; i <= rows; i++) {
+                insert.setInt(1, i);
+                insert.setString(2, name(i % names));
+                insert.setInt(3, i % 100);
+                insert.addBatch();
+                if (i % 1000 == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        factory = new MySqlSessionFactory(dataSource);
+        factory.setGeneratedMappersEnabled("generated".equals(mapper));
+        userMapper = factory.getMapper(UserMapper.class);
+        if ("generated".equals(mapper) && !userMapper.getClass().getSimpleName().equals("UserMapperImpl")) {
+            throw new IllegalStateException("UserMapperImpl was not generated, build mybatis_demo_processor first");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        factory.close();
+    }
+
+    private static String name(int index) {
+        return "user" + index;
+    }
+
+    @Benchmark
+    public User jdbcSelectById() throws SQLException {
+        int id = ThreadLocalRandom.current().nextInt(rows) + 1;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement("SELECT id,name,age FROM user WHERE id = ?")) {
+            preparedStatement.setInt(1, id);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (resultSet.next()) {
+                    return readUser(resultSet);
+                }
+                return null;
+            }
+        }
+    }
+
+    @Benchmark
+    public User mapperSelectById() {
+        return userMapper.selectById(ThreadLocalRandom.current().nextInt(rows) + 1);
+    }
+
+    @Benchmark
+    public List<User> jdbcSelectByName() throws SQLException {
+        String name = name(ThreadLocalRandom.current().nextInt(names));
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement("SELECT id,name,age FROM user WHERE name = ?")) {
+            preparedStatement.setString(1, name);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                List<User> users = new ArrayList<>();
+                while (resultSet.next()) {
+                    users.add(readUser(resultSet));
+                }
+                return users;
+            }
+        }
+    }
+
+    @Benchmark
+    public List<User> mapperSelectByName() {
+        return userMapper.selectByName(name(ThreadLocalRandom.current().nextInt(names)));
+    }
+
+    private static User readUser(ResultSet resultSet) throws SQLException {
+        User user = new User();
+        user.setId(resultSet.getInt(1));
+        user.setName(resultSet.getString(2));
+        user.setAge(resultSet.getInt(3));
+        return user;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 4, 16}) {
+            Options options = new OptionsBuilder()
+                    .include(MapperBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
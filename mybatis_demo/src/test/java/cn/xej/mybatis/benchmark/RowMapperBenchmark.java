@@ -0,0 +1,110 @@
+package cn.xej.mybatis.benchmark;
+
+import cn.xej.mybatis.RowMapper;
+import cn.xej.mybatis.RowMapperCompiler;
+import cn.xej.mybatis.User;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.sql.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 行映射基准：原来的反射 parseResult vs RowMapperCompiler 编译出的 RowMapper
+ *
+ * 查询在 setup 中只执行一次，结果集可滚动，每次调用 beforeFirst 后重新映射全部行，
+ * 这样测出来的只是映射本身的开销。
+ *
+ * 运行：在 IDE 中执行 main，或加 -prof gc 观察分配速率
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RowMapperBenchmark {
+
+    @Param({"100", "10000"})
+    private int rows;
+
+    private Connection connection;
+    private Statement statement;
+    private ResultSet resultSet;
+
+    @Setup
+    public void setup() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:row_mapper;MODE=MySQL;NON_KEYWORDS=USER", "sa", "");
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("CREATE TABLE user (id INT PRIMARY KEY, name VARCHAR(64), age INT)");
+        }
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO user (id, name, age) VALUES (?, ?, ?)")) {
+            for (int i = 1; i <= rows; i++) {
+                insert.setInt(1, i);
+                insert.setString(2, "user" + i);
+                insert.setInt(3, i % 100);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        statement = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        resultSet = statement.executeQuery("SELECT id,name,age FROM user");
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        resultSet.close();
+        statement.close();
+        connection.close();
+    }
+
+    @Benchmark
+    public void reflective(Blackhole blackhole) throws Exception {
+        resultSet.beforeFirst();
+        while (resultSet.next()) {
+            blackhole.consume(parseResult(resultSet, User.class));
+        }
+    }
+
+    @Benchmark
+    public void compiled(Blackhole blackhole) throws SQLException {
+        resultSet.beforeFirst();
+        RowMapper<User> rowMapper = RowMapperCompiler.compile(User.class).bind(resultSet.getMetaData());
+        while (resultSet.next()) {
+            blackhole.consume(rowMapper.mapRow(resultSet));
+        }
+    }
+
+    //MapperInvocationHandler 原来的反射映射逻辑
+    private static Object parseResult(ResultSet resultSet, Class<?> classType) throws Exception {
+        Constructor<?> constructor = classType.getDeclaredConstructor();
+        Object result = constructor.newInstance();
+        Field[] fields = classType.getDeclaredFields();
+        for (Field field : fields) {
+            Object column = null;
+            String name = field.getName();
+            Class<?> fieldType = field.getType();
+            if (fieldType == String.class) {
+                column = resultSet.getString(name);
+            } else if (fieldType == int.class) {
+                column = resultSet.getInt(name);
+            }
+            field.setAccessible(true);
+            field.set(result, column);
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RowMapperBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,134 @@
+package cn.xej.mybatis.datasource;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class PooledDataSourceTest {
+
+    private PooledDataSource dataSource;
+
+    @Before
+    public void setUp() {
+        dataSource = new PooledDataSource("jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1", "sa", "");
+        dataSource.setMaxActive(1);
+        dataSource.setMaxWaitMillis(100);
+    }
+
+    @After
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    public void borrowTimesOutWhenExhausted() throws SQLException {
+        try (Connection ignored = dataSource.getConnection()) {
+            try {
+                dataSource.getConnection();
+                Assert.fail("expected a timeout");
+            } catch (SQLException e) {
+                Assert.assertTrue(e.getMessage().startsWith("Timed out after 100ms"));
+            }
+            PoolStats stats = dataSource.getPoolStats();
+            Assert.assertEquals(1, stats.getTimeoutCount());
+            Assert.assertEquals(1, stats.getWaitCount());
+            Assert.assertEquals(0, stats.getWaiters());
+        }
+        Assert.assertEquals(1, dataSource.getPoolStats().getIdleConnections());
+    }
+
+    @Test
+    public void waiterGetsReturnedConnection() throws Exception {
+        dataSource.setMaxWaitMillis(10_000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Connection held = dataSource.getConnection();
+            Future<Boolean> waiter = executor.submit(() -> {
+                try (Connection connection = dataSource.getConnection()) {
+                    return connection.isValid(1);
+                }
+            });
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (dataSource.getPoolStats().getWaiters() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            Assert.assertEquals(1, dataSource.getPoolStats().getWaiters());
+
+            held.close();
+            Assert.assertTrue(waiter.get(5, TimeUnit.SECONDS));
+            PoolStats stats = dataSource.getPoolStats();
+            Assert.assertEquals(0, stats.getWaiters());
+            Assert.assertEquals(1, stats.getWaitCount());
+            Assert.assertEquals(0, stats.getTimeoutCount());
+            Assert.assertEquals(1, stats.getTotalConnections());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void concurrentCloseReturnsConnectionOnce() throws Exception {
+        int closers = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(closers);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                Connection connection = dataSource.getConnection();
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> futures = new ArrayList<>();
+                for (int j = 0; j < closers; j++) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        connection.close();
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                Assert.assertEquals(1, dataSource.getPoolStats().getIdleConnections());
+            }
+            Assert.assertEquals(1, dataSource.getPoolStats().getTotalConnections());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void returnedHandleIsUnusable() throws SQLException {
+        Connection connection = dataSource.getConnection();
+        connection.close();
+        Assert.assertTrue(connection.isClosed());
+        try {
+            connection.createStatement();
+            Assert.fail("expected the returned handle to be rejected");
+        } catch (SQLException e) {
+            Assert.assertEquals("Connection has already been returned to the pool", e.getMessage());
+        }
+    }
+
+    @Test
+    public void housekeepingTopsUpMinIdleUntilClosed() {
+        dataSource.setMaxActive(5);
+        dataSource.setMinIdle(2);
+        dataSource.housekeep();
+        Assert.assertEquals(2, dataSource.getPoolStats().getIdleConnections());
+
+        dataSource.close();
+        dataSource.housekeep();
+        PoolStats stats = dataSource.getPoolStats();
+        Assert.assertEquals(0, stats.getIdleConnections());
+        Assert.assertEquals(0, stats.getTotalConnections());
+    }
+}
@@ -0,0 +1,68 @@
+package cn.xej.mybatis.type;
+
+import cn.xej.mybatis.RowMapperCompiler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+public class TypeHandlerRegistryTest {
+
+    public static class NameDto {
+        private int id;
+        private String name;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    @Test
+    public void fallbackHandlerDoesNotMakeTypeScalar() throws SQLException {
+        TypeHandlerRegistry registry = TypeHandlerRegistry.getInstance();
+        //先被当成参数类型解析过一次
+        Assert.assertTrue(registry.getTypeHandler(NameDto.class) instanceof ObjectTypeHandler);
+        Assert.assertSame(registry.getTypeHandler(NameDto.class), registry.getTypeHandler(NameDto.class));
+
+        Assert.assertFalse(registry.hasTypeHandler(NameDto.class));
+        Assert.assertFalse(RowMapperCompiler.isScalar(NameDto.class));
+
+        //之后作为结果类型仍按字段映射多列
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select 7 as id, 'a' as name")) {
+            Assert.assertTrue(resultSet.next());
+            RowMapperCompiler.CompiledRowMapper<NameDto> compiled = RowMapperCompiler.compile(NameDto.class);
+            Assert.assertEquals(2, compiled.getColumns().size());
+            NameDto dto = compiled.bind(resultSet.getMetaData()).mapRow(resultSet);
+            Assert.assertEquals(7, dto.getId());
+            Assert.assertEquals("a", dto.getName());
+        }
+    }
+
+    @Test
+    public void registeredTypesAndEnumsAreScalar() {
+        TypeHandlerRegistry registry = TypeHandlerRegistry.getInstance();
+        Assert.assertTrue(registry.hasTypeHandler(String.class));
+        Assert.assertTrue(registry.hasTypeHandler(TimeUnit.class));
+        Assert.assertTrue(registry.getTypeHandler(TimeUnit.class) instanceof EnumTypeHandler);
+        Assert.assertTrue(RowMapperCompiler.isScalar(TimeUnit.class));
+    }
+}
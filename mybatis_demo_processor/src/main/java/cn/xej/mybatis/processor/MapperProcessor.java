@@ -0,0 +1,453 @@
+package cn.xej.mybatis.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * 编译期生成 Mapper 实现类
+ *
+ * 对每个 @Mapper 接口生成同包的 XxxMapperImpl（继承 GeneratedMapperSupport）：
+ *  - 简单 select：返回 @Table 实体或 List<实体>、参数全为 @Param 且类型是基本类型/String/BigDecimal，
+ *    实体有 public 无参构造和各字段 public setter 时，生成 SQL 常量、ps.setXxx 绑定和按列下标的行映射
+ *  - 其余方法（写方法、Cursor、Page、CompletableFuture、@Columns、投影和单列结果等）直接委托给动态代理
+ *
+ * SQL 拼法与 MapperAnnotationBuilder 保持一致，运行时 GeneratedMapperSupport 还会再比对一次。
+ * 注解按全名匹配，处理器不依赖 mybatis_demo 本身。
+ */
+@SupportedAnnotationTypes(MapperProcessor.MAPPER)
+public class MapperProcessor extends AbstractProcessor {
+
+    static final String MAPPER = "cn.xej.mybatis.Mapper";
+    private static final String TABLE = "cn.xej.mybatis.Table";
+    private static final String PARAM = "cn.xej.mybatis.Param";
+    private static final String FETCH_SIZE = "cn.xej.mybatis.FetchSize";
+    private static final String COLUMNS = "cn.xej.mybatis.Columns";
+
+    //字段类型 -> ResultSet 取值方法；包装类型用对应基本类型的方法再判断 wasNull
+    private static final Map<String, String> GETTERS = new HashMap<>();
+    //参数类型 -> java.sql.Types 常量（null 参数用 setNull）
+    private static final Map<String, String> SQL_TYPES = new HashMap<>();
+    private static final Map<String, String> WRAPPERS = new HashMap<>();
+
+    static {
+        define("int", "Int", "INTEGER", "java.lang.Integer");
+        define("long", "Long", "BIGINT", "java.lang.Long");
+        define("double", "Double", "DOUBLE", "java.lang.Double");
+        define("boolean", "Boolean", "BOOLEAN", "java.lang.Boolean");
+        define("float", "Float", "REAL", "java.lang.Float");
+        define("short", "Short", "SMALLINT", "java.lang.Short");
+        define("byte", "Byte", "TINYINT", "java.lang.Byte");
+        GETTERS.put("java.lang.String", "String");
+        SQL_TYPES.put("java.lang.String", "VARCHAR");
+        GETTERS.put("java.math.BigDecimal", "BigDecimal");
+        SQL_TYPES.put("java.math.BigDecimal", "DECIMAL");
+        GETTERS.put("byte[]", "Bytes");
+        SQL_TYPES.put("byte[]", "VARBINARY");
+    }
+
+    private static void define(String primitive, String accessor, String sqlType, String wrapper) {
+        GETTERS.put(primitive, accessor);
+        GETTERS.put(wrapper, accessor);
+        SQL_TYPES.put(primitive, sqlType);
+        SQL_TYPES.put(wrapper, sqlType);
+        WRAPPERS.put(wrapper, primitive);
+    }
+
+    private Elements elements;
+    private Types types;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.INTERFACE || element.getEnclosingElement().getKind() != ElementKind.PACKAGE) {
+                    note(element, "@Mapper is only generated for top-level interfaces, using the dynamic proxy");
+                    continue;
+                }
+                try {
+                    generate((TypeElement) element);
+                } catch (IOException e) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            "Cannot write implementation: " + e.getMessage(), element);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void generate(TypeElement mapper) throws IOException {
+        List<ExecutableElement> methods = new ArrayList<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(mapper))) {
+            if (method.getModifiers().contains(Modifier.ABSTRACT)) {
+                if (!method.getTypeParameters().isEmpty()) {
+                    note(method, "generic mapper methods are not generated, using the dynamic proxy for " + mapper);
+                    return;
+                }
+                methods.add(method);
+            }
+        }
+
+        String packageName = elements.getPackageOf(mapper).getQualifiedName().toString();
+        String mapperName = mapper.getSimpleName().toString();
+        String implName = mapperName + "Impl";
+
+        //重载的方法共用 statementId，只交给动态代理
+        Map<String, Integer> nameCounts = new HashMap<>();
+        for (ExecutableElement method : methods) {
+            nameCounts.merge(method.getSimpleName().toString(), 1, Integer::sum);
+        }
+        Map<ExecutableElement, FastSelect> fastSelects = new LinkedHashMap<>();
+        for (ExecutableElement method : methods) {
+            if (nameCounts.get(method.getSimpleName().toString()) > 1) {
+                continue;
+            }
+            FastSelect select = planSelect(method);
+            if (select != null) {
+                fastSelects.put(method, select);
+            }
+        }
+
+        StringBuilder out = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            out.append("package ").append(packageName).append(";\n\n");
+        }
+        out.append("/**\n * 由 MapperProcessor 根据 ").append(mapperName).append(" 生成，请勿修改\n */\n");
+        out.append("public final class ").append(implName)
+                .append(" extends cn.xej.mybatis.GeneratedMapperSupport implements ").append(mapperName).append(" {\n\n");
+        for (Map.Entry<ExecutableElement, FastSelect> entry : fastSelects.entrySet()) {
+            out.append("    private static final String ").append(constantName(entry.getKey())).append(" = \"")
+                    .append(entry.getValue().sql).append("\";\n");
+        }
+        out.append("\n    private final ").append(mapperName).append(" delegate;\n");
+        for (ExecutableElement method : fastSelects.keySet()) {
+            out.append("    //null 表示交给 delegate\n");
+            out.append("    private final cn.xej.mybatis.MappedStatement ").append(fieldName(method)).append(";\n");
+        }
+        out.append("\n    public ").append(implName).append("(cn.xej.mybatis.MySqlSessionFactory factory, ")
+                .append(mapperName).append(" delegate) {\n");
+        out.append("        super(factory, ").append(mapperName).append(".class);\n");
+        out.append("        this.delegate = delegate;\n");
+        for (ExecutableElement method : fastSelects.keySet()) {
+            out.append("        this.").append(fieldName(method)).append(" = fastPath(\"")
+                    .append(method.getSimpleName()).append("\", ").append(constantName(method)).append(");\n");
+        }
+        out.append("    }\n");
+
+        for (ExecutableElement method : methods) {
+            out.append('\n');
+            FastSelect select = fastSelects.get(method);
+            if (select == null) {
+                writeDelegate(out, method);
+            } else {
+                writeSelect(out, method, select);
+            }
+        }
+        out.append("}\n");
+
+        String qualifiedName = packageName.isEmpty() ? implName : packageName + "." + implName;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, mapper).openWriter()) {
+            writer.write(out.toString());
+        }
+    }
+
+    /**
+     * 能生成直连 JDBC 代码的 select，条件不满足时返回 null（该方法委托给动态代理）
+     */
+    private FastSelect planSelect(ExecutableElement method) {
+        //@Columns 只查部分列，生成代码按实体的所有列读，交给动态代理
+        if (!method.getSimpleName().toString().startsWith("select") || annotation(method, COLUMNS) != null) {
+            return null;
+        }
+        TypeMirror returnType = method.getReturnType();
+        if (returnType.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        DeclaredType declared = (DeclaredType) returnType;
+        TypeElement returnElement = (TypeElement) declared.asElement();
+        boolean list = false;
+        TypeElement entity = returnElement;
+        if (returnElement.getQualifiedName().contentEquals("java.util.List")) {
+            if (declared.getTypeArguments().size() != 1 || declared.getTypeArguments().get(0).getKind() != TypeKind.DECLARED) {
+                return null;
+            }
+            list = true;
+            entity = (TypeElement) ((DeclaredType) declared.getTypeArguments().get(0)).asElement();
+        }
+        AnnotationMirror table = annotation(entity, TABLE);
+        if (table == null || !isInstantiable(entity)) {
+            return null;
+        }
+
+        List<Column> columns = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(entity.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            String fieldType = field.asType().toString();
+            String setter = "set" + capitalize(field.getSimpleName().toString());
+            if (!GETTERS.containsKey(fieldType) || !hasSetter(entity, setter, field.asType())) {
+                return null;
+            }
+            columns.add(new Column(field.getSimpleName().toString(), fieldType, setter));
+        }
+
+        List<String> conditions = new ArrayList<>();
+        for (VariableElement parameter : method.getParameters()) {
+            AnnotationMirror param = annotation(parameter, PARAM);
+            if (param == null || !SQL_TYPES.containsKey(parameter.asType().toString())) {
+                return null;
+            }
+            conditions.add(value(param, "name") + " = ? ");
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < columns.size(); i++) {
+            sql.append(i == 0 ? "" : ",").append(columns.get(i).name);
+        }
+        sql.append(" FROM ").append(value(table, "name"));
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        AnnotationMirror fetchSize = annotation(method, FETCH_SIZE);
+        int fetch = fetchSize == null ? 0 : (Integer) value(fetchSize, "value");
+        return new FastSelect(sql.toString().replace("\\", "\\\\").replace("\"", "\\\""),
+                entity.getQualifiedName().toString(), list, columns, fetch);
+    }
+
+    private void writeSelect(StringBuilder out, ExecutableElement method, FastSelect select) {
+        String ms = fieldName(method);
+        String resultType = select.list ? "java.util.List<" + select.entity + ">" : select.entity;
+        writeSignature(out, method);
+        out.append("        if (").append(ms).append(" == null || hasDeadline()) {\n");
+        out.append("            return this.delegate.").append(method.getSimpleName()).append('(').append(argumentList(method)).append(");\n");
+        out.append("        }\n");
+        out.append("        long $start = System.nanoTime();\n");
+        out.append("        long $rows = 0;\n");
+        out.append("        ").append(resultType).append(" $result = ")
+                .append(select.list ? "new java.util.ArrayList<>()" : "null").append(";\n");
+        out.append("        try (java.sql.Connection $connection = this.dataSource.getConnection()) {\n");
+        out.append("            long $borrowed = System.nanoTime();\n");
+        out.append("            ").append(ms).append(".getMetrics().addPoolWaitNanos($borrowed - $start);\n");
+        out.append("            try (java.sql.PreparedStatement $ps = $connection.prepareStatement(")
+                .append(constantName(method)).append(")) {\n");
+        if (select.fetchSize != 0) {
+            out.append("                $ps.setFetchSize(").append(select.fetchSize).append(");\n");
+        }
+        int index = 1;
+        for (VariableElement parameter : method.getParameters()) {
+            writeBind(out, index++, parameter);
+        }
+        out.append("                try (java.sql.ResultSet $rs = $ps.executeQuery()) {\n");
+        out.append("                    long $executed = System.nanoTime();\n");
+        out.append("                    ").append(ms).append(".getMetrics().addExecuteNanos($executed - $borrowed);\n");
+        out.append("                    ").append(select.list ? "while" : "if").append(" ($rs.next()) {\n");
+        out.append("                        ").append(select.entity).append(" $row = new ").append(select.entity).append("();\n");
+        int column = 1;
+        for (Column c : select.columns) {
+            writeRead(out, column++, c);
+        }
+        if (select.list) {
+            out.append("                        $result.add($row);\n");
+        } else {
+            out.append("                        $result = $row;\n");
+        }
+        out.append("                        $rows++;\n");
+        out.append("                    }\n");
+        out.append("                    ").append(ms).append(".getMetrics().addMapNanos(System.nanoTime() - $executed);\n");
+        out.append("                }\n");
+        out.append("            }\n");
+        out.append("        } catch (java.sql.SQLException $e) {\n");
+        out.append("            throw queryFailed(").append(ms).append(", $start, $e);\n");
+        out.append("        }\n");
+        out.append("        long $elapsed = System.nanoTime() - $start;\n");
+        out.append("        if (recordCall(").append(ms).append(", $elapsed, $rows)) {\n");
+        out.append("            recordSlowQuery(").append(ms).append(", $elapsed, $rows, new Object[]{")
+                .append(argumentList(method)).append("});\n");
+        out.append("        }\n");
+        out.append("        return $result;\n");
+        out.append("    }\n");
+    }
+
+    private void writeBind(StringBuilder out, int index, VariableElement parameter) {
+        String type = parameter.asType().toString();
+        String name = parameter.getSimpleName().toString();
+        String setter = "$ps.set" + GETTERS.get(type) + "(" + index + ", " + name + ");\n";
+        if (parameter.asType().getKind().isPrimitive()) {
+            out.append("                ").append(setter);
+            return;
+        }
+        out.append("                if (").append(name).append(" == null) {\n");
+        out.append("                    $ps.setNull(").append(index).append(", java.sql.Types.").append(SQL_TYPES.get(type)).append(");\n");
+        out.append("                } else {\n");
+        out.append("                    ").append(setter);
+        out.append("                }\n");
+    }
+
+    private void writeRead(StringBuilder out, int index, Column column) {
+        String read = "$rs.get" + GETTERS.get(column.type) + "(" + index + ")";
+        String primitive = WRAPPERS.get(column.type);
+        if (primitive == null) {
+            out.append("                        $row.").append(column.setter).append('(').append(read).append(");\n");
+            return;
+        }
+        //包装类型：SQL NULL 写 null
+        String local = "$column" + index;
+        out.append("                        ").append(primitive).append(' ').append(local).append(" = ").append(read).append(";\n");
+        out.append("                        $row.").append(column.setter).append("($rs.wasNull() ? null : ")
+                .append(local).append(");\n");
+    }
+
+    private void writeDelegate(StringBuilder out, ExecutableElement method) {
+        writeSignature(out, method);
+        out.append("        ");
+        if (method.getReturnType().getKind() != TypeKind.VOID) {
+            out.append("return ");
+        }
+        out.append("this.delegate.").append(method.getSimpleName()).append('(').append(argumentList(method)).append(");\n");
+        out.append("    }\n");
+    }
+
+    private void writeSignature(StringBuilder out, ExecutableElement method) {
+        out.append("    @Override\n");
+        out.append("    public ").append(method.getReturnType()).append(' ').append(method.getSimpleName()).append('(');
+        List<? extends VariableElement> parameters = method.getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            out.append(i == 0 ? "" : ", ").append(parameters.get(i).asType()).append(' ').append(parameters.get(i).getSimpleName());
+        }
+        out.append(')');
+        List<? extends TypeMirror> thrown = method.getThrownTypes();
+        for (int i = 0; i < thrown.size(); i++) {
+            out.append(i == 0 ? " throws " : ", ").append(thrown.get(i));
+        }
+        out.append(" {\n");
+    }
+
+    private static String argumentList(ExecutableElement method) {
+        StringBuilder sb = new StringBuilder();
+        for (VariableElement parameter : method.getParameters()) {
+            sb.append(sb.length() == 0 ? "" : ", ").append(parameter.getSimpleName());
+        }
+        return sb.toString();
+    }
+
+    //public（嵌套类还需 static）且有 public 无参构造方法，生成代码才能 new
+    private boolean isInstantiable(TypeElement entity) {
+        if (!entity.getModifiers().contains(Modifier.PUBLIC) || entity.getModifiers().contains(Modifier.ABSTRACT)) {
+            return false;
+        }
+        if (entity.getNestingKind() != NestingKind.TOP_LEVEL && !entity.getModifiers().contains(Modifier.STATIC)) {
+            return false;
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(entity.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasSetter(TypeElement entity, String name, TypeMirror fieldType) {
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(entity))) {
+            if (method.getSimpleName().contentEquals(name) && method.getParameters().size() == 1
+                    && method.getModifiers().contains(Modifier.PUBLIC) && !method.getModifiers().contains(Modifier.STATIC)
+                    && types.isSameType(method.getParameters().get(0).asType(), fieldType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static AnnotationMirror annotation(Element element, String annotationType) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationType)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private Object value(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : elements.getElementValuesWithDefaults(mirror).entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue().getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String fieldName(ExecutableElement method) {
+        return method.getSimpleName() + "Statement";
+    }
+
+    //selectByNameAndAge -> SELECT_BY_NAME_AND_AGE_SQL
+    private static String constantName(ExecutableElement method) {
+        String name = method.getSimpleName().toString();
+        StringBuilder sb = new StringBuilder();
+        for (char c : name.toCharArray()) {
+            if (Character.isUpperCase(c) && sb.length() > 0) {
+                sb.append('_');
+            }
+            sb.append(Character.toUpperCase(c));
+        }
+        return sb.append("_SQL").toString();
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private void note(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, message, element);
+    }
+
+    private static final class Column {
+
+        private final String name;
+        private final String type;
+        private final String setter;
+
+        private Column(String name, String type, String setter) {
+            this.name = name;
+            this.type = type;
+            this.setter = setter;
+        }
+    }
+
+    private static final class FastSelect {
+
+        private final String sql;
+        private final String entity;
+        private final boolean list;
+        private final List<Column> columns;
+        private final int fetchSize;
+
+        private FastSelect(String sql, String entity, boolean list, List<Column> columns, int fetchSize) {
+            this.sql = sql;
+            this.entity = entity;
+            this.list = list;
+            this.columns = columns;
+            this.fetchSize = fetchSize;
+        }
+    }
+}
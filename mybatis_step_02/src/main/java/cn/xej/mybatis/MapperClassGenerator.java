@@ -0,0 +1,567 @@
+package cn.xej.mybatis;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 为 Mapper 接口生成实现类，生成的类大致相当于：
+ * <pre>
+ * public final class IUserDao$$MapperImpl implements IUserDao {
+ *     private final Map sqlSession;
+ *     private final MapperMethod[] methods;
+ *
+ *     public String queryUserName(String uId) {
+ *         return (String) methods[0].execute(sqlSession, uId);
+ *     }
+ * }
+ * </pre>
+ * 0 ~ 3 个参数直接调用对应的 execute 重载，基本类型参数装箱、返回值拆箱都写在字节码里；
+ * default 方法不生成，直接继承接口里的实现；equals / hashCode / toString 继承 Object，按对象身份比较。
+ *
+ * 类的定义方式：
+ * 1、Java 15 起用 Lookup.defineHiddenClass 定义成接口所在包里的隐藏类，非 public 接口也可以，
+ *    不占用类加载器里的类名，工厂不再使用后可以单独卸载
+ * 2、更早的 JDK 在接口类加载器下建一个子加载器来定义，要求接口和方法签名里的类型都是 public
+ * 都不行时 generate 返回 null，由调用方退回 JDK 代理
+ */
+final class MapperClassGenerator {
+
+    private static final String MAPPER_METHOD = MapperMethod.class.getName().replace('.', '/');
+    private static final String MAP_DESCRIPTOR = "Ljava/util/Map;";
+    private static final String METHODS_DESCRIPTOR = "[L" + MAPPER_METHOD + ";";
+    //超过这个参数个数时改用 execute(sqlSession, Object[])
+    private static final int MAX_DIRECT_ARGS = 3;
+
+    private static final Method DEFINE_HIDDEN_CLASS;
+    private static final Method PRIVATE_LOOKUP_IN;
+    private static final Object NO_CLASS_OPTIONS;
+
+    static {
+        Method defineHiddenClass = null;
+        Method privateLookupIn = null;
+        Object noClassOptions = null;
+        try {
+            Class<?> classOption = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            noClassOptions = Array.newInstance(classOption, 0);
+            defineHiddenClass = MethodHandles.Lookup.class.getMethod("defineHiddenClass", byte[].class, boolean.class, noClassOptions.getClass());
+            privateLookupIn = MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+        } catch (ReflectiveOperationException e) {
+            //Java 15 之前没有隐藏类
+        }
+        DEFINE_HIDDEN_CLASS = defineHiddenClass;
+        PRIVATE_LOOKUP_IN = privateLookupIn;
+        NO_CLASS_OPTIONS = noClassOptions;
+    }
+
+    private MapperClassGenerator() {
+    }
+
+    /**
+     * 生成并定义实现类
+     *
+     * @return 构造方法为 (Map sqlSession, MapperMethod[] methods)，methods 与 GeneratedMapperClass.getMethods() 一一对应；
+     *         当前环境定义不了时返回 null
+     */
+    static GeneratedMapperClass generate(Class<?> mapperInterface) {
+        ClassLoader classLoader = mapperInterface.getClassLoader();
+        if (classLoader == null || !isVisible(MapperMethod.class, classLoader)) {
+            return null;
+        }
+        List<Method> methods = implementedMethods(mapperInterface);
+        String className = mapperInterface.getName().replace('.', '/') + "$$MapperImpl";
+        byte[] bytes = new ClassFileWriter(className, mapperInterface, methods).toByteArray();
+        try {
+            Class<?> type;
+            if (DEFINE_HIDDEN_CLASS != null) {
+                MethodHandles.Lookup lookup = (MethodHandles.Lookup) PRIVATE_LOOKUP_IN.invoke(null, mapperInterface, MethodHandles.lookup());
+                type = ((MethodHandles.Lookup) DEFINE_HIDDEN_CLASS.invoke(lookup, bytes, true, NO_CLASS_OPTIONS)).lookupClass();
+            } else if (isPublic(mapperInterface, methods)) {
+                type = new GeneratedClassLoader(classLoader).define(className.replace('/', '.'), bytes);
+            } else {
+                return null;
+            }
+            return new GeneratedMapperClass(type.getConstructor(Map.class, MapperMethod[].class), methods.toArray(new Method[0]));
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    //需要生成的方法：去掉 static、default 和 Object 的方法，返回类型不同的同名方法（桥接）各生成一个
+    private static List<Method> implementedMethods(Class<?> mapperInterface) {
+        Map<String, Method> methods = new LinkedHashMap<>();
+        for (Method method : mapperInterface.getMethods()) {
+            if (method.isDefault() || Modifier.isStatic(method.getModifiers()) || isObjectMethod(method)) {
+                continue;
+            }
+            methods.putIfAbsent(method.getName() + methodDescriptor(method), method);
+        }
+        return new ArrayList<>(methods.values());
+    }
+
+    private static boolean isObjectMethod(Method method) {
+        try {
+            Object.class.getMethod(method.getName(), method.getParameterTypes());
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static boolean isVisible(Class<?> type, ClassLoader classLoader) {
+        try {
+            return Class.forName(type.getName(), false, classLoader) == type;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    //子加载器里的类和接口不在同一个运行时包，只能访问 public 类型
+    private static boolean isPublic(Class<?> mapperInterface, List<Method> methods) {
+        if (!Modifier.isPublic(mapperInterface.getModifiers())) {
+            return false;
+        }
+        for (Method method : methods) {
+            if (!isPublic(method.getReturnType())) {
+                return false;
+            }
+            for (Class<?> parameterType : method.getParameterTypes()) {
+                if (!isPublic(parameterType)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPublic(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        return type.isPrimitive() || Modifier.isPublic(type.getModifiers());
+    }
+
+    private static String methodDescriptor(Method method) {
+        StringBuilder sb = new StringBuilder("(");
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            sb.append(descriptor(parameterType));
+        }
+        return sb.append(')').append(descriptor(method.getReturnType())).toString();
+    }
+
+    private static String descriptor(Class<?> type) {
+        if (type.isArray()) {
+            return type.getName().replace('.', '/');
+        }
+        if (type == void.class) {
+            return "V";
+        }
+        if (type.isPrimitive()) {
+            return String.valueOf(Primitive.of(type).descriptor);
+        }
+        return "L" + type.getName().replace('.', '/') + ";";
+    }
+
+    //常量池里的类名：数组用描述符，其余用内部名
+    private static String internalName(Class<?> type) {
+        return type.getName().replace('.', '/');
+    }
+
+    static final class GeneratedMapperClass {
+
+        private final Constructor<?> constructor;
+        private final Method[] methods;
+
+        private GeneratedMapperClass(Constructor<?> constructor, Method[] methods) {
+            this.constructor = constructor;
+            this.methods = methods;
+        }
+
+        Constructor<?> getConstructor() {
+            return constructor;
+        }
+
+        Method[] getMethods() {
+            return methods;
+        }
+    }
+
+    private static final class GeneratedClassLoader extends ClassLoader {
+
+        private GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(String name, byte[] bytes) throws ClassNotFoundException {
+            defineClass(name, bytes, 0, bytes.length);
+            //马上链接并校验，出错在这里就能退回 JDK 代理，而不是第一次调用时
+            return Class.forName(name, true, this);
+        }
+    }
+
+    //基本类型的装箱 / 拆箱 / 读参数 / 返回指令
+    private enum Primitive {
+        BOOLEAN(boolean.class, 'Z', "java/lang/Boolean", "booleanValue", 0x15, 0xac),
+        BYTE(byte.class, 'B', "java/lang/Byte", "byteValue", 0x15, 0xac),
+        CHAR(char.class, 'C', "java/lang/Character", "charValue", 0x15, 0xac),
+        SHORT(short.class, 'S', "java/lang/Short", "shortValue", 0x15, 0xac),
+        INT(int.class, 'I', "java/lang/Integer", "intValue", 0x15, 0xac),
+        LONG(long.class, 'J', "java/lang/Long", "longValue", 0x16, 0xad),
+        FLOAT(float.class, 'F', "java/lang/Float", "floatValue", 0x17, 0xae),
+        DOUBLE(double.class, 'D', "java/lang/Double", "doubleValue", 0x18, 0xaf);
+
+        private final Class<?> type;
+        private final char descriptor;
+        private final String wrapper;
+        private final String unboxMethod;
+        private final int loadOpcode;
+        private final int returnOpcode;
+
+        Primitive(Class<?> type, char descriptor, String wrapper, String unboxMethod, int loadOpcode, int returnOpcode) {
+            this.type = type;
+            this.descriptor = descriptor;
+            this.wrapper = wrapper;
+            this.unboxMethod = unboxMethod;
+            this.loadOpcode = loadOpcode;
+            this.returnOpcode = returnOpcode;
+        }
+
+        private int slots() {
+            return this == LONG || this == DOUBLE ? 2 : 1;
+        }
+
+        private static Primitive of(Class<?> type) {
+            for (Primitive primitive : values()) {
+                if (primitive.type == type) {
+                    return primitive;
+                }
+            }
+            throw new IllegalArgumentException(type.getName());
+        }
+    }
+
+    /**
+     * 只写这里用得到的那一小部分 class 文件格式：版本 52（Java 8），方法里没有分支，不需要 StackMapTable
+     */
+    private static final class ClassFileWriter {
+
+        private static final int ACC_PUBLIC = 0x0001;
+        private static final int ACC_PRIVATE = 0x0002;
+        private static final int ACC_FINAL = 0x0010;
+        private static final int ACC_SUPER = 0x0020;
+
+        private static final int ALOAD = 0x19;
+        private static final int ALOAD_0 = 0x2a;
+        private static final int ALOAD_1 = 0x2b;
+        private static final int ALOAD_2 = 0x2c;
+        private static final int AALOAD = 0x32;
+        private static final int AASTORE = 0x53;
+        private static final int POP = 0x57;
+        private static final int DUP = 0x59;
+        private static final int ICONST_0 = 0x03;
+        private static final int BIPUSH = 0x10;
+        private static final int SIPUSH = 0x11;
+        private static final int ARETURN = 0xb0;
+        private static final int RETURN = 0xb1;
+        private static final int GETFIELD = 0xb4;
+        private static final int PUTFIELD = 0xb5;
+        private static final int INVOKEVIRTUAL = 0xb6;
+        private static final int INVOKESPECIAL = 0xb7;
+        private static final int INVOKESTATIC = 0xb8;
+        private static final int ANEWARRAY = 0xbd;
+        private static final int CHECKCAST = 0xc0;
+
+        private final ConstantPool pool = new ConstantPool();
+        private final ByteArrayOutputStream methods = new ByteArrayOutputStream();
+        private final int thisClass;
+        private final int superClass;
+        private final int interfaceClass;
+        private final int sqlSessionField;
+        private final int methodsField;
+        private int methodCount;
+
+        private ClassFileWriter(String className, Class<?> mapperInterface, List<Method> mapperMethods) {
+            this.thisClass = pool.classRef(className);
+            this.superClass = pool.classRef("java/lang/Object");
+            this.interfaceClass = pool.classRef(internalName(mapperInterface));
+            this.sqlSessionField = pool.fieldRef(className, "sqlSession", MAP_DESCRIPTOR);
+            this.methodsField = pool.fieldRef(className, "methods", METHODS_DESCRIPTOR);
+            writeConstructor();
+            for (int i = 0; i < mapperMethods.size(); i++) {
+                writeMethod(mapperMethods.get(i), i);
+            }
+        }
+
+        private void writeConstructor() {
+            Code code = new Code();
+            code.op(ALOAD_0).op(INVOKESPECIAL).u2(pool.methodRef("java/lang/Object", "<init>", "()V"));
+            code.op(ALOAD_0).op(ALOAD_1).op(PUTFIELD).u2(sqlSessionField);
+            code.op(ALOAD_0).op(ALOAD_2).op(PUTFIELD).u2(methodsField);
+            code.op(RETURN);
+            addMethod(ACC_PUBLIC, "<init>", "(" + MAP_DESCRIPTOR + METHODS_DESCRIPTOR + ")V", code, 2, 3);
+        }
+
+        private void writeMethod(Method method, int index) {
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            boolean direct = parameterTypes.length <= MAX_DIRECT_ARGS;
+            Code code = new Code();
+            //methods[index].execute(sqlSession, ...)
+            code.op(ALOAD_0).op(GETFIELD).u2(methodsField);
+            pushInt(code, index);
+            code.op(AALOAD);
+            code.op(ALOAD_0).op(GETFIELD).u2(sqlSessionField);
+            StringBuilder executeDescriptor = new StringBuilder("(").append(MAP_DESCRIPTOR);
+            if (!direct) {
+                pushInt(code, parameterTypes.length);
+                code.op(ANEWARRAY).u2(pool.classRef("java/lang/Object"));
+                executeDescriptor.append("[Ljava/lang/Object;");
+            }
+            int slot = 1;
+            for (int i = 0; i < parameterTypes.length; i++) {
+                if (!direct) {
+                    code.op(DUP);
+                    pushInt(code, i);
+                }
+                slot += loadArgument(code, parameterTypes[i], slot);
+                if (direct) {
+                    executeDescriptor.append("Ljava/lang/Object;");
+                } else {
+                    code.op(AASTORE);
+                }
+            }
+            executeDescriptor.append(")Ljava/lang/Object;");
+            code.op(INVOKEVIRTUAL).u2(pool.methodRef(MAPPER_METHOD, "execute", executeDescriptor.toString()));
+            writeReturn(code, method.getReturnType());
+            //栈上最多：调度项、sqlSession、参数数组、dup、下标、一个 long / double
+            addMethod(ACC_PUBLIC | ACC_FINAL, method.getName(), methodDescriptor(method), code, 7, slot);
+        }
+
+        //读第 slot 个局部变量并装箱，返回占用的槽数
+        private int loadArgument(Code code, Class<?> type, int slot) {
+            if (!type.isPrimitive()) {
+                code.op(ALOAD).u1(slot);
+                return 1;
+            }
+            Primitive primitive = Primitive.of(type);
+            code.op(primitive.loadOpcode).u1(slot);
+            code.op(INVOKESTATIC).u2(pool.methodRef(primitive.wrapper, "valueOf", "(" + primitive.descriptor + ")L" + primitive.wrapper + ";"));
+            return primitive.slots();
+        }
+
+        //和 JDK 代理一致：void 丢掉结果，基本类型拆箱（null 时抛 NullPointerException），其余强转
+        private void writeReturn(Code code, Class<?> returnType) {
+            if (returnType == void.class) {
+                code.op(POP).op(RETURN);
+            } else if (returnType.isPrimitive()) {
+                Primitive primitive = Primitive.of(returnType);
+                code.op(CHECKCAST).u2(pool.classRef(primitive.wrapper));
+                code.op(INVOKEVIRTUAL).u2(pool.methodRef(primitive.wrapper, primitive.unboxMethod, "()" + primitive.descriptor));
+                code.op(primitive.returnOpcode);
+            } else {
+                if (returnType != Object.class) {
+                    code.op(CHECKCAST).u2(pool.classRef(internalName(returnType)));
+                }
+                code.op(ARETURN);
+            }
+        }
+
+        private static void pushInt(Code code, int value) {
+            if (value <= 5) {
+                code.op(ICONST_0 + value);
+            } else if (value <= Byte.MAX_VALUE) {
+                code.op(BIPUSH).u1(value);
+            } else {
+                code.op(SIPUSH).u2(value);
+            }
+        }
+
+        private void addMethod(int access, String name, String descriptor, Code code, int maxStack, int maxLocals) {
+            try {
+                DataOutputStream out = new DataOutputStream(methods);
+                out.writeShort(access);
+                out.writeShort(pool.utf8(name));
+                out.writeShort(pool.utf8(descriptor));
+                //只有一个 Code 属性
+                out.writeShort(1);
+                out.writeShort(pool.utf8("Code"));
+                byte[] bytecode = code.toByteArray();
+                out.writeInt(12 + bytecode.length);
+                out.writeShort(maxStack);
+                out.writeShort(maxLocals);
+                out.writeInt(bytecode.length);
+                out.write(bytecode);
+                //异常表和属性都为空
+                out.writeShort(0);
+                out.writeShort(0);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            methodCount++;
+        }
+
+        private byte[] toByteArray() {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                int fieldNameSqlSession = pool.utf8("sqlSession");
+                int fieldNameMethods = pool.utf8("methods");
+                int mapDescriptor = pool.utf8(MAP_DESCRIPTOR);
+                int methodsDescriptor = pool.utf8(METHODS_DESCRIPTOR);
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0);
+                out.writeShort(52);
+                pool.writeTo(out);
+                out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+                out.writeShort(thisClass);
+                out.writeShort(superClass);
+                out.writeShort(1);
+                out.writeShort(interfaceClass);
+                out.writeShort(2);
+                writeField(out, fieldNameSqlSession, mapDescriptor);
+                writeField(out, fieldNameMethods, methodsDescriptor);
+                out.writeShort(methodCount);
+                methods.writeTo(out);
+                //没有类属性
+                out.writeShort(0);
+                return bytes.toByteArray();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static void writeField(DataOutputStream out, int name, int descriptor) throws IOException {
+            out.writeShort(ACC_PRIVATE | ACC_FINAL);
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            out.writeShort(0);
+        }
+    }
+
+    private static final class Code {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        private Code op(int opcode) {
+            bytes.write(opcode);
+            return this;
+        }
+
+        private Code u1(int value) {
+            bytes.write(value);
+            return this;
+        }
+
+        private Code u2(int value) {
+            bytes.write(value >>> 8);
+            bytes.write(value);
+            return this;
+        }
+
+        private byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+
+    //常量池，相同的常量只写一次
+    private static final class ConstantPool {
+
+        private static final int CONSTANT_UTF8 = 1;
+        private static final int CONSTANT_CLASS = 7;
+        private static final int CONSTANT_FIELDREF = 9;
+        private static final int CONSTANT_METHODREF = 10;
+        private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<>();
+        //下标从 1 开始
+        private int count = 1;
+
+        private int utf8(String value) {
+            Integer index = entries.get("U" + value);
+            if (index != null) {
+                return index;
+            }
+            try {
+                out.writeByte(CONSTANT_UTF8);
+                out.writeUTF(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return add("U" + value);
+        }
+
+        private int classRef(String internalName) {
+            Integer index = entries.get("C" + internalName);
+            if (index != null) {
+                return index;
+            }
+            int name = utf8(internalName);
+            write(CONSTANT_CLASS, name);
+            return add("C" + internalName);
+        }
+
+        private int fieldRef(String owner, String name, String descriptor) {
+            return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+        }
+
+        private int methodRef(String owner, String name, String descriptor) {
+            return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+        }
+
+        private int memberRef(int tag, String owner, String name, String descriptor) {
+            String key = tag + owner + "." + name + descriptor;
+            Integer index = entries.get(key);
+            if (index != null) {
+                return index;
+            }
+            int ownerClass = classRef(owner);
+            int nameAndType = nameAndType(name, descriptor);
+            write(tag, ownerClass, nameAndType);
+            return add(key);
+        }
+
+        private int nameAndType(String name, String descriptor) {
+            String key = "N" + name + ":" + descriptor;
+            Integer index = entries.get(key);
+            if (index != null) {
+                return index;
+            }
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            write(CONSTANT_NAME_AND_TYPE, nameIndex, descriptorIndex);
+            return add(key);
+        }
+
+        private void write(int tag, int... indexes) {
+            try {
+                out.writeByte(tag);
+                for (int index : indexes) {
+                    out.writeShort(index);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private int add(String key) {
+            entries.put(key, count);
+            return count++;
+        }
+
+        private void writeTo(DataOutputStream target) throws IOException {
+            target.writeShort(count);
+            bytes.writeTo(target);
+        }
+    }
+}
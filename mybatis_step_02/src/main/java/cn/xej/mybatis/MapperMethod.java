@@ -0,0 +1,92 @@
+package cn.xej.mybatis;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * Mapper 方法的调度项：statementId 在创建工厂时算好一次，调用时不再拼接字符串
+ *
+ * 生成的代理类按参数个数直接调用 execute(sqlSession) / execute(sqlSession, a) ... 这几个重载，
+ * 不用为每次调用分配参数数组；参数更多时才走 execute(sqlSession, args)。
+ * 接口的 default 方法也有一个调度项，JDK 代理通过 invokeDefault 调用接口里的实现
+ */
+public class MapperMethod {
+
+    private final Method method;
+    private final String statementId;
+    //default 方法的句柄，第一次调用时才解析
+    private volatile MethodHandle defaultMethod;
+
+    public MapperMethod(Class<?> mapperInterface, Method method) {
+        this.method = method;
+        this.statementId = mapperInterface.getName() + "." + method.getName();
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public String getStatementId() {
+        return statementId;
+    }
+
+    public boolean isDefault() {
+        return method.isDefault();
+    }
+
+    public Object execute(Map<String, String> sqlSession, Object[] args) {
+        return execute(sqlSession);
+    }
+
+    public Object execute(Map<String, String> sqlSession) {
+        return "你的被代理了： " + sqlSession.get(statementId);
+    }
+
+    public Object execute(Map<String, String> sqlSession, Object arg0) {
+        return execute(sqlSession);
+    }
+
+    public Object execute(Map<String, String> sqlSession, Object arg0, Object arg1) {
+        return execute(sqlSession);
+    }
+
+    public Object execute(Map<String, String> sqlSession, Object arg0, Object arg1, Object arg2) {
+        return execute(sqlSession);
+    }
+
+    public Object invokeDefault(Object proxy, Object[] args) throws Throwable {
+        MethodHandle handle = defaultMethod;
+        if (handle == null) {
+            handle = defaultMethodHandle(method);
+            defaultMethod = handle;
+        }
+        return handle.bindTo(proxy).invokeWithArguments(args == null ? new Object[0] : args);
+    }
+
+    /**
+     * 以 invokespecial 的方式找到接口里的 default 实现，不会再绕回代理对象
+     *
+     * Java 9 起用 MethodHandles.privateLookupIn；Java 8 没有这个方法，只能用 Lookup 的私有构造方法
+     */
+    private static MethodHandle defaultMethodHandle(Method method) {
+        Class<?> declaringClass = method.getDeclaringClass();
+        try {
+            MethodHandles.Lookup lookup;
+            try {
+                Method privateLookupIn = MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+                lookup = (MethodHandles.Lookup) privateLookupIn.invoke(null, declaringClass, MethodHandles.lookup());
+            } catch (NoSuchMethodException e) {
+                Constructor<MethodHandles.Lookup> constructor = MethodHandles.Lookup.class.getDeclaredConstructor(Class.class, int.class);
+                constructor.setAccessible(true);
+                lookup = constructor.newInstance(declaringClass, MethodHandles.Lookup.PUBLIC | MethodHandles.Lookup.PRIVATE
+                        | MethodHandles.Lookup.PROTECTED | MethodHandles.Lookup.PACKAGE);
+            }
+            return lookup.unreflectSpecial(method, declaringClass).asFixedArity();
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Cannot invoke default method " + method, e);
+        }
+    }
+}
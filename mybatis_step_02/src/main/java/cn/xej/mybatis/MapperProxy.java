@@ -10,17 +10,27 @@ public class MapperProxy<T> implements InvocationHandler, Serializable {
 
     private Map<String, String> sqlSession;
     private final Class<T> mapperInterface;
+    //由 MapperProxyFactory 建好、所有代理对象共用的调度表，只读
+    private final Map<Method, MapperMethod> methodCache;
 
-    public MapperProxy(Map<String, String> sqlSession, Class<T> mapperInterface) {
+    public MapperProxy(Map<String, String> sqlSession, Class<T> mapperInterface, Map<Method, MapperMethod> methodCache) {
         this.sqlSession = sqlSession;
         this.mapperInterface = mapperInterface;
+        this.methodCache = methodCache;
     }
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
         if (method.getDeclaringClass() == Object.class) {
             return method.invoke(this, args);
         }else {
-            return "你的被代理了： " + sqlSession.get(mapperInterface.getName() + "." + method.getName());
+            MapperMethod mapperMethod = methodCache.get(method);
+            if (mapperMethod == null) {
+                throw new UnsupportedOperationException(mapperInterface.getName() + " has no mapped method " + method);
+            }
+            if (mapperMethod.isDefault()) {
+                return mapperMethod.invokeDefault(proxy, args);
+            }
+            return mapperMethod.execute(sqlSession, args);
         }
     }
 }
@@ -1,18 +1,120 @@
 package cn.xej.mybatis;
 
+import cn.xej.mybatis.MapperClassGenerator.GeneratedMapperClass;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 
-//映射器代理工厂
+/**
+ * 映射器代理工厂
+ *
+ * 每个 Mapper 接口一个工厂，创建时做好两件事：
+ * 1、生成代理类并取出构造方法，newInstance 不再每次走 Proxy.newProxyInstance 的代理类查找
+ * 2、为接口的每个方法建好 MapperMethod 调度项，调用时只查一次 Map
+ *
+ * 默认用 MapperClassGenerator 生成的实现类（ProxyType.GENERATED），每个方法直接调用自己的调度项，
+ * 连这一次 Map 查找也省掉；当前环境生成不了时退回 JDK 代理，getProxyType 返回实际使用的方式
+ *
+ * 同一个 sqlSession 连续获取时直接返回上次的代理对象
+ */
 public class MapperProxyFactory <T> {
     private final Class<T> mapperInterface;
+    private final ProxyType proxyType;
+    private final Constructor<?> proxyConstructor;
+    private final Map<Method, MapperMethod> methodCache;
+    //生成类的构造参数，与生成的方法一一对应，所有实例共用
+    private final MapperMethod[] generatedMethods;
+    //最近一次创建的代理对象和它的 sqlSession
+    private volatile CachedProxy<T> lastProxy;
 
     public MapperProxyFactory(Class<T> mapperInterface) {
+        this(mapperInterface, ProxyType.GENERATED);
+    }
+
+    public MapperProxyFactory(Class<T> mapperInterface, ProxyType proxyType) {
         this.mapperInterface = mapperInterface;
+        Map<Method, MapperMethod> methods = new HashMap<>();
+        for (Method method : mapperInterface.getMethods()) {
+            if (!Modifier.isStatic(method.getModifiers())) {
+                methods.put(method, new MapperMethod(mapperInterface, method));
+            }
+        }
+        this.methodCache = Collections.unmodifiableMap(methods);
+        GeneratedMapperClass generated = proxyType == ProxyType.GENERATED ? MapperClassGenerator.generate(mapperInterface) : null;
+        if (generated != null) {
+            this.proxyType = ProxyType.GENERATED;
+            this.proxyConstructor = generated.getConstructor();
+            Method[] generatedMethods = generated.getMethods();
+            this.generatedMethods = new MapperMethod[generatedMethods.length];
+            for (int i = 0; i < generatedMethods.length; i++) {
+                this.generatedMethods[i] = methodCache.get(generatedMethods[i]);
+            }
+        } else {
+            this.proxyType = ProxyType.JDK;
+            this.proxyConstructor = proxyConstructor(mapperInterface);
+            this.generatedMethods = null;
+        }
+    }
+
+    public Class<T> getMapperInterface() {
+        return mapperInterface;
+    }
+
+    public ProxyType getProxyType() {
+        return proxyType;
     }
 
+    public Map<Method, MapperMethod> getMethodCache() {
+        return methodCache;
+    }
+
+    @SuppressWarnings("unchecked")
     public T newInstance(Map<String, String> sqlSession) {
-        final MapperProxy<T> mapperProxy = new MapperProxy<>(sqlSession, mapperInterface);
-        return (T) Proxy.newProxyInstance(mapperInterface.getClassLoader(), new Class[]{mapperInterface}, mapperProxy);
+        CachedProxy<T> cached = lastProxy;
+        if (cached != null && cached.sqlSession == sqlSession) {
+            return cached.proxy;
+        }
+        T proxy;
+        try {
+            if (proxyType == ProxyType.GENERATED) {
+                proxy = (T) proxyConstructor.newInstance(sqlSession, generatedMethods);
+            } else {
+                proxy = (T) proxyConstructor.newInstance(new MapperProxy<>(sqlSession, mapperInterface, methodCache));
+            }
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Error creating mapper proxy for " + mapperInterface.getName(), e);
+        }
+        lastProxy = new CachedProxy<>(sqlSession, proxy);
+        return proxy;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Constructor<?> proxyConstructor(Class<?> mapperInterface) {
+        try {
+            Constructor<?> constructor = Proxy.getProxyClass(mapperInterface.getClassLoader(), mapperInterface)
+                    .getConstructor(InvocationHandler.class);
+            //非 public 接口的代理类也不是 public
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Error creating mapper proxy class for " + mapperInterface.getName(), e);
+        }
+    }
+
+    private static final class CachedProxy<T> {
+        private final Map<String, String> sqlSession;
+        private final T proxy;
+
+        private CachedProxy(Map<String, String> sqlSession, T proxy) {
+            this.sqlSession = sqlSession;
+            this.proxy = proxy;
+        }
     }
 }
@@ -1,4 +1,117 @@
 package cn.xej.mybatis;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * 映射器注册机
+ *
+ * 每个 Mapper 接口注册一次，对应一个 MapperProxyFactory；可以逐个 addMapper，也可以按包扫描 addMappers。
+ * 注册和获取可以在多个线程里同时进行
+ */
 public class MapperRegistry {
+
+    private final Map<Class<?>, MapperProxyFactory<?>> knownMappers = new ConcurrentHashMap<>();
+    private final ProxyType proxyType;
+
+    public MapperRegistry() {
+        this(ProxyType.GENERATED);
+    }
+
+    public MapperRegistry(ProxyType proxyType) {
+        this.proxyType = proxyType;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T getMapper(Class<T> type, Map<String, String> sqlSession) {
+        final MapperProxyFactory<T> mapperProxyFactory = (MapperProxyFactory<T>) knownMappers.get(type);
+        if (mapperProxyFactory == null) {
+            throw new RuntimeException("Type " + type + " is not known to the MapperRegistry.");
+        }
+        return mapperProxyFactory.newInstance(sqlSession);
+    }
+
+    public <T> void addMapper(Class<T> type) {
+        if (!type.isInterface()) {
+            throw new RuntimeException("Type " + type + " is not an interface.");
+        }
+        if (knownMappers.putIfAbsent(type, new MapperProxyFactory<>(type, proxyType)) != null) {
+            throw new RuntimeException("Type " + type + " is already known to the MapperRegistry.");
+        }
+    }
+
+    //扫描包（含子包）下的所有接口并注册，已注册过的跳过
+    public void addMappers(String packageName) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = MapperRegistry.class.getClassLoader();
+        }
+        String path = packageName.replace('.', '/');
+        try {
+            Enumeration<URL> resources = classLoader.getResources(path);
+            while (resources.hasMoreElements()) {
+                URL resource = resources.nextElement();
+                if ("file".equals(resource.getProtocol())) {
+                    scanDirectory(new File(URLDecoder.decode(resource.getFile(), "UTF-8")), packageName, classLoader);
+                } else if ("jar".equals(resource.getProtocol())) {
+                    scanJar(((JarURLConnection) resource.openConnection()).getJarFile(), path, classLoader);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error scanning mappers in package " + packageName, e);
+        }
+    }
+
+    public boolean hasMapper(Class<?> type) {
+        return knownMappers.containsKey(type);
+    }
+
+    private void scanDirectory(File directory, String packageName, ClassLoader classLoader) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                scanDirectory(file, packageName + "." + name, classLoader);
+            } else if (name.endsWith(".class")) {
+                addIfMapper(packageName + "." + name.substring(0, name.length() - ".class".length()), classLoader);
+            }
+        }
+    }
+
+    private void scanJar(JarFile jarFile, String path, ClassLoader classLoader) {
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+            String name = entries.nextElement().getName();
+            if (name.startsWith(path + "/") && name.endsWith(".class")) {
+                addIfMapper(name.substring(0, name.length() - ".class".length()).replace('/', '.'), classLoader);
+            }
+        }
+    }
+
+    //嵌套类型（类名带 $）不是 Mapper
+    private void addIfMapper(String className, ClassLoader classLoader) {
+        if (className.indexOf('$') >= 0) {
+            return;
+        }
+        Class<?> type;
+        try {
+            type = Class.forName(className, false, classLoader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return;
+        }
+        if (type.isInterface() && !type.isAnnotation()) {
+            knownMappers.computeIfAbsent(type, t -> new MapperProxyFactory<>(t, proxyType));
+        }
+    }
 }
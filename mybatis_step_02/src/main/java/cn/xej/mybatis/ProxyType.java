@@ -0,0 +1,18 @@
+package cn.xej.mybatis;
+
+/**
+ * 映射器代理的实现方式
+ */
+public enum ProxyType {
+
+    /**
+     * 运行时为每个 Mapper 接口生成一个实现类，方法里直接调用对应的 MapperMethod，
+     * 不经过 InvocationHandler，也不分配参数数组；生成失败时退回 JDK
+     */
+    GENERATED,
+
+    /**
+     * java.lang.reflect.Proxy + MapperProxy
+     */
+    JDK
+}
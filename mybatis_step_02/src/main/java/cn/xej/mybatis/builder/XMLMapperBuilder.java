@@ -0,0 +1,89 @@
+package cn.xej.mybatis.builder;
+
+import cn.xej.mybatis.mapping.MappedStatement;
+import cn.xej.mybatis.mapping.SqlCommandType;
+import cn.xej.mybatis.scripting.XMLScriptBuilder;
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+import org.dom4j.Element;
+import org.dom4j.io.SAXReader;
+import org.xml.sax.InputSource;
+
+import java.io.StringReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 解析一个 Mapper.xml：
+ * <pre>
+ * &lt;mapper namespace="cn.xej.mybatis.test.dao.IUserDao"&gt;
+ *     &lt;select id="queryUserInfo" parameterType="..." resultType="..."&gt;
+ *         SELECT id, userName FROM user &lt;where&gt; &lt;if test="id != null"&gt; AND id = #{id} &lt;/if&gt; &lt;/where&gt;
+ *     &lt;/select&gt;
+ * &lt;/mapper&gt;
+ * </pre>
+ * 每条语句的 id 为 namespace + "." + id，SQL 解析成节点树（见 XMLScriptBuilder）
+ */
+public class XMLMapperBuilder {
+
+    private final URL resource;
+
+    public XMLMapperBuilder(URL resource) {
+        this.resource = resource;
+    }
+
+    public List<MappedStatement> parse() {
+        Element mapper = read().getRootElement();
+        if (!"mapper".equals(mapper.getName())) {
+            throw new RuntimeException("Root element of " + resource + " must be <mapper>");
+        }
+        String namespace = mapper.attributeValue("namespace");
+        if (namespace == null || namespace.isEmpty()) {
+            throw new RuntimeException("Mapper " + resource + " has no namespace");
+        }
+        List<MappedStatement> statements = new ArrayList<>();
+        for (Element element : mapper.elements()) {
+            SqlCommandType commandType = commandType(element.getName());
+            if (commandType == null) {
+                continue;
+            }
+            String id = element.attributeValue("id");
+            if (id == null || id.isEmpty()) {
+                throw new RuntimeException("<" + element.getName() + "> without id in " + resource);
+            }
+            String statementId = namespace + "." + id;
+            try {
+                statements.add(new MappedStatement(statementId, commandType, element.attributeValue("parameterType"),
+                        element.attributeValue("resultType"), new XMLScriptBuilder(statementId).parseScriptNode(element)));
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("Error parsing statement " + statementId + " in " + resource + ": " + e.getMessage(), e);
+            }
+        }
+        return statements;
+    }
+
+    //SAXReader 不是线程安全的，每个文件一个；不去网上下载 mybatis 的 DTD
+    private Document read() {
+        SAXReader reader = new SAXReader();
+        reader.setEntityResolver((publicId, systemId) -> new InputSource(new StringReader("")));
+        try {
+            return reader.read(resource);
+        } catch (DocumentException e) {
+            throw new RuntimeException("Error reading mapper " + resource, e);
+        }
+    }
+
+    private static SqlCommandType commandType(String elementName) {
+        switch (elementName) {
+            case "select":
+            case "insert":
+            case "update":
+            case "delete":
+                return SqlCommandType.valueOf(elementName.toUpperCase(Locale.ROOT));
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package cn.xej.mybatis.builder;
+
+import cn.xej.mybatis.mapping.MappedStatement;
+
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 启动时加载所有 Mapper.xml
+ *
+ * 各文件互不依赖，按 CPU 核数并行解析，最后合并成一个只读的 statementId -> MappedStatement 表；
+ * 语句 id 重复、任何一个文件解析失败都会让加载失败
+ */
+public class XMLMapperLoader {
+
+    public static Map<String, MappedStatement> load(Collection<URL> resources) {
+        List<URL> files = new ArrayList<>(resources);
+        if (files.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        int threads = Math.min(files.size(), Runtime.getRuntime().availableProcessors());
+        if (threads == 1) {
+            Map<String, MappedStatement> statements = new HashMap<>();
+            for (URL file : files) {
+                merge(statements, new XMLMapperBuilder(file).parse());
+            }
+            return Collections.unmodifiableMap(statements);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "mapper-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<List<MappedStatement>>> futures = new ArrayList<>(files.size());
+            for (URL file : files) {
+                futures.add(executor.submit(() -> new XMLMapperBuilder(file).parse()));
+            }
+            //按文件顺序合并，重复 id 的报错信息稳定
+            Map<String, MappedStatement> statements = new HashMap<>();
+            for (Future<List<MappedStatement>> future : futures) {
+                merge(statements, future.get());
+            }
+            return Collections.unmodifiableMap(statements);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading mappers", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    //classpath 上的资源，例如 "mapper/User_Mapper.xml"
+    public static Map<String, MappedStatement> loadResources(String... resources) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = XMLMapperLoader.class.getClassLoader();
+        }
+        List<URL> urls = new ArrayList<>(resources.length);
+        for (String resource : resources) {
+            URL url = classLoader.getResource(resource);
+            if (url == null) {
+                throw new RuntimeException("Mapper resource not found: " + resource);
+            }
+            urls.add(url);
+        }
+        return load(urls);
+    }
+
+    private static void merge(Map<String, MappedStatement> statements, List<MappedStatement> parsed) {
+        for (MappedStatement statement : parsed) {
+            if (statements.putIfAbsent(statement.getId(), statement) != null) {
+                throw new RuntimeException("Duplicate statement id " + statement.getId());
+            }
+        }
+    }
+}
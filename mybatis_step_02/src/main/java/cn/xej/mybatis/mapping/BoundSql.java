@@ -0,0 +1,28 @@
+package cn.xej.mybatis.mapping;
+
+import java.util.List;
+
+//一次调用渲染出的 SQL 和按 ? 顺序排列的参数值
+public class BoundSql {
+
+    private final String sql;
+    private final List<Object> parameters;
+
+    public BoundSql(String sql, List<Object> parameters) {
+        this.sql = sql;
+        this.parameters = parameters;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
+    @Override
+    public String toString() {
+        return sql + " " + parameters;
+    }
+}
@@ -0,0 +1,44 @@
+package cn.xej.mybatis.mapping;
+
+//Mapper.xml 里的一条语句，加载时解析好，之后只读
+public class MappedStatement {
+
+    //namespace + "." + id
+    private final String id;
+    private final SqlCommandType sqlCommandType;
+    private final String parameterType;
+    private final String resultType;
+    private final SqlSource sqlSource;
+
+    public MappedStatement(String id, SqlCommandType sqlCommandType, String parameterType, String resultType, SqlSource sqlSource) {
+        this.id = id;
+        this.sqlCommandType = sqlCommandType;
+        this.parameterType = parameterType;
+        this.resultType = resultType;
+        this.sqlSource = sqlSource;
+    }
+
+    public BoundSql getBoundSql(Object parameterObject) {
+        return sqlSource.getBoundSql(parameterObject);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public SqlCommandType getSqlCommandType() {
+        return sqlCommandType;
+    }
+
+    public String getParameterType() {
+        return parameterType;
+    }
+
+    public String getResultType() {
+        return resultType;
+    }
+
+    public SqlSource getSqlSource() {
+        return sqlSource;
+    }
+}
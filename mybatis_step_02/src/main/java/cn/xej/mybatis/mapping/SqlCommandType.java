@@ -0,0 +1,9 @@
+package cn.xej.mybatis.mapping;
+
+//SQL 类型，对应 Mapper.xml 里的 <select>/<insert>/<update>/<delete>
+public enum SqlCommandType {
+    SELECT,
+    INSERT,
+    UPDATE,
+    DELETE
+}
@@ -0,0 +1,7 @@
+package cn.xej.mybatis.mapping;
+
+//按参数对象得到要执行的 SQL
+public interface SqlSource {
+
+    BoundSql getBoundSql(Object parameterObject);
+}
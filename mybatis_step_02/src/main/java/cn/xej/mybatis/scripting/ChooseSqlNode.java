@@ -0,0 +1,28 @@
+package cn.xej.mybatis.scripting;
+
+import java.util.List;
+
+//<choose>：渲染第一个条件为真的 <when>，都不成立时渲染 <otherwise>
+public class ChooseSqlNode implements SqlNode {
+
+    private final IfSqlNode[] whens;
+    //没有 <otherwise> 时为 null
+    private final SqlNode otherwise;
+
+    public ChooseSqlNode(List<IfSqlNode> whens, SqlNode otherwise) {
+        this.whens = whens.toArray(new IfSqlNode[0]);
+        this.otherwise = otherwise;
+    }
+
+    @Override
+    public void apply(DynamicContext context) {
+        for (IfSqlNode when : whens) {
+            if (when.applyIfTrue(context)) {
+                return;
+            }
+        }
+        if (otherwise != null) {
+            otherwise.apply(context);
+        }
+    }
+}
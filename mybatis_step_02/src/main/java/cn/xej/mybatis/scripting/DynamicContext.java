@@ -0,0 +1,87 @@
+package cn.xej.mybatis.scripting;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 渲染动态 SQL 时的上下文：SQL 缓冲区、按 ? 顺序收集的参数值、foreach 的 item/index
+ *
+ * 由 DynamicSqlSource 按线程复用，每次渲染前 reset，不为每次调用新建缓冲区
+ */
+public class DynamicContext {
+
+    //超过这个容量的缓冲区用完就丢掉，不让一次超大的 IN 列表一直占着内存
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private StringBuilder sql = new StringBuilder(256);
+    private final List<Object> parameters = new ArrayList<>();
+    private final Map<String, Object> locals = new HashMap<>();
+    private Object parameterObject;
+    //DynamicSqlSource 正在用它渲染
+    boolean inUse;
+
+    void reset(Object parameterObject) {
+        if (sql.capacity() > MAX_RETAINED_CAPACITY) {
+            sql = new StringBuilder(256);
+        } else {
+            sql.setLength(0);
+        }
+        parameters.clear();
+        locals.clear();
+        this.parameterObject = parameterObject;
+    }
+
+    public StringBuilder getSql() {
+        return sql;
+    }
+
+    public void appendSql(String text) {
+        sql.append(text);
+    }
+
+    //#{...}：写一个 ? 并记下参数值
+    public void appendParameter(Object value) {
+        sql.append('?');
+        parameters.add(value);
+    }
+
+    public Object getValue(PropertyPath path) {
+        return path.getValue(parameterObject, locals);
+    }
+
+    //foreach 设置 item/index，返回原来的值（嵌套 foreach 结束时恢复）
+    Object bind(String name, Object value) {
+        return locals.put(name, value);
+    }
+
+    void unbind(String name, Object previous, boolean hadPrevious) {
+        if (hadPrevious) {
+            locals.put(name, previous);
+        } else {
+            locals.remove(name);
+        }
+    }
+
+    boolean isBound(String name) {
+        return locals.containsKey(name);
+    }
+
+    //去掉首尾空白后的 SQL
+    String getTrimmedSql() {
+        int start = 0;
+        int end = sql.length();
+        while (start < end && Character.isWhitespace(sql.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(sql.charAt(end - 1))) {
+            end--;
+        }
+        return sql.substring(start, end);
+    }
+
+    List<Object> copyParameters() {
+        return new ArrayList<>(parameters);
+    }
+}
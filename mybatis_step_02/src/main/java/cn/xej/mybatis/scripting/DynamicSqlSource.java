@@ -0,0 +1,38 @@
+package cn.xej.mybatis.scripting;
+
+import cn.xej.mybatis.mapping.BoundSql;
+import cn.xej.mybatis.mapping.SqlSource;
+
+//有 <if>/<where>/<foreach>/<choose> 的语句：每次调用按参数遍历一遍节点树
+public class DynamicSqlSource implements SqlSource {
+
+    //每个线程一个上下文，缓冲区和参数列表跨调用复用
+    private static final ThreadLocal<DynamicContext> CONTEXT = ThreadLocal.withInitial(DynamicContext::new);
+
+    private final SqlNode rootSqlNode;
+
+    public DynamicSqlSource(SqlNode rootSqlNode) {
+        this.rootSqlNode = rootSqlNode;
+    }
+
+    @Override
+    public BoundSql getBoundSql(Object parameterObject) {
+        DynamicContext context = CONTEXT.get();
+        //渲染中再次渲染（取参数属性时又调用了 Mapper）时不能用同一个上下文
+        if (context.inUse) {
+            return render(new DynamicContext(), parameterObject);
+        }
+        context.inUse = true;
+        try {
+            return render(context, parameterObject);
+        } finally {
+            context.inUse = false;
+        }
+    }
+
+    private BoundSql render(DynamicContext context, Object parameterObject) {
+        context.reset(parameterObject);
+        rootSqlNode.apply(context);
+        return new BoundSql(context.getTrimmedSql(), context.copyParameters());
+    }
+}
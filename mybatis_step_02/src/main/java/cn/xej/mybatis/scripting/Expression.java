@@ -0,0 +1,334 @@
+package cn.xej.mybatis.scripting;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * <if test="..."> / <when test="..."> 的条件表达式，加载时解析成表达式树
+ *
+ * 支持 OGNL 里常用的写法：
+ *  - 属性路径 name、user.age、ids.size()，字面量 null、true、false、数字、'字符串'
+ *  - == != &lt; &lt;= &gt; &gt;=（也可以写 lt lte gt gte eq neq），and or not（也可以写 &amp;&amp; || !），括号
+ * 单独一个值作条件时：null 为假，Boolean 取值，数字非 0 为真，字符串非空为真；
+ * &lt; &lt;= &gt; &gt;= 的一边为 null 时和 OGNL 一样按 0 比较
+ */
+public abstract class Expression {
+
+    public abstract Object evaluate(DynamicContext context);
+
+    public boolean test(DynamicContext context) {
+        return isTrue(evaluate(context));
+    }
+
+    public static Expression parse(String text) {
+        Parser parser = new Parser(text);
+        Expression expression = parser.parseOr();
+        parser.skipWhitespace();
+        if (parser.position < text.length()) {
+            throw parser.error("unexpected '" + text.substring(parser.position) + "'");
+        }
+        return expression;
+    }
+
+    static boolean isTrue(Object value) {
+        if (value == null) {
+            return false;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (value instanceof Number) {
+            return toDecimal((Number) value).signum() != 0;
+        } else if (value instanceof CharSequence) {
+            return ((CharSequence) value).length() > 0;
+        }
+        return true;
+    }
+
+    private static BigDecimal toDecimal(Number number) {
+        return number instanceof BigDecimal ? (BigDecimal) number : new BigDecimal(number.toString());
+    }
+
+    private static boolean isEqual(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number) {
+            return toDecimal((Number) left).compareTo(toDecimal((Number) right)) == 0;
+        }
+        if (left == null || right == null || left.getClass() == right.getClass()) {
+            return Objects.equals(left, right);
+        }
+        //枚举和 'RED'、字符和 'a' 这类比较按字符串
+        return left.toString().equals(right.toString());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object left, Object right, String operator) {
+        if (left == null || right == null) {
+            //和 OGNL 一样把 null 当作数字 0：可选参数没传时 age >= 18 为假，而不是报错
+            return toDecimal(toNumber(left, operator)).compareTo(toDecimal(toNumber(right, operator)));
+        }
+        if (left instanceof Number && right instanceof Number) {
+            return toDecimal((Number) left).compareTo(toDecimal((Number) right));
+        }
+        if (left instanceof Comparable && left.getClass() == right.getClass()) {
+            return ((Comparable) left).compareTo(right);
+        }
+        throw new IllegalArgumentException("Cannot compare " + left.getClass().getName() + " with " + right.getClass().getName());
+    }
+
+    //和 null 比较时另一边按 OGNL 的规则转成数字：数字原样，布尔为 1/0，字符串按数字解析（空串为 0）
+    private static Number toNumber(Object value, String operator) {
+        if (value == null) {
+            return 0L;
+        } else if (value instanceof Number) {
+            return (Number) value;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 1L : 0L;
+        } else if (value instanceof CharSequence) {
+            String text = value.toString().trim();
+            try {
+                return text.isEmpty() ? 0L : new BigDecimal(text);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        throw new IllegalArgumentException("Cannot compare null with " + value.getClass().getName() + " using '" + operator + "'");
+    }
+
+    private static final class Literal extends Expression {
+        private final Object value;
+
+        Literal(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object evaluate(DynamicContext context) {
+            return value;
+        }
+    }
+
+    private static final class Property extends Expression {
+        private final PropertyPath path;
+
+        Property(PropertyPath path) {
+            this.path = path;
+        }
+
+        @Override
+        public Object evaluate(DynamicContext context) {
+            return context.getValue(path);
+        }
+    }
+
+    private static final class Not extends Expression {
+        private final Expression operand;
+
+        Not(Expression operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public Object evaluate(DynamicContext context) {
+            return !operand.test(context);
+        }
+    }
+
+    private static final class Logical extends Expression {
+        private final boolean and;
+        private final Expression left;
+        private final Expression right;
+
+        Logical(boolean and, Expression left, Expression right) {
+            this.and = and;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Object evaluate(DynamicContext context) {
+            boolean result = left.test(context);
+            return and ? result && right.test(context) : result || right.test(context);
+        }
+    }
+
+    private static final class Comparison extends Expression {
+        private final String operator;
+        private final Expression left;
+        private final Expression right;
+
+        Comparison(String operator, Expression left, Expression right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public Object evaluate(DynamicContext context) {
+            Object l = left.evaluate(context);
+            Object r = right.evaluate(context);
+            switch (operator) {
+                case "==":
+                    return isEqual(l, r);
+                case "!=":
+                    return !isEqual(l, r);
+                case "<":
+                    return compare(l, r, operator) < 0;
+                case "<=":
+                    return compare(l, r, operator) <= 0;
+                case ">":
+                    return compare(l, r, operator) > 0;
+                default:
+                    return compare(l, r, operator) >= 0;
+            }
+        }
+    }
+
+    //递归下降：or -> and -> not -> comparison -> primary
+    private static final class Parser {
+        private final String text;
+        private int position;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Expression parseOr() {
+            Expression left = parseAnd();
+            while (acceptSymbol("||") || acceptWord("or")) {
+                left = new Logical(false, left, parseAnd());
+            }
+            return left;
+        }
+
+        private Expression parseAnd() {
+            Expression left = parseNot();
+            while (acceptSymbol("&&") || acceptWord("and")) {
+                left = new Logical(true, left, parseNot());
+            }
+            return left;
+        }
+
+        private Expression parseNot() {
+            skipWhitespace();
+            if (!lookingAt("!=") && acceptSymbol("!") || acceptWord("not")) {
+                return new Not(parseNot());
+            }
+            return parseComparison();
+        }
+
+        private Expression parseComparison() {
+            Expression left = parsePrimary();
+            String operator = comparisonOperator();
+            if (operator == null) {
+                return left;
+            }
+            return new Comparison(operator, left, parsePrimary());
+        }
+
+        private String comparisonOperator() {
+            String[][] operators = {{"==", "=="}, {"!=", "!="}, {"<=", "<="}, {">=", ">="}, {"<", "<"}, {">", ">"}};
+            for (String[] operator : operators) {
+                if (acceptSymbol(operator[0])) {
+                    return operator[1];
+                }
+            }
+            String[][] words = {{"eq", "=="}, {"neq", "!="}, {"lte", "<="}, {"gte", ">="}, {"lt", "<"}, {"gt", ">"}};
+            for (String[] word : words) {
+                if (acceptWord(word[0])) {
+                    return word[1];
+                }
+            }
+            return null;
+        }
+
+        private Expression parsePrimary() {
+            skipWhitespace();
+            if (position >= text.length()) {
+                throw error("unexpected end");
+            }
+            char c = text.charAt(position);
+            if (c == '(') {
+                position++;
+                Expression expression = parseOr();
+                if (!acceptSymbol(")")) {
+                    throw error("missing ')'");
+                }
+                return expression;
+            }
+            if (c == '\'' || c == '"') {
+                int end = text.indexOf(c, position + 1);
+                if (end < 0) {
+                    throw error("unclosed string");
+                }
+                String value = text.substring(position + 1, end);
+                position = end + 1;
+                return new Literal(value);
+            }
+            if (Character.isDigit(c) || c == '-') {
+                int start = position++;
+                while (position < text.length() && (Character.isDigit(text.charAt(position)) || text.charAt(position) == '.')) {
+                    position++;
+                }
+                String number = text.substring(start, position);
+                return new Literal(number.indexOf('.') >= 0 ? new BigDecimal(number) : (Object) Long.valueOf(number));
+            }
+            if (Character.isJavaIdentifierStart(c)) {
+                int start = position;
+                while (position < text.length() && isPathChar(text.charAt(position))) {
+                    position++;
+                }
+                String word = text.substring(start, position);
+                switch (word) {
+                    case "null":
+                        return new Literal(null);
+                    case "true":
+                        return new Literal(Boolean.TRUE);
+                    case "false":
+                        return new Literal(Boolean.FALSE);
+                    default:
+                        return new Property(PropertyPath.parse(word));
+                }
+            }
+            throw error("unexpected '" + c + "'");
+        }
+
+        //属性路径里的字符：标识符、点，以及 size() 的括号
+        private boolean isPathChar(char c) {
+            if (Character.isJavaIdentifierPart(c) || c == '.') {
+                return true;
+            }
+            return c == '(' && text.startsWith("()", position) || c == ')' && position > 0 && text.charAt(position - 1) == '(';
+        }
+
+        private boolean acceptSymbol(String symbol) {
+            skipWhitespace();
+            if (text.startsWith(symbol, position)) {
+                position += symbol.length();
+                return true;
+            }
+            return false;
+        }
+
+        private boolean lookingAt(String symbol) {
+            return text.startsWith(symbol, position);
+        }
+
+        //关键字后面必须不是标识符字符，避免把 order、andy 这样的属性名当成关键字
+        private boolean acceptWord(String word) {
+            skipWhitespace();
+            int end = position + word.length();
+            if (text.startsWith(word, position) && (end == text.length() || !Character.isJavaIdentifierPart(text.charAt(end)))) {
+                position = end;
+                return true;
+            }
+            return false;
+        }
+
+        void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid expression '" + text + "': " + message);
+        }
+    }
+}
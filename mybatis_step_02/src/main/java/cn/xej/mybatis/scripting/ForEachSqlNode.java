@@ -0,0 +1,105 @@
+package cn.xej.mybatis.scripting;
+
+import java.lang.reflect.Array;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * <foreach collection="ids" item="id" index="i" open="(" separator="," close=")">
+ *
+ * collection 可以是 Iterable、数组或 Map（index 为 key，item 为 value）；为 null 或为空时什么也不写。
+ * item / index 只在循环体里可见，嵌套时内层结束后恢复外层的值
+ */
+public class ForEachSqlNode implements SqlNode {
+
+    private final PropertyPath collection;
+    private final SqlNode contents;
+    private final String item;
+    private final String index;
+    private final String open;
+    private final String separator;
+    private final String close;
+
+    public ForEachSqlNode(PropertyPath collection, SqlNode contents, String item, String index,
+                          String open, String separator, String close) {
+        this.collection = collection;
+        this.contents = contents;
+        this.item = item;
+        this.index = index;
+        this.open = open == null ? "" : open;
+        this.separator = separator == null ? "" : separator;
+        this.close = close == null ? "" : close;
+    }
+
+    @Override
+    public void apply(DynamicContext context) {
+        Object value = context.getValue(collection);
+        if (value == null) {
+            return;
+        }
+        boolean hadItem = item != null && context.isBound(item);
+        boolean hadIndex = index != null && context.isBound(index);
+        Object previousItem = null;
+        Object previousIndex = null;
+        int count = 0;
+        Iterator<?> iterator = iterator(value);
+        while (iterator.hasNext()) {
+            Object element = iterator.next();
+            context.appendSql(count == 0 ? open : separator);
+            Object key = count;
+            if (element instanceof Map.Entry && value instanceof Map) {
+                key = ((Map.Entry<?, ?>) element).getKey();
+                element = ((Map.Entry<?, ?>) element).getValue();
+            }
+            if (item != null) {
+                Object previous = context.bind(item, element);
+                if (count == 0) {
+                    previousItem = previous;
+                }
+            }
+            if (index != null) {
+                Object previous = context.bind(index, key);
+                if (count == 0) {
+                    previousIndex = previous;
+                }
+            }
+            contents.apply(context);
+            count++;
+        }
+        if (count == 0) {
+            return;
+        }
+        context.appendSql(close);
+        if (item != null) {
+            context.unbind(item, previousItem, hadItem);
+        }
+        if (index != null) {
+            context.unbind(index, previousIndex, hadIndex);
+        }
+    }
+
+    private Iterator<?> iterator(Object value) {
+        if (value instanceof Iterable) {
+            return ((Iterable<?>) value).iterator();
+        } else if (value instanceof Map) {
+            return ((Map<?, ?>) value).entrySet().iterator();
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            return new Iterator<Object>() {
+                private int i;
+
+                @Override
+                public boolean hasNext() {
+                    return i < length;
+                }
+
+                @Override
+                public Object next() {
+                    return Array.get(value, i++);
+                }
+            };
+        }
+        throw new IllegalArgumentException("foreach collection '" + collection + "' is not a collection, array or map: "
+                + value.getClass().getName());
+    }
+}
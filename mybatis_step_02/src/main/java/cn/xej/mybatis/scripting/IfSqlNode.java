@@ -0,0 +1,29 @@
+package cn.xej.mybatis.scripting;
+
+//<if test="...">：条件为真时渲染内容
+public class IfSqlNode implements SqlNode {
+
+    private final Expression test;
+    private final SqlNode contents;
+
+    public IfSqlNode(Expression test, SqlNode contents) {
+        this.test = test;
+        this.contents = contents;
+    }
+
+    @Override
+    public void apply(DynamicContext context) {
+        if (test.test(context)) {
+            contents.apply(context);
+        }
+    }
+
+    //<choose> 里的 <when> 也用它
+    boolean applyIfTrue(DynamicContext context) {
+        if (test.test(context)) {
+            contents.apply(context);
+            return true;
+        }
+        return false;
+    }
+}
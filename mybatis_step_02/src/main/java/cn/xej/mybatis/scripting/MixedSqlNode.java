@@ -0,0 +1,24 @@
+package cn.xej.mybatis.scripting;
+
+import java.util.List;
+
+//按顺序渲染的一组节点
+public class MixedSqlNode implements SqlNode {
+
+    private final SqlNode[] contents;
+
+    public MixedSqlNode(List<SqlNode> contents) {
+        this.contents = contents.toArray(new SqlNode[0]);
+    }
+
+    @Override
+    public void apply(DynamicContext context) {
+        for (SqlNode node : contents) {
+            node.apply(context);
+        }
+    }
+
+    SqlNode[] getContents() {
+        return contents;
+    }
+}
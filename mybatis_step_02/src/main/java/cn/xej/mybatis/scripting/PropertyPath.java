@@ -0,0 +1,127 @@
+package cn.xej.mybatis.scripting;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * #{user.name}、test="ids.size() > 0" 里的属性路径，加载时拆好段
+ *
+ * 第一段先找 foreach 的 item/index，再找参数：参数是 Map 时按 key 取，是 String、数字等简单类型时就是参数本身，
+ * 否则取参数的同名属性；_parameter 总是参数本身。之后每段取上一段结果的属性（Map 的 key、getter），
+ * size() / length() 取集合、Map、数组、字符串的长度（Map 也不按 key 取）
+ */
+public final class PropertyPath {
+
+    private static final String PARAMETER = "_parameter";
+    private static final Map<Class<?>, Map<String, Method>> GETTERS = new ConcurrentHashMap<>();
+
+    private final String expression;
+    private final String root;
+    private final String[] properties;
+
+    private PropertyPath(String expression, String[] segments) {
+        this.expression = expression;
+        this.root = segments[0];
+        this.properties = new String[segments.length - 1];
+        System.arraycopy(segments, 1, properties, 0, properties.length);
+    }
+
+    public static PropertyPath parse(String expression) {
+        String trimmed = expression.trim();
+        if (trimmed.isEmpty()) {
+            throw new IllegalArgumentException("Empty property path");
+        }
+        return new PropertyPath(trimmed, trimmed.split("\\."));
+    }
+
+    public Object getValue(Object parameterObject, Map<String, Object> locals) {
+        Object value = resolveRoot(parameterObject, locals);
+        for (String property : properties) {
+            if (value == null) {
+                return null;
+            }
+            value = getProperty(value, property);
+        }
+        return value;
+    }
+
+    private Object resolveRoot(Object parameterObject, Map<String, Object> locals) {
+        if (locals != null && locals.containsKey(root)) {
+            return locals.get(root);
+        }
+        if (parameterObject == null || PARAMETER.equals(root)) {
+            return parameterObject;
+        }
+        if (parameterObject instanceof Map) {
+            return ((Map<?, ?>) parameterObject).get(root);
+        }
+        if (isSimpleType(parameterObject.getClass())) {
+            return parameterObject;
+        }
+        return getProperty(parameterObject, root);
+    }
+
+    private static boolean isSimpleType(Class<?> type) {
+        return type == String.class || Number.class.isAssignableFrom(type) || type == Boolean.class
+                || type == Character.class || type.isEnum() || java.util.Date.class.isAssignableFrom(type)
+                || type.getName().startsWith("java.time.");
+    }
+
+    private static Object getProperty(Object target, String property) {
+        if ("size()".equals(property) || "length()".equals(property)) {
+            return size(target);
+        }
+        if (target instanceof Map) {
+            return ((Map<?, ?>) target).get(property);
+        }
+        Method getter = GETTERS.computeIfAbsent(target.getClass(), PropertyPath::findGetters).get(property);
+        if (getter == null) {
+            throw new IllegalArgumentException("No property '" + property + "' in " + target.getClass().getName());
+        }
+        try {
+            return getter.invoke(target);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Error reading property '" + property + "' of " + target.getClass().getName(), e);
+        }
+    }
+
+    private static Object size(Object target) {
+        if (target instanceof Collection) {
+            return ((Collection<?>) target).size();
+        } else if (target instanceof Map) {
+            return ((Map<?, ?>) target).size();
+        } else if (target instanceof CharSequence) {
+            return ((CharSequence) target).length();
+        } else if (target.getClass().isArray()) {
+            return Array.getLength(target);
+        }
+        throw new IllegalArgumentException("Cannot take the size of " + target.getClass().getName());
+    }
+
+    //getXxx / isXxx 的无参 public 方法，按属性名存
+    private static Map<String, Method> findGetters(Class<?> type) {
+        Map<String, Method> getters = new ConcurrentHashMap<>();
+        for (Method method : type.getMethods()) {
+            if (method.getParameterCount() != 0 || method.getReturnType() == void.class || method.getDeclaringClass() == Object.class) {
+                continue;
+            }
+            String name = method.getName();
+            if (name.startsWith("get") && name.length() > 3) {
+                getters.put(Character.toLowerCase(name.charAt(3)) + name.substring(4), method);
+            } else if (name.startsWith("is") && name.length() > 2
+                    && (method.getReturnType() == boolean.class || method.getReturnType() == Boolean.class)) {
+                getters.put(Character.toLowerCase(name.charAt(2)) + name.substring(3), method);
+            }
+        }
+        return getters;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
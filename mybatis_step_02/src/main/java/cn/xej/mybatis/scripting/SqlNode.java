@@ -0,0 +1,7 @@
+package cn.xej.mybatis.scripting;
+
+//SQL 节点树里的一个节点，加载时建好，渲染时把自己写进 DynamicContext
+public interface SqlNode {
+
+    void apply(DynamicContext context);
+}
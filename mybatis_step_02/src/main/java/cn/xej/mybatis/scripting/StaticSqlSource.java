@@ -0,0 +1,32 @@
+package cn.xej.mybatis.scripting;
+
+import cn.xej.mybatis.mapping.BoundSql;
+import cn.xej.mybatis.mapping.SqlSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//没有动态标签的语句：加载时就拼好 SQL，调用时只按路径取参数值
+public class StaticSqlSource implements SqlSource {
+
+    private final String sql;
+    private final PropertyPath[] parameters;
+
+    public StaticSqlSource(String sql, List<PropertyPath> parameters) {
+        this.sql = sql;
+        this.parameters = parameters.toArray(new PropertyPath[0]);
+    }
+
+    @Override
+    public BoundSql getBoundSql(Object parameterObject) {
+        List<Object> values = new ArrayList<>(parameters.length);
+        for (PropertyPath parameter : parameters) {
+            values.add(parameter.getValue(parameterObject, null));
+        }
+        return new BoundSql(sql, values);
+    }
+
+    public String getSql() {
+        return sql;
+    }
+}
@@ -0,0 +1,60 @@
+package cn.xej.mybatis.scripting;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一段 SQL 文本，加载时把 #{...} 拆出来：文本段原样写，参数段写 ? 并取参数值
+ */
+public class TextSqlNode implements SqlNode {
+
+    //texts 比 parameters 多一个：text0 #{p0} text1 #{p1} ... textN
+    private final String[] texts;
+    private final PropertyPath[] parameters;
+
+    public TextSqlNode(String text) {
+        List<String> texts = new ArrayList<>();
+        List<PropertyPath> parameters = new ArrayList<>();
+        int from = 0;
+        while (true) {
+            int start = text.indexOf("#{", from);
+            if (start < 0) {
+                break;
+            }
+            int end = text.indexOf('}', start);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unclosed #{ in SQL: " + text);
+            }
+            texts.add(text.substring(from, start));
+            parameters.add(PropertyPath.parse(parameterName(text.substring(start + 2, end))));
+            from = end + 1;
+        }
+        texts.add(text.substring(from));
+        this.texts = texts.toArray(new String[0]);
+        this.parameters = parameters.toArray(new PropertyPath[0]);
+    }
+
+    //#{id,jdbcType=INTEGER} 只取名字
+    private static String parameterName(String content) {
+        int comma = content.indexOf(',');
+        return comma < 0 ? content : content.substring(0, comma);
+    }
+
+    @Override
+    public void apply(DynamicContext context) {
+        for (int i = 0; i < parameters.length; i++) {
+            context.appendSql(texts[i]);
+            context.appendParameter(context.getValue(parameters[i]));
+        }
+        context.appendSql(texts[parameters.length]);
+    }
+
+    //静态 SQL 在加载时就拼好，参数只记路径
+    void appendStatic(StringBuilder sql, List<PropertyPath> parameterPaths) {
+        for (int i = 0; i < parameters.length; i++) {
+            sql.append(texts[i]).append('?');
+            parameterPaths.add(parameters[i]);
+        }
+        sql.append(texts[parameters.length]);
+    }
+}
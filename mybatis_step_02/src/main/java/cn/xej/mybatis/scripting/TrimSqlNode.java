@@ -0,0 +1,82 @@
+package cn.xej.mybatis.scripting;
+
+/**
+ * <where> 和 <set>：内容直接写进共用的缓冲区，写完再就地修整这一段
+ *  - 内容为空时什么也不写
+ *  - where 去掉开头的 AND / OR，前面加 WHERE
+ *  - set 去掉结尾的逗号，前面加 SET
+ */
+public class TrimSqlNode implements SqlNode {
+
+    private static final String[] WHERE_PREFIXES = {"and", "or"};
+
+    private final SqlNode contents;
+    private final String prefix;
+    //where 去开头的 AND / OR，set 去结尾的逗号
+    private final boolean where;
+
+    private TrimSqlNode(SqlNode contents, String prefix, boolean where) {
+        this.contents = contents;
+        this.prefix = prefix;
+        this.where = where;
+    }
+
+    public static TrimSqlNode where(SqlNode contents) {
+        return new TrimSqlNode(contents, " WHERE ", true);
+    }
+
+    public static TrimSqlNode set(SqlNode contents) {
+        return new TrimSqlNode(contents, " SET ", false);
+    }
+
+    @Override
+    public void apply(DynamicContext context) {
+        StringBuilder sql = context.getSql();
+        int start = sql.length();
+        contents.apply(context);
+        int from = skipWhitespace(sql, start);
+        int end = sql.length();
+        while (end > from && Character.isWhitespace(sql.charAt(end - 1))) {
+            end--;
+        }
+        if (where) {
+            from = stripLeadingKeyword(sql, from, end);
+        } else if (end > from && sql.charAt(end - 1) == ',') {
+            end--;
+        }
+        if (from >= end) {
+            sql.setLength(start);
+            return;
+        }
+        //把 [from, end) 挪到 start 处并加上前缀
+        sql.setLength(end);
+        sql.replace(start, from, prefix);
+    }
+
+    private static int skipWhitespace(StringBuilder sql, int from) {
+        while (from < sql.length() && Character.isWhitespace(sql.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int stripLeadingKeyword(StringBuilder sql, int from, int end) {
+        for (String keyword : WHERE_PREFIXES) {
+            int after = from + keyword.length();
+            if (after <= end && startsWithIgnoreCase(sql, from, keyword)
+                    && (after == end || Character.isWhitespace(sql.charAt(after)) || sql.charAt(after) == '(')) {
+                return skipWhitespace(sql, after);
+            }
+        }
+        return from;
+    }
+
+    private static boolean startsWithIgnoreCase(StringBuilder sql, int from, String keyword) {
+        for (int i = 0; i < keyword.length(); i++) {
+            if (Character.toLowerCase(sql.charAt(from + i)) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
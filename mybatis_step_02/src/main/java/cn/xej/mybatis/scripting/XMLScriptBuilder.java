@@ -0,0 +1,111 @@
+package cn.xej.mybatis.scripting;
+
+import cn.xej.mybatis.mapping.SqlSource;
+import org.dom4j.Element;
+import org.dom4j.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把一条语句的 XML 内容解析成 SqlNode 树
+ *
+ * 全是文本（只有 #{...}）的语句在加载时就拼成 StaticSqlSource，调用时不再遍历节点树；
+ * 有 <if>/<where>/<set>/<foreach>/<choose> 的才用 DynamicSqlSource
+ */
+public class XMLScriptBuilder {
+
+    private final String statementId;
+
+    public XMLScriptBuilder(String statementId) {
+        this.statementId = statementId;
+    }
+
+    public SqlSource parseScriptNode(Element element) {
+        MixedSqlNode root = parseDynamicTags(element);
+        if (!isStatic(root)) {
+            return new DynamicSqlSource(root);
+        }
+        StringBuilder sql = new StringBuilder();
+        List<PropertyPath> parameters = new ArrayList<>();
+        for (SqlNode node : root.getContents()) {
+            ((TextSqlNode) node).appendStatic(sql, parameters);
+        }
+        return new StaticSqlSource(sql.toString().trim(), parameters);
+    }
+
+    private static boolean isStatic(MixedSqlNode root) {
+        for (SqlNode node : root.getContents()) {
+            if (!(node instanceof TextSqlNode)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private MixedSqlNode parseDynamicTags(Element element) {
+        List<SqlNode> contents = new ArrayList<>();
+        for (Node child : element.content()) {
+            short type = child.getNodeType();
+            if (type == Node.TEXT_NODE || type == Node.CDATA_SECTION_NODE) {
+                String text = child.getText();
+                if (!text.isEmpty()) {
+                    contents.add(new TextSqlNode(text));
+                }
+            } else if (type == Node.ELEMENT_NODE) {
+                contents.add(parseTag((Element) child));
+            }
+        }
+        return new MixedSqlNode(contents);
+    }
+
+    private SqlNode parseTag(Element element) {
+        switch (element.getName()) {
+            case "if":
+                return new IfSqlNode(parseTest(element), parseDynamicTags(element));
+            case "where":
+                return TrimSqlNode.where(parseDynamicTags(element));
+            case "set":
+                return TrimSqlNode.set(parseDynamicTags(element));
+            case "foreach":
+                return new ForEachSqlNode(PropertyPath.parse(requiredAttribute(element, "collection")), parseDynamicTags(element),
+                        element.attributeValue("item"), element.attributeValue("index"),
+                        element.attributeValue("open"), element.attributeValue("separator"), element.attributeValue("close"));
+            case "choose":
+                return parseChoose(element);
+            default:
+                throw new RuntimeException("Unknown element <" + element.getName() + "> in statement " + statementId);
+        }
+    }
+
+    private SqlNode parseChoose(Element element) {
+        List<IfSqlNode> whens = new ArrayList<>();
+        SqlNode otherwise = null;
+        for (Element child : element.elements()) {
+            if ("when".equals(child.getName())) {
+                whens.add(new IfSqlNode(parseTest(child), parseDynamicTags(child)));
+            } else if ("otherwise".equals(child.getName()) && otherwise == null) {
+                otherwise = parseDynamicTags(child);
+            } else {
+                throw new RuntimeException("Unexpected <" + child.getName() + "> in <choose> of statement " + statementId);
+            }
+        }
+        return new ChooseSqlNode(whens, otherwise);
+    }
+
+    private Expression parseTest(Element element) {
+        try {
+            return Expression.parse(requiredAttribute(element, "test"));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Error parsing <" + element.getName() + "> in statement " + statementId + ": " + e.getMessage(), e);
+        }
+    }
+
+    private String requiredAttribute(Element element, String name) {
+        String value = element.attributeValue(name);
+        if (value == null || value.trim().isEmpty()) {
+            throw new RuntimeException("<" + element.getName() + "> in statement " + statementId + " needs attribute '" + name + "'");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,73 @@
+package cn.xej.mybatis.benchmark;
+
+import cn.xej.mybatis.MapperMethod;
+import cn.xej.mybatis.MapperProxyFactory;
+import cn.xej.mybatis.ProxyType;
+import cn.xej.mybatis.test.dao.IUserDao;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每次 Mapper 调用的代理开销：JDK 代理 vs 生成的实现类，direct 直接调用 MapperMethod 作为下限
+ *
+ * 三者执行的 SQL 模拟逻辑相同，差值就是代理本身的开销。
+ *
+ * 运行：在 IDE 中执行 main，或加 -prof gc 观察每次调用的分配
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MapperProxyBenchmark {
+
+    private IUserDao jdkMapper;
+    private IUserDao generatedMapper;
+    private MapperMethod mapperMethod;
+    private Map<String, String> sqlSession;
+    private String userId;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        sqlSession = new HashMap<>();
+        sqlSession.put("cn.xej.mybatis.test.dao.IUserDao.queryUserName", "模拟执行 Mapper.xml 中 SQL 语句的操作：查询用户姓名");
+        jdkMapper = new MapperProxyFactory<>(IUserDao.class, ProxyType.JDK).newInstance(sqlSession);
+        MapperProxyFactory<IUserDao> factory = new MapperProxyFactory<>(IUserDao.class, ProxyType.GENERATED);
+        if (factory.getProxyType() != ProxyType.GENERATED) {
+            throw new IllegalStateException("mapper class generation is not available on this JVM");
+        }
+        generatedMapper = factory.newInstance(sqlSession);
+        mapperMethod = factory.getMethodCache().get(IUserDao.class.getMethod("queryUserName", String.class));
+        userId = "10001";
+    }
+
+    @Benchmark
+    public String jdk() {
+        return jdkMapper.queryUserName(userId);
+    }
+
+    @Benchmark
+    public String generated() {
+        return generatedMapper.queryUserName(userId);
+    }
+
+    @Benchmark
+    public Object direct() {
+        return mapperMethod.execute(sqlSession, userId);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MapperProxyBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -1,12 +1,21 @@
 package cn.xej.mybatis.test;
 
 import cn.xej.mybatis.MapperProxyFactory;
+import cn.xej.mybatis.MapperRegistry;
+import cn.xej.mybatis.ProxyType;
+import cn.xej.mybatis.builder.XMLMapperLoader;
+import cn.xej.mybatis.mapping.BoundSql;
+import cn.xej.mybatis.mapping.MappedStatement;
 import cn.xej.mybatis.test.dao.IUserDao;
+import org.junit.Assert;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class ApiTest {
@@ -24,4 +33,96 @@ public class ApiTest {
         String res = userDao.queryUserName("10001");
         logger.info("测试结果：{}", res);
     }
+
+    @Test
+    public void test_MapperRegistry() {
+        MapperRegistry registry = new MapperRegistry();
+        registry.addMappers("cn.xej.mybatis.test.dao");
+
+        Map<String, String> sqlSession = new HashMap<>();
+        sqlSession.put("cn.xej.mybatis.test.dao.IUserDao.queryUserName", "模拟执行 Mapper.xml 中 SQL 语句的操作：查询用户姓名");
+        sqlSession.put("cn.xej.mybatis.test.dao.IUserDao.queryUserAge", "模拟执行 Mapper.xml 中 SQL 语句的操作：查询用户年龄");
+        IUserDao userDao = registry.getMapper(IUserDao.class, sqlSession);
+        Assert.assertSame(userDao, registry.getMapper(IUserDao.class, sqlSession));
+
+        logger.info("测试结果：{}", userDao.queryUserName("10001"));
+    }
+
+    @Test
+    public void test_ProxyType() {
+        Map<String, String> sqlSession = new HashMap<>();
+        sqlSession.put("cn.xej.mybatis.test.dao.IUserDao.queryUserName", "模拟执行 Mapper.xml 中 SQL 语句的操作：查询用户姓名");
+
+        IUserDao generated = new MapperProxyFactory<>(IUserDao.class, ProxyType.GENERATED).newInstance(sqlSession);
+        IUserDao jdk = new MapperProxyFactory<>(IUserDao.class, ProxyType.JDK).newInstance(sqlSession);
+        logger.info("代理类：{} / {}", generated.getClass().getName(), jdk.getClass().getName());
+
+        Assert.assertEquals(jdk.queryUserName("10001"), generated.queryUserName("10001"));
+        Assert.assertTrue(generated.equals(generated));
+
+        //包扫描注册的 Mapper 也要按注册表的 proxyType 创建
+        MapperRegistry registry = new MapperRegistry(ProxyType.JDK);
+        registry.addMappers("cn.xej.mybatis.test.dao");
+        IUserDao scanned = registry.getMapper(IUserDao.class, sqlSession);
+        Assert.assertTrue(Proxy.isProxyClass(scanned.getClass()));
+        Assert.assertFalse(Proxy.isProxyClass(generated.getClass()));
+        Assert.assertTrue(Proxy.isProxyClass(jdk.getClass()));
+    }
+
+    @Test
+    public void test_XMLMapperLoader() {
+        Map<String, MappedStatement> statements = XMLMapperLoader.loadResources("mapper/User_Mapper.xml");
+
+        BoundSql queryUserName = statements.get("cn.xej.mybatis.test.dao.IUserDao.queryUserName").getBoundSql("10001");
+        Assert.assertEquals("SELECT userName FROM user WHERE userId = ?", queryUserName.getSql());
+        Assert.assertEquals(Arrays.asList("10001"), queryUserName.getParameters());
+
+        Map<String, Object> parameter = new HashMap<>();
+        parameter.put("userName", "xej");
+        parameter.put("ids", Arrays.asList(1, 2, 3));
+        parameter.put("orderBy", "age");
+        BoundSql queryUserList = statements.get("cn.xej.mybatis.test.dao.IUserDao.queryUserList").getBoundSql(parameter);
+        logger.info("测试结果：{}", queryUserList);
+        Assert.assertEquals(Arrays.asList("xej", 1, 2, 3), queryUserList.getParameters());
+        //<where> 去掉开头的 AND，没传的 minAge/maxAge 条件不输出（maxAge > 0 中 null 按 0 比较）
+        Assert.assertEquals("SELECT id, userId, userName, userAge FROM user WHERE userName = ? AND id IN (?,?,?) ORDER BY userAge",
+                normalize(queryUserList.getSql()));
+
+        parameter = new HashMap<>();
+        parameter.put("maxAge", 60);
+        queryUserList = statements.get("cn.xej.mybatis.test.dao.IUserDao.queryUserList").getBoundSql(parameter);
+        Assert.assertEquals("SELECT id, userId, userName, userAge FROM user WHERE userAge <= ? ORDER BY id",
+                normalize(queryUserList.getSql()));
+        Assert.assertEquals(Arrays.asList(60), queryUserList.getParameters());
+
+        queryUserList = statements.get("cn.xej.mybatis.test.dao.IUserDao.queryUserList").getBoundSql(new HashMap<>());
+        Assert.assertEquals("SELECT id, userId, userName, userAge FROM user ORDER BY id", normalize(queryUserList.getSql()));
+
+        //ids 是 Map 时 size() 取元素个数，foreach 遍历 value
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        ids.put("a", 1);
+        ids.put("b", 2);
+        parameter = new HashMap<>();
+        parameter.put("ids", ids);
+        queryUserList = statements.get("cn.xej.mybatis.test.dao.IUserDao.queryUserList").getBoundSql(parameter);
+        Assert.assertEquals("SELECT id, userId, userName, userAge FROM user WHERE id IN (?,?) ORDER BY id",
+                normalize(queryUserList.getSql()));
+        Assert.assertEquals(Arrays.asList(1, 2), queryUserList.getParameters());
+
+        parameter.put("ids", new HashMap<>());
+        queryUserList = statements.get("cn.xej.mybatis.test.dao.IUserDao.queryUserList").getBoundSql(parameter);
+        Assert.assertEquals("SELECT id, userId, userName, userAge FROM user ORDER BY id", normalize(queryUserList.getSql()));
+
+        //<set> 去掉结尾的逗号
+        parameter = new HashMap<>();
+        parameter.put("userAge", 20);
+        parameter.put("userId", "10001");
+        BoundSql updateUser = statements.get("cn.xej.mybatis.test.dao.IUserDao.updateUser").getBoundSql(parameter);
+        Assert.assertEquals("UPDATE user SET userAge = ? WHERE userId = ?", normalize(updateUser.getSql()));
+        Assert.assertEquals(Arrays.asList(20, "10001"), updateUser.getParameters());
+    }
+
+    private static String normalize(String sql) {
+        return sql.trim().replaceAll("\\s+", " ");
+    }
 }
@@ -47,6 +47,13 @@ public class CustomRequestWrapper extends HttpServletRequestWrapper {
         return new String(body, StandardCharsets.UTF_8);
     }
 
+    /**
+     * 请求体原始字节，不复制，调用方不能修改
+     */
+    byte[] getBodyBytes() {
+        return body;
+    }
+
     /**
      * 自定义ServletInputStream，使用ByteArrayInputStream作为数据源
      */
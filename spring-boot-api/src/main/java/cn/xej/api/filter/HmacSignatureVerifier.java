@@ -0,0 +1,258 @@
+package cn.xej.api.filter;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+/**
+ * HMAC-SHA256 签名校验
+ *
+ * 签名串为 "POST\n" + action + "\n" + timestamp + "\n" + hex(sha256(body))，签名为 hex(hmacSha256(secretKey, 签名串))。
+ *
+ * 每个请求都要走一遍，所以尽量不分配对象：
+ *  - Mac、MessageDigest 每个线程一份，Mac 只在线程第一次使用时用预先建好的密钥 init
+ *  - Authorization 头一次扫描取出 Credential、Signature 的位置，不 split、不建 Map
+ *  - 签名串不拼接，各段依次 update 进 Mac；哈希查表转十六进制，写进线程自己的缓冲区
+ *  - 请求里的签名解码成 32 字节后与期望值做定长比较（MessageDigest.isEqual），耗时与哪一位不同无关
+ */
+final class HmacSignatureVerifier {
+
+    private static final String AUTH_PREFIX = "HMAC-SHA256 ";
+    private static final String CREDENTIAL = "Credential";
+    private static final String SIGNATURE = "Signature";
+    private static final byte[] METHOD_LINE = "POST\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final int HASH_LENGTH = 32;
+
+    //校验结果，message 为返回给客户端的提示
+    enum Result {
+        OK(null),
+        INVALID_HEADER("Invalid authorization header"),
+        INVALID_HEADER_FORMAT("Invalid authorization header format"),
+        INVALID_SECRET_ID("Invalid secret id"),
+        MISSING_HEADERS("Missing required headers"),
+        INVALID_SIGNATURE("Invalid signature");
+
+        private final String message;
+
+        Result(String message) {
+            this.message = message;
+        }
+
+        String getMessage() {
+            return message;
+        }
+    }
+
+    private final String secretId;
+    private final SecretKeySpec key;
+    private final ThreadLocal<Context> contexts = ThreadLocal.withInitial(this::newContext);
+
+    HmacSignatureVerifier(String secretId, String secretKey) {
+        this.secretId = secretId;
+        this.key = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        //算法不可用时启动就失败，而不是每个请求都失败
+        contexts.get();
+    }
+
+    /**
+     * 按 Authorization 头、Credential、X-TC-Action / X-TC-Timestamp、签名的顺序校验，返回第一个不通过的原因
+     */
+    Result verify(String authHeader, String action, String timestamp, byte[] body) {
+        if (authHeader == null || !authHeader.startsWith(AUTH_PREFIX)) {
+            return Result.INVALID_HEADER;
+        }
+        Context context = contexts.get();
+        context.parse(authHeader);
+        if (context.credentialStart < 0 || context.signatureStart < 0) {
+            return Result.INVALID_HEADER_FORMAT;
+        }
+        int credentialLength = context.credentialEnd - context.credentialStart;
+        if (credentialLength != secretId.length()
+                || !authHeader.regionMatches(context.credentialStart, secretId, 0, credentialLength)) {
+            return Result.INVALID_SECRET_ID;
+        }
+        if (action == null || timestamp == null) {
+            return Result.MISSING_HEADERS;
+        }
+        if (!context.decodeSignature(authHeader)) {
+            return Result.INVALID_SIGNATURE;
+        }
+        context.sign(action, timestamp, body);
+        return MessageDigest.isEqual(context.expected, context.actual) ? Result.OK : Result.INVALID_SIGNATURE;
+    }
+
+    /**
+     * 计算签名（十六进制），测试里用来构造合法请求
+     */
+    String sign(String action, String timestamp, byte[] body) {
+        Context context = contexts.get();
+        context.sign(action, timestamp, body);
+        return new String(context.toHex(context.expected), 0, HASH_LENGTH * 2, StandardCharsets.US_ASCII);
+    }
+
+    private Context newContext() {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            return new Context(mac, MessageDigest.getInstance("SHA-256"));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    //每个线程一份：算法实例、缓冲区和这次解析出的位置
+    private static final class Context {
+
+        private final Mac mac;
+        private final MessageDigest digest;
+        private final byte[] bodyHash = new byte[HASH_LENGTH];
+        private final byte[] hex = new byte[HASH_LENGTH * 2];
+        private final byte[] expected = new byte[HASH_LENGTH];
+        private final byte[] actual = new byte[HASH_LENGTH];
+        //ASCII 请求头按字节写进 Mac 的缓冲区，按需扩容
+        private byte[] text = new byte[64];
+
+        //Authorization 头里 Credential、Signature 值的位置，没有时为 -1
+        private int credentialStart;
+        private int credentialEnd;
+        private int signatureStart;
+        private int signatureEnd;
+
+        private Context(Mac mac, MessageDigest digest) {
+            this.mac = mac;
+            this.digest = digest;
+        }
+
+        /**
+         * "HMAC-SHA256 Credential=xxx, SignedHeaders=xxx, Signature=xxx"：各段以 ", " 分隔，
+         * 按第一个 '=' 分成键和值（值里可以再有 '='，如 base64 补位），'=' 后面没有内容的段忽略；
+         * 键和值去掉首尾空白，重复的键以最后一个为准
+         */
+        private void parse(String header) {
+            credentialStart = -1;
+            signatureStart = -1;
+            int length = header.length();
+            int start = AUTH_PREFIX.length();
+            while (start <= length) {
+                int end = header.indexOf(", ", start);
+                if (end < 0) {
+                    end = length;
+                }
+                int equals = indexOf(header, '=', start, end);
+                if (equals >= 0 && equals < end - 1) {
+                    int keyStart = skipWhitespace(header, start, equals);
+                    int keyEnd = trimWhitespace(header, keyStart, equals);
+                    int valueStart = skipWhitespace(header, equals + 1, end);
+                    int valueEnd = trimWhitespace(header, valueStart, end);
+                    if (isKey(header, keyStart, keyEnd, CREDENTIAL)) {
+                        credentialStart = valueStart;
+                        credentialEnd = valueEnd;
+                    } else if (isKey(header, keyStart, keyEnd, SIGNATURE)) {
+                        signatureStart = valueStart;
+                        signatureEnd = valueEnd;
+                    }
+                }
+                start = end + 2;
+            }
+        }
+
+        private static int indexOf(String s, char c, int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (s.charAt(i) == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static boolean isKey(String header, int start, int end, String key) {
+            return end - start == key.length() && header.startsWith(key, start);
+        }
+
+        private static int skipWhitespace(String s, int start, int end) {
+            while (start < end && s.charAt(start) <= ' ') {
+                start++;
+            }
+            return start;
+        }
+
+        private static int trimWhitespace(String s, int start, int end) {
+            while (end > start && s.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            return end;
+        }
+
+        //请求里的签名必须是 64 位小写十六进制，和原来按字符串比较时接受的一样
+        private boolean decodeSignature(String header) {
+            if (signatureEnd - signatureStart != HASH_LENGTH * 2) {
+                return false;
+            }
+            for (int i = 0; i < HASH_LENGTH; i++) {
+                int high = hexValue(header.charAt(signatureStart + 2 * i));
+                int low = hexValue(header.charAt(signatureStart + 2 * i + 1));
+                if (high < 0 || low < 0) {
+                    return false;
+                }
+                actual[i] = (byte) (high << 4 | low);
+            }
+            return true;
+        }
+
+        private static int hexValue(char c) {
+            if (c >= '0' && c <= '9') {
+                return c - '0';
+            }
+            if (c >= 'a' && c <= 'f') {
+                return c - 'a' + 10;
+            }
+            return -1;
+        }
+
+        //签名结果写进 expected
+        private void sign(String action, String timestamp, byte[] body) {
+            digest.update(body);
+            try {
+                digest.digest(bodyHash, 0, HASH_LENGTH);
+                mac.update(METHOD_LINE);
+                update(action);
+                mac.update((byte) '\n');
+                update(timestamp);
+                mac.update((byte) '\n');
+                mac.update(toHex(bodyHash));
+                mac.doFinal(expected, 0);
+            } catch (GeneralSecurityException e) {
+                mac.reset();
+                throw new IllegalStateException(e);
+            }
+        }
+
+        //请求头通常是 ASCII，直接按字节写入；有非 ASCII 字符时才按 UTF-8 编码
+        private void update(String value) {
+            int length = value.length();
+            if (text.length < length) {
+                text = new byte[Math.max(length, text.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    mac.update(value.getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                text[i] = (byte) c;
+            }
+            mac.update(text, 0, length);
+        }
+
+        private byte[] toHex(byte[] bytes) {
+            for (int i = 0; i < bytes.length; i++) {
+                hex[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+                hex[2 * i + 1] = HEX[bytes[i] & 0xf];
+            }
+            return hex;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package cn.xej.api.filter;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HmacSignatureVerifierTest {
+
+    private static final String SECRET_ID = "alicat";
+    private static final String SECRET_KEY = "123456";
+    private static final String ACTION = "DescribeInstances";
+    private static final String TIMESTAMP = "1700000000";
+    private static final byte[] BODY = "{\"InstanceIds\":[\"ins-1\"],\"名称\":\"测试\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final HmacSignatureVerifier verifier = new HmacSignatureVerifier(SECRET_ID, SECRET_KEY);
+
+    @Test
+    void signMatchesReferenceImplementation() throws Exception {
+        assertEquals(referenceSignature(ACTION, TIMESTAMP, BODY), verifier.sign(ACTION, TIMESTAMP, BODY));
+        assertEquals(referenceSignature("操作", "1", new byte[0]), verifier.sign("操作", "1", new byte[0]));
+    }
+
+    @Test
+    void acceptsValidSignature() {
+        assertEquals(HmacSignatureVerifier.Result.OK, verify(header(SECRET_ID, signature()), ACTION, TIMESTAMP, BODY));
+        //键值两边的空白、SignedHeaders 等其它段都不影响
+        assertEquals(HmacSignatureVerifier.Result.OK,
+                verify("HMAC-SHA256  Credential = alicat , SignedHeaders=content-type;host, Signature= " + signature() + " ",
+                        ACTION, TIMESTAMP, BODY));
+    }
+
+    @Test
+    void rejectsTamperedRequest() {
+        String header = header(SECRET_ID, signature());
+        byte[] body = BODY.clone();
+        body[body.length - 2] ^= 1;
+        assertEquals(HmacSignatureVerifier.Result.INVALID_SIGNATURE, verify(header, ACTION, TIMESTAMP, body));
+        assertEquals(HmacSignatureVerifier.Result.INVALID_SIGNATURE, verify(header, "RunInstances", TIMESTAMP, BODY));
+        assertEquals(HmacSignatureVerifier.Result.INVALID_SIGNATURE, verify(header, ACTION, "1700000001", BODY));
+    }
+
+    @Test
+    void rejectsMalformedSignature() {
+        String signature = signature();
+        assertEquals(HmacSignatureVerifier.Result.INVALID_SIGNATURE,
+                verify(header(SECRET_ID, signature.substring(1)), ACTION, TIMESTAMP, BODY));
+        assertEquals(HmacSignatureVerifier.Result.INVALID_SIGNATURE,
+                verify(header(SECRET_ID, signature + "0"), ACTION, TIMESTAMP, BODY));
+        assertEquals(HmacSignatureVerifier.Result.INVALID_SIGNATURE,
+                verify(header(SECRET_ID, "g" + signature.substring(1)), ACTION, TIMESTAMP, BODY));
+        //和原来按字符串比较一样，只接受小写
+        assertEquals(HmacSignatureVerifier.Result.INVALID_SIGNATURE,
+                verify(header(SECRET_ID, signature.toUpperCase()), ACTION, TIMESTAMP, BODY));
+    }
+
+    @Test
+    void checksHeaderBeforeSignature() {
+        String signature = signature();
+        assertEquals(HmacSignatureVerifier.Result.INVALID_HEADER, verify(null, ACTION, TIMESTAMP, BODY));
+        assertEquals(HmacSignatureVerifier.Result.INVALID_HEADER, verify("Bearer token", ACTION, TIMESTAMP, BODY));
+        assertEquals(HmacSignatureVerifier.Result.INVALID_HEADER_FORMAT,
+                verify("HMAC-SHA256 Credential=alicat", ACTION, TIMESTAMP, BODY));
+        assertEquals(HmacSignatureVerifier.Result.INVALID_HEADER_FORMAT,
+                verify("HMAC-SHA256 Signature=" + signature, ACTION, TIMESTAMP, BODY));
+        //'=' 后面没有内容的段不算
+        assertEquals(HmacSignatureVerifier.Result.INVALID_HEADER_FORMAT,
+                verify("HMAC-SHA256 Credential=, Signature=" + signature, ACTION, TIMESTAMP, BODY));
+        assertEquals(HmacSignatureVerifier.Result.INVALID_SECRET_ID,
+                verify(header("alica", signature), ACTION, TIMESTAMP, BODY));
+        assertEquals(HmacSignatureVerifier.Result.MISSING_HEADERS,
+                verify(header(SECRET_ID, signature), null, TIMESTAMP, BODY));
+        assertEquals(HmacSignatureVerifier.Result.MISSING_HEADERS,
+                verify(header(SECRET_ID, signature), ACTION, null, BODY));
+    }
+
+    @Test
+    void lastDuplicateKeyWins() {
+        String signature = signature();
+        assertEquals(HmacSignatureVerifier.Result.OK,
+                verify("HMAC-SHA256 Credential=bob, Signature=00, Credential=alicat, Signature=" + signature,
+                        ACTION, TIMESTAMP, BODY));
+        assertEquals(HmacSignatureVerifier.Result.INVALID_SECRET_ID,
+                verify("HMAC-SHA256 Credential=alicat, Signature=" + signature + ", Credential=bob",
+                        ACTION, TIMESTAMP, BODY));
+    }
+
+    @Test
+    void valuesMayContainEquals() {
+        //按第一个 '=' 切分，base64 补位的 '=' 属于值
+        HmacSignatureVerifier padded = new HmacSignatureVerifier("YWxpY2F0Lg==", SECRET_KEY);
+        String signature = padded.sign(ACTION, TIMESTAMP, BODY);
+        assertEquals(HmacSignatureVerifier.Result.OK,
+                padded.verify(header("YWxpY2F0Lg==", signature), ACTION, TIMESTAMP, BODY));
+        assertEquals(HmacSignatureVerifier.Result.INVALID_SECRET_ID,
+                padded.verify(header("YWxpY2F0Lg", signature), ACTION, TIMESTAMP, BODY));
+        assertEquals(HmacSignatureVerifier.Result.INVALID_SIGNATURE,
+                verify(header(SECRET_ID, signature + "="), ACTION, TIMESTAMP, BODY));
+    }
+
+    private HmacSignatureVerifier.Result verify(String header, String action, String timestamp, byte[] body) {
+        return verifier.verify(header, action, timestamp, body);
+    }
+
+    private String signature() {
+        return verifier.sign(ACTION, TIMESTAMP, BODY);
+    }
+
+    private static String header(String credential, String signature) {
+        return "HMAC-SHA256 Credential=" + credential + ", SignedHeaders=content-type, Signature=" + signature;
+    }
+
+    //原来 AuthFilter 里的算法
+    private static String referenceSignature(String action, String timestamp, byte[] body) throws Exception {
+        String hashedPayload = hex(MessageDigest.getInstance("SHA-256").digest(body));
+        String stringToSign = String.format("%s\n%s\n%s\n%s", "POST", action, timestamp, hashedPayload);
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET_KEY.getBytes(StandardCharsets.UTF_8), mac.getAlgorithm()));
+        return hex(mac.doFinal(stringToSign.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}